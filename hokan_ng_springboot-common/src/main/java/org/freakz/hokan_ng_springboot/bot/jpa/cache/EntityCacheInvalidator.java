@@ -0,0 +1,223 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jms.JmsMessage;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ChannelProperty;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.NetworkProperty;
+import org.hibernate.jpa.HibernateEntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.ObjectMessage;
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the second-level caches of all modules in step. Every module runs
+ * its own Hibernate cache, so when a cached entity is written here the
+ * change is published to {@link #CACHE_TOPIC} after the transaction
+ * commits, and the other modules evict that entity and their query cache.
+ * <p/>
+ * Channels and channel properties are removed by ON DELETE CASCADE in the
+ * database, behind Hibernate's back, so removing a Network or a Channel
+ * also evicts the entities depending on it, locally as well.
+ * <p/>
+ * {@link EntityChangeListener} beans are told about every change, local
+ * ones after commit and remote ones as they arrive.
+ * <p/>
+ * Bulk JPQL updates skip the entity listeners, so the repository services
+ * report them with {@link #bulkUpdated(Class, Object)}.
+ */
+@Component
+@Slf4j
+public class EntityCacheInvalidator {
+
+  public static final String CACHE_TOPIC = "HokanNGCacheTopic";
+
+  private static final String KEY_NODE = "CACHE_NODE";
+  private static final String KEY_ENTITY = "CACHE_ENTITY";
+  private static final String KEY_ID = "CACHE_ID";
+  private static final String KEY_REMOVED = "CACHE_REMOVED";
+  private static final String KEY_NOTIFY = "CACHE_NOTIFY";
+
+  private static final Map<Class<?>, Class<?>[]> CASCADED = new HashMap<>();
+
+  static {
+    CASCADED.put(Network.class, new Class<?>[]{Channel.class, ChannelProperty.class, NetworkProperty.class});
+    CASCADED.put(Channel.class, new Class<?>[]{ChannelProperty.class});
+  }
+
+  private static volatile EntityCacheInvalidator instance;
+
+  private final String nodeId = UUID.randomUUID().toString();
+
+  @Autowired
+  private ConnectionFactory connectionFactory;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  @Autowired(required = false)
+  private List<EntityChangeListener> changeListeners = Collections.emptyList();
+
+  private JmsTemplate topicTemplate;
+
+  private DefaultMessageListenerContainer listenerContainer;
+
+  static EntityCacheInvalidator getInstance() {
+    return instance;
+  }
+
+  @PostConstruct
+  public void start() {
+    topicTemplate = new JmsTemplate(connectionFactory);
+    topicTemplate.setPubSubDomain(true);
+
+    listenerContainer = new DefaultMessageListenerContainer();
+    listenerContainer.setConnectionFactory(connectionFactory);
+    listenerContainer.setPubSubDomain(true);
+    listenerContainer.setDestinationName(CACHE_TOPIC);
+    listenerContainer.setMessageListener((MessageListener) this::handleMessage);
+    listenerContainer.afterPropertiesSet();
+    listenerContainer.start();
+
+    instance = this;
+    log.info("Cache invalidation node {} listening on {}", nodeId, CACHE_TOPIC);
+  }
+
+  @PreDestroy
+  public void stop() {
+    instance = null;
+    listenerContainer.shutdown();
+  }
+
+  void entityChanged(Object entity, boolean removed) {
+    Object id = entityManagerFactory.getPersistenceUnitUtil().getIdentifier(entity);
+    if (id != null) {
+      afterCommit(entity.getClass(), id, removed, true);
+    }
+  }
+
+  /**
+   * Evicts an entity changed by a bulk update from the caches of the other
+   * nodes once the transaction commits; Hibernate evicts it here. The
+   * change listeners are not told, the bulk updates only add to counters.
+   */
+  public void bulkUpdated(Class<?> entityClass, Object id) {
+    afterCommit(entityClass, id, false, false);
+  }
+
+  private void afterCommit(Class<?> entityClass, Object id, boolean removed, boolean notify) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          committed(entityClass, id, removed, notify);
+        }
+      });
+    } else {
+      committed(entityClass, id, removed, notify);
+    }
+  }
+
+  private void committed(Class<?> entityClass, Object id, boolean removed, boolean notify) {
+    if (removed && CASCADED.containsKey(entityClass)) {
+      evictCascaded(entityClass);
+      evictQueryRegions();
+    }
+    if (notify) {
+      notifyListeners(entityClass, id, removed);
+    }
+    publish(entityClass, id, removed, notify);
+  }
+
+  private void notifyListeners(Class<?> entityClass, Object id, boolean removed) {
+    for (EntityChangeListener listener : changeListeners) {
+      try {
+        listener.entityChanged(entityClass, id, removed);
+      } catch (Exception e) {
+        log.warn("Entity change listener {} failed: {}", listener, e.toString());
+      }
+    }
+  }
+
+  private void publish(Class<?> entityClass, Object id, boolean removed, boolean notify) {
+    try {
+      topicTemplate.send(CACHE_TOPIC, session -> {
+        JmsMessage jmsMessage = new JmsMessage();
+        jmsMessage.addPayLoadObject(KEY_NODE, nodeId);
+        jmsMessage.addPayLoadObject(KEY_ENTITY, entityClass.getName());
+        jmsMessage.addPayLoadObject(KEY_ID, (Serializable) id);
+        jmsMessage.addPayLoadObject(KEY_REMOVED, removed);
+        jmsMessage.addPayLoadObject(KEY_NOTIFY, notify);
+        ObjectMessage objectMessage = session.createObjectMessage();
+        objectMessage.setObject(jmsMessage);
+        return objectMessage;
+      });
+    } catch (Exception e) {
+      log.warn("Could not publish cache invalidation of {}#{}: {}", entityClass.getSimpleName(), id, e.getMessage());
+    }
+  }
+
+  private void handleMessage(Message message) {
+    try {
+      JmsMessage jmsMessage = (JmsMessage) ((ObjectMessage) message).getObject();
+      if (nodeId.equals(jmsMessage.getPayLoadObject(KEY_NODE))) {
+        return;
+      }
+      Class<?> entityClass = Class.forName((String) jmsMessage.getPayLoadObject(KEY_ENTITY));
+      Object id = jmsMessage.getPayLoadObject(KEY_ID);
+      boolean removed = Boolean.TRUE.equals(jmsMessage.getPayLoadObject(KEY_REMOVED));
+      boolean notify = !Boolean.FALSE.equals(jmsMessage.getPayLoadObject(KEY_NOTIFY));
+      log.debug("Evicting {}#{}", entityClass.getSimpleName(), id);
+      entityManagerFactory.getCache().evict(entityClass, id);
+      if (removed) {
+        evictCascaded(entityClass);
+      }
+      evictQueryRegions();
+      if (notify) {
+        notifyListeners(entityClass, id, removed);
+      }
+    } catch (JMSException | ClassNotFoundException | ClassCastException e) {
+      log.warn("Invalid cache invalidation message: {}", e.getMessage());
+    }
+  }
+
+  private void evictCascaded(Class<?> entityClass) {
+    Class<?>[] cascaded = CASCADED.get(entityClass);
+    if (cascaded != null) {
+      for (Class<?> dependent : cascaded) {
+        entityManagerFactory.getCache().evict(dependent);
+      }
+    }
+  }
+
+  private void evictQueryRegions() {
+    EntityManagerFactory nativeFactory = entityManagerFactory;
+    if (nativeFactory instanceof EntityManagerFactoryInfo) {
+      nativeFactory = ((EntityManagerFactoryInfo) nativeFactory).getNativeEntityManagerFactory();
+    }
+    if (nativeFactory instanceof HibernateEntityManagerFactory) {
+      ((HibernateEntityManagerFactory) nativeFactory).getSessionFactory().getCache().evictQueryRegions();
+    }
+  }
+
+}
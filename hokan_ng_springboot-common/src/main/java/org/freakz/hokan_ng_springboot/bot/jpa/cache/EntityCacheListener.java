@@ -0,0 +1,31 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.cache;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA entity listener for the second-level cached entities. The listener
+ * is created by Hibernate, not by Spring, so it hands the change over to
+ * the {@link EntityCacheInvalidator} bean of this node, if one is running.
+ */
+public class EntityCacheListener {
+
+  @PostPersist
+  @PostUpdate
+  public void entityChanged(Object entity) {
+    EntityCacheInvalidator invalidator = EntityCacheInvalidator.getInstance();
+    if (invalidator != null) {
+      invalidator.entityChanged(entity, false);
+    }
+  }
+
+  @PostRemove
+  public void entityRemoved(Object entity) {
+    EntityCacheInvalidator invalidator = EntityCacheInvalidator.getInstance();
+    if (invalidator != null) {
+      invalidator.entityChanged(entity, true);
+    }
+  }
+
+}
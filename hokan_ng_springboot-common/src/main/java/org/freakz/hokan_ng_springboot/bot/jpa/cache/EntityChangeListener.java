@@ -0,0 +1,12 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.cache;
+
+/**
+ * Beans implementing this are told by the {@link EntityCacheInvalidator}
+ * about committed changes of the second-level cached entities, made in
+ * this module or in any other.
+ */
+public interface EntityChangeListener {
+
+  void entityChanged(Class<?> entityClass, Object id, boolean removed);
+
+}
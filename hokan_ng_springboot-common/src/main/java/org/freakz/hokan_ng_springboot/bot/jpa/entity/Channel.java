@@ -1,5 +1,9 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.entity;
 
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityCacheListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
@@ -12,7 +16,18 @@ import java.io.Serializable;
  * Time: 10:02 AM
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityCacheListener.class)
 @Table(name = "CHANNEL")
+@NamedQueries({
+    @NamedQuery(name = "Channel.findAllWithNetwork",
+        query = "SELECT c FROM Channel c JOIN FETCH c.network"),
+    @NamedQuery(name = "Channel.findByNetwork",
+        query = "SELECT c FROM Channel c JOIN FETCH c.network WHERE c.network = ?1"),
+    @NamedQuery(name = "Channel.findByNetworkAndChannelState",
+        query = "SELECT c FROM Channel c JOIN FETCH c.network WHERE c.network = ?1 AND c.channelState = ?2")
+})
 public class Channel implements Serializable {
 
   @Id
@@ -20,12 +35,13 @@ public class Channel implements Serializable {
   @Column(name = "ID")
   private long id;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @OnDelete(action = OnDeleteAction.CASCADE)
   @JoinColumn(name = "NETWORK_ID_FK", referencedColumnName = "ID")
   private Network network;
 
   @Column(name = "CHANNEL_NAME")
+  @Index(name = "IDX_CHANNEL_NAME")
   private String channelName;
 
   @Column(name = "CHANNEL_STATE", nullable = false)
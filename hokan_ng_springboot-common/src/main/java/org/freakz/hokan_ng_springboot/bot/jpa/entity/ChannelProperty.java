@@ -1,11 +1,19 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.entity;
 
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityCacheListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.FetchType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import java.io.Serializable;
 
@@ -17,10 +25,19 @@ import java.io.Serializable;
  * @author Petri Airio <petri.j.airio@gmail.com>
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityCacheListener.class)
 @Table(name = "CHANNELPROPERTIES")
+@NamedQueries({
+    @NamedQuery(name = "ChannelProperty.findAllWithNetwork",
+        query = "SELECT p FROM ChannelProperty p JOIN FETCH p.channel c JOIN FETCH c.network"),
+    @NamedQuery(name = "ChannelProperty.findByChannel",
+        query = "SELECT p FROM ChannelProperty p JOIN FETCH p.channel c JOIN FETCH c.network WHERE p.channel = ?1")
+})
 public class ChannelProperty extends PropertyBase implements Serializable {
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @OnDelete(action = OnDeleteAction.CASCADE)
   @JoinColumn(name = "CHANNEL", referencedColumnName = "ID", nullable = false)
   private Channel channel;
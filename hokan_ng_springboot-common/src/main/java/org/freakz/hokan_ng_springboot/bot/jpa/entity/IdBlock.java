@@ -0,0 +1,42 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * Next free block of a hi/lo id sequence. A node reserves a whole block
+ * of ids with one update and hands them out from memory.
+ *
+ */
+@Entity
+@Table(name = "ID_BLOCK")
+public class IdBlock implements Serializable {
+
+  @Id
+  @Column(name = "NAME")
+  private String name;
+
+  @Column(name = "NEXT_HI")
+  private long nextHi;
+
+  public IdBlock() {
+  }
+
+  public IdBlock(String name) {
+    this.name = name;
+    this.nextHi = 0;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getNextHi() {
+    return nextHi;
+  }
+
+  public void setNextHi(long nextHi) {
+    this.nextHi = nextHi;
+  }
+
+}
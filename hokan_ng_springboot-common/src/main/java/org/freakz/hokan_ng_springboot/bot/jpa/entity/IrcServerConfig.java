@@ -1,5 +1,9 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.entity;
 
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityCacheListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 
 /**
@@ -9,6 +13,9 @@ import javax.persistence.*;
  * @author Petri Airio (petri.j.airio@gmail.com)
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityCacheListener.class)
 @Table(name = "IRCSERVERCONFIG")
 public class IrcServerConfig {
 
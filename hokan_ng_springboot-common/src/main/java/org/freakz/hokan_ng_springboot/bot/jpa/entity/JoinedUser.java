@@ -1,5 +1,8 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.entity;
 
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
 import javax.persistence.*;
 
 /**
@@ -11,18 +14,30 @@ import javax.persistence.*;
  */
 @Entity
 @Table(name = "JOINEDUSER")
+@NamedQueries({
+    @NamedQuery(name = "JoinedUser.findByNetwork",
+        query = "SELECT j FROM JoinedUser j JOIN FETCH j.channel c JOIN FETCH j.user WHERE c.network = ?1")
+})
 public class JoinedUser {
 
+  /**
+   * Ids come from a table generator so that the reconciler's inserts can
+   * be batched; an identity column would send them one by one.
+   */
   @Id
-  @GeneratedValue(strategy = GenerationType.AUTO)
+  @GeneratedValue(strategy = GenerationType.TABLE, generator = "JoinedUserId")
+  @TableGenerator(name = "JoinedUserId", table = "ID_GENERATOR", pkColumnName = "NAME",
+      valueColumnName = "NEXT_HI", pkColumnValue = "JOINEDUSER", allocationSize = 100)
   @Column(name = "ID")
   private long id;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
+  @OnDelete(action = OnDeleteAction.CASCADE)
   @JoinColumn(name = "CHANNEL", referencedColumnName = "ID", nullable = false)
   private Channel channel;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
+  @OnDelete(action = OnDeleteAction.CASCADE)
   @JoinColumn(name = "USER", referencedColumnName = "ID", nullable = false)
   private User user;
 
@@ -1,5 +1,10 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.entity;
 
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityCacheListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
+
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.Date;
@@ -11,6 +16,9 @@ import java.util.Date;
  * Time: 1:31 PM
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityCacheListener.class)
 @Table(name = "NETWORK")
 public class Network implements Serializable {
 
@@ -20,22 +28,38 @@ public class Network implements Serializable {
   private long id;
 
   @Column(name = "NETWORK_NAME")
+  @Index(name = "IDX_NETWORK_NAME")
   private String networkName;
 
   @Column(name = "FIRST_CONNECTED")
   private Date firstConnected;
 
-  @Column(name = "CONNECT_COUNT")
-  private int connectCount;
+  // The counters are only ever added to with UPDATE ... SET x = x + ?,
+  // see NetworkService.addTraffic, so an entity save never overwrites them.
+
+  @Column(name = "CONNECT_COUNT", updatable = false)
+  private long connectCount;
+
+  @Column(name = "LINES_SENT", updatable = false)
+  private long linesSent;
+
+  @Column(name = "LINES_RECEIVED", updatable = false)
+  private long linesReceived;
 
-  @Column(name = "LINES_SENT")
-  private int linesSent;
+  @Column(name = "CHANNELS_JOINED", updatable = false)
+  private long channelsJoined;
 
-  @Column(name = "LINES_RECEIVED")
-  private int linesReceived;
+  @Column(name = "BYTES_SENT", updatable = false)
+  private long bytesSent;
 
-  @Column(name = "CHANNELS_JOINED")
-  private int channelsJoined;
+  @Column(name = "BYTES_RECEIVED", updatable = false)
+  private long bytesReceived;
+
+  @Column(name = "COMMANDS_HANDLED", updatable = false)
+  private long commandsHandled;
+
+  @Column(name = "ERRORS", updatable = false)
+  private long errors;
 
   public Network() {
     this("<NEW_NETWORK>");
@@ -76,52 +100,36 @@ public class Network implements Serializable {
     this.firstConnected = firstConnected;
   }
 
-  public int getConnectCount() {
+  public long getConnectCount() {
     return connectCount;
   }
 
-  public void setConnectCount(int connectCount) {
-    this.connectCount = connectCount;
-  }
-
-  public void addToConnectCount(int delta) {
-    this.connectCount += delta;
-  }
-
-  public int getLinesSent() {
+  public long getLinesSent() {
     return linesSent;
   }
 
-  public void setLinesSent(int linesSent) {
-    this.linesSent = linesSent;
-  }
-
-  public void addToLinesSent(int delta) {
-    this.linesSent += delta;
-  }
-
-  public int getLinesReceived() {
+  public long getLinesReceived() {
     return linesReceived;
   }
 
-  public void setLinesReceived(int linesReceived) {
-    this.linesReceived = linesReceived;
+  public long getChannelsJoined() {
+    return channelsJoined;
   }
 
-  public void addToLinesReceived(int delta) {
-    this.linesReceived += delta;
+  public long getBytesSent() {
+    return bytesSent;
   }
 
-  public int getChannelsJoined() {
-    return channelsJoined;
+  public long getBytesReceived() {
+    return bytesReceived;
   }
 
-  public void setChannelsJoined(int channelsJoined) {
-    this.channelsJoined = channelsJoined;
+  public long getCommandsHandled() {
+    return commandsHandled;
   }
 
-  public void addToChannelsJoined(int delta) {
-    this.channelsJoined += delta;
+  public long getErrors() {
+    return errors;
   }
 
   public String toString() {
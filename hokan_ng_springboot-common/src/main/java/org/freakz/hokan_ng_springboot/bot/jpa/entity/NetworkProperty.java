@@ -0,0 +1,63 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.entity;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityCacheListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
+import javax.persistence.FetchType;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * Property set for one network, overriding the system property and
+ * overridden by the channel property of the same name.
+ *
+ */
+@Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityCacheListener.class)
+@Table(name = "NETWORKPROPERTIES")
+@NamedQueries({
+    @NamedQuery(name = "NetworkProperty.findAllWithNetwork",
+        query = "SELECT p FROM NetworkProperty p JOIN FETCH p.network"),
+    @NamedQuery(name = "NetworkProperty.findByNetwork",
+        query = "SELECT p FROM NetworkProperty p JOIN FETCH p.network WHERE p.network = ?1")
+})
+public class NetworkProperty extends PropertyBase implements Serializable {
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  @OnDelete(action = OnDeleteAction.CASCADE)
+  @JoinColumn(name = "NETWORK", referencedColumnName = "ID", nullable = false)
+  private Network network;
+
+  public NetworkProperty() {
+  }
+
+  public NetworkProperty(Network network, PropertyName property, String value, String flags) {
+    super(property, value, flags);
+    this.network = network;
+  }
+
+  public Network getNetwork() {
+    return network;
+  }
+
+  public void setNetwork(Network network) {
+    this.network = network;
+  }
+
+  public String toString() {
+    return String.format("[%s] %s = %s", network.getName(), getProperty().toString(), getValue());
+  }
+
+}
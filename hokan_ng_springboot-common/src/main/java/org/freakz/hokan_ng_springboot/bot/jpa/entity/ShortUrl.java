@@ -0,0 +1,82 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.entity;
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Short link id to URL mapping. The id comes from a hi/lo block reserved
+ * in memory, not from the database, and the short code is its base62 form.
+ *
+ */
+@Entity
+@Table(name = "SHORT_URL")
+public class ShortUrl implements Persistable<Long>, Serializable {
+
+  @Id
+  @Column(name = "ID")
+  private long id;
+
+  @Column(name = "URL", length = 1024)
+  private String url;
+
+  @Column(name = "URL_ID")
+  private long urlId;
+
+  @Column(name = "CREATED")
+  private Date created;
+
+  @Transient
+  private boolean isNew = true;
+
+  public ShortUrl() {
+  }
+
+  public ShortUrl(long id, String url, Date created) {
+    this.id = id;
+    this.url = url;
+    this.created = created;
+  }
+
+  @Override
+  public Long getId() {
+    return id;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * @return id of the Url this was made for, 0 if not known
+   */
+  public long getUrlId() {
+    return urlId;
+  }
+
+  public void setUrlId(long urlId) {
+    this.urlId = urlId;
+  }
+
+  public Date getCreated() {
+    return created;
+  }
+
+  /**
+   * The id is assigned, so without this every save would be a merge
+   * reading the row first.
+   */
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    isNew = false;
+  }
+
+}
@@ -17,7 +17,7 @@ public class TvNotify implements Serializable {
   @Column(name = "ID")
   private long notifyId;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "CHANNEL_ID_FK", referencedColumnName = "ID", nullable = false)
   private Channel channel;
 
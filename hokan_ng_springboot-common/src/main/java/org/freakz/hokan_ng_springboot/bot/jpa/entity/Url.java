@@ -108,6 +108,10 @@ public class Url implements Serializable {
     return this.wanhaCount;
   }
 
+  /**
+   * Changes this instance only, see UrlService.addWanhaCount() for the
+   * atomic update in the database.
+   */
   public void addWanhaCount(long delta) {
     this.wanhaCount += delta;
   }
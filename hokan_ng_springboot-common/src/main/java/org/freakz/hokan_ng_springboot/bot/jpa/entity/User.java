@@ -1,5 +1,10 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.entity;
 
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityCacheListener;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
+
 import javax.persistence.*;
 import java.io.Serializable;
 
@@ -9,6 +14,9 @@ import java.io.Serializable;
  * Time: 2:17 PM
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@EntityListeners(EntityCacheListener.class)
 @Table(name = "USER")
 public class User implements Serializable {
 
@@ -18,6 +26,7 @@ public class User implements Serializable {
   private long userId;
 
   @Column(name = "NICK")
+  @Index(name = "IDX_USER_NICK")
   private String nick;
 
   @Column(name = "PASSWORD")
@@ -19,11 +19,11 @@ public class UserChannel implements Serializable {
   @Column(name = "ID")
   private long userChannelId;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "CHANNEL_ID_FK", referencedColumnName = "ID", nullable = false)
   private Channel channel;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "USER_ID_FK", referencedColumnName = "ID", nullable = false)
   private User user;
 
@@ -66,6 +66,24 @@ public class UserChannel implements Serializable {
 
   }
 
+  /**
+   * Copies every column, including the id, for a detached snapshot.
+   */
+  public UserChannel(UserChannel other) {
+    this.userChannelId = other.userChannelId;
+    this.channel = other.channel;
+    this.user = other.user;
+    this.joinComment = other.joinComment;
+    this.channelOp = other.channelOp;
+    this.lastJoin = other.lastJoin;
+    this.lastPart = other.lastPart;
+    this.lastPartMessage = other.lastPartMessage;
+    this.lastMessage = other.lastMessage;
+    this.lastMessageTime = other.lastMessageTime;
+    this.lastCommand = other.lastCommand;
+    this.lastCommandTime = other.lastCommandTime;
+  }
+
   public long getUserChannelId() {
     return userChannelId;
   }
@@ -163,5 +181,15 @@ public class UserChannel implements Serializable {
     this.lastCommandTime = lastCommandTime;
   }
 
+  /**
+   * Copies the last message and last command columns from another row.
+   */
+  public void copyActivity(UserChannel other) {
+    this.lastMessage = other.lastMessage;
+    this.lastMessageTime = other.lastMessageTime;
+    this.lastCommand = other.lastCommand;
+    this.lastCommandTime = other.lastCommandTime;
+  }
+
 
 }
@@ -12,6 +12,8 @@ import java.util.List;
  */
 public interface ChannelPropertyRepository extends JpaRepository<ChannelProperty, Long> {
 
+  List<ChannelProperty> findAllWithNetwork();
+
   List<ChannelProperty> findByChannel(Channel channel);
 
   void deleteByChannel(Channel object);
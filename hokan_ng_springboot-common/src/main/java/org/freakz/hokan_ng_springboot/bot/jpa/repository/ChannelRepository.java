@@ -9,9 +9,15 @@ import java.util.List;
 
 /**
  * Created on 22.2.2015.
+ * <p/>
+ * The finders are named queries on {@link Channel} that fetch join the
+ * network. They stay out of the query cache: a query cache hit rebuilds
+ * the channels from the entity cache with an uninitialized network.
  */
 public interface ChannelRepository extends JpaRepository<Channel, Long> {
 
+  List<Channel> findAllWithNetwork();
+
   List<Channel> findByNetworkAndChannelState(Network network, ChannelState channelState);
 
   List<Channel> findByNetwork(Network network);
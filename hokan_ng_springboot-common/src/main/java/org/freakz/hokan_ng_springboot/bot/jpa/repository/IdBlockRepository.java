@@ -0,0 +1,21 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.IdBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+
+/**
+ * Hi/lo id block counters.
+ *
+ */
+public interface IdBlockRepository extends JpaRepository<IdBlock, String> {
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT b FROM IdBlock b WHERE b.name = :name")
+  IdBlock findForUpdate(@Param("name") String name);
+
+}
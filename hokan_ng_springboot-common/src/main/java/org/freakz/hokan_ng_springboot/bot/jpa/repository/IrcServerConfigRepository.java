@@ -2,9 +2,17 @@ package org.freakz.hokan_ng_springboot.bot.jpa.repository;
 
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.IrcServerConfig;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.List;
 
 /**
  * Created by JohnDoe on 22.2.2015.
  */
 public interface IrcServerConfigRepository extends JpaRepository<IrcServerConfig, Long> {
+
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+  List<IrcServerConfig> findAll();
+
 }
@@ -0,0 +1,25 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.JoinedUser;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/**
+ * Channel membership as last written by the io reconciler.
+ * <p/>
+ * findByNetwork is a named query on {@link JoinedUser} that fetch joins
+ * the channel and the user.
+ */
+public interface JoinedUserRepository extends JpaRepository<JoinedUser, Long> {
+
+  List<JoinedUser> findByNetwork(Network network);
+
+  List<JoinedUser> findByChannel(Channel channel);
+
+  JoinedUser findFirstByChannelAndUser(Channel channel, User user);
+
+}
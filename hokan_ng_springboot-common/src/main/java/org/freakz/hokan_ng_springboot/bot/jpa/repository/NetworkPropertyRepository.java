@@ -0,0 +1,19 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.NetworkProperty;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+/**
+ * The finders are named queries on {@link NetworkProperty} that fetch
+ * join the network.
+ */
+public interface NetworkPropertyRepository extends JpaRepository<NetworkProperty, Long> {
+
+  List<NetworkProperty> findAllWithNetwork();
+
+  List<NetworkProperty> findByNetwork(Network network);
+
+}
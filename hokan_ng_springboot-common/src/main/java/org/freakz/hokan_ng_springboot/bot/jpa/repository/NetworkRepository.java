@@ -2,6 +2,13 @@ package org.freakz.hokan_ng_springboot.bot.jpa.repository;
 
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.QueryHint;
+import java.util.List;
 
 /**
  *
@@ -9,6 +16,22 @@ import org.springframework.data.jpa.repository.JpaRepository;
  */
 public interface NetworkRepository extends JpaRepository<Network, Long> {
 
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
   Network findByNetworkName(String networkName);
 
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+  List<Network> findAll();
+
+  @Modifying
+  @Query("UPDATE Network n SET n.connectCount = n.connectCount + :connects,"
+      + " n.channelsJoined = n.channelsJoined + :channelsJoined,"
+      + " n.linesSent = n.linesSent + :linesSent, n.linesReceived = n.linesReceived + :linesReceived,"
+      + " n.bytesSent = n.bytesSent + :bytesSent, n.bytesReceived = n.bytesReceived + :bytesReceived,"
+      + " n.commandsHandled = n.commandsHandled + :commands, n.errors = n.errors + :errors"
+      + " WHERE n.id = :id")
+  int addTraffic(@Param("id") long id, @Param("connects") long connects, @Param("channelsJoined") long channelsJoined,
+                 @Param("linesSent") long linesSent, @Param("linesReceived") long linesReceived,
+                 @Param("bytesSent") long bytesSent, @Param("bytesReceived") long bytesReceived,
+                 @Param("commands") long commands, @Param("errors") long errors);
+
 }
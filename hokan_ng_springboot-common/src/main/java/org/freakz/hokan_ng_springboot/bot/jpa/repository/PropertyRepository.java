@@ -1,11 +1,22 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.repository;
 
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Property;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.List;
 
 /**
  * Created by Petri Airio on 27.3.2015.
  */
 public interface PropertyRepository extends JpaRepository<Property, Long> {
 
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+  Property findFirstByProperty(PropertyName property);
+
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+  List<Property> findAll();
+
 }
@@ -0,0 +1,12 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ShortUrl;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Short link mappings.
+ *
+ */
+public interface ShortUrlRepository extends JpaRepository<ShortUrl, Long> {
+
+}
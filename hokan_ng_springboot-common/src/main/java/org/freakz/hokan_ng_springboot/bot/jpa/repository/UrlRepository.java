@@ -0,0 +1,32 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Url;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * Repository for posted URLs.
+ */
+public interface UrlRepository extends JpaRepository<Url, Long> {
+
+  /**
+   * Reads URLs for the in-memory index one page at a time, ordered by id
+   * so that the next page starts after the last id read.
+   *
+   * @return rows of { id, url }
+   */
+  @Query("SELECT u.id, u.url FROM Url u WHERE u.id > :afterId ORDER BY u.id")
+  List<Object[]> findIdAndUrlAfter(@Param("afterId") long afterId, Pageable pageable);
+
+  List<Url> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+  @Modifying
+  @Query("UPDATE Url u SET u.wanhaCount = u.wanhaCount + :delta WHERE u.id = :id")
+  int addWanhaCount(@Param("id") long id, @Param("delta") long delta);
+
+}
@@ -0,0 +1,16 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.UserChannel;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Per-channel activity of users.
+ *
+ */
+public interface UserChannelRepository extends JpaRepository<UserChannel, Long> {
+
+  UserChannel findFirstByUserAndChannel(User user, Channel channel);
+
+}
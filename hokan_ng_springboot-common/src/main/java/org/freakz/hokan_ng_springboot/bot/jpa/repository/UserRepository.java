@@ -2,6 +2,10 @@ package org.freakz.hokan_ng_springboot.bot.jpa.repository;
 
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.List;
 
 /**
  * Created by Petri Airio on 11.3.2015.
@@ -9,6 +13,13 @@ import org.springframework.data.jpa.repository.JpaRepository;
  */
 public interface UserRepository extends JpaRepository<User, Long> {
 
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
   User findFirstByNick(String nick);
 
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+  User findFirstByNickIgnoreCase(String nick);
+
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+  List<User> findAll();
+
 }
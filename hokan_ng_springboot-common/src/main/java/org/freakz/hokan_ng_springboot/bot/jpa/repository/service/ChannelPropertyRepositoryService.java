@@ -3,6 +3,7 @@ package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.ChannelProperty;
 import org.freakz.hokan_ng_springboot.bot.jpa.repository.ChannelPropertyRepository;
+import org.freakz.hokan_ng_springboot.bot.jpa.stats.QueryBudget;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,6 +21,14 @@ public class ChannelPropertyRepositoryService implements ChannelPropertyService
   private ChannelPropertyRepository repository;
 
   @Override
+  @Transactional(readOnly = true)
+  public List<ChannelProperty> findAll() {
+    return repository.findAllWithNetwork();
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  @QueryBudget(1)
   public List<ChannelProperty> findByChannel(Channel channel) {
     return repository.findByChannel(channel);
   }
@@ -11,6 +11,8 @@ import java.util.List;
  */
 public interface ChannelPropertyService {
 
+  List<ChannelProperty> findAll();
+
   List<ChannelProperty> findByChannel(Channel channel);
 
   ChannelProperty save(ChannelProperty newRow);
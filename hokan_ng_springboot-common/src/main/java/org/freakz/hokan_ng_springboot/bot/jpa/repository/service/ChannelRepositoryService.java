@@ -4,6 +4,7 @@ import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.ChannelState;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
 import org.freakz.hokan_ng_springboot.bot.jpa.repository.ChannelRepository;
+import org.freakz.hokan_ng_springboot.bot.jpa.stats.QueryBudget;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,18 +23,21 @@ public class ChannelRepositoryService implements ChannelService {
 
   @Override
   @Transactional(readOnly = true)
+  @QueryBudget(1)
   public List<Channel> findChannels(Network network, ChannelState channelState) {
     return repository.findByNetworkAndChannelState(network, channelState);
   }
 
   @Override
   @Transactional(readOnly = true)
+  @QueryBudget(1)
   public List<Channel> findAll() {
-    return repository.findAll();
+    return repository.findAllWithNetwork();
   }
 
   @Override
   @Transactional(readOnly = true)
+  @QueryBudget(1)
   public List<Channel> findByNetwork(Network network) {
     return repository.findByNetwork(network);
   }
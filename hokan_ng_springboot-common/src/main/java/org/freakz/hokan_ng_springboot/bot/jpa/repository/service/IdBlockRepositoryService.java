@@ -0,0 +1,38 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.IdBlock;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.IdBlockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * The block row is locked for the update, so nodes sharing the database
+ * never get the same block.
+ *
+ */
+@Service
+@Slf4j
+public class IdBlockRepositoryService implements IdBlockService {
+
+  @Autowired
+  private IdBlockRepository idBlockRepository;
+
+  @Override
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public long reserveBlock(String name) {
+    IdBlock block = idBlockRepository.findForUpdate(name);
+    if (block == null) {
+      // a node creating the row at the same time makes the commit fail on the primary key, see IdBlockService
+      block = new IdBlock(name);
+    }
+    long hi = block.getNextHi();
+    block.setNextHi(hi + 1);
+    idBlockRepository.save(block);
+    log.debug("Reserved {} block {}", name, hi);
+    return hi;
+  }
+
+}
@@ -0,0 +1,21 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+/**
+ * Reserves blocks of hi/lo ids.
+ *
+ */
+public interface IdBlockService {
+
+  /**
+   * Reserves the next block of a sequence in a transaction of its own.
+   * The ids of block hi are hi * blockSize ... hi * blockSize + blockSize - 1.
+   *
+   * @param name sequence name
+   * @return hi of the reserved block
+   * @throws org.springframework.dao.DataIntegrityViolationException if the
+   * sequence is new and another node created it at the same time; calling
+   * again reserves from the row it created
+   */
+  long reserveBlock(String name);
+
+}
@@ -0,0 +1,70 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.JoinedUser;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.JoinedUserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JPA implementation of {@link JoinedUserService}.
+ *
+ */
+@Service
+public class JoinedUserRepositoryService implements JoinedUserService {
+
+  /**
+   * Rows per DELETE statement; each one is an OR term.
+   */
+  public static final int DELETE_BATCH = 500;
+
+  @Autowired
+  private JoinedUserRepository repository;
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<JoinedUser> findJoinedUsers(Network network) {
+    return repository.findByNetwork(network);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<JoinedUser> findJoinedUsers(Channel channel) {
+    return repository.findByChannel(channel);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public JoinedUser findJoinedUser(Channel channel, User user) {
+    return repository.findFirstByChannelAndUser(channel, user);
+  }
+
+  @Override
+  @Transactional
+  public void applyChanges(List<JoinedUser> added, List<JoinedUser> changed, List<JoinedUser> removed) {
+    for (int from = 0; from < removed.size(); from += DELETE_BATCH) {
+      repository.deleteInBatch(removed.subList(from, Math.min(removed.size(), from + DELETE_BATCH)));
+    }
+    if (!changed.isEmpty()) {
+      Map<Long, String> modes = new HashMap<>();
+      for (JoinedUser joinedUser : changed) {
+        modes.put(joinedUser.getId(), joinedUser.getUserModes());
+      }
+      // dirty checking turns these into one batched UPDATE at commit
+      for (JoinedUser row : repository.findAll(new ArrayList<>(modes.keySet()))) {
+        row.setUserModes(modes.get(row.getId()));
+      }
+    }
+    // inserts are batched as the ids come from the table generator
+    repository.save(added);
+  }
+
+}
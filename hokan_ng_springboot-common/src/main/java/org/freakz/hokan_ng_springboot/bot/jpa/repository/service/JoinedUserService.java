@@ -0,0 +1,32 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.JoinedUser;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+
+import java.util.List;
+
+/**
+ * The JOINEDUSER table. It is a projection of the membership the io
+ * module keeps in memory and lags it by up to one reconcile interval.
+ *
+ */
+public interface JoinedUserService {
+
+  List<JoinedUser> findJoinedUsers(Network network);
+
+  List<JoinedUser> findJoinedUsers(Channel channel);
+
+  JoinedUser findJoinedUser(Channel channel, User user);
+
+  /**
+   * Writes a membership diff in one transaction.
+   *
+   * @param added   new rows
+   * @param changed existing rows with new user modes
+   * @param removed existing rows to delete
+   */
+  void applyChanges(List<JoinedUser> added, List<JoinedUser> changed, List<JoinedUser> removed);
+
+}
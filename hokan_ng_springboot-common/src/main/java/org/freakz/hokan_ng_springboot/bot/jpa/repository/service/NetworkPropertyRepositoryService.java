@@ -0,0 +1,46 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.NetworkProperty;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.NetworkPropertyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * JPA implementation of {@link NetworkPropertyService}.
+ *
+ */
+@Service
+public class NetworkPropertyRepositoryService implements NetworkPropertyService {
+
+  @Autowired
+  private NetworkPropertyRepository repository;
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<NetworkProperty> findAll() {
+    return repository.findAllWithNetwork();
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<NetworkProperty> findByNetwork(Network network) {
+    return repository.findByNetwork(network);
+  }
+
+  @Override
+  @Transactional
+  public NetworkProperty save(NetworkProperty newRow) {
+    return repository.save(newRow);
+  }
+
+  @Override
+  @Transactional
+  public void delete(NetworkProperty object) {
+    repository.delete(object);
+  }
+
+}
@@ -0,0 +1,22 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.NetworkProperty;
+
+import java.util.List;
+
+/**
+ * Per-network properties.
+ *
+ */
+public interface NetworkPropertyService {
+
+  List<NetworkProperty> findAll();
+
+  List<NetworkProperty> findByNetwork(Network network);
+
+  NetworkProperty save(NetworkProperty newRow);
+
+  void delete(NetworkProperty object);
+
+}
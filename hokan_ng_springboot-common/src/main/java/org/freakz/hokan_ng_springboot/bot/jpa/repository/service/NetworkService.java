@@ -22,4 +22,12 @@ public interface NetworkService {
 
   Network save(Network network);
 
+  /**
+   * Adds to the traffic counters of the network in one atomic update, so
+   * io nodes sharing the network are all counted. Entity saves leave the
+   * counters alone.
+   */
+  void addTraffic(long networkId, long connects, long channelsJoined, long linesSent, long linesReceived,
+                  long bytesSent, long bytesReceived, long commands, long errors);
+
 }
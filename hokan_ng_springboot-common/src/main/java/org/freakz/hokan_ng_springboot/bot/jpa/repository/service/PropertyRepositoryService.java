@@ -2,6 +2,7 @@ package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Property;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
 import org.freakz.hokan_ng_springboot.bot.jpa.repository.PropertyRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -23,6 +24,11 @@ public class PropertyRepositoryService implements PropertyService {
     return repository.findAll();
   }
 
+  @Override
+  public Property findFirstByProperty(PropertyName name) {
+    return repository.findFirstByProperty(name);
+  }
+
   @Override
   public Property save(Property property) {
     return repository.save(property);
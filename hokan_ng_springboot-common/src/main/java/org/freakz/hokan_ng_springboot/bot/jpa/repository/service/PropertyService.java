@@ -1,6 +1,7 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
 
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Property;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
 
 import java.util.List;
 
@@ -11,6 +12,8 @@ public interface PropertyService {
 
   List<Property> findAll();
 
+  Property findFirstByProperty(PropertyName name);
+
   Property save(Property property);
 
   void delete(Property object);
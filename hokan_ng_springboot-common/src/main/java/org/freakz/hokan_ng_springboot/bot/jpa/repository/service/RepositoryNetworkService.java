@@ -1,8 +1,11 @@
 package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityCacheInvalidator;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
 import org.freakz.hokan_ng_springboot.bot.jpa.repository.NetworkRepository;
+import org.freakz.hokan_ng_springboot.bot.jpa.stats.QueryBudget;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +23,9 @@ public class RepositoryNetworkService implements NetworkService {
   @Resource
   private NetworkRepository networkRepository;
 
+  @Autowired(required = false)
+  private EntityCacheInvalidator entityCacheInvalidator;
+
   @Override
   @Transactional
   public Network create(String networkName) {
@@ -29,6 +35,7 @@ public class RepositoryNetworkService implements NetworkService {
 
   @Override
   @Transactional(readOnly = true)
+  @QueryBudget(1)
   public Network getNetwork(String networkName) {
     return networkRepository.findByNetworkName(networkName);
   }
@@ -56,4 +63,16 @@ public class RepositoryNetworkService implements NetworkService {
   public Network save(Network network) {
     return this.networkRepository.save(network);
   }
+
+  @Override
+  @Transactional
+  public void addTraffic(long networkId, long connects, long channelsJoined, long linesSent, long linesReceived,
+                         long bytesSent, long bytesReceived, long commands, long errors) {
+    int updated = this.networkRepository.addTraffic(networkId, connects, channelsJoined, linesSent, linesReceived,
+        bytesSent, bytesReceived, commands, errors);
+    // the bulk update skips the entity listener that tells the other nodes
+    if (updated > 0 && entityCacheInvalidator != null) {
+      entityCacheInvalidator.bulkUpdated(Network.class, networkId);
+    }
+  }
 }
@@ -0,0 +1,97 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Url;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.UrlRepository;
+import org.freakz.hokan_ng_springboot.bot.util.BloomFilter;
+import org.freakz.hokan_ng_springboot.bot.util.UrlCanonicalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index from the 64-bit hash of a canonical URL to the id of
+ * the Url it was first posted as. A Bloom filter in front of the map
+ * answers "never posted" for most new links without touching the map.
+ * <p/>
+ * The index is filled from the URL table at startup and kept up to date
+ * by {@link UrlRepositoryService#save(Url)}. Warming it up reads the whole
+ * table, so it only exists in the module that checks for reposts, the one
+ * with <code>hokan.repostIndex.enabled=true</code>; URLs have to be saved
+ * in that module too.
+ */
+@Component
+@ConditionalOnProperty(name = "hokan.repostIndex.enabled")
+@Slf4j
+public class UrlIndex {
+
+  private static final int WARM_UP_PAGE_SIZE = 10000;
+  private static final int MIN_CAPACITY = 100000;
+  private static final double BLOOM_FPP = 0.01;
+
+  @Autowired
+  private UrlRepository urlRepository;
+
+  private volatile BloomFilter bloomFilter = new BloomFilter(MIN_CAPACITY, BLOOM_FPP);
+
+  private final Map<Long, Long> hashToId = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void warmUp() {
+    long start = System.currentTimeMillis();
+    long count = urlRepository.count();
+    // room to grow before the false positive rate starts to rise
+    bloomFilter = new BloomFilter(Math.max(MIN_CAPACITY, count * 2), BLOOM_FPP);
+    long afterId = 0;
+    while (true) {
+      List<Object[]> rows = urlRepository.findIdAndUrlAfter(afterId, new PageRequest(0, WARM_UP_PAGE_SIZE));
+      for (Object[] row : rows) {
+        afterId = ((Number) row[0]).longValue();
+        if (row[1] != null) {
+          add(UrlCanonicalizer.canonicalize((String) row[1]), afterId);
+        }
+      }
+      if (rows.size() < WARM_UP_PAGE_SIZE) {
+        break;
+      }
+    }
+    log.info("URL index warmed up: {} URLs in {} ms", hashToId.size(), System.currentTimeMillis() - start);
+  }
+
+  /**
+   * @param canonical canonical URL
+   * @return id of the Url the canonical URL was first posted as, or -1.
+   * A hash collision may give the id of a different URL.
+   */
+  public long findId(String canonical) {
+    long hash = UrlCanonicalizer.hash64(canonical);
+    if (!bloomFilter.mightContain(hash)) {
+      return -1;
+    }
+    Long id = hashToId.get(hash);
+    return id == null ? -1 : id;
+  }
+
+  public void add(Url url) {
+    add(UrlCanonicalizer.canonicalize(url.getUrl()), url.getId());
+  }
+
+  private void add(String canonical, long id) {
+    long hash = UrlCanonicalizer.hash64(canonical);
+    // the first post of a URL stays the original
+    if (hashToId.putIfAbsent(hash, id) == null) {
+      bloomFilter.put(hash);
+    }
+  }
+
+  public int size() {
+    return hashToId.size();
+  }
+
+}
@@ -0,0 +1,156 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ShortUrl;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Url;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.ShortUrlRepository;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.UrlRepository;
+import org.freakz.hokan_ng_springboot.bot.service.UrlSearchService;
+import org.freakz.hokan_ng_springboot.bot.util.Base62;
+import org.freakz.hokan_ng_springboot.bot.util.UrlCanonicalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repost checks go through the in-memory {@link UrlIndex}, so only an
+ * actual repost costs a database read, by primary key. The index is only
+ * there in the module that enables it, as is the search index. Both are
+ * updated once the saving transaction has committed.
+ */
+@Service
+@Slf4j
+public class UrlRepositoryService implements UrlService {
+
+  @Autowired
+  private UrlRepository urlRepository;
+
+  @Autowired
+  private ShortUrlRepository shortUrlRepository;
+
+  @Autowired(required = false)
+  private UrlIndex urlIndex;
+
+  @Autowired(required = false)
+  private UrlSearchService urlSearchService;
+
+  @Override
+  @Transactional(readOnly = true)
+  public Url findRepost(String url) {
+    if (urlIndex == null) {
+      throw new IllegalStateException("Repost index not enabled, set hokan.repostIndex.enabled");
+    }
+    String canonical = UrlCanonicalizer.canonicalize(url);
+    long id = urlIndex.findId(canonical);
+    if (id == -1) {
+      return null;
+    }
+    Url found = urlRepository.findOne(id);
+    if (found == null || !canonical.equals(UrlCanonicalizer.canonicalize(found.getUrl()))) {
+      log.debug("URL hash collision: {} - {}", url, found);
+      return null;
+    }
+    return found;
+  }
+
+  @Override
+  @Transactional
+  public void addWanhaCount(Url url, long delta) {
+    // Url is not in the second-level cache, so no node has a copy to evict
+    urlRepository.addWanhaCount(url.getId(), delta);
+    url.addWanhaCount(delta);
+  }
+
+  @Override
+  @Transactional
+  public void saveShortUrls(List<ShortUrl> shortUrls) {
+    shortUrlRepository.save(shortUrls);
+    Map<Long, ShortUrl> byUrlId = new HashMap<>();
+    for (ShortUrl shortUrl : shortUrls) {
+      if (shortUrl.getUrlId() > 0) {
+        byUrlId.putIfAbsent(shortUrl.getUrlId(), shortUrl);
+      }
+    }
+    if (byUrlId.isEmpty()) {
+      return;
+    }
+    // one select, then the dirty Urls are flushed as a JDBC batch
+    for (Url url : urlRepository.findAll(new ArrayList<>(byUrlId.keySet()))) {
+      if (url.getShortUrl() == null) {
+        url.setShortUrl(Base62.encode(byUrlId.get(url.getId()).getId()));
+      }
+    }
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public ShortUrl findShortUrl(long id) {
+    return shortUrlRepository.findOne(id);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<Url> findAll() {
+    return urlRepository.findAll();
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public Url findOne(long id) {
+    return urlRepository.findOne(id);
+  }
+
+  @Override
+  @Transactional
+  public Url save(Url url) {
+    long hold = urlSearchService == null ? 0 : urlSearchService.hold();
+    Url saved;
+    try {
+      saved = urlRepository.save(url);
+    } catch (RuntimeException e) {
+      releaseHold(hold);
+      throw e;
+    }
+    // a rolled back URL must not turn up as a repost or search hit
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCommit() {
+          addToIndexes(saved);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          releaseHold(hold);
+        }
+      });
+    } else {
+      addToIndexes(saved);
+      releaseHold(hold);
+    }
+    return saved;
+  }
+
+  private void releaseHold(long hold) {
+    if (urlSearchService != null) {
+      urlSearchService.release(hold);
+    }
+  }
+
+  private void addToIndexes(Url saved) {
+    if (urlIndex != null) {
+      urlIndex.add(saved);
+    }
+    if (urlSearchService != null) {
+      urlSearchService.index(saved);
+    }
+  }
+
+}
@@ -0,0 +1,43 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ShortUrl;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Url;
+
+import java.util.List;
+
+/**
+ * Posted URLs and repost ("wanha") detection.
+ */
+public interface UrlService {
+
+  /**
+   * Only available in the module running the repost index,
+   * <code>hokan.repostIndex.enabled=true</code>.
+   *
+   * @param url URL as posted
+   * @return the earlier post of the same URL, or null if it has not been posted before
+   * @throws IllegalStateException if the repost index is not enabled
+   */
+  Url findRepost(String url);
+
+  /**
+   * Adds to the repost count in the database in one atomic update, so
+   * concurrent reposts are all counted.
+   */
+  void addWanhaCount(Url url, long delta);
+
+  /**
+   * Inserts short link mappings in one transaction and sets the short
+   * code of the Urls they were made for, where not set yet.
+   */
+  void saveShortUrls(List<ShortUrl> shortUrls);
+
+  ShortUrl findShortUrl(long id);
+
+  List<Url> findAll();
+
+  Url findOne(long id);
+
+  Url save(Url url);
+
+}
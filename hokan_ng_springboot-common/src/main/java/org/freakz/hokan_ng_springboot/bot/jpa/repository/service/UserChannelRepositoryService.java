@@ -0,0 +1,73 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.UserChannel;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.UserChannelRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JPA implementation of {@link UserChannelService}.
+ *
+ */
+@Service
+public class UserChannelRepositoryService implements UserChannelService {
+
+  @Autowired
+  private UserChannelRepository repository;
+
+  @Override
+  @Transactional(readOnly = true)
+  public UserChannel findUserChannel(User user, Channel channel) {
+    return repository.findFirstByUserAndChannel(user, channel);
+  }
+
+  @Override
+  @Transactional
+  public List<UserChannel> saveActivity(List<UserChannel> activity) {
+    List<Long> ids = new ArrayList<>();
+    for (UserChannel userChannel : activity) {
+      if (userChannel.getUserChannelId() != 0) {
+        ids.add(userChannel.getUserChannelId());
+      }
+    }
+    Map<Long, UserChannel> existing = new HashMap<>();
+    if (!ids.isEmpty()) {
+      for (UserChannel userChannel : repository.findAll(ids)) {
+        existing.put(userChannel.getUserChannelId(), userChannel);
+      }
+    }
+    List<UserChannel> saved = new ArrayList<>(activity.size());
+    for (UserChannel userChannel : activity) {
+      UserChannel row = existing.get(userChannel.getUserChannelId());
+      if (row != null) {
+        // dirty checking turns these into one batched UPDATE at commit
+        row.copyActivity(userChannel);
+        saved.add(row);
+      } else {
+        saved.add(repository.save(userChannel));
+      }
+    }
+    return saved;
+  }
+
+  @Override
+  @Transactional
+  public UserChannel save(UserChannel userChannel) {
+    return repository.save(userChannel);
+  }
+
+  @Override
+  @Transactional
+  public void delete(List<UserChannel> userChannels) {
+    repository.deleteInBatch(userChannels);
+  }
+
+}
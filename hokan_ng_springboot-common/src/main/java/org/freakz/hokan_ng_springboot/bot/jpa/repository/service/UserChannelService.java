@@ -0,0 +1,35 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.UserChannel;
+
+import java.util.List;
+
+/**
+ * Per-channel activity of users. Activity is normally recorded through
+ * {@link org.freakz.hokan_ng_springboot.bot.service.UserActivityService},
+ * which buffers it in memory.
+ *
+ */
+public interface UserChannelService {
+
+  UserChannel findUserChannel(User user, Channel channel);
+
+  /**
+   * Writes the activity columns of the given rows in one transaction.
+   * Rows with an id update the existing row, which is read in one query;
+   * rows without one are inserted.
+   *
+   * @return the saved rows, in the same order
+   */
+  List<UserChannel> saveActivity(List<UserChannel> activity);
+
+  UserChannel save(UserChannel userChannel);
+
+  /**
+   * Deletes the given rows with one statement.
+   */
+  void delete(List<UserChannel> userChannels);
+
+}
@@ -3,6 +3,7 @@ package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
 import lombok.extern.slf4j.Slf4j;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
 import org.freakz.hokan_ng_springboot.bot.jpa.repository.UserRepository;
+import org.freakz.hokan_ng_springboot.bot.jpa.stats.QueryBudget;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,10 +29,18 @@ public class UserRepositoryService implements UserService {
 
   @Override
   @Transactional(readOnly = true)
+  @QueryBudget(1)
   public User findFirstByNick(String nick) {
     return userRepository.findFirstByNick(nick);
   }
 
+  @Override
+  @Transactional(readOnly = true)
+  @QueryBudget(1)
+  public User findFirstByNickIgnoreCase(String nick) {
+    return userRepository.findFirstByNickIgnoreCase(nick);
+  }
+
   @Override
   @Transactional(readOnly = true)
   public User findById(long id) {
@@ -44,4 +53,10 @@ public class UserRepositoryService implements UserService {
     return userRepository.save(user);
   }
 
+  @Override
+  @Transactional
+  public void delete(List<User> users) {
+    userRepository.deleteInBatch(users);
+  }
+
 }
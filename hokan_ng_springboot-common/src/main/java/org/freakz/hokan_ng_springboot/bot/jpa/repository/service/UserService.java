@@ -14,8 +14,15 @@ public interface UserService {
 
   User findFirstByNick(String nick);
 
+  User findFirstByNickIgnoreCase(String nick);
+
   User findById(long id);
 
   User save(User user);
 
+  /**
+   * Deletes the given users with one statement.
+   */
+  void delete(List<User> users);
+
 }
@@ -0,0 +1,67 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL statements executed by one service method, summed over its calls.
+ * Statements run by nested service calls count for the outer method too.
+ */
+public class MethodQueryStats {
+
+  private final String method;
+
+  private final LongAdder calls = new LongAdder();
+
+  private final LongAdder statements = new LongAdder();
+
+  private final LongAdder nanos = new LongAdder();
+
+  private final AtomicLong maxStatements = new AtomicLong();
+
+  MethodQueryStats(String method) {
+    this.method = method;
+  }
+
+  void record(long callStatements, long callNanos) {
+    calls.increment();
+    statements.add(callStatements);
+    nanos.add(callNanos);
+    maxStatements.accumulateAndGet(callStatements, Math::max);
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public long getCalls() {
+    return calls.sum();
+  }
+
+  public long getStatements() {
+    return statements.sum();
+  }
+
+  public long getMaxStatements() {
+    return maxStatements.get();
+  }
+
+  public double getAverageStatements() {
+    long count = calls.sum();
+    return count == 0 ? 0 : (double) statements.sum() / count;
+  }
+
+  /**
+   * @return time spent executing the statements, not the whole method
+   */
+  public long getSqlMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+  }
+
+  public String toString() {
+    return String.format("%s: %d calls, %d statements (avg %.1f, max %d), %d ms",
+        method, getCalls(), getStatements(), getAverageStatements(), getMaxStatements(), getSqlMillis());
+  }
+
+}
@@ -0,0 +1,69 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.stats;
+
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Method;
+
+/**
+ * Advises every {@link Service} bean so that the statements it executes
+ * are booked to the service method in {@link QueryStatistics}, and checks
+ * the {@link QueryBudget} of the method.
+ * <p/>
+ * The advice goes in front of the transaction advice, so the statements
+ * flushed at commit are booked to the method too.
+ */
+@Component
+@ConditionalOnProperty(name = "hokan.queryStats.enabled", matchIfMissing = true)
+@Slf4j
+public class QueryAttributionPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+  @Value("${hokan.queryStats.strict:false}")
+  private boolean strict;
+
+  public QueryAttributionPostProcessor() {
+    this.advisor = new DefaultPointcutAdvisor(new AnnotationMatchingPointcut(Service.class), new AttributionInterceptor());
+    setBeforeExistingAdvisors(true);
+    setProxyTargetClass(true);
+  }
+
+  private class AttributionInterceptor implements MethodInterceptor {
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+      Class<?> targetClass = AopUtils.getTargetClass(invocation.getThis());
+      Method method = AopUtils.getMostSpecificMethod(invocation.getMethod(), targetClass);
+      String name = targetClass.getSimpleName() + "." + method.getName();
+
+      QueryStatistics.Frame frame = QueryStatistics.enter(name);
+      boolean failed = true;
+      try {
+        Object result = invocation.proceed();
+        failed = false;
+        return result;
+      } finally {
+        QueryStatistics.exit(frame);
+        QueryBudget budget = AnnotationUtils.findAnnotation(method, QueryBudget.class);
+        if (budget != null && frame.getStatements() > budget.value()) {
+          String message = String.format("%s executed %d statements, budget is %d", name, frame.getStatements(), budget.value());
+          if (strict && !failed) {
+            throw new IllegalStateException(message);
+          }
+          log.warn(message);
+        }
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,22 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.stats;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Maximum number of SQL statements one call of a service method may
+ * execute. A call going over it is logged, or fails when
+ * <code>hokan.queryStats.strict=true</code>. The query budget tests of the
+ * io, services and wicket modules run strict.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface QueryBudget {
+
+  int value();
+
+}
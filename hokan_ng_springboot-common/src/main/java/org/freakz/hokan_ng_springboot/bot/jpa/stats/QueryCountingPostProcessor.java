@@ -0,0 +1,125 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.stats;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Wraps the DataSource so that every statement executed through it is
+ * counted and timed in {@link QueryStatistics}. A batch counts as one
+ * statement.
+ */
+@Component
+@ConditionalOnProperty(name = "hokan.queryStats.enabled", matchIfMissing = true)
+@Slf4j
+public class QueryCountingPostProcessor implements BeanPostProcessor {
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+    return bean;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+    if (bean instanceof DataSource && !Proxy.isProxyClass(bean.getClass())) {
+      log.info("Counting statements of DataSource {}", beanName);
+      return wrap(DataSource.class, bean, new DataSourceHandler(bean));
+    }
+    return bean;
+  }
+
+  private static Object wrap(Class<?> type, Object target, InvocationHandler handler) {
+    return Proxy.newProxyInstance(target.getClass().getClassLoader(), new Class<?>[]{type}, handler);
+  }
+
+  /**
+   * Delegates to the wrapped object. A proxy only equals itself, so that
+   * the proxies can be used as keys the way Hibernate keys its statements.
+   */
+  private abstract static class Handler implements InvocationHandler {
+
+    final Object target;
+
+    Handler(Object target) {
+      this.target = target;
+    }
+
+    Object delegate(Object proxy, Method method, Object[] args) throws Throwable {
+      if (method.getName().equals("equals") && args != null && args.length == 1) {
+        return proxy == args[0];
+      }
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+  }
+
+  private static class DataSourceHandler extends Handler {
+
+    DataSourceHandler(Object target) {
+      super(target);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = delegate(proxy, method, args);
+      if (result instanceof Connection && method.getName().equals("getConnection")) {
+        return wrap(Connection.class, result, new ConnectionHandler(result));
+      }
+      return result;
+    }
+
+  }
+
+  private static class ConnectionHandler extends Handler {
+
+    ConnectionHandler(Object target) {
+      super(target);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = delegate(proxy, method, args);
+      if (result instanceof Statement) {
+        return wrap(method.getReturnType(), result, new StatementHandler(result));
+      }
+      return result;
+    }
+
+  }
+
+  private static class StatementHandler extends Handler {
+
+    StatementHandler(Object target) {
+      super(target);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (!method.getName().startsWith("execute")) {
+        return delegate(proxy, method, args);
+      }
+      long start = System.nanoTime();
+      try {
+        return delegate(proxy, method, args);
+      } finally {
+        QueryStatistics.statementExecuted(System.nanoTime() - start);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,110 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counts the SQL statements executed per service method.
+ * <p/>
+ * {@link QueryCountingPostProcessor} reports every statement executed on
+ * the DataSource, and {@link QueryAttributionPostProcessor} marks where
+ * service methods start and end on the calling thread. A statement executed
+ * outside of any service method is booked under {@link #UNATTRIBUTED}.
+ */
+public final class QueryStatistics {
+
+  public static final String UNATTRIBUTED = "-";
+
+  private static final ConcurrentMap<String, MethodQueryStats> METHODS = new ConcurrentHashMap<>();
+
+  private static final ThreadLocal<Frame> CURRENT = new ThreadLocal<>();
+
+  private static final ThreadLocal<long[]> THREAD_STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+
+  private QueryStatistics() {
+  }
+
+  static final class Frame {
+
+    private final String method;
+    private final Frame parent;
+    private long statements;
+    private long nanos;
+
+    private Frame(String method, Frame parent) {
+      this.method = method;
+      this.parent = parent;
+    }
+
+    long getStatements() {
+      return statements;
+    }
+
+  }
+
+  static Frame enter(String method) {
+    Frame frame = new Frame(method, CURRENT.get());
+    CURRENT.set(frame);
+    return frame;
+  }
+
+  static void exit(Frame frame) {
+    Frame parent = frame.parent;
+    if (parent == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(parent);
+      parent.statements += frame.statements;
+      parent.nanos += frame.nanos;
+    }
+    stats(frame.method).record(frame.statements, frame.nanos);
+  }
+
+  static void statementExecuted(long nanos) {
+    THREAD_STATEMENTS.get()[0]++;
+    Frame frame = CURRENT.get();
+    if (frame == null) {
+      stats(UNATTRIBUTED).record(1, nanos);
+    } else {
+      frame.statements++;
+      frame.nanos += nanos;
+    }
+  }
+
+  private static MethodQueryStats stats(String method) {
+    MethodQueryStats stats = METHODS.get(method);
+    if (stats == null) {
+      stats = METHODS.computeIfAbsent(method, MethodQueryStats::new);
+    }
+    return stats;
+  }
+
+  /**
+   * @return statements executed by the calling thread so far; take the
+   * difference of two calls to count the statements of an operation
+   */
+  public static long getThreadStatementCount() {
+    return THREAD_STATEMENTS.get()[0];
+  }
+
+  /**
+   * @return statistics of every method seen, most statements first
+   */
+  public static List<MethodQueryStats> getMethodStatistics() {
+    List<MethodQueryStats> list = new ArrayList<>(METHODS.values());
+    list.sort(Comparator.comparingLong(MethodQueryStats::getStatements).reversed());
+    return list;
+  }
+
+  public static MethodQueryStats getMethodStatistics(String method) {
+    return METHODS.get(method);
+  }
+
+  public static void reset() {
+    METHODS.clear();
+  }
+
+}
@@ -0,0 +1,190 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A segment written by SegmentWriter, read through a memory mapping. Only
+ * the term dictionary is loaded on the heap; documents, postings and
+ * their skips are read from the mapping.
+ *
+ */
+class DiskSegment extends Segment {
+
+  private final File file;
+  private final long generation;
+  private final ByteBuffer buf;
+  private final int docCount;
+  private final long maxUrlId;
+  private final long minCreated;
+  private final long maxCreated;
+  private final String[] terms;
+  private final int[] docFreqs;
+  private final int[] offsets;
+  private final int[] skipOffsets;
+
+  DiskSegment(File file, long generation) throws IOException {
+    this.file = file;
+    this.generation = generation;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    int version = buf.getInt(4);
+    if (buf.getInt(0) != SegmentWriter.MAGIC
+        || (version != SegmentWriter.VERSION && version != SegmentWriter.VERSION_NO_SKIPS)) {
+      throw new IOException("Not an URL index segment: " + file);
+    }
+    docCount = buf.getInt(8);
+    maxUrlId = buf.getLong(12);
+    minCreated = buf.getLong(20);
+    maxCreated = buf.getLong(28);
+
+    ByteBuffer dict = buf.duplicate();
+    dict.position(buf.getInt(buf.limit() - 4));
+    int termCount = dict.getInt();
+    terms = new String[termCount];
+    docFreqs = new int[termCount];
+    offsets = new int[termCount];
+    skipOffsets = version == SegmentWriter.VERSION ? new int[termCount] : null;
+    byte[] scratch = new byte[64];
+    for (int i = 0; i < termCount; i++) {
+      int length = dict.getShort() & 0xffff;
+      if (length > scratch.length) {
+        scratch = new byte[length];
+      }
+      dict.get(scratch, 0, length);
+      terms[i] = new String(scratch, 0, length, SegmentWriter.UTF8);
+      docFreqs[i] = dict.getInt();
+      offsets[i] = dict.getInt();
+      if (skipOffsets != null) {
+        skipOffsets[i] = dict.getInt();
+      }
+    }
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  long getGeneration() {
+    return generation;
+  }
+
+  @Override
+  int getDocCount() {
+    return docCount;
+  }
+
+  @Override
+  long getUrlId(int doc) {
+    return buf.getLong(SegmentWriter.HEADER_SIZE + doc * 16);
+  }
+
+  @Override
+  long getCreated(int doc) {
+    return buf.getLong(SegmentWriter.HEADER_SIZE + doc * 16 + 8);
+  }
+
+  @Override
+  long getMinCreated() {
+    return minCreated;
+  }
+
+  @Override
+  long getMaxCreated() {
+    return maxCreated;
+  }
+
+  @Override
+  long getMaxUrlId() {
+    return maxUrlId;
+  }
+
+  @Override
+  int getTermCount() {
+    return terms.length;
+  }
+
+  @Override
+  String getTerm(int term) {
+    return terms[term];
+  }
+
+  @Override
+  int findTerm(String term) {
+    int i = Arrays.binarySearch(terms, term);
+    return i < 0 ? -1 : i;
+  }
+
+  @Override
+  int getDocFreq(int term) {
+    return docFreqs[term];
+  }
+
+  @Override
+  Postings getPostings(int term) {
+    int count = docFreqs[term];
+    int start = offsets[term];
+    int skipStart = skipOffsets == null ? 0 : skipOffsets[term];
+    int skipCount = skipOffsets == null ? 0 : (count - 1) / SegmentWriter.SKIP_INTERVAL;
+    return new Postings() {
+      private int pos = start;
+      private int left = count;
+      private int doc = -1;
+      private int fields = 0;
+      private int skip = 0;
+      private int skipDoc = skipCount > 0 ? buf.getInt(skipStart) : Integer.MAX_VALUE;
+
+      @Override
+      boolean advance(int target) {
+        // skip entry i is the last doc of block i and where block i + 1 starts
+        while (skipDoc < target) {
+          int next = (skip + 1) * SegmentWriter.SKIP_INTERVAL;
+          if (count - left < next) {
+            doc = skipDoc;
+            pos = buf.getInt(skipStart + skip * 8 + 4);
+            left = count - next;
+          }
+          skip++;
+          skipDoc = skip < skipCount ? buf.getInt(skipStart + skip * 8) : Integer.MAX_VALUE;
+        }
+        return super.advance(target);
+      }
+
+      @Override
+      boolean next() {
+        if (left == 0) {
+          return false;
+        }
+        left--;
+        int delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = buf.get(pos++);
+          delta |= (b & 0x7f) << shift;
+          shift += 7;
+        } while (b < 0);
+        doc = doc == -1 ? delta : doc + delta;
+        fields = buf.get(pos++);
+        return true;
+      }
+
+      @Override
+      int doc() {
+        return doc;
+      }
+
+      @Override
+      int fields() {
+        return fields;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,185 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The segment new documents are added to. It is searchable while it
+ * grows; once frozen its terms are put in sorted order and it is written
+ * to disk by SegmentWriter.
+ * <p/>
+ * Not thread-safe on its own: writers and readers synchronize on the
+ * segment.
+ *
+ */
+class MemorySegment extends Segment {
+
+  private final Map<String, Integer> termIds = new HashMap<>();
+  private final List<TermPostings> terms = new ArrayList<>();
+  private long[] urlIds = new long[256];
+  private long[] created = new long[256];
+  private int docCount = 0;
+  private long minCreated = Long.MAX_VALUE;
+  private long maxCreated = Long.MIN_VALUE;
+  private long maxUrlId = 0;
+  private boolean frozen = false;
+
+  /**
+   * @param terms terms and their UrlTerms.FIELD_ bits, as parallel lists
+   * @return the new document
+   */
+  int add(long urlId, long createdTime, List<String> terms, List<Integer> fields) {
+    if (frozen) {
+      throw new IllegalStateException("segment is frozen");
+    }
+    if (docCount == urlIds.length) {
+      urlIds = Arrays.copyOf(urlIds, docCount * 2);
+      created = Arrays.copyOf(created, docCount * 2);
+    }
+    int doc = docCount++;
+    urlIds[doc] = urlId;
+    created[doc] = createdTime;
+    minCreated = Math.min(minCreated, createdTime);
+    maxCreated = Math.max(maxCreated, createdTime);
+    maxUrlId = Math.max(maxUrlId, urlId);
+    for (int i = 0; i < terms.size(); i++) {
+      Integer id = termIds.get(terms.get(i));
+      if (id == null) {
+        id = this.terms.size();
+        termIds.put(terms.get(i), id);
+        this.terms.add(new TermPostings(terms.get(i)));
+      }
+      this.terms.get(id).add(doc, fields.get(i));
+    }
+    return doc;
+  }
+
+  /**
+   * Stops adding and numbers the terms in sorted order.
+   */
+  void freeze() {
+    frozen = true;
+    terms.sort((a, b) -> a.term.compareTo(b.term));
+    termIds.clear();
+    for (int i = 0; i < terms.size(); i++) {
+      termIds.put(terms.get(i).term, i);
+    }
+  }
+
+  boolean isFrozen() {
+    return frozen;
+  }
+
+  @Override
+  int getDocCount() {
+    return docCount;
+  }
+
+  @Override
+  long getUrlId(int doc) {
+    return urlIds[doc];
+  }
+
+  @Override
+  long getCreated(int doc) {
+    return created[doc];
+  }
+
+  @Override
+  long getMinCreated() {
+    return minCreated;
+  }
+
+  @Override
+  long getMaxCreated() {
+    return maxCreated;
+  }
+
+  @Override
+  long getMaxUrlId() {
+    return maxUrlId;
+  }
+
+  @Override
+  int getTermCount() {
+    return terms.size();
+  }
+
+  @Override
+  String getTerm(int term) {
+    return terms.get(term).term;
+  }
+
+  @Override
+  int findTerm(String term) {
+    Integer id = termIds.get(term);
+    return id == null ? -1 : id;
+  }
+
+  @Override
+  int getDocFreq(int term) {
+    return terms.get(term).count;
+  }
+
+  @Override
+  Postings getPostings(int term) {
+    TermPostings postings = terms.get(term);
+    return new Postings() {
+      private int i = -1;
+
+      @Override
+      boolean next() {
+        return ++i < postings.count;
+      }
+
+      @Override
+      boolean advance(int target) {
+        if (i >= 0 && (i >= postings.count || postings.docs[i] >= target)) {
+          return i < postings.count;
+        }
+        int found = Arrays.binarySearch(postings.docs, i + 1, postings.count, target);
+        i = found >= 0 ? found : -found - 1;
+        return i < postings.count;
+      }
+
+      @Override
+      int doc() {
+        return i < 0 ? -1 : postings.docs[i];
+      }
+
+      @Override
+      int fields() {
+        return postings.fields[i];
+      }
+    };
+  }
+
+  private static class TermPostings {
+    final String term;
+    int[] docs = new int[2];
+    byte[] fields = new byte[2];
+    int count = 0;
+
+    TermPostings(String term) {
+      this.term = term;
+    }
+
+    void add(int doc, int field) {
+      if (count > 0 && docs[count - 1] == doc) {
+        fields[count - 1] |= field;
+        return;
+      }
+      if (count == docs.length) {
+        docs = Arrays.copyOf(docs, count * 2);
+        fields = Arrays.copyOf(fields, count * 2);
+      }
+      docs[count] = doc;
+      fields[count] = (byte) field;
+      count++;
+    }
+  }
+
+}
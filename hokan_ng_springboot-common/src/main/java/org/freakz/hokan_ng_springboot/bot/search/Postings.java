@@ -0,0 +1,36 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+/**
+ * Cursor over the documents of one term in one segment, in document order.
+ *
+ */
+abstract class Postings {
+
+  /**
+   * @return false when there are no more documents
+   */
+  abstract boolean next();
+
+  /**
+   * @return current document, -1 before the first call to next()
+   */
+  abstract int doc();
+
+  /**
+   * @return UrlTerms.FIELD_ bits of the fields the term occurs in
+   */
+  abstract int fields();
+
+  /**
+   * Moves to the first document at or after the target.
+   */
+  boolean advance(int target) {
+    while (doc() < target) {
+      if (!next()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,44 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+/**
+ * A URL found by the URL search index.
+ *
+ */
+public class SearchHit implements Comparable<SearchHit> {
+
+  private final long urlId;
+  private final long created;
+  private final double score;
+
+  public SearchHit(long urlId, long created, double score) {
+    this.urlId = urlId;
+    this.created = created;
+    this.score = score;
+  }
+
+  public long getUrlId() {
+    return urlId;
+  }
+
+  public long getCreated() {
+    return created;
+  }
+
+  public double getScore() {
+    return score;
+  }
+
+  /**
+   * Better hits first: higher score, then newer.
+   */
+  @Override
+  public int compareTo(SearchHit o) {
+    int c = Double.compare(o.score, score);
+    return c != 0 ? c : Long.compare(o.created, created);
+  }
+
+  public String toString() {
+    return String.format("SearchHit[%d, %.3f]", urlId, score);
+  }
+
+}
@@ -0,0 +1,36 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+/**
+ * A part of the URL search index. Documents are numbered from 0 within a
+ * segment, and terms are numbered in sorted order so that segments can be
+ * merged term by term.
+ *
+ */
+abstract class Segment {
+
+  abstract int getDocCount();
+
+  abstract long getUrlId(int doc);
+
+  abstract long getCreated(int doc);
+
+  abstract long getMinCreated();
+
+  abstract long getMaxCreated();
+
+  abstract long getMaxUrlId();
+
+  abstract int getTermCount();
+
+  abstract String getTerm(int term);
+
+  /**
+   * @return index of the term, or -1 if the segment does not have it
+   */
+  abstract int findTerm(String term);
+
+  abstract int getDocFreq(int term);
+
+  abstract Postings getPostings(int term);
+
+}
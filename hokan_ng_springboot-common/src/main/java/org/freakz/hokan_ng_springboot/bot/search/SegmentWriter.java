@@ -0,0 +1,150 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes one or more segments into a new segment file. Writing a single
+ * frozen MemorySegment flushes it, writing several DiskSegments merges
+ * them; the documents of each source follow those of the previous one.
+ * <p/>
+ * File layout, integers big-endian:
+ * <pre>
+ *   magic, version, docCount, maxUrlId, minCreated, maxCreated
+ *   {urlId, created} * docCount
+ *   for each term:
+ *     postings: {varint doc delta, byte fields} * docFreq
+ *     skips: {last doc of the block, offset of the next block} * ((docFreq - 1) / SKIP_INTERVAL)
+ *   dictionary: termCount, {short length, utf-8 term, docFreq, postings offset, skips offset} * termCount
+ *   dictionary offset
+ * </pre>
+ * The skips let a conjunction jump over blocks of {@link #SKIP_INTERVAL}
+ * postings of a frequent term instead of decoding every one of them.
+ * Version 1 files have no skips and no skips offset.
+ *
+ */
+class SegmentWriter {
+
+  static final int MAGIC = 0x48555849; // "HUXI"
+  static final int VERSION = 2;
+  static final int VERSION_NO_SKIPS = 1;
+  static final int SKIP_INTERVAL = 64;
+  static final int HEADER_SIZE = 36;
+  static final Charset UTF8 = StandardCharsets.UTF_8;
+
+  private SegmentWriter() {
+  }
+
+  static void write(File file, List<? extends Segment> sources) throws IOException {
+    int docCount = 0;
+    long maxUrlId = 0;
+    long minCreated = Long.MAX_VALUE;
+    long maxCreated = Long.MIN_VALUE;
+    int[] docBase = new int[sources.size()];
+    for (int s = 0; s < sources.size(); s++) {
+      Segment segment = sources.get(s);
+      docBase[s] = docCount;
+      docCount += segment.getDocCount();
+      maxUrlId = Math.max(maxUrlId, segment.getMaxUrlId());
+      if (segment.getDocCount() > 0) {
+        minCreated = Math.min(minCreated, segment.getMinCreated());
+        maxCreated = Math.max(maxCreated, segment.getMaxCreated());
+      }
+    }
+
+    ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+    DataOutputStream dict = new DataOutputStream(dictBytes);
+    int termCount = 0;
+    int[] skips = new int[64];
+
+    FileOutputStream fos = new FileOutputStream(file);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(docCount);
+      out.writeLong(maxUrlId);
+      out.writeLong(minCreated);
+      out.writeLong(maxCreated);
+      for (Segment segment : sources) {
+        for (int doc = 0; doc < segment.getDocCount(); doc++) {
+          out.writeLong(segment.getUrlId(doc));
+          out.writeLong(segment.getCreated(doc));
+        }
+      }
+
+      // k-way merge of the sorted term lists
+      PriorityQueue<int[]> cursors = new PriorityQueue<>(Math.max(1, sources.size()),
+          (a, b) -> {
+            int c = sources.get(a[0]).getTerm(a[1]).compareTo(sources.get(b[0]).getTerm(b[1]));
+            return c != 0 ? c : a[0] - b[0];
+          });
+      for (int s = 0; s < sources.size(); s++) {
+        if (sources.get(s).getTermCount() > 0) {
+          cursors.add(new int[]{s, 0});
+        }
+      }
+      while (!cursors.isEmpty()) {
+        String term = sources.get(cursors.peek()[0]).getTerm(cursors.peek()[1]);
+        int offset = out.size();
+        int docFreq = 0;
+        int lastDoc = -1;
+        int skipCount = 0;
+        // equal terms come out in source order, so the documents stay sorted
+        while (!cursors.isEmpty() && sources.get(cursors.peek()[0]).getTerm(cursors.peek()[1]).equals(term)) {
+          int[] cursor = cursors.poll();
+          Segment segment = sources.get(cursor[0]);
+          Postings postings = segment.getPostings(cursor[1]);
+          while (postings.next()) {
+            int doc = docBase[cursor[0]] + postings.doc();
+            if (docFreq > 0 && docFreq % SKIP_INTERVAL == 0) {
+              if (skipCount * 2 == skips.length) {
+                skips = Arrays.copyOf(skips, skips.length * 2);
+              }
+              skips[skipCount * 2] = lastDoc;
+              skips[skipCount * 2 + 1] = out.size();
+              skipCount++;
+            }
+            writeVarint(out, lastDoc == -1 ? doc : doc - lastDoc);
+            out.writeByte(postings.fields());
+            lastDoc = doc;
+            docFreq++;
+          }
+          if (++cursor[1] < segment.getTermCount()) {
+            cursors.add(cursor);
+          }
+        }
+        int skipOffset = out.size();
+        for (int i = 0; i < skipCount * 2; i++) {
+          out.writeInt(skips[i]);
+        }
+        byte[] bytes = term.getBytes(UTF8);
+        dict.writeShort(bytes.length);
+        dict.write(bytes);
+        dict.writeInt(docFreq);
+        dict.writeInt(offset);
+        dict.writeInt(skipOffset);
+        termCount++;
+      }
+
+      int dictOffset = out.size();
+      out.writeInt(termCount);
+      dictBytes.writeTo(out);
+      out.writeInt(dictOffset);
+      out.flush();
+      fos.getFD().sync();
+    }
+  }
+
+  private static void writeVarint(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+}
@@ -0,0 +1,442 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental inverted index over stored URLs: the words of the URL and
+ * its title, the sender and the channel.
+ * <p/>
+ * New URLs go to an in-memory segment, which is searchable right away.
+ * Every {@link #FLUSH_DOCS} documents it is written to disk as a new
+ * segment file on a background thread, and when there are more than
+ * {@link #MAX_SEGMENTS} segment files the smallest ones are merged, also
+ * in the background. Segment files are memory mapped.
+ * <p/>
+ * Queries match documents having every query term. Hits are ranked by the
+ * sum of the idf of the terms, weighted by the field they occur in, newer
+ * first on equal scores. Adding a URL again, e.g. once its title is known,
+ * adds a new document; hits are unique per URL id with the best score.
+ * Nothing is ever removed.
+ * <p/>
+ * After each segment write the durable URL id is stored in the
+ * directory: every URL with an id up to it is on disk. Ids are held back
+ * while they are only in memory, and with {@link #hold()} while a URL is
+ * being saved, so that a URL committed but lost from memory is above it.
+ * Indexing again from the durable id on startup may add some URLs twice,
+ * which is harmless.
+ *
+ */
+@Slf4j
+public class UrlSearchIndex implements Closeable {
+
+  public static final int FLUSH_DOCS = 10000;
+  public static final int MAX_SEGMENTS = 8;
+  public static final int MERGE_FACTOR = 4;
+
+  private static final String SEGMENT_PREFIX = "seg-";
+  private static final String SEGMENT_SUFFIX = ".idx";
+  private static final String TMP_SUFFIX = ".tmp";
+  private static final String DURABLE_ID_FILE = "durable-id";
+
+  private static final double WEIGHT_TITLE = 2.0;
+  private static final double WEIGHT_URL = 1.0;
+  private static final double WEIGHT_META = 1.0;
+
+  private final File directory;
+  private final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "UrlSearchIndex");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  // guarded by this
+  private List<Segment> segments = new ArrayList<>();
+  private MemorySegment current = new MemorySegment();
+  private long nextGeneration = 1;
+  // ids the durable id must stay below, with their counts
+  private final TreeMap<Long, Integer> held = new TreeMap<>();
+  private long storedDurableId = -1;
+
+  public UrlSearchIndex(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create index directory: " + directory);
+    }
+    this.directory = directory;
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.endsWith(TMP_SUFFIX)) {
+          Files.deleteIfExists(file.toPath());
+        } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+          long generation = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+          segments.add(new DiskSegment(file, generation));
+          nextGeneration = Math.max(nextGeneration, generation + 1);
+        } else if (name.equals(DURABLE_ID_FILE)) {
+          storedDurableId = Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim());
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds a URL to the in-memory segment.
+   */
+  public synchronized void add(long urlId, long created, String url, String title, String sender, String channel) {
+    List<String> terms = new ArrayList<>();
+    List<Integer> fields = new ArrayList<>();
+    for (String term : UrlTerms.urlTerms(url)) {
+      terms.add(term);
+      fields.add(UrlTerms.FIELD_URL);
+    }
+    for (String term : UrlTerms.textTerms(title)) {
+      terms.add(term);
+      fields.add(UrlTerms.FIELD_TITLE);
+    }
+    if (sender != null) {
+      terms.add(UrlTerms.senderTerm(sender));
+      fields.add(UrlTerms.FIELD_META);
+    }
+    if (channel != null) {
+      terms.add(UrlTerms.channelTerm(channel));
+      fields.add(UrlTerms.FIELD_META);
+    }
+    synchronized (current) {
+      current.add(urlId, created, terms, fields);
+    }
+    holdId(urlId);
+    if (current.getDocCount() >= FLUSH_DOCS) {
+      flushAsync();
+    }
+  }
+
+  /**
+   * @param query words, <code>from:nick</code> and <code>in:#channel</code>
+   * @param from  earliest creation time, ms
+   * @param to    latest creation time, ms
+   * @param max   maximum number of hits
+   * @return best hits first
+   */
+  public List<SearchHit> search(String query, long from, long to, int max) {
+    List<String> terms = UrlTerms.queryTerms(query);
+    if (terms.isEmpty() || max <= 0) {
+      return new ArrayList<>();
+    }
+    List<Segment> snapshot;
+    synchronized (this) {
+      snapshot = new ArrayList<>(segments);
+      snapshot.add(current);
+    }
+
+    long docCount = 0;
+    long[] docFreqs = new long[terms.size()];
+    for (Segment segment : snapshot) {
+      synchronized (segment) {
+        docCount += segment.getDocCount();
+        for (int t = 0; t < terms.size(); t++) {
+          int term = segment.findTerm(terms.get(t));
+          if (term != -1) {
+            docFreqs[t] += segment.getDocFreq(term);
+          }
+        }
+      }
+    }
+    double[] idf = new double[terms.size()];
+    for (int t = 0; t < terms.size(); t++) {
+      if (docFreqs[t] == 0) {
+        return new ArrayList<>();
+      }
+      idf[t] = Math.log(1 + (docCount - docFreqs[t] + 0.5) / (docFreqs[t] + 0.5));
+    }
+
+    TopHits top = new TopHits(max);
+    for (Segment segment : snapshot) {
+      // disk segments never change, the lock only matters for memory segments
+      synchronized (segment) {
+        if (segment.getDocCount() > 0 && segment.getMaxCreated() >= from && segment.getMinCreated() <= to) {
+          searchSegment(segment, terms, idf, from, to, top);
+        }
+      }
+    }
+    return top.toList();
+  }
+
+  private void searchSegment(Segment segment, List<String> terms, double[] idf, long from, long to, TopHits top) {
+    int n = terms.size();
+    Integer[] order = new Integer[n];
+    int[] termIds = new int[n];
+    for (int t = 0; t < n; t++) {
+      termIds[t] = segment.findTerm(terms.get(t));
+      if (termIds[t] == -1) {
+        return;
+      }
+      order[t] = t;
+    }
+    // rarest term leads the intersection
+    Arrays.sort(order, (a, b) -> Integer.compare(segment.getDocFreq(termIds[a]), segment.getDocFreq(termIds[b])));
+    Postings[] postings = new Postings[n];
+    for (int i = 0; i < n; i++) {
+      postings[i] = segment.getPostings(termIds[order[i]]);
+    }
+
+    int doc = -1;
+    outer:
+    while (postings[0].advance(doc + 1)) {
+      doc = postings[0].doc();
+      for (int i = 1; i < n; i++) {
+        if (!postings[i].advance(doc)) {
+          break outer;
+        }
+        if (postings[i].doc() > doc) {
+          doc = postings[i].doc() - 1;
+          continue outer;
+        }
+      }
+      long created = segment.getCreated(doc);
+      if (created < from || created > to) {
+        continue;
+      }
+      double score = 0;
+      for (int i = 0; i < n; i++) {
+        int fields = postings[i].fields();
+        double weight = ((fields & UrlTerms.FIELD_TITLE) != 0 ? WEIGHT_TITLE : 0)
+            + ((fields & UrlTerms.FIELD_URL) != 0 ? WEIGHT_URL : 0)
+            + ((fields & UrlTerms.FIELD_META) != 0 ? WEIGHT_META : 0);
+        score += idf[order[i]] * weight;
+      }
+      top.offer(new SearchHit(segment.getUrlId(doc), created, score));
+    }
+  }
+
+  /**
+   * Freezes the in-memory segment and writes it to disk in the background.
+   */
+  public synchronized void flushAsync() {
+    if (current.getDocCount() == 0) {
+      return;
+    }
+    MemorySegment frozen = current;
+    synchronized (frozen) {
+      frozen.freeze();
+    }
+    current = new MemorySegment();
+    segments = copyWith(segments, frozen);
+    background.execute(() -> {
+      try {
+        writeFrozen(frozen);
+        maybeMerge();
+      } catch (IOException e) {
+        log.error("URL index flush failed", e);
+      }
+    });
+  }
+
+  /**
+   * Writes the in-memory segment to disk and waits for it.
+   */
+  public void flush() throws IOException {
+    flushAsync();
+    try {
+      background.submit(() -> {
+      }).get();
+    } catch (Exception e) {
+      throw new IOException("URL index flush failed", e);
+    }
+  }
+
+  private void writeFrozen(MemorySegment frozen) throws IOException {
+    DiskSegment written = writeSegment(Collections.singletonList(frozen));
+    long durableId;
+    synchronized (this) {
+      List<Segment> list = new ArrayList<>(segments);
+      list.remove(frozen);
+      list.add(written);
+      segments = list;
+      for (int doc = 0; doc < frozen.getDocCount(); doc++) {
+        release(frozen.getUrlId(doc));
+      }
+      durableId = held.isEmpty() ? getMaxUrlId() : held.firstKey() - 1;
+    }
+    // only the background thread writes it
+    File file = new File(directory, DURABLE_ID_FILE);
+    File tmp = new File(file.getPath() + TMP_SUFFIX);
+    Files.write(tmp.toPath(), Long.toString(durableId).getBytes(StandardCharsets.US_ASCII));
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Keeps the durable id below any URL id handed out from now on, until
+   * released. Taken before a URL is inserted and released once it has
+   * been added or rolled back; URL ids grow, so the new one is above the
+   * hold.
+   *
+   * @return hold to pass to {@link #release(long)}
+   */
+  public synchronized long hold() {
+    long hold = getMaxUrlId() + 1;
+    holdId(hold);
+    return hold;
+  }
+
+  private void holdId(long id) {
+    held.merge(id, 1, Integer::sum);
+  }
+
+  public synchronized void release(long hold) {
+    Integer count = held.get(hold);
+    if (count == null) {
+      return;
+    }
+    if (count == 1) {
+      held.remove(hold);
+    } else {
+      held.put(hold, count - 1);
+    }
+  }
+
+  private void maybeMerge() throws IOException {
+    List<DiskSegment> disk = new ArrayList<>();
+    synchronized (this) {
+      for (Segment segment : segments) {
+        if (segment instanceof DiskSegment) {
+          disk.add((DiskSegment) segment);
+        }
+      }
+    }
+    if (disk.size() <= MAX_SEGMENTS) {
+      return;
+    }
+    disk.sort(Comparator.comparingInt(Segment::getDocCount));
+    List<DiskSegment> merging = disk.subList(0, MERGE_FACTOR);
+    long start = System.currentTimeMillis();
+    DiskSegment merged = writeSegment(merging);
+    synchronized (this) {
+      List<Segment> list = new ArrayList<>(segments);
+      list.removeAll(merging);
+      list.add(merged);
+      segments = list;
+    }
+    // a search still reading an old mapping keeps it until it is done
+    for (DiskSegment segment : merging) {
+      if (!segment.getFile().delete()) {
+        log.warn("Could not delete merged URL index segment: {}", segment.getFile());
+      }
+    }
+    log.info("Merged {} URL index segments into {} ({} docs) in {} ms", merging.size(),
+        merged.getFile().getName(), merged.getDocCount(), System.currentTimeMillis() - start);
+  }
+
+  private DiskSegment writeSegment(List<? extends Segment> sources) throws IOException {
+    long generation;
+    synchronized (this) {
+      generation = nextGeneration++;
+    }
+    File file = new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, generation, SEGMENT_SUFFIX));
+    File tmp = new File(file.getPath() + TMP_SUFFIX);
+    SegmentWriter.write(tmp, sources);
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    return new DiskSegment(file, generation);
+  }
+
+  /**
+   * @return the URL id up to which every URL was on disk when the index
+   * was opened, the highest id on disk for an index written before the
+   * durable id was stored
+   */
+  public synchronized long getDurableUrlId() {
+    return storedDurableId >= 0 ? storedDurableId : getMaxUrlId();
+  }
+
+  /**
+   * @return the highest URL id in the index, 0 if empty
+   */
+  public synchronized long getMaxUrlId() {
+    long max = current.getMaxUrlId();
+    for (Segment segment : segments) {
+      max = Math.max(max, segment.getMaxUrlId());
+    }
+    return max;
+  }
+
+  public synchronized long getDocCount() {
+    long count = current.getDocCount();
+    for (Segment segment : segments) {
+      count += segment.getDocCount();
+    }
+    return count;
+  }
+
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Flushes the in-memory segment and stops the background thread.
+   */
+  @Override
+  public void close() throws IOException {
+    flush();
+    background.shutdown();
+    try {
+      background.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static List<Segment> copyWith(List<Segment> list, Segment segment) {
+    List<Segment> copy = new ArrayList<>(list);
+    copy.add(segment);
+    return copy;
+  }
+
+  /**
+   * The best hits so far, at most one per URL id.
+   */
+  private static class TopHits {
+    private final int max;
+    private final PriorityQueue<SearchHit> heap;
+    private final Map<Long, SearchHit> byUrlId = new HashMap<>();
+
+    TopHits(int max) {
+      this.max = max;
+      // worst hit at the head
+      this.heap = new PriorityQueue<>(max, (a, b) -> b.compareTo(a));
+    }
+
+    void offer(SearchHit hit) {
+      SearchHit old = byUrlId.get(hit.getUrlId());
+      if (old != null) {
+        if (hit.compareTo(old) >= 0) {
+          return;
+        }
+        heap.remove(old);
+      } else if (heap.size() == max) {
+        if (hit.compareTo(heap.peek()) >= 0) {
+          return;
+        }
+        byUrlId.remove(heap.poll().getUrlId());
+      }
+      heap.add(hit);
+      byUrlId.put(hit.getUrlId(), hit);
+    }
+
+    List<SearchHit> toList() {
+      List<SearchHit> list = new ArrayList<>(heap);
+      Collections.sort(list);
+      return list;
+    }
+  }
+
+}
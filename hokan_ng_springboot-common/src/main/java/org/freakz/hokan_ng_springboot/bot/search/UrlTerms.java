@@ -0,0 +1,107 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits URLs, titles and queries into the terms of the URL search index.
+ * <p/>
+ * Words are runs of letters and digits, lower cased. The sender and the
+ * channel are indexed as single terms with a prefix of their own, so that
+ * a nick never matches a title word.
+ *
+ */
+public class UrlTerms {
+
+  public static final int FIELD_URL = 1;
+  public static final int FIELD_TITLE = 2;
+  public static final int FIELD_META = 4;
+
+  public static final String SENDER_PREFIX = "s:";
+  public static final String CHANNEL_PREFIX = "c:";
+
+  public static final String QUERY_SENDER = "from:";
+  public static final String QUERY_CHANNEL = "in:";
+
+  private static final int MIN_LENGTH = 2;
+  private static final int MAX_LENGTH = 40;
+
+  private static final Set<String> URL_NOISE = new HashSet<>();
+
+  static {
+    Collections.addAll(URL_NOISE, "http", "https", "www", "com", "net", "org", "html", "htm", "php");
+  }
+
+  private UrlTerms() {
+  }
+
+  public static List<String> urlTerms(String url) {
+    List<String> terms = new ArrayList<>();
+    if (url != null) {
+      for (String word : words(url)) {
+        if (!URL_NOISE.contains(word)) {
+          terms.add(word);
+        }
+      }
+    }
+    return terms;
+  }
+
+  public static List<String> textTerms(String text) {
+    return text == null ? new ArrayList<>() : words(text);
+  }
+
+  public static String senderTerm(String sender) {
+    return SENDER_PREFIX + sender.toLowerCase(Locale.ROOT);
+  }
+
+  public static String channelTerm(String channel) {
+    return CHANNEL_PREFIX + channel.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Terms of a query: words, plus <code>from:nick</code> and
+   * <code>in:#channel</code> filters.
+   */
+  public static List<String> queryTerms(String query) {
+    List<String> terms = new ArrayList<>();
+    for (String part : query.trim().split("\\s+")) {
+      String lower = part.toLowerCase(Locale.ROOT);
+      if (lower.startsWith(QUERY_SENDER) && lower.length() > QUERY_SENDER.length()) {
+        terms.add(senderTerm(part.substring(QUERY_SENDER.length())));
+      } else if (lower.startsWith(QUERY_CHANNEL) && lower.length() > QUERY_CHANNEL.length()) {
+        terms.add(channelTerm(part.substring(QUERY_CHANNEL.length())));
+      } else {
+        for (String word : words(part)) {
+          if (!terms.contains(word)) {
+            terms.add(word);
+          }
+        }
+      }
+    }
+    return terms;
+  }
+
+  private static List<String> words(String s) {
+    List<String> words = new ArrayList<>();
+    int begin = -1;
+    for (int i = 0; i <= s.length(); i++) {
+      boolean wordChar = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+      if (wordChar && begin == -1) {
+        begin = i;
+      } else if (!wordChar && begin != -1) {
+        int length = i - begin;
+        if (length >= MIN_LENGTH && length <= MAX_LENGTH) {
+          words.add(s.substring(begin, i).toLowerCase(Locale.ROOT));
+        }
+        begin = -1;
+      }
+    }
+    return words;
+  }
+
+}
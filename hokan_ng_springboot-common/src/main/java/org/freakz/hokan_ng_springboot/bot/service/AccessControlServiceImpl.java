@@ -2,7 +2,9 @@ package org.freakz.hokan_ng_springboot.bot.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.JoinedUser;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.JoinedUserService;
 import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -18,6 +20,15 @@ public class AccessControlServiceImpl implements AccessControlService {
   @Autowired
   private UserService userService;
 
+  @Autowired
+  private JoinedUserService joinedUserService;
+
+  /**
+   * Only in the io module, which has the live membership.
+   */
+  @Autowired(required = false)
+  private ChannelMembershipService channelMembershipService;
+
   @Override
   public boolean isAdminUser(User isAdmin) {
     User user = userService.findById(isAdmin.getUserId());
@@ -34,8 +45,13 @@ public class AccessControlServiceImpl implements AccessControlService {
   }
 
   @Override
-  public boolean isChannelOp(User user, Channel Channel) {
-    return true;
+  public boolean isChannelOp(User user, Channel channel) {
+    if (channelMembershipService != null) {
+      String userModes = channelMembershipService.getUserModes(channel.getNetwork().getName(), channel.getChannelName(), user.getNick());
+      return userModes != null && userModes.contains("@");
+    }
+    JoinedUser joinedUser = joinedUserService.findJoinedUser(channel, user);
+    return joinedUser != null && joinedUser.isOp();
   }
 
   @Override
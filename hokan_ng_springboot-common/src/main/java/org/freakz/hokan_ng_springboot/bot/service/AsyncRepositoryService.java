@@ -0,0 +1,44 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Runs repository service calls on a bounded executor of its own, for
+ * threads that must not wait for the database, like the IRC engines.
+ * <p/>
+ * The returned futures complete on the database threads, so dependent
+ * actions run there too. A call that does not finish in time completes
+ * with a {@link java.util.concurrent.TimeoutException}, a call refused
+ * because the executor is saturated with a
+ * {@link org.freakz.hokan_ng_springboot.bot.exception.HokanDAOException}.
+ *
+ */
+public interface AsyncRepositoryService {
+
+  /**
+   * @param operation name of the call for logging and statistics
+   * @param call      repository service call, run in its own transaction
+   */
+  <T> CompletableFuture<T> submit(String operation, Supplier<T> call);
+
+  <T> CompletableFuture<T> submit(String operation, Supplier<T> call, long timeoutMillis);
+
+  CompletableFuture<User> findUserByNick(String nick);
+
+  CompletableFuture<User> saveUser(User user);
+
+  CompletableFuture<List<Channel>> findChannels(Network network);
+
+  CompletableFuture<Channel> saveChannel(Channel channel);
+
+  CompletableFuture<Network> findNetwork(String networkName);
+
+  String getStatistics();
+
+}
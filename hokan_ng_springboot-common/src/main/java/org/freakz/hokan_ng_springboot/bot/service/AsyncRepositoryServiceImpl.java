@@ -0,0 +1,185 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.exception.HokanDAOException;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.ChannelService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.NetworkService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the calls on <code>hokan.db.async.threads</code> threads, never more
+ * than the connection pool has connections, with room for
+ * <code>hokan.db.async.queue</code> waiting calls. When the queue is full
+ * further calls are refused at once instead of piling up behind a stalled
+ * database.
+ * <p/>
+ * A call that has not finished in <code>hokan.db.async.timeoutMillis</code>
+ * milliseconds is completed with a timeout. If it is still queued it is
+ * dropped; a statement already running is not interrupted, it finishes
+ * and its result is discarded.
+ *
+ */
+@Service
+@Slf4j
+public class AsyncRepositoryServiceImpl implements AsyncRepositoryService {
+
+  private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+  @Value("${hokan.db.async.threads:4}")
+  private int threads;
+
+  @Value("${spring.datasource.max-active:100}")
+  private int poolSize;
+
+  @Value("${hokan.db.async.queue:200}")
+  private int queueSize;
+
+  @Value("${hokan.db.async.timeoutMillis:5000}")
+  private long defaultTimeoutMillis;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private ChannelService channelService;
+
+  @Autowired
+  private NetworkService networkService;
+
+  private ThreadPoolExecutor executor;
+
+  private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+    Thread thread = new Thread(r, "AsyncRepositoryTimer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+
+  @PostConstruct
+  public void start() {
+    int size = Math.max(1, Math.min(threads, poolSize));
+    AtomicInteger number = new AtomicInteger();
+    executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+      Thread thread = new Thread(r, "AsyncRepository-" + number.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    timer.setRemoveOnCancelPolicy(true);
+    log.info("Async repository calls on {} threads, queue {}, timeout {} ms", size, queueSize, defaultTimeoutMillis);
+  }
+
+  @PreDestroy
+  public void stop() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    timer.shutdownNow();
+  }
+
+  @Override
+  public <T> CompletableFuture<T> submit(String operation, Supplier<T> call) {
+    return submit(operation, call, defaultTimeoutMillis);
+  }
+
+  @Override
+  public <T> CompletableFuture<T> submit(String operation, Supplier<T> call, long timeoutMillis) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    submitted.incrementAndGet();
+    Future<?> task;
+    try {
+      task = executor.submit(() -> run(operation, call, result));
+    } catch (RejectedExecutionException e) {
+      rejected.incrementAndGet();
+      result.completeExceptionally(new HokanDAOException("Database busy, refused " + operation));
+      return result;
+    }
+    ScheduledFuture<?> timeout = timer.schedule(() -> {
+      if (result.completeExceptionally(new TimeoutException(operation + " took over " + timeoutMillis + " ms"))) {
+        timedOut.incrementAndGet();
+        task.cancel(false);
+        executor.remove((Runnable) task);
+      }
+    }, timeoutMillis, TimeUnit.MILLISECONDS);
+    result.whenComplete((value, error) -> timeout.cancel(false));
+    return result;
+  }
+
+  private <T> void run(String operation, Supplier<T> call, CompletableFuture<T> result) {
+    if (result.isDone()) {
+      return;
+    }
+    try {
+      if (result.complete(call.get())) {
+        completed.incrementAndGet();
+      }
+    } catch (RuntimeException e) {
+      log.warn("{} failed: {}", operation, e.toString());
+      if (result.completeExceptionally(e)) {
+        failed.incrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public CompletableFuture<User> findUserByNick(String nick) {
+    return submit("findUserByNick", () -> userService.findFirstByNick(nick));
+  }
+
+  @Override
+  public CompletableFuture<User> saveUser(User user) {
+    return submit("saveUser", () -> userService.save(user));
+  }
+
+  @Override
+  public CompletableFuture<List<Channel>> findChannels(Network network) {
+    return submit("findChannels", () -> channelService.findByNetwork(network));
+  }
+
+  @Override
+  public CompletableFuture<Channel> saveChannel(Channel channel) {
+    return submit("saveChannel", () -> channelService.save(channel));
+  }
+
+  @Override
+  public CompletableFuture<Network> findNetwork(String networkName) {
+    return submit("findNetwork", () -> networkService.getNetwork(networkName));
+  }
+
+  @Override
+  public String getStatistics() {
+    return String.format("%d submitted, %d completed, %d failed, %d refused, %d timed out, %d queued, %d running",
+        submitted.get(), completed.get(), failed.get(), rejected.get(), timedOut.get(),
+        executor.getQueue().size(), executor.getActiveCount());
+  }
+
+}
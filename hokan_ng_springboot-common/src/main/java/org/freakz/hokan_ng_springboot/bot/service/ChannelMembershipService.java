@@ -0,0 +1,41 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+
+import java.util.Map;
+
+/**
+ * Live channel membership of the connected engines. Only the io module
+ * has one; elsewhere membership is read from the JOINEDUSER projection
+ * through {@link org.freakz.hokan_ng_springboot.bot.jpa.repository.service.JoinedUserService}.
+ *
+ */
+public interface ChannelMembershipService {
+
+  /**
+   * @return nick to user modes ("@", "+" or "") of everyone on the channel,
+   * empty if the bot is not on it
+   */
+  Map<String, String> getMembers(String network, String channel);
+
+  /**
+   * @return user modes of the nick on the channel, or null if it is not on it
+   */
+  String getUserModes(String network, String channel, String nick);
+
+  /**
+   * Writes the difference between the live membership and the JOINEDUSER
+   * table now.
+   */
+  void reconcile();
+
+  /**
+   * Deletes the JOINEDUSER rows of a network this node no longer has an
+   * engine on. Runs in the background, unless the network is connected
+   * again by then.
+   */
+  void networkDisconnected(Network network);
+
+  String getStatistics();
+
+}
@@ -0,0 +1,34 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.stats.ChannelStats;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Streaming statistics of the channels the bot is on, fed line by line
+ * from the message path and answered from memory.
+ *
+ */
+public interface ChannelStatsService {
+
+  void lineSeen(String network, String channel, String nick, String message, Date time);
+
+  /**
+   * @return statistics of the channel, or null if no line has been seen on it
+   */
+  ChannelStats getChannelStats(String network, String channel);
+
+  /**
+   * @return names of the channels with statistics, as network/channel
+   */
+  List<String> getChannelNames();
+
+  /**
+   * Writes the snapshots of all channels now.
+   */
+  void saveSnapshots();
+
+  String getStatistics();
+
+}
@@ -0,0 +1,140 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.stats.ChannelStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps a {@link ChannelStats} per channel in memory and writes snapshots
+ * of them every {@link #SNAPSHOT_INTERVAL_MINUTES} minutes and on shutdown,
+ * one file per channel in the directory given by the
+ * <code>hokan.channelStats.dir</code> property. The snapshots are read back
+ * on startup; lines seen since the last snapshot are lost on a crash.
+ * <p/>
+ * Only the module that sees the channel lines may write the snapshots,
+ * so the service only exists with <code>hokan.channelStats.enabled=true</code>.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "hokan.channelStats.enabled")
+@Slf4j
+public class ChannelStatsServiceImpl implements ChannelStatsService {
+
+  public static final long SNAPSHOT_INTERVAL_MINUTES = 5;
+
+  private static final String SNAPSHOT_SUFFIX = ".stats";
+  private static final String TMP_SUFFIX = ".tmp";
+
+  @Value("${hokan.channelStats.dir:channel-stats}")
+  private String statsDir;
+
+  private File directory;
+
+  private final Map<String, ChannelStats> channels = new ConcurrentHashMap<>();
+
+  private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "ChannelStatsWriter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final AtomicLong linesSeen = new AtomicLong();
+  private volatile long lastSnapshotMillis;
+
+  @PostConstruct
+  public void open() throws IOException {
+    directory = new File(statsDir);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create channel stats directory: " + directory);
+    }
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(SNAPSHOT_SUFFIX));
+    if (files != null) {
+      for (File file : files) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+          ChannelStats stats = ChannelStats.readFrom(in);
+          channels.put(stats.getName(), stats);
+        } catch (IOException e) {
+          log.warn("Skipping unreadable channel stats {}: {}", file, e.toString());
+        }
+      }
+    }
+    log.info("Channel stats loaded for {} channels", channels.size());
+    writer.scheduleWithFixedDelay(this::saveSnapshots, SNAPSHOT_INTERVAL_MINUTES, SNAPSHOT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+  }
+
+  @PreDestroy
+  public void close() {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    saveSnapshots();
+  }
+
+  private static String key(String network, String channel) {
+    return network + "/" + channel.toLowerCase();
+  }
+
+  @Override
+  public void lineSeen(String network, String channel, String nick, String message, Date time) {
+    channels.computeIfAbsent(key(network, channel), ChannelStats::new).addLine(nick, message, time.getTime());
+    linesSeen.incrementAndGet();
+  }
+
+  @Override
+  public ChannelStats getChannelStats(String network, String channel) {
+    return channels.get(key(network, channel));
+  }
+
+  @Override
+  public List<String> getChannelNames() {
+    List<String> names = new ArrayList<>(channels.keySet());
+    Collections.sort(names);
+    return names;
+  }
+
+  @Override
+  public synchronized void saveSnapshots() {
+    long start = System.currentTimeMillis();
+    for (ChannelStats stats : channels.values()) {
+      try {
+        File file = new File(directory, URLEncoder.encode(stats.getName(), "UTF-8") + SNAPSHOT_SUFFIX);
+        File tmp = new File(directory, file.getName() + TMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+          stats.writeTo(out);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        log.warn("Could not write channel stats of {}: {}", stats.getName(), e.toString());
+      }
+    }
+    lastSnapshotMillis = System.currentTimeMillis() - start;
+  }
+
+  @Override
+  public String getStatistics() {
+    return String.format("%d channels, %d lines seen, last snapshot took %d ms", channels.size(), linesSeen.get(), lastSnapshotMillis);
+  }
+
+}
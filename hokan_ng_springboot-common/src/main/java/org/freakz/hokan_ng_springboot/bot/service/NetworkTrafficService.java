@@ -0,0 +1,25 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.stats.NetworkTraffic;
+
+/**
+ * In-memory traffic counters of the networks, added to the NETWORK row
+ * counters periodically.
+ *
+ */
+public interface NetworkTrafficService {
+
+  /**
+   * @return counters of the network on this node, created on first use
+   */
+  NetworkTraffic getTraffic(Network network);
+
+  /**
+   * Adds the amounts counted since the last flush to the database now.
+   */
+  void flush();
+
+  String getStatistics();
+
+}
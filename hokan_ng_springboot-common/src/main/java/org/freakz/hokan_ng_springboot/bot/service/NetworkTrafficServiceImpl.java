@@ -0,0 +1,109 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.NetworkService;
+import org.freakz.hokan_ng_springboot.bot.stats.NetworkTraffic;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts traffic in {@link NetworkTraffic} and every
+ * {@link #FLUSH_INTERVAL_SECONDS} seconds, and on shutdown, adds what was
+ * counted since the last flush to the NETWORK row with one
+ * <code>UPDATE ... SET x = x + ?</code> per network. Nodes sharing a
+ * network add up instead of overwriting each other. If an update fails
+ * the amounts stay unflushed and go with the next one.
+ *
+ */
+@Service
+@Slf4j
+public class NetworkTrafficServiceImpl implements NetworkTrafficService {
+
+  public static final long FLUSH_INTERVAL_SECONDS = 30;
+
+  private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+  @Autowired
+  private NetworkService networkService;
+
+  private final Map<Long, NetworkTraffic> traffic = new ConcurrentHashMap<>();
+
+  private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "NetworkTrafficWriter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final AtomicLong updates = new AtomicLong();
+
+  @PostConstruct
+  public void start() {
+    writer.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  @Override
+  public NetworkTraffic getTraffic(Network network) {
+    return traffic.computeIfAbsent(network.getId(), id -> new NetworkTraffic(id, network.getName()));
+  }
+
+  @Override
+  public synchronized void flush() {
+    for (NetworkTraffic counters : traffic.values()) {
+      long[] delta = counters.unflushed();
+      if (delta == null) {
+        continue;
+      }
+      try {
+        networkService.addTraffic(counters.getNetworkId(),
+            delta[NetworkTraffic.CONNECTS], delta[NetworkTraffic.CHANNELS_JOINED],
+            delta[NetworkTraffic.LINES_SENT], delta[NetworkTraffic.LINES_RECEIVED],
+            delta[NetworkTraffic.BYTES_SENT], delta[NetworkTraffic.BYTES_RECEIVED],
+            delta[NetworkTraffic.COMMANDS], delta[NetworkTraffic.ERRORS]);
+        counters.flushed(delta);
+        updates.incrementAndGet();
+      } catch (Exception e) {
+        log.warn("Could not write traffic of {}: {}", counters.getNetworkName(), e.toString());
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Exception e) {
+      log.warn("Traffic flush failed: {}", e.toString());
+    }
+  }
+
+  @Override
+  public String getStatistics() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(updates.get()).append(" updates written");
+    for (NetworkTraffic counters : traffic.values()) {
+      sb.append("; ").append(counters);
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,41 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+
+/**
+ * Effective property values, resolved channel over network over system.
+ * Snapshots are built once and replaced only when a property, network or
+ * channel changes, in the background, so a per-message check is a lookup
+ * and an array read that never waits for the database:
+ * <pre>
+ *   if (propertyResolver.getChannelSnapshot(network, channel).getBoolean(PROP_CHANNEL_DO_URL_TITLES, false))
+ * </pre>
+ */
+public interface PropertyResolver {
+
+  PropertySnapshot getSystemSnapshot();
+
+  /**
+   * @return properties of the network, the system snapshot if it is not known
+   */
+  PropertySnapshot getNetworkSnapshot(String network);
+
+  /**
+   * @return properties of the channel, the network snapshot if it is not known
+   */
+  PropertySnapshot getChannelSnapshot(String network, String channel);
+
+  /**
+   * @return properties of the channel, the system snapshot if it is not known
+   */
+  PropertySnapshot getChannelSnapshot(Channel channel);
+
+  /**
+   * Marks the snapshots stale and starts rebuilding them in the background;
+   * reads return the current ones until the new ones are published.
+   */
+  void invalidate();
+
+  String getStatistics();
+
+}
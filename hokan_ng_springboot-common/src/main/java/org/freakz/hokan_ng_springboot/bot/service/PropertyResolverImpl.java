@@ -0,0 +1,206 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.cache.EntityChangeListener;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ChannelProperty;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.NetworkProperty;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Property;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.ChannelPropertyService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.ChannelService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.NetworkPropertyService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.NetworkService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.PropertyService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds the snapshots of all networks and channels at once, from five
+ * queries, the first time they are asked for. Any committed change of a
+ * property, network or channel, in this module or another one, marks them
+ * stale through {@link EntityChangeListener}; other changes leave them alone.
+ * <p/>
+ * Stale snapshots are rebuilt on the {@link AsyncRepositoryService}
+ * threads, one rebuild at a time, and readers keep getting the previous
+ * snapshots until the new ones are published. Only the very first build
+ * runs on the reading thread, as there is nothing to serve before it.
+ *
+ */
+@Service
+@Slf4j
+public class PropertyResolverImpl implements PropertyResolver, EntityChangeListener {
+
+  @Autowired
+  private PropertyService propertyService;
+
+  @Autowired
+  private NetworkPropertyService networkPropertyService;
+
+  @Autowired
+  private ChannelPropertyService channelPropertyService;
+
+  @Autowired
+  private NetworkService networkService;
+
+  @Autowired
+  private ChannelService channelService;
+
+  @Autowired
+  private AsyncRepositoryService asyncRepositoryService;
+
+  private volatile Snapshots snapshots;
+
+  // generation the published snapshots were loaded at
+  private volatile long builtGeneration;
+
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicLong rebuilds = new AtomicLong();
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+  private static String key(String network, String channel) {
+    return network + "/" + channel.toLowerCase();
+  }
+
+  private Snapshots snapshots() {
+    Snapshots current = snapshots;
+    if (current == null) {
+      return firstBuild();
+    }
+    if (builtGeneration != generation.get()) {
+      scheduleRebuild();
+    }
+    return current;
+  }
+
+  private synchronized Snapshots firstBuild() {
+    Snapshots current = snapshots;
+    if (current != null) {
+      return current;
+    }
+    long building = generation.get();
+    Snapshots built = load();
+    publish(built, building);
+    return built;
+  }
+
+  private void publish(Snapshots built, long building) {
+    builtGeneration = building;
+    snapshots = built;
+    rebuilds.incrementAndGet();
+  }
+
+  private void scheduleRebuild() {
+    if (snapshots == null || !rebuilding.compareAndSet(false, true)) {
+      return;
+    }
+    long building = generation.get();
+    asyncRepositoryService.submit("rebuildPropertySnapshots", this::load).whenComplete((built, error) -> {
+      if (error == null) {
+        publish(built, building);
+      } else {
+        log.warn("Property snapshots not rebuilt, serving the previous ones: {}", error.toString());
+      }
+      rebuilding.set(false);
+      if (error == null && generation.get() != building) {
+        // changed while loading
+        scheduleRebuild();
+      }
+    });
+  }
+
+  private Snapshots load() {
+    Snapshots built = new Snapshots();
+    built.system = PropertySnapshot.EMPTY.override(propertyService.findAll());
+
+    Map<Long, List<NetworkProperty>> networkProperties = new HashMap<>();
+    for (NetworkProperty property : networkPropertyService.findAll()) {
+      networkProperties.computeIfAbsent(property.getNetwork().getId(), id -> new ArrayList<>()).add(property);
+    }
+    Map<Long, PropertySnapshot> networkById = new HashMap<>();
+    for (Network network : networkService.findAll()) {
+      PropertySnapshot snapshot = built.system.override(networkProperties.get(network.getId()));
+      networkById.put(network.getId(), snapshot);
+      built.networks.put(network.getName(), snapshot);
+    }
+
+    Map<Long, List<ChannelProperty>> channelProperties = new HashMap<>();
+    for (ChannelProperty property : channelPropertyService.findAll()) {
+      channelProperties.computeIfAbsent(property.getChannel().getId(), id -> new ArrayList<>()).add(property);
+    }
+    for (Channel channel : channelService.findAll()) {
+      PropertySnapshot network = networkById.getOrDefault(channel.getNetwork().getId(), built.system);
+      PropertySnapshot snapshot = network.override(channelProperties.get(channel.getId()));
+      built.channelsById.put(channel.getId(), snapshot);
+      built.channels.put(key(channel.getNetwork().getName(), channel.getChannelName()), snapshot);
+    }
+    log.debug("Property snapshots built for {} networks and {} channels", built.networks.size(), built.channels.size());
+    return built;
+  }
+
+  @Override
+  public PropertySnapshot getSystemSnapshot() {
+    return snapshots().system;
+  }
+
+  @Override
+  public PropertySnapshot getNetworkSnapshot(String network) {
+    Snapshots current = snapshots();
+    return current.networks.getOrDefault(network, current.system);
+  }
+
+  @Override
+  public PropertySnapshot getChannelSnapshot(String network, String channel) {
+    Snapshots current = snapshots();
+    PropertySnapshot snapshot = current.channels.get(key(network, channel));
+    return snapshot != null ? snapshot : current.networks.getOrDefault(network, current.system);
+  }
+
+  @Override
+  public PropertySnapshot getChannelSnapshot(Channel channel) {
+    Snapshots current = snapshots();
+    return current.channelsById.getOrDefault(channel.getId(), current.system);
+  }
+
+  @Override
+  public void invalidate() {
+    generation.incrementAndGet();
+    scheduleRebuild();
+  }
+
+  @Override
+  public void entityChanged(Class<?> entityClass, Object id, boolean removed) {
+    if (entityClass == Property.class || entityClass == NetworkProperty.class || entityClass == ChannelProperty.class
+        || entityClass == Network.class || entityClass == Channel.class) {
+      invalidate();
+    }
+  }
+
+  @Override
+  public String getStatistics() {
+    Snapshots current = snapshots;
+    return String.format("%s, %d rebuilds%s",
+        current == null ? "not built" : current.networks.size() + " networks and " + current.channels.size() + " channels",
+        rebuilds.get(), builtGeneration != generation.get() ? ", stale" : "");
+  }
+
+  /**
+   * Never changed after it is published.
+   */
+  private static final class Snapshots {
+
+    private PropertySnapshot system;
+    private final Map<String, PropertySnapshot> networks = new HashMap<>();
+    private final Map<String, PropertySnapshot> channels = new HashMap<>();
+    private final Map<Long, PropertySnapshot> channelsById = new HashMap<>();
+
+  }
+
+}
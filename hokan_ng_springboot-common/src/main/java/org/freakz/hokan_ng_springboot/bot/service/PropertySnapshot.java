@@ -0,0 +1,152 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyBase;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable view of the effective value of every {@link PropertyName} at
+ * one level: system, network or channel. Values are parsed once when the
+ * snapshot is made, so the getters are array reads.
+ * <p/>
+ * Booleans are true/on/yes/1 and false/off/no/0. Durations are ISO-8601
+ * (PT5M) or a number with an optional ms, s, m, h or d unit; a plain
+ * number is seconds. A value that does not parse as the asked type gives
+ * the default.
+ */
+public final class PropertySnapshot {
+
+  static final PropertySnapshot EMPTY = new PropertySnapshot(new String[PropertyName.values().length]);
+
+  private final String[] values;
+  private final Boolean[] booleans;
+  private final Integer[] ints;
+  private final Duration[] durations;
+
+  private PropertySnapshot(String[] values) {
+    this.values = values;
+    this.booleans = new Boolean[values.length];
+    this.ints = new Integer[values.length];
+    this.durations = new Duration[values.length];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        String value = values[i].trim();
+        booleans[i] = parseBoolean(value);
+        ints[i] = parseInt(value);
+        durations[i] = parseDuration(value);
+      }
+    }
+  }
+
+  /**
+   * @return a snapshot with the properties overriding the values of this one;
+   * this one if there are none
+   */
+  PropertySnapshot override(List<? extends PropertyBase> properties) {
+    if (properties == null || properties.isEmpty()) {
+      return this;
+    }
+    String[] overridden = Arrays.copyOf(values, values.length);
+    for (PropertyBase property : properties) {
+      if (property.getProperty() != null && property.getValue() != null) {
+        overridden[property.getProperty().ordinal()] = property.getValue();
+      }
+    }
+    return new PropertySnapshot(overridden);
+  }
+
+  public boolean isSet(PropertyName name) {
+    return values[name.ordinal()] != null;
+  }
+
+  public String getString(PropertyName name, String defaultValue) {
+    String value = values[name.ordinal()];
+    return value != null ? value : defaultValue;
+  }
+
+  public boolean getBoolean(PropertyName name, boolean defaultValue) {
+    Boolean value = booleans[name.ordinal()];
+    return value != null ? value : defaultValue;
+  }
+
+  public int getInt(PropertyName name, int defaultValue) {
+    Integer value = ints[name.ordinal()];
+    return value != null ? value : defaultValue;
+  }
+
+  public Duration getDuration(PropertyName name, Duration defaultValue) {
+    Duration value = durations[name.ordinal()];
+    return value != null ? value : defaultValue;
+  }
+
+  private static Boolean parseBoolean(String value) {
+    switch (value.toLowerCase()) {
+      case "true":
+      case "on":
+      case "yes":
+      case "1":
+        return Boolean.TRUE;
+      case "false":
+      case "off":
+      case "no":
+      case "0":
+        return Boolean.FALSE;
+      default:
+        return null;
+    }
+  }
+
+  private static Integer parseInt(String value) {
+    try {
+      return Integer.valueOf(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static Duration parseDuration(String value) {
+    if (value.isEmpty()) {
+      return null;
+    }
+    if (value.charAt(0) == 'P' || value.charAt(0) == 'p') {
+      try {
+        return Duration.parse(value);
+      } catch (DateTimeParseException e) {
+        return null;
+      }
+    }
+    int end = 0;
+    while (end < value.length() && Character.isDigit(value.charAt(end))) {
+      end++;
+    }
+    if (end == 0) {
+      return null;
+    }
+    long amount;
+    try {
+      amount = Long.parseLong(value.substring(0, end));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    switch (value.substring(end).trim().toLowerCase()) {
+      case "ms":
+        return Duration.ofMillis(amount);
+      case "":
+      case "s":
+        return Duration.ofSeconds(amount);
+      case "m":
+        return Duration.ofMinutes(amount);
+      case "h":
+        return Duration.ofHours(amount);
+      case "d":
+        return Duration.ofDays(amount);
+      default:
+        return null;
+    }
+  }
+
+}
@@ -0,0 +1,31 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+/**
+ * Short links for posted URLs.
+ *
+ */
+public interface ShortUrlService {
+
+  /**
+   * Returns at once: the id comes from a block reserved in memory and the
+   * mapping is written to the database later, in a batch.
+   *
+   * @param url   URL to shorten
+   * @param urlId id of the stored Url, which gets the short code too, 0 if none
+   * @return base62 short code, the same code for a URL shortened recently,
+   * or null if no ids are reserved at the moment
+   */
+  String shorten(String url, long urlId);
+
+  /**
+   * @param code short code
+   * @return the URL, or null if the code is unknown
+   */
+  String resolve(String code);
+
+  /**
+   * @return mappings not written to the database yet
+   */
+  int getPendingCount();
+
+}
@@ -0,0 +1,197 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ShortUrl;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.IdBlockService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UrlService;
+import org.freakz.hokan_ng_springboot.bot.util.Base62;
+import org.freakz.hokan_ng_springboot.bot.util.UrlCanonicalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Short link ids are allocated hi/lo: a block of {@link #BLOCK_SIZE} ids
+ * is reserved with one database update and handed out from memory, and
+ * the next block is reserved in the background as soon as the current
+ * one is taken into use. Shortening never waits for that reservation: a
+ * URL is simply not shortened while there is no block. New mappings are
+ * kept in an LRU cache, which also serves lookups, and written to the
+ * database in batches every {@link #WRITE_INTERVAL_MILLIS} ms.
+ *
+ */
+@Service
+@Slf4j
+public class ShortUrlServiceImpl implements ShortUrlService {
+
+  public static final String SEQUENCE_NAME = "ShortUrl";
+  public static final int BLOCK_SIZE = 1000;
+  public static final int MAX_CACHED = 10000;
+  public static final long WRITE_INTERVAL_MILLIS = 2000;
+  public static final int MAX_BATCH = 500;
+
+  private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+  @Autowired
+  private IdBlockService idBlockService;
+
+  @Autowired
+  private UrlService urlService;
+
+  private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "ShortUrlWriter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Map<Long, String> urlsById = lruMap();
+  private final Map<String, Long> idsByUrl = lruMap();
+  private final ConcurrentLinkedQueue<ShortUrl> pending = new ConcurrentLinkedQueue<>();
+
+  // guarded by this
+  private long nextId = 0;
+  private long blockEnd = 0;
+  private Future<Long> nextBlock = null;
+
+  @PostConstruct
+  public void start() {
+    synchronized (this) {
+      prefetchBlock();
+    }
+    background.scheduleWithFixedDelay(this::writePending, WRITE_INTERVAL_MILLIS, WRITE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    background.shutdown();
+    try {
+      background.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    writePending();
+  }
+
+  @Override
+  public String shorten(String url, long urlId) {
+    String canonical = UrlCanonicalizer.canonicalize(url);
+    Long id;
+    synchronized (idsByUrl) {
+      id = idsByUrl.computeIfAbsent(canonical, key -> {
+        long allocated = allocateId();
+        if (allocated == -1) {
+          return null;
+        }
+        synchronized (urlsById) {
+          urlsById.put(allocated, url);
+        }
+        ShortUrl shortUrl = new ShortUrl(allocated, url, new Date());
+        shortUrl.setUrlId(urlId);
+        pending.add(shortUrl);
+        return allocated;
+      });
+    }
+    return id == null ? null : Base62.encode(id);
+  }
+
+  @Override
+  public String resolve(String code) {
+    long id = Base62.decode(code);
+    if (id < 0) {
+      return null;
+    }
+    synchronized (urlsById) {
+      String url = urlsById.get(id);
+      if (url != null) {
+        return url;
+      }
+    }
+    ShortUrl shortUrl = urlService.findShortUrl(id);
+    if (shortUrl == null) {
+      return null;
+    }
+    synchronized (urlsById) {
+      urlsById.put(id, shortUrl.getUrl());
+    }
+    return shortUrl.getUrl();
+  }
+
+  @Override
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * @return the next id, or -1 if the current block is used up and the
+   * next one is not reserved yet
+   */
+  private synchronized long allocateId() {
+    if (nextId == blockEnd) {
+      prefetchBlock();
+      if (!nextBlock.isDone()) {
+        return -1;
+      }
+      try {
+        long hi = nextBlock.get();
+        nextId = hi * BLOCK_SIZE;
+        blockEnd = nextId + BLOCK_SIZE;
+      } catch (InterruptedException | ExecutionException e) {
+        log.warn("Could not reserve short URL ids: {}", e.toString());
+        return -1;
+      } finally {
+        // a failed reservation is tried again
+        nextBlock = null;
+        prefetchBlock();
+      }
+    }
+    return nextId++;
+  }
+
+  private void prefetchBlock() {
+    if (nextBlock == null) {
+      nextBlock = background.submit(this::reserveBlock);
+    }
+  }
+
+  private long reserveBlock() {
+    try {
+      return idBlockService.reserveBlock(SEQUENCE_NAME);
+    } catch (DataIntegrityViolationException e) {
+      // another node created the sequence row first, now there is one to lock
+      return idBlockService.reserveBlock(SEQUENCE_NAME);
+    }
+  }
+
+  private void writePending() {
+    List<ShortUrl> batch = new ArrayList<>();
+    ShortUrl shortUrl;
+    while (batch.size() < MAX_BATCH && (shortUrl = pending.poll()) != null) {
+      batch.add(shortUrl);
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      urlService.saveShortUrls(batch);
+      log.debug("Wrote {} short URLs", batch.size());
+    } catch (Exception e) {
+      log.warn("Could not write {} short URLs, retrying: {}", batch.size(), e.toString());
+      pending.addAll(batch);
+    }
+  }
+
+  private static <K, V> Map<K, V> lruMap() {
+    return new LinkedHashMap<K, V>(1024, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > MAX_CACHED;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,24 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import java.util.Date;
+import java.util.function.Consumer;
+
+/**
+ * Handles the URLs posted on the channels: counts reposts, stores new
+ * URLs with their titles and announces the titles. Only the io module,
+ * which sees the lines, has one.
+ *
+ */
+public interface UrlLoggerService {
+
+  /**
+   * Finds the URLs in a channel line and handles them in the background.
+   * Returns at once.
+   *
+   * @param reply takes the title announcements, called from a background thread
+   */
+  void lineSeen(String network, String channel, String sender, String message, Date time, Consumer<String> reply);
+
+  String getStatistics();
+
+}
@@ -0,0 +1,41 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Url;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Keyword search over stored URLs, see UrlSearchIndex.
+ *
+ */
+public interface UrlSearchService {
+
+  /**
+   * Adds the URL to the index, or its new words if it is already indexed.
+   */
+  void index(Url url);
+
+  /**
+   * Taken before a URL is inserted, so that the URL is indexed again on
+   * startup if the process dies after the insert commits but before the
+   * index has it on disk.
+   *
+   * @return hold to pass to {@link #release(long)} once the URL is indexed or rolled back
+   */
+  long hold();
+
+  void release(long hold);
+
+  /**
+   * @param query words, <code>from:nick</code> and <code>in:#channel</code>
+   * @param from  earliest creation time or null
+   * @param to    latest creation time or null
+   * @param max   maximum number of URLs
+   * @return best matches first
+   */
+  List<Url> search(String query, Date from, Date to, int max);
+
+  String getStatistics();
+
+}
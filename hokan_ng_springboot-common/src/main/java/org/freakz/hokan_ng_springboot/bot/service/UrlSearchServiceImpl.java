@@ -0,0 +1,117 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Url;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.UrlRepository;
+import org.freakz.hokan_ng_springboot.bot.search.SearchHit;
+import org.freakz.hokan_ng_springboot.bot.search.UrlSearchIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Keeps the URL search index in the directory given by the
+ * <code>hokan.urlIndex.dir</code> property. On startup URLs above the
+ * durable id of the index, see UrlSearchIndex, are read from the URL table
+ * and indexed again.
+ * <p/>
+ * The directory belongs to a single process, so the service only exists
+ * with <code>hokan.urlSearch.enabled=true</code>, set in the module that
+ * saves the URLs.
+ *
+ */
+@Service
+@ConditionalOnProperty(name = "hokan.urlSearch.enabled")
+@Slf4j
+public class UrlSearchServiceImpl implements UrlSearchService {
+
+  private static final int CATCH_UP_PAGE_SIZE = 1000;
+
+  @Autowired
+  private UrlRepository urlRepository;
+
+  @Value("${hokan.urlIndex.dir:url-index}")
+  private String indexDir;
+
+  private UrlSearchIndex index;
+
+  @PostConstruct
+  public void open() throws IOException {
+    long start = System.currentTimeMillis();
+    index = new UrlSearchIndex(new File(indexDir));
+    long afterId = index.getDurableUrlId();
+    int added = 0;
+    while (true) {
+      List<Url> urls = urlRepository.findByIdGreaterThanOrderByIdAsc(afterId, new PageRequest(0, CATCH_UP_PAGE_SIZE));
+      for (Url url : urls) {
+        index(url);
+        afterId = url.getId();
+      }
+      added += urls.size();
+      if (urls.size() < CATCH_UP_PAGE_SIZE) {
+        break;
+      }
+    }
+    log.info("URL search index opened: {} docs, {} caught up in {} ms", index.getDocCount(), added, System.currentTimeMillis() - start);
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    index.close();
+  }
+
+  @Override
+  public void index(Url url) {
+    long created = url.getCreated() == null ? 0 : url.getCreated().getTime();
+    index.add(url.getId(), created, url.getUrl(), url.getUrlTitle(), url.getSender(), url.getChannel());
+  }
+
+  @Override
+  public long hold() {
+    return index.hold();
+  }
+
+  @Override
+  public void release(long hold) {
+    index.release(hold);
+  }
+
+  @Override
+  public List<Url> search(String query, Date from, Date to, int max) {
+    List<SearchHit> hits = index.search(query, from == null ? Long.MIN_VALUE : from.getTime(),
+        to == null ? Long.MAX_VALUE : to.getTime(), max);
+    if (hits.isEmpty()) {
+      return new ArrayList<>();
+    }
+    List<Long> ids = new ArrayList<>();
+    for (SearchHit hit : hits) {
+      ids.add(hit.getUrlId());
+    }
+    Map<Long, Url> byId = new HashMap<>();
+    for (Url url : urlRepository.findAll(ids)) {
+      byId.put(url.getId(), url);
+    }
+    List<Url> urls = new ArrayList<>();
+    for (Long id : ids) {
+      Url url = byId.get(id);
+      if (url != null) {
+        urls.add(url);
+      }
+    }
+    return urls;
+  }
+
+  @Override
+  public String getStatistics() {
+    return String.format("%d docs in %d segments", index.getDocCount(), index.getSegmentCount());
+  }
+
+}
@@ -0,0 +1,34 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches the titles of posted URLs in the background.
+ *
+ */
+public interface UrlTitleService {
+
+  /**
+   * @param url URL as posted
+   * @return future completing with the title of the page, or with null if
+   * the page has no title or could not be fetched. Never completes exceptionally.
+   */
+  CompletableFuture<String> fetchTitle(String url);
+
+  /**
+   * @return cache hits / (hits + misses), coalesced requests count as hits
+   */
+  double getCacheHitRate();
+
+  double getAverageFetchMillis();
+
+  long getMaxFetchMillis();
+
+  /**
+   * @return number of fetches waiting for or holding a fetch thread
+   */
+  int getQueueDepth();
+
+  String getStatistics();
+
+}
@@ -0,0 +1,370 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import com.arthurdo.parser.HtmlHead;
+import com.arthurdo.parser.HtmlHeadExtractor;
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
+import org.freakz.hokan_ng_springboot.bot.util.UrlCanonicalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded asynchronous title fetching.
+ * <p/>
+ * Fetches run on a small pool of their own, so a slow site never holds up
+ * the caller. Each host gets at most {@link #MAX_PER_HOST} fetches at a
+ * time and a new fetch at most every {@link #HOST_INTERVAL_MILLIS} ms;
+ * fetches over the limit wait in a queue of their host without holding a
+ * thread. The same URL asked for again while it is being fetched shares
+ * the fetch, and titles are cached by canonical URL, failures for a
+ * shorter time than titles.
+ * <p/>
+ * Only the head of a page is read, see {@link HtmlHeadExtractor}. The
+ * response stream is closed rather than the connection disconnected, so
+ * that the JDK keep-alive cache can reuse the connection.
+ *
+ */
+@Service
+@Slf4j
+public class UrlTitleServiceImpl implements UrlTitleService {
+
+  public static final int FETCH_THREADS = 8;
+  public static final int MAX_QUEUED = 256;
+  public static final int MAX_PER_HOST = 2;
+  public static final long HOST_INTERVAL_MILLIS = 250;
+  public static final long TITLE_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+  public static final long FAILURE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  public static final int MAX_CACHED = 10000;
+
+  private static final long HOST_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  @Autowired
+  private PropertyResolver propertyResolver;
+
+  private final HtmlHeadExtractor extractor = new HtmlHeadExtractor();
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(FETCH_THREADS, daemonThreads("UrlTitleFetch"));
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("UrlTitleScheduler"));
+
+  private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+  private final Map<String, CachedTitle> cache = new LinkedHashMap<String, CachedTitle>(1024, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedTitle> eldest) {
+      return size() > MAX_CACHED;
+    }
+  };
+
+  private volatile Proxy proxy = Proxy.NO_PROXY;
+  private volatile String userAgent = null;
+  private volatile PropertySnapshot config = null;
+
+  private final AtomicInteger queueDepth = new AtomicInteger();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong fetches = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong fetchNanos = new AtomicLong();
+  private final AtomicLong maxFetchNanos = new AtomicLong();
+
+  public UrlTitleServiceImpl() {
+    scheduler.scheduleWithFixedDelay(this::retireIdleHosts, HOST_IDLE_MILLIS, HOST_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public CompletableFuture<String> fetchTitle(String url) {
+    String canonical = UrlCanonicalizer.canonicalize(url);
+    CachedTitle cached;
+    synchronized (cache) {
+      cached = cache.get(canonical);
+    }
+    if (cached != null && cached.expires > System.currentTimeMillis()) {
+      hits.incrementAndGet();
+      return CompletableFuture.completedFuture(cached.title);
+    }
+
+    CompletableFuture<String> created = new CompletableFuture<>();
+    CompletableFuture<String> future = inFlight.putIfAbsent(canonical, created);
+    if (future != null) {
+      coalesced.incrementAndGet();
+      hits.incrementAndGet();
+      return future;
+    }
+    misses.incrementAndGet();
+    created.whenComplete((title, e) -> inFlight.remove(canonical, created));
+
+    String target = url.trim();
+    if (!target.contains("://")) {
+      target = "http://" + target;
+    }
+    String hostName;
+    try {
+      hostName = new URL(target).getHost().toLowerCase();
+    } catch (IOException e) {
+      complete(canonical, created, null, FAILURE_TTL_MILLIS);
+      return created;
+    }
+    if (queueDepth.incrementAndGet() > MAX_QUEUED) {
+      queueDepth.decrementAndGet();
+      rejected.incrementAndGet();
+      log.debug("Title fetch queue full, skipping: {}", url);
+      created.complete(null);
+      return created;
+    }
+    enqueue(hostName, new Fetch(target, canonical, created));
+    return created;
+  }
+
+  private void enqueue(String hostName, Fetch fetch) {
+    while (true) {
+      Host host = hosts.computeIfAbsent(hostName, Host::new);
+      synchronized (host) {
+        if (host.retired) {
+          continue;
+        }
+        host.waiting.add(fetch);
+      }
+      dispatch(host);
+      return;
+    }
+  }
+
+  /**
+   * Starts as many waiting fetches of the host as its limits allow, and
+   * schedules another look when the rate limit is what holds them back.
+   */
+  private void dispatch(Host host) {
+    synchronized (host) {
+      while (host.running < MAX_PER_HOST && !host.waiting.isEmpty()) {
+        long now = System.nanoTime();
+        if (now < host.nextStart) {
+          if (!host.scheduled) {
+            host.scheduled = true;
+            scheduler.schedule(() -> {
+              synchronized (host) {
+                host.scheduled = false;
+              }
+              dispatch(host);
+            }, host.nextStart - now, TimeUnit.NANOSECONDS);
+          }
+          return;
+        }
+        Fetch fetch = host.waiting.poll();
+        host.running++;
+        host.nextStart = now + TimeUnit.MILLISECONDS.toNanos(HOST_INTERVAL_MILLIS);
+        host.lastUsed = System.currentTimeMillis();
+        try {
+          executor.execute(() -> {
+            try {
+              run(fetch);
+            } finally {
+              synchronized (host) {
+                host.running--;
+              }
+              queueDepth.decrementAndGet();
+              dispatch(host);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          host.running--;
+          queueDepth.decrementAndGet();
+          fetch.future.complete(null);
+        }
+      }
+    }
+  }
+
+  private void run(Fetch fetch) {
+    long start = System.nanoTime();
+    String title = null;
+    boolean failed = false;
+    try {
+      title = fetch(fetch.url);
+    } catch (Exception e) {
+      failed = true;
+      failures.incrementAndGet();
+      log.debug("Title fetch failed: {}: {}", fetch.url, e.toString());
+    } finally {
+      long nanos = System.nanoTime() - start;
+      fetches.incrementAndGet();
+      fetchNanos.addAndGet(nanos);
+      long max;
+      do {
+        max = maxFetchNanos.get();
+      } while (nanos > max && !maxFetchNanos.compareAndSet(max, nanos));
+    }
+    complete(fetch.canonical, fetch.future, title, failed || title == null ? FAILURE_TTL_MILLIS : TITLE_TTL_MILLIS);
+  }
+
+  private String fetch(String url) throws IOException {
+    refreshConfig();
+    URL u = new URL(url);
+    if (!u.getProtocol().equals("http") && !u.getProtocol().equals("https")) {
+      return null;
+    }
+    HttpURLConnection conn = (HttpURLConnection) u.openConnection(proxy);
+    conn.setConnectTimeout(extractor.getTimeout());
+    conn.setReadTimeout(extractor.getTimeout());
+    conn.setRequestProperty("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.5");
+    if (userAgent != null) {
+      conn.setRequestProperty("User-Agent", userAgent);
+    }
+    int code = conn.getResponseCode();
+    if (code >= 400) {
+      InputStream err = conn.getErrorStream();
+      if (err != null) {
+        err.close();
+      }
+      throw new IOException("HTTP " + code);
+    }
+    String contentType = conn.getContentType();
+    if (contentType != null && !contentType.contains("html")) {
+      conn.getInputStream().close();
+      return null;
+    }
+    try (InputStream in = conn.getInputStream()) {
+      HtmlHead head = extractor.extract(in, contentType);
+      return head.getBestTitle();
+    }
+  }
+
+  private void complete(String canonical, CompletableFuture<String> future, String title, long ttl) {
+    synchronized (cache) {
+      cache.put(canonical, new CachedTitle(title, System.currentTimeMillis() + ttl));
+    }
+    future.complete(title);
+  }
+
+  private void refreshConfig() {
+    PropertySnapshot system = propertyResolver.getSystemSnapshot();
+    if (system == config) {
+      return;
+    }
+    config = system;
+    Proxy newProxy = Proxy.NO_PROXY;
+    String host = system.getString(PropertyName.PROP_SYS_HTTP_PROXY_HOST, null);
+    String port = system.getString(PropertyName.PROP_SYS_HTTP_PROXY_PORT, null);
+    if (host != null && !host.isEmpty()) {
+      try {
+        int p = port == null || port.isEmpty() ? 8080 : Integer.parseInt(port.trim());
+        newProxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(host.trim(), p));
+      } catch (NumberFormatException e) {
+        log.warn("Invalid {}: {}", PropertyName.PROP_SYS_HTTP_PROXY_PORT, port);
+      }
+    }
+    proxy = newProxy;
+    userAgent = system.getString(PropertyName.PROP_SYS_HTTP_USER_AGENT, null);
+  }
+
+  private void retireIdleHosts() {
+    long idleSince = System.currentTimeMillis() - HOST_IDLE_MILLIS;
+    for (Iterator<Host> it = hosts.values().iterator(); it.hasNext(); ) {
+      Host host = it.next();
+      synchronized (host) {
+        if (host.running == 0 && host.waiting.isEmpty() && !host.scheduled && host.lastUsed < idleSince) {
+          host.retired = true;
+          it.remove();
+        }
+      }
+    }
+  }
+
+  @Override
+  public double getCacheHitRate() {
+    long h = hits.get();
+    long total = h + misses.get();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  @Override
+  public double getAverageFetchMillis() {
+    long count = fetches.get();
+    return count == 0 ? 0 : fetchNanos.get() / 1e6 / count;
+  }
+
+  @Override
+  public long getMaxFetchMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxFetchNanos.get());
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.get();
+  }
+
+  @Override
+  public String getStatistics() {
+    return String.format("hit rate %.1f%% (%d coalesced), %d fetches (%d failed, %d rejected), avg %.0f ms, max %d ms, queue %d, hosts %d",
+        getCacheHitRate() * 100, coalesced.get(), fetches.get(), failures.get(), rejected.get(),
+        getAverageFetchMillis(), getMaxFetchMillis(), getQueueDepth(), hosts.size());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  private static ThreadFactory daemonThreads(String name) {
+    AtomicInteger count = new AtomicInteger();
+    return r -> {
+      Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static class Host {
+    final String name;
+    final ArrayDeque<Fetch> waiting = new ArrayDeque<>();
+    int running = 0;
+    long nextStart = 0;
+    long lastUsed = System.currentTimeMillis();
+    boolean scheduled = false;
+    boolean retired = false;
+
+    Host(String name) {
+      this.name = name;
+    }
+  }
+
+  private static class Fetch {
+    final String url;
+    final String canonical;
+    final CompletableFuture<String> future;
+
+    Fetch(String url, String canonical, CompletableFuture<String> future) {
+      this.url = url;
+      this.canonical = canonical;
+      this.future = future;
+    }
+  }
+
+  private static class CachedTitle {
+    final String title;
+    final long expires;
+
+    CachedTitle(String title, long expires) {
+      this.title = title;
+      this.expires = expires;
+    }
+  }
+
+}
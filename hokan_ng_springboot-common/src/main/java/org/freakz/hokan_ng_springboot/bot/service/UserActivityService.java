@@ -0,0 +1,40 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.UserChannel;
+
+import java.util.Date;
+
+/**
+ * Tracks the last message and last command of users per channel. Updates
+ * are kept in memory and written behind, so recording one is cheap enough
+ * to do for every line.
+ *
+ */
+public interface UserActivityService {
+
+  void messageSeen(User user, Channel channel, String message, Date time);
+
+  void commandSeen(User user, Channel channel, String command, Date time);
+
+  /**
+   * @return the activity of the user on the channel including updates not
+   * written yet, or null if there is none. The returned row is a copy
+   * holding the given user and channel, usable outside a session.
+   */
+  UserChannel getUserChannel(User user, Channel channel);
+
+  /**
+   * Writes all buffered updates now.
+   */
+  void flush();
+
+  /**
+   * @return number of (user, channel) pairs with updates not written yet
+   */
+  int getDirtyCount();
+
+  String getStatistics();
+
+}
@@ -0,0 +1,319 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.UserChannel;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserChannelService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind activity tracker. The latest message and command of every
+ * (user, channel) pair is kept in memory; a pair that changed is marked
+ * dirty, and dirty pairs are written every {@link #FLUSH_INTERVAL_MILLIS}
+ * ms, or as soon as {@link #FLUSH_THRESHOLD} pairs are dirty, in batches
+ * of at most {@link #MAX_BATCH} rows. However many lines a user writes in
+ * between, that is one UPDATE per user and channel per flush.
+ * <p/>
+ * Reads are answered from memory, with the database row read once per
+ * pair. Pairs that have been clean and unused for {@link #IDLE_MILLIS} ms
+ * are dropped from memory.
+ *
+ */
+@Service
+@Slf4j
+public class UserActivityServiceImpl implements UserActivityService {
+
+  public static final long FLUSH_INTERVAL_MILLIS = 10000;
+  public static final int FLUSH_THRESHOLD = 500;
+  public static final int MAX_BATCH = 500;
+  public static final long IDLE_MILLIS = 60 * 60 * 1000;
+
+  private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+  @Autowired
+  private UserChannelService userChannelService;
+
+  private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "UserActivityWriter");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Map<Key, Activity> activities = new ConcurrentHashMap<>();
+
+  private final AtomicInteger dirtyCount = new AtomicInteger();
+  private final AtomicBoolean flushRequested = new AtomicBoolean();
+  private final Object flushLock = new Object();
+
+  private final AtomicLong updates = new AtomicLong();
+  private final AtomicLong rowsWritten = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+
+  @PostConstruct
+  public void start() {
+    writer.scheduleWithFixedDelay(this::flushQuietly, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+    log.info("Activity writer stopped: {}", getStatistics());
+  }
+
+  @Override
+  public void messageSeen(User user, Channel channel, String message, Date time) {
+    record(user, channel, message, time, false);
+  }
+
+  @Override
+  public void commandSeen(User user, Channel channel, String command, Date time) {
+    record(user, channel, command, time, true);
+  }
+
+  private void record(User user, Channel channel, String text, Date time, boolean command) {
+    Key key = new Key(user, channel);
+    updates.incrementAndGet();
+    while (true) {
+      Activity activity = activities.computeIfAbsent(key, k -> new Activity(user, channel));
+      boolean becameDirty;
+      synchronized (activity) {
+        if (activity.removed) {
+          continue;
+        }
+        if (command) {
+          activity.lastCommand = text;
+          activity.lastCommandTime = time;
+        } else {
+          activity.lastMessage = text;
+          activity.lastMessageTime = time;
+        }
+        activity.lastUsed = System.currentTimeMillis();
+        becameDirty = !activity.dirty;
+        activity.dirty = true;
+      }
+      if (becameDirty && dirtyCount.incrementAndGet() >= FLUSH_THRESHOLD && flushRequested.compareAndSet(false, true)) {
+        try {
+          writer.execute(this::flushQuietly);
+        } catch (RejectedExecutionException e) {
+          flushRequested.set(false);
+        }
+      }
+      return;
+    }
+  }
+
+  @Override
+  public UserChannel getUserChannel(User user, Channel channel) {
+    Key key = new Key(user, channel);
+    Activity activity = activities.get(key);
+    if (activity == null || !activity.isLoaded()) {
+      UserChannel row = userChannelService.findUserChannel(user, channel);
+      if (activity == null) {
+        if (row == null) {
+          return null;
+        }
+        activity = activities.computeIfAbsent(key, k -> new Activity(user, channel));
+      }
+      activity.load(row);
+    }
+    synchronized (activity) {
+      activity.lastUsed = System.currentTimeMillis();
+      return activity.snapshot();
+    }
+  }
+
+  @Override
+  public void flush() {
+    synchronized (flushLock) {
+      flushRequested.set(false);
+      long now = System.currentTimeMillis();
+      List<Activity> batch = new ArrayList<>();
+      for (Iterator<Map.Entry<Key, Activity>> it = activities.entrySet().iterator(); it.hasNext(); ) {
+        Map.Entry<Key, Activity> entry = it.next();
+        Activity activity = entry.getValue();
+        synchronized (activity) {
+          if (!activity.dirty) {
+            if (now - activity.lastUsed > IDLE_MILLIS) {
+              activity.removed = true;
+              activities.remove(entry.getKey(), activity);
+            }
+            continue;
+          }
+        }
+        batch.add(activity);
+        if (batch.size() == MAX_BATCH) {
+          write(batch);
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        write(batch);
+      }
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Exception e) {
+      log.warn("Activity flush failed: {}", e.toString());
+    }
+  }
+
+  private void write(List<Activity> batch) {
+    List<UserChannel> rows = new ArrayList<>(batch.size());
+    try {
+      for (Activity activity : batch) {
+        if (!activity.isLoaded()) {
+          // once per pair, so that the update goes to the existing row
+          activity.load(userChannelService.findUserChannel(activity.user, activity.channel));
+        }
+      }
+      for (Activity activity : batch) {
+        synchronized (activity) {
+          rows.add(activity.snapshot());
+          activity.dirty = false;
+        }
+      }
+      dirtyCount.addAndGet(-batch.size());
+
+      List<UserChannel> saved = userChannelService.saveActivity(rows);
+      for (int i = 0; i < batch.size(); i++) {
+        Activity activity = batch.get(i);
+        synchronized (activity) {
+          activity.row = saved.get(i);
+        }
+      }
+      rowsWritten.addAndGet(saved.size());
+      flushes.incrementAndGet();
+      log.debug("Wrote activity of {} users", saved.size());
+    } catch (Exception e) {
+      log.warn("Could not write activity of {} users, retrying: {}", batch.size(), e.toString());
+      for (Activity activity : batch) {
+        synchronized (activity) {
+          if (!activity.dirty) {
+            activity.dirty = true;
+            dirtyCount.incrementAndGet();
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getDirtyCount() {
+    return Math.max(0, dirtyCount.get());
+  }
+
+  @Override
+  public String getStatistics() {
+    return String.format("%d users tracked, %d dirty, %d updates, %d rows written in %d flushes",
+        activities.size(), getDirtyCount(), updates.get(), rowsWritten.get(), flushes.get());
+  }
+
+  private static final class Key {
+
+    private final long userId;
+    private final long channelId;
+
+    Key(User user, Channel channel) {
+      this.userId = user.getUserId();
+      this.channelId = channel.getId();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return userId == other.userId && channelId == other.channelId;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (userId * 31 + channelId);
+    }
+
+  }
+
+  /**
+   * Latest activity of one user on one channel on top of the last row
+   * read from or written to the database. Guarded by itself. Snapshots
+   * take the user and channel given to the tracker, not those of the row.
+   */
+  private static final class Activity {
+
+    private final User user;
+    private final Channel channel;
+
+    private UserChannel row;
+    private boolean loaded;
+
+    private String lastMessage;
+    private Date lastMessageTime;
+    private String lastCommand;
+    private Date lastCommandTime;
+
+    private boolean dirty;
+    private boolean removed;
+    private long lastUsed = System.currentTimeMillis();
+
+    Activity(User user, Channel channel) {
+      this.user = user;
+      this.channel = channel;
+    }
+
+    synchronized boolean isLoaded() {
+      return loaded;
+    }
+
+    synchronized void load(UserChannel row) {
+      if (!loaded) {
+        this.row = row;
+        this.loaded = true;
+      }
+    }
+
+    UserChannel snapshot() {
+      if (row == null && lastMessageTime == null && lastCommandTime == null) {
+        return null;
+      }
+      UserChannel userChannel = row != null ? new UserChannel(row) : new UserChannel(user, channel);
+      // the row comes from a closed session, its user and channel are uninitialized proxies
+      userChannel.setUser(user);
+      userChannel.setChannel(channel);
+      if (lastMessageTime != null) {
+        userChannel.setLastMessage(lastMessage);
+        userChannel.setLastMessageTime(lastMessageTime);
+      }
+      if (lastCommandTime != null) {
+        userChannel.setLastCommand(lastCommand);
+        userChannel.setLastCommandTime(lastCommandTime);
+      }
+      return userChannel;
+    }
+
+  }
+
+}
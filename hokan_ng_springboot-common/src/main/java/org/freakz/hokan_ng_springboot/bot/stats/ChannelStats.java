@@ -0,0 +1,398 @@
+package org.freakz.hokan_ng_springboot.bot.stats;
+
+import org.freakz.hokan_ng_springboot.bot.util.CountMinSketch;
+import org.freakz.hokan_ng_springboot.bot.util.HeavyHitters;
+import org.freakz.hokan_ng_springboot.bot.util.HyperLogLog;
+import org.freakz.hokan_ng_springboot.bot.util.UrlCanonicalizer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming statistics of one channel. Apart from one entry per distinct
+ * speaker, every line updates fixed-size structures only, and every query
+ * reads them, so neither depends on how long the channel has been followed:
+ * <ul>
+ * <li>lines, words and characters per hour for the last {@link #HOURS} hours,
+ * in a ring of hourly buckets</li>
+ * <li>lines per weekday and hour of day since the start, as a heatmap</li>
+ * <li>lines, words and characters per speaker, with lines per hour of day</li>
+ * <li>the {@link #TOP_CAPACITY} speakers with the most lines</li>
+ * <li>the top words and URLs, counted with Count-Min sketches</li>
+ * <li>distinct speakers per day for the last {@link #DAYS} days, with HyperLogLog</li>
+ * </ul>
+ * Times are bucketed in the local time zone.
+ */
+public class ChannelStats {
+
+  public static final int HOURS = 24 * 31;
+  public static final int DAYS = 31;
+  public static final int TOP_CAPACITY = 50;
+  public static final int MIN_WORD_LENGTH = 3;
+  public static final int MAX_TOKEN_LENGTH = 512;
+
+  private static final int SKETCH_DEPTH = 4;
+  private static final int SKETCH_WIDTH = 4096;
+  private static final int HLL_PRECISION = 12;
+  private static final long HOUR_MILLIS = 60 * 60 * 1000;
+  private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+  private static final int VERSION = 1;
+
+  private final String name;
+
+  private final LongAdder lines = new LongAdder();
+  private final LongAdder words = new LongAdder();
+  private final LongAdder chars = new LongAdder();
+
+  private final AtomicLongArray hourTags = new AtomicLongArray(HOURS);
+  private final LongAdder[] hourLines = adders(HOURS);
+  private final LongAdder[] hourWords = adders(HOURS);
+  private final LongAdder[] hourChars = adders(HOURS);
+
+  private final LongAdder[] heatmap = adders(7 * 24);
+
+  private final AtomicLongArray dayTags = new AtomicLongArray(DAYS);
+  private final HyperLogLog[] daySpeakers = new HyperLogLog[DAYS];
+
+  private final Map<String, SpeakerStats> speakers = new ConcurrentHashMap<>();
+
+  // line counts only grow, so a speaker can only enter the top when its
+  // own count passes the smallest one there; guarded by topSpeakers
+  private final SpeakerStats[] topSpeakers = new SpeakerStats[TOP_CAPACITY];
+  private final long[] topSpeakerLines = new long[TOP_CAPACITY];
+  private int topSpeakerCount;
+
+  private final HeavyHitters topWords;
+  private final HeavyHitters topUrls;
+
+  public ChannelStats(String name) {
+    this(name, new HeavyHitters(TOP_CAPACITY, new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH)),
+        new HeavyHitters(TOP_CAPACITY, new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH)));
+  }
+
+  private ChannelStats(String name, HeavyHitters topWords, HeavyHitters topUrls) {
+    this.name = name;
+    this.topWords = topWords;
+    this.topUrls = topUrls;
+    for (int i = 0; i < HOURS; i++) {
+      hourTags.set(i, -1);
+    }
+    for (int i = 0; i < DAYS; i++) {
+      dayTags.set(i, -1);
+      daySpeakers[i] = new HyperLogLog(HLL_PRECISION);
+    }
+  }
+
+  private static LongAdder[] adders(int count) {
+    LongAdder[] adders = new LongAdder[count];
+    for (int i = 0; i < count; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  private static long localTime(long time) {
+    return time + TimeZone.getDefault().getOffset(time);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void addLine(String nick, String message, long time) {
+    long local = localTime(time);
+    long hour = Math.floorDiv(local, HOUR_MILLIS);
+    long day = Math.floorDiv(local, DAY_MILLIS);
+    int hourOfDay = (int) Math.floorMod(hour, 24L);
+    int weekday = (int) Math.floorMod(day + 3, 7L); // 1.1.1970 was a Thursday, Monday is 0
+
+    int wordCount = 0;
+    for (String token : message.split("\\s+")) {
+      if (token.isEmpty() || token.length() > MAX_TOKEN_LENGTH) {
+        continue;
+      }
+      if (isUrl(token)) {
+        topUrls.add(UrlCanonicalizer.canonicalize(token));
+        wordCount++;
+        continue;
+      }
+      wordCount += addWords(token);
+    }
+    int charCount = message.length();
+
+    lines.increment();
+    words.add(wordCount);
+    chars.add(charCount);
+
+    int slot = hourSlot(hour);
+    hourLines[slot].increment();
+    hourWords[slot].add(wordCount);
+    hourChars[slot].add(charCount);
+
+    heatmap[weekday * 24 + hourOfDay].increment();
+
+    String key = nick.toLowerCase();
+    daySpeakers[daySlot(day)].add(UrlCanonicalizer.hash64(key));
+    SpeakerStats speaker = speakers.computeIfAbsent(key, k -> new SpeakerStats(nick));
+    speaker.add(wordCount, charCount, hourOfDay, time);
+    offerTopSpeaker(speaker);
+  }
+
+  private void offerTopSpeaker(SpeakerStats speaker) {
+    long speakerLines = speaker.getLines();
+    synchronized (topSpeakers) {
+      int min = -1;
+      for (int i = 0; i < topSpeakerCount; i++) {
+        if (topSpeakers[i] == speaker) {
+          topSpeakerLines[i] = speakerLines;
+          return;
+        }
+        if (min == -1 || topSpeakerLines[i] < topSpeakerLines[min]) {
+          min = i;
+        }
+      }
+      if (topSpeakerCount < TOP_CAPACITY) {
+        min = topSpeakerCount++;
+      } else if (speakerLines <= topSpeakerLines[min]) {
+        return;
+      }
+      topSpeakers[min] = speaker;
+      topSpeakerLines[min] = speakerLines;
+    }
+  }
+
+  private static boolean isUrl(String token) {
+    return token.startsWith("http://") || token.startsWith("https://") || token.startsWith("www.");
+  }
+
+  private int addWords(String token) {
+    int count = 0;
+    int start = -1;
+    for (int i = 0; i <= token.length(); i++) {
+      boolean wordChar = i < token.length() && Character.isLetterOrDigit(token.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        count++;
+        if (i - start >= MIN_WORD_LENGTH) {
+          topWords.add(token.substring(start, i).toLowerCase());
+        }
+        start = -1;
+      }
+    }
+    return count;
+  }
+
+  private int hourSlot(long hour) {
+    int slot = (int) Math.floorMod(hour, (long) HOURS);
+    if (hourTags.get(slot) != hour) {
+      synchronized (hourTags) {
+        if (hourTags.get(slot) != hour) {
+          hourLines[slot].reset();
+          hourWords[slot].reset();
+          hourChars[slot].reset();
+          hourTags.set(slot, hour);
+        }
+      }
+    }
+    return slot;
+  }
+
+  private int daySlot(long day) {
+    int slot = (int) Math.floorMod(day, (long) DAYS);
+    if (dayTags.get(slot) != day) {
+      synchronized (dayTags) {
+        if (dayTags.get(slot) != day) {
+          daySpeakers[slot].clear();
+          dayTags.set(slot, day);
+        }
+      }
+    }
+    return slot;
+  }
+
+  public long getLines() {
+    return lines.sum();
+  }
+
+  public long getWords() {
+    return words.sum();
+  }
+
+  public long getChars() {
+    return chars.sum();
+  }
+
+  /**
+   * @param hours number of hours, at most {@link #HOURS}
+   * @return lines per hour, oldest first, ending with the current hour
+   */
+  public long[] getHourlyLines(int hours) {
+    return hourly(hourLines, hours);
+  }
+
+  public long[] getHourlyWords(int hours) {
+    return hourly(hourWords, hours);
+  }
+
+  public long[] getHourlyChars(int hours) {
+    return hourly(hourChars, hours);
+  }
+
+  private long[] hourly(LongAdder[] buckets, int hours) {
+    int count = Math.max(0, Math.min(HOURS, hours));
+    long now = Math.floorDiv(localTime(System.currentTimeMillis()), HOUR_MILLIS);
+    long[] result = new long[count];
+    for (int i = 0; i < count; i++) {
+      long hour = now - count + 1 + i;
+      int slot = (int) Math.floorMod(hour, (long) HOURS);
+      result[i] = hourTags.get(slot) == hour ? buckets[slot].sum() : 0;
+    }
+    return result;
+  }
+
+  /**
+   * @return lines per [weekday][hour of day], Monday first
+   */
+  public long[][] getHeatmap() {
+    long[][] result = new long[7][24];
+    for (int i = 0; i < heatmap.length; i++) {
+      result[i / 24][i % 24] = heatmap[i].sum();
+    }
+    return result;
+  }
+
+  /**
+   * @param daysAgo 0 for today, at most {@link #DAYS} - 1
+   * @return estimated number of distinct speakers on that day
+   */
+  public long getDistinctSpeakers(int daysAgo) {
+    if (daysAgo < 0 || daysAgo >= DAYS) {
+      return 0;
+    }
+    long day = Math.floorDiv(localTime(System.currentTimeMillis()), DAY_MILLIS) - daysAgo;
+    int slot = (int) Math.floorMod(day, (long) DAYS);
+    return dayTags.get(slot) == day ? daySpeakers[slot].cardinality() : 0;
+  }
+
+  public List<Map.Entry<String, Long>> getTopWords(int n) {
+    return topWords.getTop(n);
+  }
+
+  public List<Map.Entry<String, Long>> getTopUrls(int n) {
+    return topUrls.getTop(n);
+  }
+
+  public long getWordCount(String word) {
+    return topWords.estimate(word.toLowerCase());
+  }
+
+  public SpeakerStats getSpeaker(String nick) {
+    return speakers.get(nick.toLowerCase());
+  }
+
+  /**
+   * @return at most n, and at most {@link #TOP_CAPACITY}, speakers with the
+   * most lines, most first
+   */
+  public List<SpeakerStats> getTopSpeakers(int n) {
+    List<SpeakerStats> list;
+    synchronized (topSpeakers) {
+      list = new ArrayList<>(Arrays.asList(topSpeakers).subList(0, topSpeakerCount));
+    }
+    list.sort((a, b) -> Long.compare(b.getLines(), a.getLines()));
+    return list.size() > n ? new ArrayList<>(list.subList(0, Math.max(0, n))) : list;
+  }
+
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(VERSION);
+    out.writeUTF(name);
+    out.writeLong(lines.sum());
+    out.writeLong(words.sum());
+    out.writeLong(chars.sum());
+    for (int i = 0; i < HOURS; i++) {
+      out.writeLong(hourTags.get(i));
+      out.writeLong(hourLines[i].sum());
+      out.writeLong(hourWords[i].sum());
+      out.writeLong(hourChars[i].sum());
+    }
+    for (LongAdder cell : heatmap) {
+      out.writeLong(cell.sum());
+    }
+    for (int i = 0; i < DAYS; i++) {
+      out.writeLong(dayTags.get(i));
+      daySpeakers[i].writeTo(out);
+    }
+    List<SpeakerStats> list = new ArrayList<>(speakers.values());
+    out.writeInt(list.size());
+    for (SpeakerStats speaker : list) {
+      speaker.writeTo(out);
+    }
+    topWords.writeTo(out);
+    topUrls.writeTo(out);
+  }
+
+  public static ChannelStats readFrom(DataInput in) throws IOException {
+    int version = in.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unknown channel stats version: " + version);
+    }
+    String name = in.readUTF();
+    long lines = in.readLong();
+    long words = in.readLong();
+    long chars = in.readLong();
+    long[] hourTags = new long[HOURS];
+    long[][] hourly = new long[HOURS][3];
+    for (int i = 0; i < HOURS; i++) {
+      hourTags[i] = in.readLong();
+      hourly[i][0] = in.readLong();
+      hourly[i][1] = in.readLong();
+      hourly[i][2] = in.readLong();
+    }
+    long[] heatmap = new long[7 * 24];
+    for (int i = 0; i < heatmap.length; i++) {
+      heatmap[i] = in.readLong();
+    }
+    long[] dayTags = new long[DAYS];
+    HyperLogLog[] daySpeakers = new HyperLogLog[DAYS];
+    for (int i = 0; i < DAYS; i++) {
+      dayTags[i] = in.readLong();
+      daySpeakers[i] = HyperLogLog.readFrom(in);
+    }
+    int speakerCount = in.readInt();
+    List<SpeakerStats> speakers = new ArrayList<>(speakerCount);
+    for (int i = 0; i < speakerCount; i++) {
+      speakers.add(SpeakerStats.readFrom(in));
+    }
+
+    ChannelStats stats = new ChannelStats(name, HeavyHitters.readFrom(in), HeavyHitters.readFrom(in));
+    stats.lines.add(lines);
+    stats.words.add(words);
+    stats.chars.add(chars);
+    for (int i = 0; i < HOURS; i++) {
+      stats.hourTags.set(i, hourTags[i]);
+      stats.hourLines[i].add(hourly[i][0]);
+      stats.hourWords[i].add(hourly[i][1]);
+      stats.hourChars[i].add(hourly[i][2]);
+    }
+    for (int i = 0; i < heatmap.length; i++) {
+      stats.heatmap[i].add(heatmap[i]);
+    }
+    for (int i = 0; i < DAYS; i++) {
+      stats.dayTags.set(i, dayTags[i]);
+      stats.daySpeakers[i] = daySpeakers[i];
+    }
+    for (SpeakerStats speaker : speakers) {
+      stats.speakers.put(speaker.getNick().toLowerCase(), speaker);
+      stats.offerTopSpeaker(speaker);
+    }
+    return stats;
+  }
+
+}
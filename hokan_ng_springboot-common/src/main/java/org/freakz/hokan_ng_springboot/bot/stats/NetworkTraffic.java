@@ -0,0 +1,159 @@
+package org.freakz.hokan_ng_springboot.bot.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traffic counters of one network on this node since startup. Updating
+ * them is lock free; the amounts not yet written to the database are the
+ * difference to what has been flushed, so no count is lost to a reset.
+ */
+public class NetworkTraffic {
+
+  public static final int CONNECTS = 0;
+  public static final int CHANNELS_JOINED = 1;
+  public static final int LINES_SENT = 2;
+  public static final int LINES_RECEIVED = 3;
+  public static final int BYTES_SENT = 4;
+  public static final int BYTES_RECEIVED = 5;
+  public static final int COMMANDS = 6;
+  public static final int ERRORS = 7;
+
+  private static final int COUNTERS = 8;
+
+  private final long networkId;
+  private final String networkName;
+
+  private final LongAdder[] counters = new LongAdder[COUNTERS];
+
+  /**
+   * Amounts written to the database, only touched by the flusher.
+   */
+  private final long[] flushed = new long[COUNTERS];
+
+  public NetworkTraffic(long networkId, String networkName) {
+    this.networkId = networkId;
+    this.networkName = networkName;
+    for (int i = 0; i < COUNTERS; i++) {
+      counters[i] = new LongAdder();
+    }
+  }
+
+  public long getNetworkId() {
+    return networkId;
+  }
+
+  public String getNetworkName() {
+    return networkName;
+  }
+
+  public void connected() {
+    counters[CONNECTS].increment();
+  }
+
+  public void channelJoined() {
+    counters[CHANNELS_JOINED].increment();
+  }
+
+  /**
+   * @param line raw line without the line terminator
+   */
+  public void lineSent(String line) {
+    counters[LINES_SENT].increment();
+    counters[BYTES_SENT].add(utf8Length(line) + 2);
+  }
+
+  /**
+   * @param line raw line without the line terminator
+   */
+  public void lineReceived(String line) {
+    counters[LINES_RECEIVED].increment();
+    counters[BYTES_RECEIVED].add(utf8Length(line) + 2);
+  }
+
+  public void commandSeen() {
+    counters[COMMANDS].increment();
+  }
+
+  public void errorSeen() {
+    counters[ERRORS].increment();
+  }
+
+  public long getConnects() {
+    return counters[CONNECTS].sum();
+  }
+
+  public long getChannelsJoined() {
+    return counters[CHANNELS_JOINED].sum();
+  }
+
+  public long getLinesSent() {
+    return counters[LINES_SENT].sum();
+  }
+
+  public long getLinesReceived() {
+    return counters[LINES_RECEIVED].sum();
+  }
+
+  public long getBytesSent() {
+    return counters[BYTES_SENT].sum();
+  }
+
+  public long getBytesReceived() {
+    return counters[BYTES_RECEIVED].sum();
+  }
+
+  public long getCommands() {
+    return counters[COMMANDS].sum();
+  }
+
+  public long getErrors() {
+    return counters[ERRORS].sum();
+  }
+
+  /**
+   * @return amounts counted since the last {@link #flushed(long[])}, indexed
+   * by the counter constants, or null if there are none
+   */
+  public long[] unflushed() {
+    long[] delta = new long[COUNTERS];
+    boolean any = false;
+    for (int i = 0; i < COUNTERS; i++) {
+      delta[i] = counters[i].sum() - flushed[i];
+      any |= delta[i] != 0;
+    }
+    return any ? delta : null;
+  }
+
+  /**
+   * Records that the amounts returned by {@link #unflushed()} are written.
+   */
+  public void flushed(long[] delta) {
+    for (int i = 0; i < COUNTERS; i++) {
+      flushed[i] += delta[i];
+    }
+  }
+
+  private static int utf8Length(String line) {
+    int length = 0;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c)) {
+        length += 4;
+        i++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  public String toString() {
+    return String.format("%s: %d lines / %d bytes sent, %d lines / %d bytes received, %d commands, %d errors",
+        networkName, getLinesSent(), getBytesSent(), getLinesReceived(), getBytesReceived(), getCommands(), getErrors());
+  }
+
+}
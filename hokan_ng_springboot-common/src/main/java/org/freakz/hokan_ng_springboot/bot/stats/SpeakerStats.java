@@ -0,0 +1,97 @@
+package org.freakz.hokan_ng_springboot.bot.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one speaker on one channel.
+ */
+public class SpeakerStats {
+
+  private final String nick;
+
+  private final LongAdder lines = new LongAdder();
+  private final LongAdder words = new LongAdder();
+  private final LongAdder chars = new LongAdder();
+  private final LongAdder[] hourOfDayLines = new LongAdder[24];
+
+  private volatile long lastSeen;
+
+  SpeakerStats(String nick) {
+    this.nick = nick;
+    for (int i = 0; i < hourOfDayLines.length; i++) {
+      hourOfDayLines[i] = new LongAdder();
+    }
+  }
+
+  void add(int wordCount, int charCount, int hourOfDay, long time) {
+    lines.increment();
+    words.add(wordCount);
+    chars.add(charCount);
+    hourOfDayLines[hourOfDay].increment();
+    if (time > lastSeen) {
+      lastSeen = time;
+    }
+  }
+
+  public String getNick() {
+    return nick;
+  }
+
+  public long getLines() {
+    return lines.sum();
+  }
+
+  public long getWords() {
+    return words.sum();
+  }
+
+  public long getChars() {
+    return chars.sum();
+  }
+
+  /**
+   * @return lines per hour of day, local time
+   */
+  public long[] getHourOfDayLines() {
+    long[] result = new long[hourOfDayLines.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = hourOfDayLines[i].sum();
+    }
+    return result;
+  }
+
+  public long getLastSeen() {
+    return lastSeen;
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeUTF(nick);
+    out.writeLong(lines.sum());
+    out.writeLong(words.sum());
+    out.writeLong(chars.sum());
+    for (LongAdder hour : hourOfDayLines) {
+      out.writeLong(hour.sum());
+    }
+    out.writeLong(lastSeen);
+  }
+
+  static SpeakerStats readFrom(DataInput in) throws IOException {
+    SpeakerStats speaker = new SpeakerStats(in.readUTF());
+    speaker.lines.add(in.readLong());
+    speaker.words.add(in.readLong());
+    speaker.chars.add(in.readLong());
+    for (LongAdder hour : speaker.hourOfDayLines) {
+      hour.add(in.readLong());
+    }
+    speaker.lastSeen = in.readLong();
+    return speaker;
+  }
+
+  public String toString() {
+    return String.format("%s: %d lines, %d words, %d chars", nick, getLines(), getWords(), getChars());
+  }
+
+}
@@ -0,0 +1,56 @@
+package org.freakz.hokan_ng_springboot.bot.util;
+
+/**
+ * Base62 encoding of non-negative longs, digits first, then upper and
+ * lower case letters.
+ *
+ */
+public class Base62 {
+
+  private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+  private Base62() {
+  }
+
+  public static String encode(long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value: " + value);
+    }
+    char[] buf = new char[11];
+    int pos = buf.length;
+    do {
+      buf[--pos] = DIGITS[(int) (value % 62)];
+      value /= 62;
+    } while (value > 0);
+    return new String(buf, pos, buf.length - pos);
+  }
+
+  /**
+   * @return the decoded value, or -1 if the string is not valid base62
+   */
+  public static long decode(String s) {
+    if (s == null || s.isEmpty() || s.length() > 11) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      int digit;
+      if (c >= '0' && c <= '9') {
+        digit = c - '0';
+      } else if (c >= 'A' && c <= 'Z') {
+        digit = c - 'A' + 10;
+      } else if (c >= 'a' && c <= 'z') {
+        digit = c - 'a' + 36;
+      } else {
+        return -1;
+      }
+      if (value > (Long.MAX_VALUE - digit) / 62) {
+        return -1;
+      }
+      value = value * 62 + digit;
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,72 @@
+package org.freakz.hokan_ng_springboot.bot.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over 64-bit hashes. A negative answer from
+ * {@link #mightContain(long)} is always right, a positive one is wrong
+ * with about the false positive probability given at construction, as long
+ * as no more than the expected number of hashes have been added.
+ * <p/>
+ * The bit positions are derived from the two halves of the hash, so the
+ * hashes must already be well mixed. Safe for concurrent use.
+ */
+public class BloomFilter {
+
+  private final AtomicLongArray bits;
+  private final long bitCount;
+  private final int hashCount;
+
+  /**
+   * @param expectedInsertions number of hashes the filter is sized for
+   * @param fpp                false positive probability at that size
+   */
+  public BloomFilter(long expectedInsertions, double fpp) {
+    long n = Math.max(1, expectedInsertions);
+    long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.min(1 << 25, (m + 63) >>> 6);
+    this.bits = new AtomicLongArray(Math.max(1, words));
+    this.bitCount = (long) bits.length() << 6;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+  }
+
+  public void put(long hash) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      int combined = h1 + i * h2;
+      long bit = (combined < 0 ? ~combined : combined) % bitCount;
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long old;
+      do {
+        old = bits.get(word);
+        if ((old & mask) != 0) {
+          break;
+        }
+      } while (!bits.compareAndSet(word, old, old | mask));
+    }
+  }
+
+  public boolean mightContain(long hash) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      int combined = h1 + i * h2;
+      long bit = (combined < 0 ? ~combined : combined) % bitCount;
+      if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long getBitCount() {
+    return bitCount;
+  }
+
+  public int getHashCount() {
+    return hashCount;
+  }
+
+}
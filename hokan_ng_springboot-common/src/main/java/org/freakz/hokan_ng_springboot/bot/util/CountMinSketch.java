@@ -0,0 +1,82 @@
+package org.freakz.hokan_ng_springboot.bot.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min sketch over 64-bit hashes. An estimate is never below the
+ * true count, and exceeds it by more than e / width * total with at most
+ * e^-depth probability. The memory used does not grow with the number of
+ * distinct items.
+ * <p/>
+ * The counter positions are derived from the two halves of the hash, as
+ * in {@link BloomFilter}, so the hashes must already be well mixed. Safe
+ * for concurrent use.
+ */
+public class CountMinSketch {
+
+  private final int depth;
+  private final int width;
+  private final AtomicLongArray counts;
+
+  public CountMinSketch(int depth, int width) {
+    this.depth = Math.max(1, depth);
+    this.width = Math.max(1, width);
+    this.counts = new AtomicLongArray(this.depth * this.width);
+  }
+
+  /**
+   * @return the estimated count of the hash after adding
+   */
+  public long add(long hash, long count) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counts.addAndGet(index(row, h1, h2), count));
+    }
+    return estimate;
+  }
+
+  public long estimate(long hash) {
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counts.get(index(row, h1, h2)));
+    }
+    return estimate;
+  }
+
+  private int index(int row, int h1, int h2) {
+    int combined = h1 + (row + 1) * h2;
+    return row * width + (combined < 0 ? ~combined : combined) % width;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(depth);
+    out.writeInt(width);
+    for (int i = 0; i < counts.length(); i++) {
+      out.writeLong(counts.get(i));
+    }
+  }
+
+  public static CountMinSketch readFrom(DataInput in) throws IOException {
+    CountMinSketch sketch = new CountMinSketch(in.readInt(), in.readInt());
+    for (int i = 0; i < sketch.counts.length(); i++) {
+      sketch.counts.set(i, in.readLong());
+    }
+    return sketch;
+  }
+
+}
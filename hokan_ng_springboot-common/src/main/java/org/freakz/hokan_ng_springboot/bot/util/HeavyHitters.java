@@ -0,0 +1,101 @@
+package org.freakz.hokan_ng_springboot.bot.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most frequent items of a stream. Counts come from a
+ * {@link CountMinSketch}; the items with the highest estimates are kept in
+ * a list of fixed capacity, and an item enters it once its estimate goes
+ * over the lowest one in the list. Memory and query time depend on the
+ * capacity only.
+ */
+public class HeavyHitters {
+
+  private final int capacity;
+  private final CountMinSketch sketch;
+
+  // guarded by this
+  private final Map<String, Long> top = new HashMap<>();
+  private String minItem;
+  private long minCount;
+
+  public HeavyHitters(int capacity, CountMinSketch sketch) {
+    this.capacity = Math.max(1, capacity);
+    this.sketch = sketch;
+  }
+
+  public void add(String item) {
+    long estimate = sketch.add(UrlCanonicalizer.hash64(item), 1);
+    synchronized (this) {
+      if (top.containsKey(item)) {
+        top.put(item, estimate);
+        if (item.equals(minItem)) {
+          updateMin();
+        }
+      } else if (top.size() < capacity) {
+        top.put(item, estimate);
+        updateMin();
+      } else if (estimate > minCount) {
+        top.remove(minItem);
+        top.put(item, estimate);
+        updateMin();
+      }
+    }
+  }
+
+  private void updateMin() {
+    minItem = null;
+    minCount = Long.MAX_VALUE;
+    for (Map.Entry<String, Long> entry : top.entrySet()) {
+      if (entry.getValue() < minCount) {
+        minItem = entry.getKey();
+        minCount = entry.getValue();
+      }
+    }
+  }
+
+  public long estimate(String item) {
+    return sketch.estimate(UrlCanonicalizer.hash64(item));
+  }
+
+  /**
+   * @return at most n items with their estimated counts, most frequent first
+   */
+  public synchronized List<Map.Entry<String, Long>> getTop(int n) {
+    List<Map.Entry<String, Long>> list = new ArrayList<>(top.size());
+    for (Map.Entry<String, Long> entry : top.entrySet()) {
+      list.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+    }
+    list.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+    return list.size() > n ? new ArrayList<>(list.subList(0, Math.max(0, n))) : list;
+  }
+
+  public synchronized void writeTo(DataOutput out) throws IOException {
+    out.writeInt(capacity);
+    sketch.writeTo(out);
+    out.writeInt(top.size());
+    for (Map.Entry<String, Long> entry : top.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue());
+    }
+  }
+
+  public static HeavyHitters readFrom(DataInput in) throws IOException {
+    int capacity = in.readInt();
+    HeavyHitters heavyHitters = new HeavyHitters(capacity, CountMinSketch.readFrom(in));
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      heavyHitters.top.put(in.readUTF(), in.readLong());
+    }
+    heavyHitters.updateMin();
+    return heavyHitters;
+  }
+
+}
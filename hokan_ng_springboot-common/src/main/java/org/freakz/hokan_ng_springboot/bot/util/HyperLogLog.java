@@ -0,0 +1,65 @@
+package org.freakz.hokan_ng_springboot.bot.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct counter over 64-bit hashes, with the linear
+ * counting correction for small cardinalities. With 2^p registers the
+ * standard error is about 1.04 / sqrt(2^p); p = 12 gives 1.6 % in 4 kB.
+ * The hashes must already be well mixed.
+ */
+public class HyperLogLog {
+
+  private final int p;
+  private final byte[] registers;
+
+  public HyperLogLog(int p) {
+    this.p = Math.max(4, Math.min(16, p));
+    this.registers = new byte[1 << this.p];
+  }
+
+  public synchronized void add(long hash) {
+    int index = (int) (hash >>> (64 - p));
+    int rank = Long.numberOfLeadingZeros((hash << p) | (1L << (p - 1))) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+    }
+  }
+
+  public synchronized long cardinality() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double alpha = 0.7213 / (1 + 1.079 / m);
+    double estimate = alpha * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  public synchronized void clear() {
+    Arrays.fill(registers, (byte) 0);
+  }
+
+  public synchronized void writeTo(DataOutput out) throws IOException {
+    out.writeByte(p);
+    out.write(registers);
+  }
+
+  public static HyperLogLog readFrom(DataInput in) throws IOException {
+    HyperLogLog hll = new HyperLogLog(in.readByte());
+    in.readFully(hll.registers);
+    return hll;
+  }
+
+}
@@ -2,6 +2,7 @@ package org.freakz.hokan_ng_springboot.bot.util;
 
 //import com.arthurdo.parser.HtmlStreamTokenizer;
 
+import com.arthurdo.parser.HtmlEntities;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetAddress;
@@ -392,67 +393,76 @@ public class StringStuff {
     return sb.toString();
   }*/
 
-  private final static String[] entityTable = {
-      "&Auml;", "Ä",
-      "&auml;", "ä",
-
-      "&Ouml;", "Ö",
-      "&ouml;", "ö",
-
-      "&Aring;", "Å",
-      "&aring;", "å",
-
-      "&nbsp;", " ",
-      "&mdash;", "-",
-      "&quot;", "\"",
-      "&raquo;", ">>",
-      "&bull;", "o",
-      "&amp;", "&",
-      "&#x22;", " ",
-      "&ndash;", "-",
-      "&#x202a;", "",
-      "&#x202c;", "",
-      "&rlm;", ""
-  };
-
+  /**
+   * Decodes all HTML character references and turns the result into plain
+   * IRC text: non-breaking spaces become spaces, bidi control marks are
+   * dropped and the dashes, bullet and right guillemet are folded to the
+   * ASCII the bot has always printed for them (em/en dash to "-", bullet
+   * to "o", &raquo; to "&gt;&gt;"). The fold applies to those characters
+   * wherever they come from, not only to entities.
+   * <p/>
+   * Other references decode to their characters; before HtmlEntities
+   * decimal references were dropped and &amp;#x22; became a space.
+   *
+   * @param entityString the String to decode
+   * @return decoded String
+   */
   public static String htmlEntitiesToText(String entityString) {
-
-    for (int i = 0; i < entityTable.length; i += 2) {
-      entityString = entityString.replaceAll(entityTable[i], entityTable[i + 1]);
+    String decoded = HtmlEntities.decode(entityString);
+    StringBuilder sb = null;
+    for (int i = 0; i < decoded.length(); i++) {
+      char ch = decoded.charAt(i);
+      String folded = foldForIrc(ch);
+      if (folded == null) {
+        if (sb != null) {
+          sb.append(ch);
+        }
+        continue;
+      }
+      if (sb == null) {
+        sb = new StringBuilder(decoded.length());
+        sb.append(decoded, 0, i);
+      }
+      sb.append(folded);
     }
-    entityString = entityString.replaceAll("&#\\d*;", "");
-    return entityString;
+    return sb == null ? decoded : sb.toString();
   }
 
-  public static String htmlEntityDecode(String s) {
-
-    int i = 0, j = 0, pos = 0;
-    StringBuilder sb = new StringBuilder();
-    while ((i = s.indexOf("&#", pos)) != -1 && (j = s.indexOf(';', i)) != -1) {
-      int n = -1;
-      for (i += 2; i < j; ++i) {
-        char c = s.charAt(i);
-        if ('0' <= c && c <= '9')
-          n = (n == -1 ? 0 : n * 10) + c - '0';
-        else
-          break;
-      }
-      if (i != j) n = -1;      // malformed entity - abort
-      if (n != -1) {
-        sb.append((char) n);
-        i = j + 1;      // skip ';'
-      } else {
-        for (int k = pos; k < i; ++k)
-          sb.append(s.charAt(k));
-      }
-      pos = i;
+  /**
+   * @return the IRC replacement of the char, or null to keep it as it is
+   */
+  private static String foldForIrc(char ch) {
+    switch (ch) {
+      case '\u00a0':
+        return " ";
+      case '\u2014':
+      case '\u2013':
+        return "-";
+      case '\u00bb':
+        return ">>";
+      case '\u2022':
+        return "o";
+      case '\u200e':
+      case '\u200f':
+      case '\u202a':
+      case '\u202b':
+      case '\u202c':
+      case '\u202d':
+      case '\u202e':
+        return "";
+      default:
+        return null;
     }
-    if (sb.length() == 0)
-      return s;
-    else
-      sb.append(s.substring(pos, s.length()));
-    return sb.toString();
+  }
 
+  /**
+   * Decodes all HTML character references, named and numeric.
+   *
+   * @param s the String to decode
+   * @return decoded String, or s itself if there was nothing to decode
+   */
+  public static String htmlEntityDecode(String s) {
+    return HtmlEntities.decode(s);
   }
 
 
@@ -0,0 +1,158 @@
+package org.freakz.hokan_ng_springboot.bot.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Reduces URLs to a canonical form so that reposts of the same link are
+ * found even when they are written differently: scheme and host are lower
+ * cased, default ports, fragments and tracking parameters are removed and
+ * the remaining query parameters are sorted.
+ * <p/>
+ * The canonical form is only used for comparing URLs, it is never fetched.
+ */
+public class UrlCanonicalizer {
+
+  private static final Set<String> TRACKING_PARAMS = new HashSet<>();
+
+  static {
+    Collections.addAll(TRACKING_PARAMS,
+        "fbclid", "gclid", "dclid", "msclkid", "yclid", "igshid", "mc_cid", "mc_eid", "_ga", "ref_src", "ref_url");
+  }
+
+  private UrlCanonicalizer() {
+  }
+
+  /**
+   * @param url URL as posted
+   * @return canonical form of the URL, or the trimmed URL if it has no scheme
+   */
+  public static String canonicalize(String url) {
+    String s = url.trim();
+    int schemeEnd = s.indexOf("://");
+    if (schemeEnd == -1) {
+      if (!s.regionMatches(true, 0, "www.", 0, 4)) {
+        return s;
+      }
+      s = "http://" + s;
+      schemeEnd = 4;
+    }
+    String scheme = s.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+
+    int hash = s.indexOf('#', schemeEnd + 3);
+    if (hash != -1) {
+      s = s.substring(0, hash);
+    }
+    int authorityEnd = s.length();
+    for (int i = schemeEnd + 3; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '/' || c == '?') {
+        authorityEnd = i;
+        break;
+      }
+    }
+    String authority = s.substring(schemeEnd + 3, authorityEnd);
+    String userInfo = "";
+    int at = authority.lastIndexOf('@');
+    if (at != -1) {
+      userInfo = authority.substring(0, at + 1);
+      authority = authority.substring(at + 1);
+    }
+    String host = authority;
+    String port = "";
+    int colon = authority.lastIndexOf(':');
+    if (colon != -1 && authority.indexOf(']', colon) == -1) {
+      host = authority.substring(0, colon);
+      port = authority.substring(colon + 1);
+    }
+    host = host.toLowerCase(Locale.ROOT);
+    if (host.endsWith(".")) {
+      host = host.substring(0, host.length() - 1);
+    }
+    if (port.isEmpty() || port.equals("80") && scheme.equals("http") || port.equals("443") && scheme.equals("https")) {
+      port = "";
+    } else {
+      port = ":" + port;
+    }
+
+    String path = s.substring(authorityEnd);
+    String query = null;
+    int question = path.indexOf('?');
+    if (question != -1) {
+      query = path.substring(question + 1);
+      path = path.substring(0, question);
+    }
+    if (path.isEmpty()) {
+      path = "/";
+    }
+
+    StringBuilder sb = new StringBuilder(s.length());
+    sb.append(scheme).append("://").append(userInfo).append(host).append(port);
+    appendEscaped(sb, path);
+    if (query != null) {
+      List<String> params = new ArrayList<>();
+      for (String param : query.split("&")) {
+        if (!param.isEmpty() && !isTrackingParam(param)) {
+          params.add(param);
+        }
+      }
+      if (!params.isEmpty()) {
+        Collections.sort(params);
+        sb.append('?');
+        for (int i = 0; i < params.size(); i++) {
+          if (i > 0) {
+            sb.append('&');
+          }
+          appendEscaped(sb, params.get(i));
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * 64-bit FNV-1a hash of a canonical URL, finished with the MurmurHash3
+   * mixer so that every bit depends on the whole URL.
+   *
+   * @param canonical canonical URL
+   * @return hash
+   */
+  public static long hash64(String canonical) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < canonical.length(); i++) {
+      h ^= canonical.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static boolean isTrackingParam(String param) {
+    int eq = param.indexOf('=');
+    String name = (eq == -1 ? param : param.substring(0, eq)).toLowerCase(Locale.ROOT);
+    return name.startsWith("utm_") || TRACKING_PARAMS.contains(name);
+  }
+
+  /**
+   * Appends with the hex digits of percent escapes in upper case.
+   */
+  private static void appendEscaped(StringBuilder sb, String s) {
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      sb.append(c);
+      if (c == '%' && i + 2 < s.length()) {
+        sb.append(Character.toUpperCase(s.charAt(++i)));
+        sb.append(Character.toUpperCase(s.charAt(++i)));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+package org.freakz.hokan_ng_springboot.bot.search;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-alone timing harness for UrlSearchIndex, kept with the tests and
+ * run from the module directory with
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes org.freakz.hokan_ng_springboot.bot.search.UrlSearchBenchmark [docs]
+ * </pre>
+ * It indexes generated URLs, 1000000 by default, which is about ten years
+ * of a busy channel, spread evenly over ten years. The index is then
+ * closed and opened again, so the queries run against segment files only,
+ * and every query is timed as the median of its timed rounds.
+ * <p>
+ * Titles use a vocabulary of 50000 words where low-numbered words are much
+ * more frequent, so <code>w0</code> is in about a fifth of the documents
+ * and a word like <code>w1000</code> in several hundred. The generator has
+ * a fixed seed, so runs are comparable with each other.
+ */
+public class UrlSearchBenchmark {
+
+  private static final int WARMUP_ROUNDS = 100;
+  private static final int TIMED_ROUNDS = 300;
+  private static final int MAX_HITS = 10;
+  private static final long TEN_YEARS = TimeUnit.DAYS.toMillis(3652);
+
+  private static final String[] QUERIES = {
+      "w1000 w0",
+      "w300 w1",
+      "w0 w1",
+      "w0",
+      "from:nick7 w2",
+      "in:#chan3 w1000",
+      "w1000 w300 w0",
+  };
+
+  public static void main(String[] args) throws Exception {
+    int docs = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    File dir = Files.createTempDirectory("urlsearchbench").toFile();
+    long start = System.nanoTime();
+    UrlSearchIndex index = new UrlSearchIndex(dir);
+    Random rand = new Random(42);
+    StringBuilder title = new StringBuilder();
+    long step = TEN_YEARS / docs;
+    for (int i = 0; i < docs; i++) {
+      title.setLength(0);
+      int words = 5 + rand.nextInt(8);
+      for (int w = 0; w < words; w++) {
+        title.append(w > 0 ? " " : "").append(word(rand, 50000));
+      }
+      String url = "https://site" + skewed(rand, 300) + ".com/" + word(rand, 50000) + "/" + i;
+      index.add(i + 1, i * step, url, title.toString(), "nick" + skewed(rand, 300), "#chan" + rand.nextInt(10));
+    }
+    index.close();
+    System.out.println(String.format("indexed %d docs in %d ms", docs, (System.nanoTime() - start) / 1000000));
+
+    index = new UrlSearchIndex(dir);
+    System.out.println(String.format("%d docs in %d segments", index.getDocCount(), index.getSegmentCount()));
+    long lastMonth = TEN_YEARS - TimeUnit.DAYS.toMillis(30);
+    for (String query : QUERIES) {
+      report(index, query, Long.MIN_VALUE, Long.MAX_VALUE, "");
+    }
+    report(index, "w0", lastMonth, Long.MAX_VALUE, ", last 30 days");
+    index.close();
+    delete(dir);
+  }
+
+
+  private static void report(UrlSearchIndex index, String query, long from, long to, String note) {
+    double[] rounds = new double[TIMED_ROUNDS];
+    List<SearchHit> hits = null;
+    for (int round = -WARMUP_ROUNDS; round < TIMED_ROUNDS; round++) {
+      long start = System.nanoTime();
+      hits = index.search(query, from, to, MAX_HITS);
+      if (round >= 0) {
+        rounds[round] = (System.nanoTime() - start) / 1e6;
+      }
+    }
+    Arrays.sort(rounds);
+    System.out.println(String.format("%-24s %8.2f ms  %2d hits, best url id %d%s", query, rounds[TIMED_ROUNDS / 2],
+        hits.size(), hits.isEmpty() ? 0 : hits.get(0).getUrlId(), note));
+  }
+
+
+  private static String word(Random rand, int vocabulary) {
+    return "w" + skewed(rand, vocabulary);
+  }
+
+
+  private static int skewed(Random rand, int range) {
+    return (int) (Math.pow(rand.nextDouble(), 3) * range);
+  }
+
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
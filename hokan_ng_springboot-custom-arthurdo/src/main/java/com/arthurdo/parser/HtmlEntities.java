@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 1996, 2001 by Arthur Do <arthur@cs.stanford.edu>.
+ * All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.arthurdo.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>HtmlEntities decodes HTML character references: the full HTML5 set of
+ * named references, including the legacy names that may be written
+ * without the ';', and decimal and hex numeric references, including
+ * code points outside the BMP. Everything is done in one pass over the
+ * input; a String without '&amp;' is returned as it is.</p>
+ * <p/>
+ * <p>Named references are matched longest first against a trie that is
+ * stored as flat arrays, with the nodes in breadth-first order so the
+ * children of a node are a contiguous, sorted run. Numeric references are
+ * fixed up the way HTML5 does: zero, surrogates and values above U+10FFFF
+ * become U+FFFD and the C1 range is read as windows-1252. A '&amp;' that
+ * does not start a known reference is kept as it is.</p>
+ * <p/>
+ * <p>A reference is never shorter than what it decodes to, so decoding
+ * can be done in place.</p>
+ *
+ * @see com.arthurdo.parser.HtmlStreamTokenizer#unescape(String)
+ */
+public final class HtmlEntities {
+  private HtmlEntities() {
+  }
+
+  /**
+   * @param s text that may contain character references
+   * @return the text with all references decoded, or s itself if it has
+   * no '&amp;'.
+   */
+  public static String decode(String s) {
+    if (s.indexOf('&') == -1)
+      return s;
+
+    char[] chars = s.toCharArray();
+    int len = decode(chars, chars.length);
+    return new String(chars, 0, len);
+  }
+
+  /**
+   * Decodes the references in a buffer.
+   *
+   * @param buf text that may contain character references
+   */
+  public static void decode(StringBuffer buf) {
+    int len = buf.length();
+    char[] chars = new char[len];
+    buf.getChars(0, len, chars, 0);
+    int decoded = decode(chars, len);
+    if (decoded != len) {
+      buf.setLength(0);
+      buf.append(chars, 0, decoded);
+    }
+  }
+
+  /**
+   * Decodes the references in the first len chars of buf, in place.
+   *
+   * @return the decoded length
+   */
+  public static int decode(char[] buf, int len) {
+    int i = 0;
+    int r = 0;
+    while (i < len) {
+      char ch = buf[i];
+      if (ch != '&') {
+        buf[r++] = ch;
+        i++;
+        continue;
+      }
+
+      int j = i + 1;
+      if (j < len && buf[j] == '#') {
+        j++;
+        int radix = 10;
+        if (j < len && (buf[j] == 'x' || buf[j] == 'X')) {
+          radix = 16;
+          j++;
+        }
+        int begin = j;
+        int code = 0;
+        int digit;
+        while (j < len && (digit = Character.digit(buf[j], radix)) != -1 && buf[j] < 0x80) {
+          code = Math.min(code * radix + digit, MAX_CODE_POINT + 1);
+          j++;
+        }
+        if (j == begin) {
+          // not a reference, e.g. "&#" or "&#x;"
+          buf[r++] = ch;
+          i++;
+          continue;
+        }
+        if (j < len && buf[j] == ';')
+          j++;
+        r += Character.toChars(fixCodePoint(code), buf, r);
+        i = j;
+        continue;
+      }
+
+      // longest match of a named reference
+      int node = 0;
+      String value = null;
+      int end = j;
+      while (j < len && (node = child(node, buf[j])) != -1) {
+        j++;
+        if (m_values[node] != null) {
+          value = m_values[node];
+          end = j;
+        }
+      }
+      if (value == null) {
+        buf[r++] = ch;
+        i++;
+        continue;
+      }
+      value.getChars(0, value.length(), buf, r);
+      r += value.length();
+      i = end;
+    }
+    return r;
+  }
+
+  /**
+   * @param name reference name without the '&amp;', e.g. "amp;"
+   * @return the text it stands for, or null if it is not a known name.
+   */
+  public static String lookup(String name) {
+    int node = 0;
+    for (int i = 0; i < name.length() && node != -1; i++)
+      node = child(node, name.charAt(i));
+    return node == -1 ? null : m_values[node];
+  }
+
+  private static int fixCodePoint(int code) {
+    if (code == 0 || code > MAX_CODE_POINT || (code >= 0xd800 && code <= 0xdfff))
+      return 0xfffd;
+    if (code >= 0x80 && code <= 0x9f && m_c1[code - 0x80] != 0)
+      return m_c1[code - 0x80];
+    return code;
+  }
+
+  /**
+   * @return the child of node along c, or -1.
+   */
+  private static int child(int node, char c) {
+    int low = m_first[node];
+    int high = m_first[node + 1] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      char label = m_labels[mid];
+      if (label < c)
+        low = mid + 1;
+      else if (label > c)
+        high = mid - 1;
+      else
+        return mid;
+    }
+    return -1;
+  }
+
+  /**
+   * Builds the flat trie from the entity list.
+   */
+  private static void load()
+      throws IOException {
+    // build a plain trie first...
+    ArrayList<TreeMap<Character, Integer>> children = new ArrayList<TreeMap<Character, Integer>>();
+    ArrayList<String> values = new ArrayList<String>();
+    children.add(new TreeMap<Character, Integer>());
+    values.add(null);
+
+    InputStream in = HtmlEntities.class.getResourceAsStream(ENTITY_FILE);
+    if (in == null)
+      throw new IOException(ENTITY_FILE + " not found");
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.length() == 0 || line.charAt(0) == '#')
+          continue;
+        String[] fields = line.split(" ");
+        StringBuilder value = new StringBuilder(2);
+        for (int i = 1; i < fields.length; i++)
+          value.appendCodePoint(Integer.parseInt(fields[i], 16));
+
+        int node = 0;
+        for (char c : fields[0].toCharArray()) {
+          Integer next = children.get(node).get(c);
+          if (next == null) {
+            next = children.size();
+            children.get(node).put(c, next);
+            children.add(new TreeMap<Character, Integer>());
+            values.add(null);
+          }
+          node = next;
+        }
+        values.set(node, value.toString());
+      }
+    } finally {
+      reader.close();
+    }
+
+    // ...then number the nodes breadth first so siblings are contiguous
+    int size = children.size();
+    int[] order = new int[size];
+    char[] labels = new char[size];
+    int tail = 1;
+    for (int head = 0; head < tail; head++) {
+      for (Map.Entry<Character, Integer> e : children.get(order[head]).entrySet()) {
+        labels[tail] = e.getKey();
+        order[tail++] = e.getValue();
+      }
+    }
+
+    m_labels = labels;
+    m_first = new int[size + 1];
+    m_values = new String[size];
+    int next = 1;
+    for (int id = 0; id < size; id++) {
+      int old = order[id];
+      m_values[id] = values.get(old);
+      m_first[id] = next;
+      next += children.get(old).size();
+    }
+    m_first[size] = next;
+  }
+
+  private static final String ENTITY_FILE = "entities.txt";
+  private static final int MAX_CODE_POINT = 0x10ffff;
+
+  // windows-1252 meaning of the C1 controls, 0 where it has none
+  private static final char[] m_c1 = {
+      '\u20ac', 0, '\u201a', '\u0192', '\u201e', '\u2026', '\u2020', '\u2021',
+      '\u02c6', '\u2030', '\u0160', '\u2039', '\u0152', 0, '\u017d', 0,
+      0, '\u2018', '\u2019', '\u201c', '\u201d', '\u2022', '\u2013', '\u2014',
+      '\u02dc', '\u2122', '\u0161', '\u203a', '\u0153', 0, '\u017e', '\u0178'
+  };
+
+
+  private static char[] m_labels;
+  private static int[] m_first;
+  private static String[] m_values;
+
+  static {
+    try {
+      load();
+    } catch (IOException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 1996, 2001 by Arthur Do <arthur@cs.stanford.edu>.
+ * All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.arthurdo.parser;
+
+/**
+ * HtmlHead holds what HtmlHeadExtractor found in the head of a page,
+ * together with how much of the page it had to read to find it.
+ *
+ * @see com.arthurdo.parser.HtmlHeadExtractor
+ */
+public class HtmlHead {
+  /**
+   * stopped at the title end tag.
+   */
+  public static final int STOP_TITLE = 1;
+  /**
+   * stopped at the body start tag.
+   */
+  public static final int STOP_BODY = 2;
+  /**
+   * stopped at the end of the stream.
+   */
+  public static final int STOP_EOF = 3;
+  /**
+   * stopped because the byte budget was used up.
+   */
+  public static final int STOP_MAX_BYTES = 4;
+  /**
+   * stopped because the deadline passed.
+   */
+  public static final int STOP_TIMEOUT = 5;
+
+  /**
+   * @return contents of the title element with entities decoded and white
+   * space collapsed, or null if there was none.
+   */
+  public String getTitle() {
+    return m_title;
+  }
+
+  /**
+   * @return content of the og:title meta tag, or null if there was none.
+   */
+  public String getOgTitle() {
+    return m_ogTitle;
+  }
+
+  /**
+   * @return the title if the page had a non-empty one, otherwise the
+   * og:title, otherwise null.
+   */
+  public String getBestTitle() {
+    if (m_title != null && m_title.length() > 0)
+      return m_title;
+    return m_ogTitle;
+  }
+
+  /**
+   * @return name of the charset the page was decoded with.
+   */
+  public String getCharset() {
+    return m_charset;
+  }
+
+  /**
+   * @return number of bytes read from the stream.
+   */
+  public long getBytesRead() {
+    return m_bytesRead;
+  }
+
+  /**
+   * @return milliseconds spent reading and parsing.
+   */
+  public long getElapsedMillis() {
+    return m_elapsed;
+  }
+
+  /**
+   * @return why reading stopped, one of the <b>STOP_</b> defines.
+   */
+  public int getStopReason() {
+    return m_stopReason;
+  }
+
+  public String toString() {
+    return "title=" + m_title + ", og:title=" + m_ogTitle + ", charset=" + m_charset
+        + ", bytes=" + m_bytesRead + ", ms=" + m_elapsed + ", stop=" + m_stopReason;
+  }
+
+  /*package*/ void setTitle(String title) {
+    m_title = title;
+  }
+
+  /*package*/ void setOgTitle(String ogTitle) {
+    m_ogTitle = ogTitle;
+  }
+
+  /*package*/ void setCharset(String charset) {
+    m_charset = charset;
+  }
+
+  /*package*/ void setBytesRead(long bytesRead) {
+    m_bytesRead = bytesRead;
+  }
+
+  /*package*/ void setElapsedMillis(long elapsed) {
+    m_elapsed = elapsed;
+  }
+
+  /*package*/ void setStopReason(int stopReason) {
+    m_stopReason = stopReason;
+  }
+
+  private String m_title = null;
+  private String m_ogTitle = null;
+  private String m_charset = null;
+  private long m_bytesRead = 0;
+  private long m_elapsed = 0;
+  private int m_stopReason = 0;
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 1996, 2001 by Arthur Do <arthur@cs.stanford.edu>.
+ * All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.arthurdo.parser;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>HtmlHeadExtractor reads just enough of an HTML page to find its
+ * title. The page is tokenized with HtmlStreamTokenizer as it streams in
+ * and reading stops at the first <b>&lt;/title&gt;</b> or
+ * <b>&lt;body&gt;</b>, so the rest of the page is never downloaded.
+ * Reading also stops when a byte budget is used up or a deadline
+ * passes.</p>
+ * <p/>
+ * <pre>
+ * HtmlHeadExtractor extractor = new HtmlHeadExtractor();
+ * HtmlHead head = extractor.extract(new URL(url).openConnection());
+ * String title = head.getBestTitle();
+ * </pre>
+ * <p/>
+ * <p>The charset is taken from the Content-Type header if it has one.
+ * Otherwise the first bytes of the page are prescanned for a BOM or a
+ * meta charset before tokenizing starts, and a meta charset found later
+ * switches the decoder for the bytes not yet decoded, without restarting
+ * the parse. Without any declaration UTF-8 is assumed if the prescanned
+ * bytes are valid UTF-8, and windows-1252 otherwise.</p>
+ *
+ * @see com.arthurdo.parser.HtmlHead
+ * @see com.arthurdo.parser.HtmlStreamTokenizer
+ */
+public class HtmlHeadExtractor {
+  public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+  public static final int DEFAULT_TIMEOUT = 5000;
+
+  public HtmlHeadExtractor() {
+  }
+
+  /**
+   * @param maxBytes stop after reading this many bytes
+   */
+  public void setMaxBytes(int maxBytes) {
+    m_maxBytes = maxBytes;
+  }
+
+  public int getMaxBytes() {
+    return m_maxBytes;
+  }
+
+  /**
+   * @param timeout stop after this many milliseconds
+   */
+  public void setTimeout(int timeout) {
+    m_timeout = timeout;
+  }
+
+  public int getTimeout() {
+    return m_timeout;
+  }
+
+  /**
+   * Connects, extracts the head and disconnects without reading the rest
+   * of the response. The connect and read timeouts of the connection are
+   * set to the extractor timeout.
+   *
+   * @param conn connection that has not been connected yet
+   * @return the extracted head
+   * @throws IOException if error connecting or reading.
+   */
+  public HtmlHead extract(URLConnection conn)
+      throws IOException {
+    long start = System.currentTimeMillis();
+    conn.setConnectTimeout(m_timeout);
+    conn.setReadTimeout(m_timeout);
+    InputStream in = null;
+    try {
+      in = conn.getInputStream();
+      return extract(in, conn.getContentType(), start);
+    } finally {
+      if (conn instanceof HttpURLConnection)
+        ((HttpURLConnection) conn).disconnect();
+      else if (in != null)
+        in.close();
+    }
+  }
+
+  /**
+   * Extracts the head from a stream. The stream is not closed; whatever
+   * follows the head is left unread apart from buffering.
+   *
+   * @param in          page bytes
+   * @param contentType value of the Content-Type header, or null
+   * @return the extracted head
+   * @throws IOException if error reading input stream.
+   */
+  public HtmlHead extract(InputStream in, String contentType)
+      throws IOException {
+    return extract(in, contentType, System.currentTimeMillis());
+  }
+
+  private HtmlHead extract(InputStream in, String contentType, long start)
+      throws IOException {
+    HtmlHead head = new HtmlHead();
+    BudgetStream budget = new BudgetStream(in, m_maxBytes, start + m_timeout);
+    try {
+      BufferedInputStream bin = new BufferedInputStream(budget, PRESCAN_BYTES);
+      Charset charset = charsetForName(getCharsetParam(contentType));
+      boolean declared = charset != null;
+      if (!declared)
+        charset = prescan(bin);
+      head.setCharset(charset.name());
+
+      DecodingReader reader = new DecodingReader(bin, charset);
+      head.setStopReason(parse(new HtmlStreamTokenizer(reader), reader, head, declared));
+    } catch (SocketTimeoutException e) {
+      head.setStopReason(HtmlHead.STOP_TIMEOUT);
+    }
+
+    if (head.getStopReason() == HtmlHead.STOP_EOF && budget.m_stop != 0)
+      head.setStopReason(budget.m_stop);
+    head.setBytesRead(budget.m_count);
+    head.setElapsedMillis(System.currentTimeMillis() - start);
+    return head;
+  }
+
+  private int parse(HtmlStreamTokenizer tok, DecodingReader reader, HtmlHead head, boolean declared)
+      throws IOException {
+    HtmlTag tag = new HtmlTag();
+    StringBuffer title = null;
+    try {
+      while (tok.nextToken() != HtmlStreamTokenizer.TT_EOF) {
+        int ttype = tok.getTokenType();
+        if (ttype == HtmlStreamTokenizer.TT_TEXT) {
+          if (title != null)
+            title.append(tok.getStringValue());
+          continue;
+        }
+        if (ttype != HtmlStreamTokenizer.TT_TAG)
+          continue;
+
+        try {
+          tok.parseTag(tok.getStringValue(), tag);
+        } catch (HtmlException e) {
+          continue;
+        }
+        switch (tag.getTagType()) {
+          case HtmlTag.T_TITLE:
+            if (tag.isEndTag()) {
+              if (title != null)
+                return HtmlHead.STOP_TITLE;
+            } else if (title == null && !tag.isEmpty()) {
+              title = new StringBuffer();
+              tok.enterCDATAMode(C_TITLE_END, true);
+            }
+            break;
+          case HtmlTag.T_SCRIPT:
+            if (!tag.isEndTag() && !tag.isEmpty())
+              tok.enterCDATAMode(C_SCRIPT_END, true);
+            break;
+          case HtmlTag.T_STYLE:
+            if (!tag.isEndTag() && !tag.isEmpty())
+              tok.enterCDATAMode(C_STYLE_END, true);
+            break;
+          case HtmlTag.T_BODY:
+            if (!tag.isEndTag())
+              return HtmlHead.STOP_BODY;
+            break;
+          case HtmlTag.T_META:
+            parseMeta(tag, reader, head, declared);
+            break;
+        }
+      }
+      return HtmlHead.STOP_EOF;
+    } finally {
+      if (title != null)
+        head.setTitle(clean(title.toString()));
+    }
+  }
+
+  private static void parseMeta(HtmlTag tag, DecodingReader reader, HtmlHead head, boolean declared) {
+    String property = tag.getParam("property");
+    if (property == null)
+      property = tag.getParam(HtmlTag.P_NAME);
+    if ("og:title".equalsIgnoreCase(property) && head.getOgTitle() == null) {
+      String content = tag.getParam("content");
+      if (content != null)
+        head.setOgTitle(clean(content));
+      return;
+    }
+
+    if (declared)
+      return;
+    String name = tag.getParam("charset");
+    if (name == null && "content-type".equalsIgnoreCase(tag.getParam("http-equiv")))
+      name = getCharsetParam(tag.getParam("content"));
+    Charset charset = charsetForName(name);
+    if (charset != null && !charset.name().equals(head.getCharset())) {
+      reader.setCharset(charset);
+      head.setCharset(charset.name());
+    }
+  }
+
+  /**
+   * Looks at the first bytes of the page for a byte order mark or a meta
+   * charset, then rewinds so the tokenizer sees the same bytes.
+   */
+  private static Charset prescan(BufferedInputStream in)
+      throws IOException {
+    in.mark(PRESCAN_BYTES);
+    byte[] bytes = new byte[PRESCAN_BYTES];
+    int len = 0;
+    int n;
+    while (len < bytes.length && (n = in.read(bytes, len, bytes.length - len)) > 0)
+      len += n;
+    in.reset();
+
+    if (len >= 3 && (bytes[0] & 0xff) == 0xef && (bytes[1] & 0xff) == 0xbb && (bytes[2] & 0xff) == 0xbf)
+      return StandardCharsets.UTF_8;
+    if (len >= 2 && (bytes[0] & 0xff) == 0xfe && (bytes[1] & 0xff) == 0xff)
+      return StandardCharsets.UTF_16BE;
+    if (len >= 2 && (bytes[0] & 0xff) == 0xff && (bytes[1] & 0xff) == 0xfe)
+      return StandardCharsets.UTF_16LE;
+
+    String ascii = new String(bytes, 0, len, StandardCharsets.ISO_8859_1).toLowerCase();
+    int meta = ascii.indexOf("<meta");
+    while (meta != -1) {
+      int end = ascii.indexOf('>', meta);
+      if (end == -1)
+        end = len;
+      int idx = ascii.indexOf("charset", meta);
+      if (idx != -1 && idx < end) {
+        Charset charset = charsetForName(getCharsetParam(ascii.substring(idx, end)));
+        if (charset != null)
+          return charset;
+      }
+      meta = ascii.indexOf("<meta", end);
+    }
+
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+    CoderResult result = decoder.decode(ByteBuffer.wrap(bytes, 0, len), CharBuffer.allocate(len), false);
+    return result.isError() ? Charset.forName("windows-1252") : StandardCharsets.UTF_8;
+  }
+
+  /**
+   * @param s a Content-Type value such as <b>text/html; charset=utf-8</b>
+   * @return the charset parameter, or null
+   */
+  private static String getCharsetParam(String s) {
+    if (s == null)
+      return null;
+    int idx = s.toLowerCase().indexOf("charset");
+    if (idx == -1)
+      return null;
+    idx += 7;
+    int len = s.length();
+    while (idx < len && isSpace(s.charAt(idx)))
+      idx++;
+    if (idx == len || s.charAt(idx) != '=')
+      return null;
+    idx++;
+    while (idx < len && (isSpace(s.charAt(idx)) || s.charAt(idx) == '"' || s.charAt(idx) == '\''))
+      idx++;
+    int begin = idx;
+    while (idx < len && isCharsetChar(s.charAt(idx)))
+      idx++;
+    return idx > begin ? s.substring(begin, idx) : null;
+  }
+
+  private static Charset charsetForName(String name) {
+    if (name == null)
+      return null;
+    try {
+      // like browsers, treat latin-1 as its windows superset
+      if (name.equalsIgnoreCase("iso-8859-1") || name.equalsIgnoreCase("latin1"))
+        name = "windows-1252";
+      return Charset.forName(name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Decodes entities and collapses white space.
+   */
+  private static String clean(String s) {
+    s = HtmlStreamTokenizer.unescape(s);
+    StringBuilder b = new StringBuilder(s.length());
+    boolean space = false;
+    for (int i = 0; i < s.length(); i++) {
+      char ch = s.charAt(i);
+      if (Character.isWhitespace(ch) || ch == '\u00a0') {
+        space = b.length() > 0;
+      } else {
+        if (space)
+          b.append(' ');
+        space = false;
+        b.append(ch);
+      }
+    }
+    return b.toString();
+  }
+
+  private static boolean isSpace(char c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+
+  private static boolean isCharsetChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ':';
+  }
+
+  /**
+   * Counts the bytes read and ends the stream when the byte budget is
+   * used up or the deadline has passed.
+   */
+  private static class BudgetStream extends FilterInputStream {
+    BudgetStream(InputStream in, long maxBytes, long deadline) {
+      super(in);
+      m_maxBytes = maxBytes;
+      m_deadline = deadline;
+    }
+
+    public int read()
+        throws IOException {
+      if (!check())
+        return -1;
+      int c = super.read();
+      if (c >= 0)
+        m_count++;
+      return c;
+    }
+
+    public int read(byte[] b, int off, int len)
+        throws IOException {
+      if (!check())
+        return -1;
+      int n = super.read(b, off, (int) Math.min(len, m_maxBytes - m_count));
+      if (n > 0)
+        m_count += n;
+      return n;
+    }
+
+    private boolean check() {
+      if (m_count >= m_maxBytes)
+        m_stop = HtmlHead.STOP_MAX_BYTES;
+      else if (System.currentTimeMillis() >= m_deadline)
+        m_stop = HtmlHead.STOP_TIMEOUT;
+      return m_stop == 0;
+    }
+
+    private final long m_maxBytes;
+    private final long m_deadline;
+    private long m_count = 0;
+    private int m_stop = 0;
+  }
+
+  /**
+   * Decodes the stream a small chunk at a time, so the tokenizer never has
+   * more than a chunk of decoded text ahead of it, and allows the charset
+   * to be switched for the bytes not yet decoded.
+   */
+  private static class DecodingReader extends Reader {
+    DecodingReader(InputStream in, Charset charset) {
+      m_in = in;
+      m_bytes.limit(0);
+      setCharset(charset);
+    }
+
+    void setCharset(Charset charset) {
+      m_decoder = charset.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public int read(char[] cbuf, int off, int len)
+        throws IOException {
+      if (len == 0)
+        return 0;
+      CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+      while (true) {
+        if (m_done)
+          return -1;
+        m_decoder.decode(m_bytes, out, m_eof);
+        if (m_eof) {
+          m_decoder.flush(out);
+          m_done = true;
+        }
+        int n = out.position() - off;
+        if (n > 0)
+          return n;
+        if (m_done)
+          return -1;
+
+        m_bytes.compact();
+        int r = m_in.read(m_bytes.array(), m_bytes.position(), m_bytes.remaining());
+        if (r < 0)
+          m_eof = true;
+        else
+          m_bytes.position(m_bytes.position() + r);
+        m_bytes.flip();
+      }
+    }
+
+    public void close()
+        throws IOException {
+      m_in.close();
+    }
+
+    private final InputStream m_in;
+    private final ByteBuffer m_bytes = ByteBuffer.allocate(CHUNK_BYTES);
+    private CharsetDecoder m_decoder;
+    private boolean m_eof = false;
+    private boolean m_done = false;
+  }
+
+  private int m_maxBytes = DEFAULT_MAX_BYTES;
+  private int m_timeout = DEFAULT_TIMEOUT;
+
+  private static final int PRESCAN_BYTES = 1024;
+  private static final int CHUNK_BYTES = 256;
+  private static final char[] C_TITLE_END = "</title>".toCharArray();
+  private static final char[] C_SCRIPT_END = "</script>".toCharArray();
+  private static final char[] C_STYLE_END = "</style>".toCharArray();
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 1996, 2001 by Arthur Do <arthur@cs.stanford.edu>.
+ * All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.arthurdo.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * <p>HtmlPushTokenizer is a push mode front end to HtmlStreamTokenizer for
+ * non-blocking input. Instead of the tokenizer pulling from a blocking
+ * Reader, bytes are pushed into it in arbitrary ByteBuffer chunks as they
+ * arrive, and every complete token is passed to a TokenHandler. The
+ * tokenizer state, including a half-read tag, quoted attribute, comment
+ * or CDATA section and a multi-byte character split between chunks, is
+ * kept from one chunk to the next, so one thread can drive any number of
+ * page fetches side by side.</p>
+ * <p/>
+ * <pre>
+ * HtmlPushTokenizer push = new HtmlPushTokenizer(charset, new HtmlPushTokenizer.TokenHandler() {
+ * 	public boolean handleToken(HtmlStreamTokenizer tok) {
+ * 		if (tok.getTokenType() == HtmlStreamTokenizer.TT_TEXT)
+ * 			System.out.println(&quot;text: &quot; + tok.getStringValue());
+ * 		return true;
+ *  }
+ * });
+ *
+ * // whenever the channel has data
+ * push.push(buffer);
+ * // at the end of the response
+ * push.close();
+ * </pre>
+ * <p/>
+ * <p>The handler gets the tokenizer itself, so it can use getTokenType(),
+ * getStringValue(), parseTag() and enterCDATAMode() as in pull mode.</p>
+ *
+ * @see com.arthurdo.parser.HtmlStreamTokenizer
+ */
+public class HtmlPushTokenizer {
+  /**
+   * Receives the tokens as they are completed.
+   */
+  public interface TokenHandler {
+    /**
+     * @param tok the tokenizer, positioned at the new token. The last
+     *            token passed is TT_EOF, after close().
+     * @return true to continue, false to stop tokenizing; any further
+     * input is ignored.
+     * @throws HtmlException to stop tokenizing with an error.
+     */
+    boolean handleToken(HtmlStreamTokenizer tok)
+        throws HtmlException;
+  }
+
+  /**
+   * @param charset charset of the pushed bytes
+   * @param handler receives the tokens
+   */
+  public HtmlPushTokenizer(Charset charset, TokenHandler handler) {
+    m_decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    m_handler = handler;
+  }
+
+  /**
+   * @return the underlying tokenizer, e.g. to call setUnescaped().
+   */
+  public HtmlStreamTokenizer getTokenizer() {
+    return m_tok;
+  }
+
+  /**
+   * Tokenizes a chunk of input. All of the buffer is consumed; bytes of
+   * an incomplete character are kept until the next chunk.
+   *
+   * @param buf next chunk of input
+   * @throws HtmlException if thrown by the handler.
+   */
+  public void push(ByteBuffer buf)
+      throws HtmlException {
+    while (buf.hasRemaining() && !m_stopped) {
+      int n = Math.min(buf.remaining(), m_bytes.remaining());
+      ByteBuffer slice = buf.duplicate();
+      slice.limit(slice.position() + n);
+      m_bytes.put(slice);
+      buf.position(buf.position() + n);
+
+      m_bytes.flip();
+      decode(false);
+      m_bytes.compact();
+    }
+    buf.position(buf.limit());
+  }
+
+  /**
+   * Ends the input. Whatever token is in progress is completed and the
+   * handler finally gets TT_EOF.
+   *
+   * @throws HtmlException if thrown by the handler.
+   */
+  public void close()
+      throws HtmlException {
+    if (m_stopped)
+      return;
+    m_bytes.flip();
+    decode(true);
+    m_bytes.clear();
+    while (m_decoder.flush(m_chars) == CoderResult.OVERFLOW)
+      tokenize();
+    m_tok.setEndOfInput();
+    tokenize();
+    m_stopped = true;
+  }
+
+  /**
+   * @return whether the handler stopped tokenizing or the input was closed.
+   */
+  public boolean isStopped() {
+    return m_stopped;
+  }
+
+  private void decode(boolean endOfInput)
+      throws HtmlException {
+    while (!m_stopped) {
+      CoderResult result = m_decoder.decode(m_bytes, m_chars, endOfInput);
+      tokenize();
+      if (result.isUnderflow())
+        break;
+    }
+  }
+
+  /**
+   * Pushes the decoded chars to the tokenizer and hands out every token
+   * they complete.
+   */
+  private void tokenize()
+      throws HtmlException {
+    m_chars.flip();
+    m_tok.push(m_chars.array(), 0, m_chars.limit());
+    m_chars.clear();
+
+    try {
+      while (!m_stopped) {
+        int ttype = m_tok.nextToken();
+        if (ttype == HtmlStreamTokenizer.TT_NEED_INPUT)
+          break;
+        if (!m_handler.handleToken(m_tok) || ttype == HtmlStreamTokenizer.TT_EOF)
+          m_stopped = true;
+      }
+    } catch (IOException e) {
+      // a push mode tokenizer has no reader to fail
+      throw new HtmlException(e.getMessage());
+    }
+  }
+
+  private final HtmlStreamTokenizer m_tok = new HtmlStreamTokenizer();
+  private final TokenHandler m_handler;
+  private final CharsetDecoder m_decoder;
+  private final ByteBuffer m_bytes = ByteBuffer.allocate(BUFFER_SIZE);
+  private final CharBuffer m_chars = CharBuffer.allocate(BUFFER_SIZE);
+  private boolean m_stopped = false;
+
+  private static final int BUFFER_SIZE = 8192;
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 1996, 2001 by Arthur Do <arthur@cs.stanford.edu>.
+ * All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.arthurdo.parser;
+
+import java.util.ArrayList;
+
+/**
+ * <p>HtmlQuery is a compiled CSS-like selector, run over a token stream by
+ * HtmlQuerySet. A selector is a path of steps separated by white space
+ * (descendant) or '&gt;' (child). A step is a tag name or '*' followed by
+ * any number of conditions:</p>
+ * <ul>
+ * <li> <b>.name</b> the class attribute contains name
+ * <li> <b>#name</b> the id attribute is name
+ * <li> <b>[attr]</b> the tag has the attribute
+ * <li> <b>[attr=value]</b> the attribute has the value; the value may be quoted
+ * <li> <b>:nth(n)</b> the n:th child of its parent that meets the other
+ * conditions of the step, counting from 1
+ * <li> <b>:first</b> same as :nth(1)
+ * </ul>
+ * <p/>
+ * <pre>
+ * HtmlQuery.compile("table.schedule tr td:nth(2)");
+ * HtmlQuery.compile("meta[property=og:title]");
+ * HtmlQuery.compile("div#main &gt; a[href]");
+ * </pre>
+ * <p/>
+ * <p>Tag names are matched by tag type where HtmlTag knows the name, and
+ * case-insensitively otherwise.</p>
+ *
+ * @see com.arthurdo.parser.HtmlQuerySet
+ */
+public class HtmlQuery {
+  /**
+   * @param selector the selector
+   * @return the compiled query
+   * @throws HtmlException if the selector is malformed.
+   */
+  public static HtmlQuery compile(String selector)
+      throws HtmlException {
+    return new HtmlQuery(selector);
+  }
+
+  private HtmlQuery(String selector)
+      throws HtmlException {
+    m_selector = selector;
+    m_pos = 0;
+    ArrayList<Step> steps = new ArrayList<Step>();
+    boolean child = false;
+    while (true) {
+      boolean space = skipSpace();
+      if (m_pos == selector.length())
+        break;
+      if (selector.charAt(m_pos) == '>') {
+        if (steps.isEmpty() || child)
+          throw error("unexpected '>'");
+        m_pos++;
+        child = true;
+        continue;
+      }
+      if (!steps.isEmpty() && !space && !child)
+        throw error("expected white space or '>'");
+      Step step = parseStep();
+      step.m_child = child;
+      steps.add(step);
+      child = false;
+    }
+    if (steps.isEmpty() || child)
+      throw error("empty step");
+    if (steps.size() > MAX_STEPS)
+      throw error("more than " + MAX_STEPS + " steps");
+
+    m_steps = steps.toArray(new Step[steps.size()]);
+    for (int i = 0; i < m_steps.length; i++) {
+      if (!m_steps[i].m_child)
+        m_descendantMask |= 1L << i;
+    }
+  }
+
+  /**
+   * @return the selector this query was compiled from.
+   */
+  public String getSelector() {
+    return m_selector;
+  }
+
+  /**
+   * @param maxMatches number of matches after which the query is
+   *                   satisfied and no longer evaluated
+   */
+  public void setMaxMatches(int maxMatches) {
+    m_maxMatches = maxMatches;
+  }
+
+  public int getMaxMatches() {
+    return m_maxMatches;
+  }
+
+  public String toString() {
+    return m_selector;
+  }
+
+  /*package*/ int getStepCount() {
+    return m_steps.length;
+  }
+
+  /**
+   * @return bit i is set if step i may be any descendant of the element
+   * matching step i - 1, rather than only a child.
+   */
+  /*package*/ long getDescendantMask() {
+    return m_descendantMask;
+  }
+
+  /*package*/ int getNth(int step) {
+    return m_steps[step].m_nth;
+  }
+
+  /**
+   * @return whether the tag meets the conditions of the step, apart from :nth.
+   */
+  /*package*/ boolean matches(int step, HtmlTag tag) {
+    Step s = m_steps[step];
+    if (s.m_type != HtmlTag.T_UNKNOWN) {
+      if (tag.getTagType() != s.m_type)
+        return false;
+    } else if (s.m_name != null && !s.m_name.equalsIgnoreCase(tag.getTagString())) {
+      return false;
+    }
+    if (s.m_id != null && !s.m_id.equals(tag.getParam("id")))
+      return false;
+    for (int i = 0; i < s.m_classes.length; i++) {
+      if (!hasClass(tag.getParam("class"), s.m_classes[i]))
+        return false;
+    }
+    for (int i = 0; i < s.m_attrNames.length; i++) {
+      String value = tag.getParam(s.m_attrNames[i]);
+      if (value == null || (s.m_attrValues[i] != null && !s.m_attrValues[i].equals(value)))
+        return false;
+    }
+    return true;
+  }
+
+  private static boolean hasClass(String classes, String name) {
+    if (classes == null)
+      return false;
+    int len = classes.length();
+    int idx = classes.indexOf(name);
+    while (idx != -1) {
+      int end = idx + name.length();
+      if ((idx == 0 || Character.isWhitespace(classes.charAt(idx - 1)))
+          && (end == len || Character.isWhitespace(classes.charAt(end))))
+        return true;
+      idx = classes.indexOf(name, idx + 1);
+    }
+    return false;
+  }
+
+  private Step parseStep()
+      throws HtmlException {
+    Step step = new Step();
+    ArrayList<String> classes = new ArrayList<String>();
+    ArrayList<String> attrNames = new ArrayList<String>();
+    ArrayList<String> attrValues = new ArrayList<String>();
+
+    if (peek() == '*') {
+      m_pos++;
+    } else if (isNameChar(peek())) {
+      step.m_name = parseName();
+      HtmlTag tag = new HtmlTag();
+      tag.setTag(step.m_name);
+      step.m_type = tag.getTagType();
+    }
+
+    while (m_pos < m_selector.length()) {
+      char c = m_selector.charAt(m_pos);
+      if (c == '.') {
+        m_pos++;
+        classes.add(parseName());
+      } else if (c == '#') {
+        m_pos++;
+        step.m_id = parseName();
+      } else if (c == '[') {
+        m_pos++;
+        skipSpace();
+        attrNames.add(parseName());
+        skipSpace();
+        String value = null;
+        if (peek() == '=') {
+          m_pos++;
+          skipSpace();
+          value = parseValue();
+          skipSpace();
+        }
+        attrValues.add(value);
+        expect(']');
+      } else if (c == ':') {
+        m_pos++;
+        String pseudo = parseName();
+        if (pseudo.equals("first")) {
+          step.m_nth = 1;
+        } else if (pseudo.equals("nth")) {
+          expect('(');
+          skipSpace();
+          String n = parseName();
+          skipSpace();
+          expect(')');
+          try {
+            step.m_nth = Integer.parseInt(n);
+          } catch (NumberFormatException e) {
+            throw error("bad :nth argument '" + n + "'");
+          }
+          if (step.m_nth < 1)
+            throw error(":nth counts from 1");
+        } else {
+          throw error("unknown pseudo class ':" + pseudo + "'");
+        }
+      } else {
+        break;
+      }
+    }
+
+    if (step.m_name == null && step.m_id == null && step.m_nth == 0 && classes.isEmpty() && attrNames.isEmpty()
+        && m_selector.charAt(m_pos - 1) != '*')
+      throw error("empty step");
+    step.m_classes = classes.toArray(new String[classes.size()]);
+    step.m_attrNames = attrNames.toArray(new String[attrNames.size()]);
+    step.m_attrValues = attrValues.toArray(new String[attrValues.size()]);
+    return step;
+  }
+
+  private String parseName()
+      throws HtmlException {
+    int begin = m_pos;
+    while (m_pos < m_selector.length() && isNameChar(m_selector.charAt(m_pos)))
+      m_pos++;
+    if (m_pos == begin)
+      throw error("expected a name");
+    return m_selector.substring(begin, m_pos);
+  }
+
+  private String parseValue()
+      throws HtmlException {
+    char quote = peek();
+    if (quote == '"' || quote == '\'') {
+      int end = m_selector.indexOf(quote, m_pos + 1);
+      if (end == -1)
+        throw error("unterminated quote");
+      String value = m_selector.substring(m_pos + 1, end);
+      m_pos = end + 1;
+      return value;
+    }
+    int begin = m_pos;
+    while (m_pos < m_selector.length() && m_selector.charAt(m_pos) != ']' && !Character.isWhitespace(m_selector.charAt(m_pos)))
+      m_pos++;
+    return m_selector.substring(begin, m_pos);
+  }
+
+  private void expect(char c)
+      throws HtmlException {
+    if (peek() != c)
+      throw error("expected '" + c + "'");
+    m_pos++;
+  }
+
+  private char peek() {
+    return m_pos < m_selector.length() ? m_selector.charAt(m_pos) : 0;
+  }
+
+  private boolean skipSpace() {
+    int begin = m_pos;
+    while (m_pos < m_selector.length() && Character.isWhitespace(m_selector.charAt(m_pos)))
+      m_pos++;
+    return m_pos > begin;
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+  }
+
+  private HtmlException error(String msg) {
+    return new HtmlException("bad selector '" + m_selector + "' at " + m_pos + ": " + msg);
+  }
+
+  private static class Step {
+    String m_name = null;
+    int m_type = HtmlTag.T_UNKNOWN;
+    String m_id = null;
+    String[] m_classes;
+    String[] m_attrNames;
+    String[] m_attrValues;
+    int m_nth = 0;
+    boolean m_child = false;
+  }
+
+  /*package*/ static final int MAX_STEPS = 62;
+
+  private final String m_selector;
+  private Step[] m_steps;
+  private long m_descendantMask = 0;
+  private int m_maxMatches = Integer.MAX_VALUE;
+  private int m_pos;
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 1996, 2001 by Arthur Do <arthur@cs.stanford.edu>.
+ * All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.arthurdo.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>HtmlQuerySet evaluates several HtmlQuery selectors in a single pass
+ * over an HtmlStreamTokenizer. The document is never held in memory:
+ * only the stack of open elements is kept, and for each open element one
+ * bit mask per query telling which steps of the query are matched by the
+ * element and its ancestors. A tag is compared against the next step of
+ * each query that is still running, so a pass costs a few bit operations
+ * per tag and query.</p>
+ * <p/>
+ * <pre>
+ * HtmlQuery cell = HtmlQuery.compile("table.schedule tr td:nth(2)");
+ * HtmlQuery title = HtmlQuery.compile("meta[property=og:title]");
+ * title.setMaxMatches(1);
+ * HtmlQuerySet set = new HtmlQuerySet(new HtmlQuerySet.MatchHandler() {
+ * 	public boolean handleMatch(HtmlQuery query, HtmlTag tag, String text) {
+ * 		System.out.println(query + ": " + tag.getParam("content") + text);
+ * 		return true;
+ * 	}
+ * });
+ * set.add(cell);
+ * set.add(title);
+ * set.run(in);
+ * </pre>
+ * <p/>
+ * <p>A match is delivered when its element ends, together with the text
+ * inside the element; empty and void elements such as &lt;META&gt; are
+ * delivered at once with empty text. A query is satisfied once it has
+ * delivered its maximum number of matches, and the pass stops as soon as
+ * every query is satisfied, so a query for the first few matches only
+ * reads as far into the document as it has to.</p>
+ * <p/>
+ * <p>Unclosed elements are closed the way browsers do for the common
+ * cases: a new &lt;TD&gt;, &lt;TR&gt;, &lt;LI&gt;, &lt;P&gt;, &lt;OPTION&gt;,
+ * &lt;DT&gt; or &lt;DD&gt; closes an open element of the same kind, and an
+ * end tag closes every element opened after the matching start tag. End
+ * tags without a matching start tag are ignored.</p>
+ *
+ * @see com.arthurdo.parser.HtmlQuery
+ */
+public class HtmlQuerySet {
+  /**
+   * Receives the matches of the queries.
+   */
+  public interface MatchHandler {
+    /**
+     * @param query the query that matched
+     * @param tag   the start tag of the matching element
+     * @param text  the text inside the element
+     * @return true to continue, false to stop the pass
+     */
+    boolean handleMatch(HtmlQuery query, HtmlTag tag, String text);
+  }
+
+  public HtmlQuerySet(MatchHandler handler) {
+    m_handler = handler;
+  }
+
+  /**
+   * Adds a query to be evaluated by the next pass.
+   *
+   * @param query compiled query
+   */
+  public void add(HtmlQuery query) {
+    m_queries.add(query);
+  }
+
+  /**
+   * Runs all queries over the stream, with entities in text and
+   * attribute values decoded.
+   *
+   * @param in input
+   * @throws IOException if error reading input stream.
+   */
+  public void run(Reader in)
+      throws IOException {
+    HtmlStreamTokenizer tok = new HtmlStreamTokenizer(in);
+    tok.setUnescaped(true);
+    run(tok);
+  }
+
+  /**
+   * Runs all queries over the rest of the token stream.
+   *
+   * @param tok tokenizer
+   * @throws IOException if error reading input stream.
+   */
+  public void run(HtmlStreamTokenizer tok)
+      throws IOException {
+    init();
+    HtmlTag tag = new HtmlTag();
+    boolean skipText = false;
+    boolean rcdata = false;
+
+    while (!m_stopped && m_running > 0 && tok.nextToken() != HtmlStreamTokenizer.TT_EOF) {
+      int ttype = tok.getTokenType();
+      if (ttype == HtmlStreamTokenizer.TT_TEXT) {
+        if (!skipText && !m_pending.isEmpty()) {
+          // the tokenizer does not unescape CDATA, but title and textarea may hold entities
+          String text = rcdata && tok.isUnescaped()
+              ? HtmlEntities.decode(tok.getStringValue().toString())
+              : tok.getStringValue().toString();
+          for (int i = 0; i < m_pending.size(); i++)
+            m_pending.get(i).m_text.append(text);
+        }
+        continue;
+      }
+      if (ttype != HtmlStreamTokenizer.TT_TAG)
+        continue;
+      skipText = rcdata = false;
+
+      try {
+        tok.parseTag(tok.getStringValue(), tag);
+      } catch (HtmlException e) {
+        continue;
+      }
+      if (tag.isEndTag()) {
+        endElement(tag);
+        continue;
+      }
+
+      int tagtype = tag.getTagType();
+      closeImplied(tagtype);
+      boolean open = !tag.isEmpty() && !contains(VOID_TAGS, tagtype);
+      startElement(tag, open);
+      if (open) {
+        switch (tagtype) {
+          case HtmlTag.T_SCRIPT:
+            tok.enterCDATAMode(C_SCRIPT_END, true);
+            skipText = true;
+            break;
+          case HtmlTag.T_STYLE:
+            tok.enterCDATAMode(C_STYLE_END, true);
+            skipText = true;
+            break;
+          case HtmlTag.T_TITLE:
+            tok.enterCDATAMode(C_TITLE_END, true);
+            rcdata = true;
+            break;
+          case HtmlTag.T_TEXTAREA:
+            tok.enterCDATAMode(C_TEXTAREA_END, true);
+            rcdata = true;
+            break;
+        }
+      }
+    }
+
+    // elements left open at the end of the document
+    while (!m_stopped && m_depth > 0)
+      pop();
+    m_pending.clear();
+  }
+
+  /**
+   * @return true if the last pass stopped because every query was
+   * satisfied or the handler asked to stop.
+   */
+  public boolean isDone() {
+    return m_stopped || m_running == 0;
+  }
+
+  /**
+   * @param query one of the queries of this set
+   * @return number of matches delivered for the query by the last pass.
+   */
+  public int getMatchCount(HtmlQuery query) {
+    int i = m_queries.indexOf(query);
+    return i == -1 || m_matches == null ? 0 : m_matches[i];
+  }
+
+  private void init() {
+    int count = m_queries.size();
+    m_stepBase = new int[count + 1];
+    for (int q = 0; q < count; q++)
+      m_stepBase[q + 1] = m_stepBase[q] + m_queries.get(q).getStepCount();
+    m_matches = new int[count];
+    m_running = 0;
+    for (int q = 0; q < count; q++) {
+      if (m_queries.get(q).getMaxMatches() > 0)
+        m_running++;
+    }
+    m_stopped = false;
+    m_pending.clear();
+    m_levels.clear();
+    m_depth = 0;
+
+    // the document root: every query may start anywhere below it
+    Level root = level(0);
+    for (int q = 0; q < count; q++)
+      root.m_masks[q] = 1L;
+  }
+
+  private void startElement(HtmlTag tag, boolean open) {
+    Level parent = m_levels.get(m_depth);
+    Level level = open ? push(tag) : null;
+
+    for (int q = 0; q < m_queries.size(); q++) {
+      HtmlQuery query = m_queries.get(q);
+      if (m_matches[q] >= query.getMaxMatches()) {
+        if (level != null)
+          level.m_masks[q] = 0;
+        continue;
+      }
+
+      long avail = parent.m_masks[q];
+      int steps = query.getStepCount();
+      long mask = avail & query.getDescendantMask();
+      for (int s = 0; s < steps; s++) {
+        int nth = query.getNth(s);
+        if ((avail & (1L << s)) == 0 && nth == 0)
+          continue;
+        if (!query.matches(s, tag))
+          continue;
+        // :nth counts siblings whether or not their ancestors match
+        if (nth != 0 && ++parent.m_counts[m_stepBase[q] + s] != nth)
+          continue;
+        if ((avail & (1L << s)) != 0)
+          mask |= 1L << (s + 1);
+      }
+
+      if ((mask & (1L << steps)) != 0) {
+        mask &= ~(1L << steps);
+        if (level != null) {
+          m_pending.add(new Pending(q, m_depth, tag));
+        } else if (!deliver(q, new HtmlTag(tag), "")) {
+          return;
+        }
+      }
+      if (level != null)
+        level.m_masks[q] = mask;
+    }
+  }
+
+  private void endElement(HtmlTag tag) {
+    int tagtype = tag.getTagType();
+    int[] boundary = contains(TABLE_PARTS, tagtype) ? TABLE_BOUNDARY : null;
+    for (int i = m_depth; i > 0; i--) {
+      Level level = m_levels.get(i);
+      if (tagtype != HtmlTag.T_UNKNOWN
+          ? level.m_type == tagtype
+          : level.m_type == HtmlTag.T_UNKNOWN && level.m_name.equalsIgnoreCase(tag.getTagString())) {
+        popTo(i);
+        return;
+      }
+      if (boundary != null && contains(boundary, level.m_type))
+        return;
+    }
+  }
+
+  /**
+   * Closes an element left open by a start tag that cannot be nested in it.
+   */
+  private void closeImplied(int tagtype) {
+    switch (tagtype) {
+      case HtmlTag.T_TD:
+      case HtmlTag.T_TH:
+        closeOpen(CELLS, ROW_BOUNDARY);
+        break;
+      case HtmlTag.T_TR:
+        closeOpen(ROWS, TABLE_BOUNDARY);
+        break;
+      case HtmlTag.T_THEAD:
+      case HtmlTag.T_TBODY:
+      case HtmlTag.T_TFOOT:
+        closeOpen(SECTIONS, TABLE_BOUNDARY);
+        break;
+      case HtmlTag.T_LI:
+        closeOpen(ITEMS, LIST_BOUNDARY);
+        break;
+      case HtmlTag.T_DT:
+      case HtmlTag.T_DD:
+        closeOpen(DEFINITIONS, DL_BOUNDARY);
+        break;
+      case HtmlTag.T_OPTION:
+        closeOpen(OPTIONS, SELECT_BOUNDARY);
+        break;
+      case HtmlTag.T_P:
+        closeOpen(PARAGRAPHS, BLOCK_BOUNDARY);
+        break;
+    }
+  }
+
+  private void closeOpen(int[] closes, int[] boundary) {
+    for (int i = m_depth; i > 0; i--) {
+      int type = m_levels.get(i).m_type;
+      if (contains(closes, type)) {
+        popTo(i);
+        return;
+      }
+      if (contains(boundary, type))
+        return;
+    }
+  }
+
+  private Level push(HtmlTag tag) {
+    Level level = level(++m_depth);
+    level.m_type = tag.getTagType();
+    level.m_name = level.m_type == HtmlTag.T_UNKNOWN ? tag.getTagString() : null;
+    return level;
+  }
+
+  private void popTo(int depth) {
+    while (!m_stopped && m_depth >= depth)
+      pop();
+  }
+
+  private void pop() {
+    for (int i = 0; i < m_pending.size(); ) {
+      Pending pending = m_pending.get(i);
+      if (pending.m_depth == m_depth) {
+        m_pending.remove(i);
+        if (!deliver(pending.m_query, pending.m_tag, pending.m_text.toString()))
+          return;
+      } else {
+        i++;
+      }
+    }
+    m_depth--;
+  }
+
+  private boolean deliver(int q, HtmlTag tag, String text) {
+    HtmlQuery query = m_queries.get(q);
+    if (m_matches[q] >= query.getMaxMatches())
+      return true;
+    if (++m_matches[q] == query.getMaxMatches())
+      m_running--;
+    if (!m_handler.handleMatch(query, tag, text))
+      m_stopped = true;
+    return !m_stopped;
+  }
+
+  /**
+   * @return the level at the depth, reset for a new element.
+   */
+  private Level level(int depth) {
+    int steps = m_stepBase[m_queries.size()];
+    Level level;
+    if (depth < m_levels.size()) {
+      level = m_levels.get(depth);
+      if (level.m_counts.length < steps)
+        level.m_counts = new int[steps];
+      else
+        Arrays.fill(level.m_counts, 0);
+      if (level.m_masks.length < m_queries.size())
+        level.m_masks = new long[m_queries.size()];
+    } else {
+      level = new Level(m_queries.size(), steps);
+      m_levels.add(level);
+    }
+    return level;
+  }
+
+  private static boolean contains(int[] types, int type) {
+    for (int i = 0; i < types.length; i++) {
+      if (types[i] == type)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * An open element.
+   */
+  private static class Level {
+    Level(int queries, int steps) {
+      m_masks = new long[queries];
+      m_counts = new int[steps];
+    }
+
+    int m_type;
+    String m_name;
+    /** bit s set: step s of the query is the next to match below this element */
+    long[] m_masks;
+    /** children matching each :nth step so far */
+    int[] m_counts;
+  }
+
+  /**
+   * A match waiting for the end of its element.
+   */
+  private static class Pending {
+    Pending(int query, int depth, HtmlTag tag) {
+      m_query = query;
+      m_depth = depth;
+      m_tag = new HtmlTag(tag);
+    }
+
+    final int m_query;
+    final int m_depth;
+    final HtmlTag m_tag;
+    final StringBuffer m_text = new StringBuffer();
+  }
+
+  private static final int[] VOID_TAGS = {
+      HtmlTag.T_AREA, HtmlTag.T_BASE, HtmlTag.T_BASEFONT, HtmlTag.T_BGSOUND, HtmlTag.T_BR, HtmlTag.T_COL,
+      HtmlTag.T_EMBED, HtmlTag.T_FRAME, HtmlTag.T_HR, HtmlTag.T_IMG, HtmlTag.T_INPUT, HtmlTag.T_ISINDEX,
+      HtmlTag.T_LINK, HtmlTag.T_META, HtmlTag.T_NEXTID, HtmlTag.T_PARAM, HtmlTag.T_WBR};
+  private static final int[] TABLE_PARTS = {
+      HtmlTag.T_TD, HtmlTag.T_TH, HtmlTag.T_TR, HtmlTag.T_THEAD, HtmlTag.T_TBODY, HtmlTag.T_TFOOT};
+  private static final int[] CELLS = {HtmlTag.T_TD, HtmlTag.T_TH};
+  private static final int[] ROWS = {HtmlTag.T_TR};
+  private static final int[] SECTIONS = {HtmlTag.T_THEAD, HtmlTag.T_TBODY, HtmlTag.T_TFOOT};
+  private static final int[] ITEMS = {HtmlTag.T_LI};
+  private static final int[] DEFINITIONS = {HtmlTag.T_DT, HtmlTag.T_DD};
+  private static final int[] OPTIONS = {HtmlTag.T_OPTION};
+  private static final int[] PARAGRAPHS = {HtmlTag.T_P};
+  private static final int[] ROW_BOUNDARY = {HtmlTag.T_TR, HtmlTag.T_TABLE};
+  private static final int[] TABLE_BOUNDARY = {HtmlTag.T_TABLE};
+  private static final int[] LIST_BOUNDARY = {HtmlTag.T_UL, HtmlTag.T_OL, HtmlTag.T_MENU, HtmlTag.T_DIR};
+  private static final int[] DL_BOUNDARY = {HtmlTag.T_DL};
+  private static final int[] SELECT_BOUNDARY = {HtmlTag.T_SELECT};
+  private static final int[] BLOCK_BOUNDARY = {
+      HtmlTag.T_TD, HtmlTag.T_TH, HtmlTag.T_LI, HtmlTag.T_DD, HtmlTag.T_DT, HtmlTag.T_DIV,
+      HtmlTag.T_BLOCKQUOTE, HtmlTag.T_TABLE, HtmlTag.T_FORM, HtmlTag.T_BODY};
+
+  private static final char[] C_SCRIPT_END = "</script>".toCharArray();
+  private static final char[] C_STYLE_END = "</style>".toCharArray();
+  private static final char[] C_TITLE_END = "</title>".toCharArray();
+  private static final char[] C_TEXTAREA_END = "</textarea>".toCharArray();
+
+  private final MatchHandler m_handler;
+  private final ArrayList<HtmlQuery> m_queries = new ArrayList<HtmlQuery>();
+  private int[] m_stepBase;
+  private int[] m_matches = null;
+  private int m_running = 0;
+  private boolean m_stopped = false;
+
+  private final ArrayList<Level> m_levels = new ArrayList<Level>();
+  private int m_depth = 0;
+  private final ArrayList<Pending> m_pending = new ArrayList<Pending>();
+}
@@ -19,12 +19,10 @@
 
 package com.arthurdo.parser;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.Hashtable;
 
 /**
  * <p>HtmlStreamTokenizer is an HTML parser that is similar
@@ -65,6 +63,9 @@ import java.util.Hashtable;
  * <li> 06/14/99 text is now returned as 'runs' instead of being
  * broken up into words as in previous versions. You can use a StringTokenizer
  * to break your text into words.
+ * <li> the input is now read into an internal char window and runs of
+ * text, tag and comment characters are copied from it in bulk instead of
+ * one read() and one append() per character.
  * </ul>
  *
  * @author Arthur Do <arthur@cs.stanford.edu>
@@ -100,24 +101,44 @@ public class HtmlStreamTokenizer {
    */
   public static final int TT_ENTITYREFERENCE = -6;
 
+  /**
+   * push mode only: the input pushed so far is used up.
+   */
+  /*package*/ static final int TT_NEED_INPUT = -7;
+  private static final int C_NEED_INPUT = -2;
+
   /**
    * @param in input stream
    * @deprecated use HtmlStreamTokenizer(Reader) instead.
-   * This version of the constructor can lead to 10x slower code
-   * because of the InputStreamReader wrapper.
+   * This version of the constructor decodes with the platform
+   * default charset.
    */
   public HtmlStreamTokenizer(InputStream in) {
-    this(new BufferedReader(new InputStreamReader(in)));
+    this(new InputStreamReader(in));
   }
 
   /**
-   * @param in Reader. The input is assumed to be buffered as needed.
+   * @param in Reader. The tokenizer reads it in blocks into its own
+   *           buffer, so it need not be buffered. Characters may be read
+   *           ahead of the current token.
    */
   public HtmlStreamTokenizer(Reader in) {
     m_in = in;
     m_state = STATE_TEXT;
   }
 
+  /**
+   * Creates a tokenizer in push mode, without a reader. Input is handed
+   * to it with push() and nextToken() returns TT_NEED_INPUT when it runs
+   * out, keeping the state of the token in progress.
+   *
+   * @see com.arthurdo.parser.HtmlPushTokenizer
+   */
+  /*package*/ HtmlStreamTokenizer() {
+    m_in = null;
+    m_state = STATE_TEXT;
+  }
+
   /**
    * @return token type, one of the <b>TT_</b> defines
    */
@@ -189,11 +210,16 @@ public class HtmlStreamTokenizer {
    */
   public int nextToken()
       throws IOException {
-    m_buf.setLength(0);
-    m_whitespace.setLength(0);
-    int ltcount = 0;
-    m_isCDTATA = false;
-    boolean hasAmp = false;
+    if (m_resume) {
+      // push mode: carry on with the token that ran out of input
+      m_resume = false;
+    } else {
+      m_buf.setLength(0);
+      m_whitespace.setLength(0);
+      m_ltcount = 0;
+      m_isCDTATA = false;
+      m_hasAmp = false;
+    }
 
     while (true) {
       int c;
@@ -206,7 +232,11 @@ public class HtmlStreamTokenizer {
       } else if (m_cdata < -1)
         c = m_cdata_end[m_cdata++ + m_cdata_end.length + 1];
       else {
-        c = m_in.read();
+        c = read();
+        if (c == C_NEED_INPUT) {
+          m_resume = true;
+          return TT_NEED_INPUT;
+        }
       }
 
       if (c < 0) {
@@ -214,7 +244,7 @@ public class HtmlStreamTokenizer {
         m_state = STATE_EOF;
 
         if (m_buf.length() > 0 && state == STATE_TEXT) {
-          if (m_unescape && hasAmp)
+          if (m_unescape && m_hasAmp)
             unescape(m_buf);
           return m_ttype = TT_TEXT;
         } else
@@ -249,7 +279,13 @@ public class HtmlStreamTokenizer {
 
           } else if (c == '<') {
             boolean inCDATApushback = m_cdata < -1;
-            int peek = inCDATApushback ? m_cdata_end[m_cdata++ + m_cdata_end.length + 1] : m_in.read();
+            int peek = inCDATApushback ? m_cdata_end[m_cdata++ + m_cdata_end.length + 1] : read();
+            if (peek == C_NEED_INPUT) {
+              // look at the '<' again once there is more input
+              m_pushback = c;
+              m_resume = true;
+              return TT_NEED_INPUT;
+            }
 
             if (peek == '!')
               m_state = STATE_BANGTAG;
@@ -258,14 +294,16 @@ public class HtmlStreamTokenizer {
               m_buf.append("<<");
               break;
             } else {
-              m_pushback = peek;
+              // give the peeked char back, to the exit string if it came from there
               if (inCDATApushback)
                 --m_cdata;
+              else
+                m_pushback = peek;
               m_state = STATE_TAG;
             }
 
             if (m_buf.length() > 0) {
-              if (m_unescape && hasAmp)
+              if (m_unescape && m_hasAmp)
                 unescape(m_buf);
               return m_ttype = TT_TEXT;
             }
@@ -277,7 +315,7 @@ public class HtmlStreamTokenizer {
 						m_state = STATE_WS;
 						if (m_buf.length() > 0)
 						{
-							if (m_unescape && hasAmp)
+							if (m_unescape && m_hasAmp)
 								unescape(m_buf);
 							return m_ttype = TT_TEXT;
 						}
@@ -289,9 +327,11 @@ public class HtmlStreamTokenizer {
                 m_state = STATE_ENTITYREF;
                 return m_ttype = TT_TEXT;
               } else
-                hasAmp = true;
+                m_hasAmp = true;
             }
             m_buf.append((char) c);
+            if (m_cdata == -1)
+              appendRun('<', '&', '<');
           }
         }
         break;
@@ -317,15 +357,17 @@ public class HtmlStreamTokenizer {
             m_state = STATE_TAG_QUOTE;
           } else {
             m_buf.append((char) c);
+            if (m_cdata == -1)
+              appendRun('>', C_SINGLEQUOTE, C_DOUBLEQUOTE);
           }
         }
         break;
         case STATE_BANGTAG: {
           int buflen = m_buf.length();
           if (c == '<') {
-            ++ltcount;
+            ++m_ltcount;
             m_buf.append((char) c);
-          } else if (c == '>' && --ltcount < 0) {
+          } else if (c == '>' && --m_ltcount < 0) {
             m_state = STATE_TEXT;
             return m_ttype = TT_BANGTAG;
           } else if (c == '-' && buflen == 1 && m_buf.charAt(0) == '-') {
@@ -352,6 +394,8 @@ public class HtmlStreamTokenizer {
             m_buf.append((char) c);
             if (c == m_tagquote) {
               m_state = STATE_TAG;
+            } else if (m_cdata == -1) {
+              appendRun('>', m_tagquote, m_tagquote);
             }
           }
         }
@@ -370,6 +414,8 @@ public class HtmlStreamTokenizer {
           }
 
           m_buf.append((char) c);
+          if (c != '-' && m_cdata == -1)
+            appendRun('-', '>', '>');
         }
         break;
         case STATE_ENTITYREF: {
@@ -387,6 +433,84 @@ public class HtmlStreamTokenizer {
     }
   }
 
+  /**
+   * Returns the next character of the input, refilling the window from
+   * the reader when it runs out.
+   */
+  private int read()
+      throws IOException {
+    if (m_pos < m_limit)
+      return m_window[m_pos++];
+    if (m_in == null)
+      return m_endOfInput ? -1 : C_NEED_INPUT;
+
+    int n;
+    do {
+      n = m_in.read(m_window, 0, m_window.length);
+    } while (n == 0);
+
+    if (n < 0) {
+      m_pos = m_limit = 0;
+      return -1;
+    }
+    m_pos = 1;
+    m_limit = n;
+    return m_window[0];
+  }
+
+  /**
+   * Adds input to the window of a push mode tokenizer, keeping whatever
+   * has not been read yet.
+   */
+  /*package*/ void push(char[] chars, int off, int len) {
+    int unread = m_limit - m_pos;
+    if (unread + len > m_window.length) {
+      char[] window = new char[Math.max(unread + len, m_window.length * 2)];
+      System.arraycopy(m_window, m_pos, window, 0, unread);
+      m_window = window;
+    } else if (m_limit + len > m_window.length) {
+      System.arraycopy(m_window, m_pos, m_window, 0, unread);
+    } else {
+      System.arraycopy(chars, off, m_window, m_limit, len);
+      m_limit += len;
+      return;
+    }
+    System.arraycopy(chars, off, m_window, unread, len);
+    m_pos = 0;
+    m_limit = unread + len;
+  }
+
+  /**
+   * Tells a push mode tokenizer that no more input will be pushed.
+   */
+  /*package*/ void setEndOfInput() {
+    m_endOfInput = true;
+  }
+
+  /**
+   * Appends the characters up to the next stop character straight from
+   * the window to the token buffer. The stop character itself is left in
+   * the window for the state machine. Only scans what is already buffered.
+   */
+  private void appendRun(int stop1, int stop2, int stop3) {
+    char[] window = m_window;
+    int begin = m_pos;
+    int limit = m_limit;
+    int i = begin;
+    while (i < limit) {
+      char ch = window[i];
+      if (ch == stop1 || ch == stop2 || ch == stop3)
+        break;
+      if (ch == '\n')
+        m_lineno++;
+      i++;
+    }
+    if (i > begin) {
+      m_buf.append(window, begin, i - begin);
+      m_pos = i;
+    }
+  }
+
   /**
    * The reason this function takes an HtmlTag argument rather than returning
    * a newly created HtmlTag object is so that you can create your own
@@ -400,19 +524,19 @@ public class HtmlStreamTokenizer {
       throws HtmlException {
     tag.reset();
 
-    String buf = sbuf.toString();
-    int len = buf.length();
+    char[] buf = tag.load(sbuf);
+    int len = sbuf.length();
     int idx = 0;
     int begin = 0;
 
     // parse tag
-    while (idx < len && isSpace(buf.charAt(idx)))
+    while (idx < len && isSpace(buf[idx]))
       idx++;
 
     if (idx == len)
       throw new HtmlException("parse empty tag");
 
-    if (buf.charAt(idx) == C_ENDTAG) {
+    if (buf[idx] == C_ENDTAG) {
       tag.setEndTag(true);
       idx++;
     }
@@ -422,13 +546,13 @@ public class HtmlStreamTokenizer {
 
     begin = idx;
     // deal with empty tags like <img/>
-    while (idx < len && !isSpace(buf.charAt(idx)) && buf.charAt(idx) != C_EMPTY)
+    while (idx < len && !isSpace(buf[idx]) && buf[idx] != C_EMPTY)
       idx++;
-    String token = buf.substring(begin, idx);
 
-    tag.setTag(token);
+    tag.setTag(begin, idx);
+    tag.setUnescaped(m_unescape);
 
-    parseParams(tag, buf, idx);
+    parseParams(tag, buf, idx, len);
   }
 
   /**
@@ -437,15 +561,10 @@ public class HtmlStreamTokenizer {
    *
    * @param buf text buffer to unescape
    * @return a string with all HTML escape sequences removed
+   * @see com.arthurdo.parser.HtmlEntities
    */
   public static String unescape(String buf) {
-    // quick check to see if there are any escape characters
-    if (buf.indexOf('&') == -1)
-      return buf;
-
-    StringBuffer b = new StringBuffer(buf);
-    unescape(b);
-    return b.toString();
+    return HtmlEntities.decode(buf);
   }
 
 
@@ -454,57 +573,23 @@ public class HtmlStreamTokenizer {
    * <b>&amp;copy;</b> becomes <b>&copy;</b>.
    *
    * @param buf will remove all HTML escape sequences from this buffer
+   * @see com.arthurdo.parser.HtmlEntities
    */
   public static void unescape(StringBuffer buf) {
-    int len = buf.length();
-    int i = 0;
-    int r = i;
-    while (i < len) {
-      char ch = buf.charAt(i);
-      if (ch == '&') {
-        int saver = r;
-        String esc = "";
-        int j = i + 1;
-        for (; j < len; j++) {
-          buf.setCharAt(r++, ch);
-          ch = buf.charAt(j);
-          if (ch == ';' || ch == '<' || (isPunct(ch) && ch != '#') || isSpace(ch)) {
-            Character e = parseEscape(esc);
-            if (e != null) {
-              // found escape sequence
-              // as opposed to false or unrecognized escape, e.g. AT&T.
-              r = saver;
-              char v = e.charValue();
-              buf.setCharAt(r++, v);
-            }
-            i = j;
-            // this handles things like &lt&gt
-            if (ch != '&')
-              i++;  // if not '&' then discard char
-            break;
-          }
-          esc += ch;
-        }
-        if (j == len) {
-          Character e = parseEscape(esc);
-          if (e != null) {
-            r = saver;
-            buf.setCharAt(r++, e.charValue());
-          }
-          break;
-        }
-      } else {
-        buf.setCharAt(r++, ch);
-        i++;
-      }
-    }
-    buf.setLength(r);
+    HtmlEntities.decode(buf);
   }
 
   private int m_ttype;
+  private char[] m_window = new char[WINDOW_SIZE];
+  private int m_pos = 0;
+  private int m_limit = 0;
   private StringBuffer m_buf = new StringBuffer(128);
   private StringBuffer m_whitespace = new StringBuffer();
   private int m_pushback = 0;
+  private int m_ltcount = 0;
+  private boolean m_hasAmp = false;
+  private boolean m_resume = false;
+  private boolean m_endOfInput = false;
   private int m_lineno = 1;
   private int m_comment = 0;
 
@@ -525,8 +610,8 @@ public class HtmlStreamTokenizer {
 
   private int m_state = STATE_TEXT;
 
-  //private InputStream m_in;
-  private Reader m_in; //input reader appears to be an order of magnitude slower than inputstream!
+  private Reader m_in; //read in blocks of WINDOW_SIZE, never one char at a time; null in push mode
+  private static final int WINDOW_SIZE = 8192;
 
   /*package*/ static final char C_ENDTAG = '/';
   private static final char C_EMPTY = '/';  // XML char for empty tags
@@ -542,7 +627,6 @@ public class HtmlStreamTokenizer {
   private static final byte CT_QUOTE = 8;
   private static final byte CT_COMMENT = 16;
 
-  private static Hashtable m_escapes = new Hashtable();
   private boolean m_unescape = false;
   private boolean m_getEntities = false; //return TT_ENTITYREFERENCE
 
@@ -557,93 +641,6 @@ public class HtmlStreamTokenizer {
     m_ctype['\t'] = CT_WHITESPACE;
     for (int i = 0x0E; i <= 0x1F; i++)
       m_ctype[i] = CT_WHITESPACE;
-
-    m_escapes.put(new String("Aacute"), new Character('\u00c1'));
-    m_escapes.put(new String("aacute"), new Character('\u00e1'));
-    m_escapes.put(new String("Acirc"), new Character('\u00c2'));
-    m_escapes.put(new String("acirc"), new Character('\u00e2'));
-    m_escapes.put(new String("AElig"), new Character('\u00c6'));
-    m_escapes.put(new String("aelig"), new Character('\u00e6'));
-    m_escapes.put(new String("Agrave"), new Character('\u00c0'));
-    m_escapes.put(new String("agrave"), new Character('\u00e0'));
-    m_escapes.put(new String("amp"), new Character('&'));
-    m_escapes.put(new String("aring"), new Character('\u00e5'));
-    m_escapes.put(new String("Atilde"), new Character('\u00c3'));
-    m_escapes.put(new String("atilde"), new Character('\u00e3'));
-    m_escapes.put(new String("Auml"), new Character('\u00c4'));
-    m_escapes.put(new String("auml"), new Character('\u00e4'));
-    m_escapes.put(new String("brvbar"), new Character('\u00a6'));
-    m_escapes.put(new String("Ccedil"), new Character('\u00c7'));
-    m_escapes.put(new String("ccedil"), new Character('\u00e7'));
-    m_escapes.put(new String("cent"), new Character('\u00a2'));
-    m_escapes.put(new String("copy"), new Character('\u00a9'));
-    m_escapes.put(new String("deg"), new Character('\u00b0'));
-    m_escapes.put(new String("Eacute"), new Character('\u00c9'));
-    m_escapes.put(new String("eacute"), new Character('\u00e9'));
-    m_escapes.put(new String("Ecirc"), new Character('\u00ca'));
-    m_escapes.put(new String("ecirc"), new Character('\u00ea'));
-    m_escapes.put(new String("Egrave"), new Character('\u00c8'));
-    m_escapes.put(new String("egrave"), new Character('\u00e8'));
-    m_escapes.put(new String("ETH"), new Character('\u00d0'));
-    m_escapes.put(new String("eth"), new Character('\u00f0'));
-    m_escapes.put(new String("Euml"), new Character('\u00cb'));
-    m_escapes.put(new String("euml"), new Character('\u00eb'));
-    m_escapes.put(new String("frac12"), new Character('\u00bd'));
-    m_escapes.put(new String("frac14"), new Character('\u00bc'));
-    m_escapes.put(new String("frac34"), new Character('\u00be'));
-    m_escapes.put(new String("gt"), new Character('>'));
-    m_escapes.put(new String("iacute"), new Character('\u00ed'));
-    m_escapes.put(new String("Icirc"), new Character('\u00ce'));
-    m_escapes.put(new String("icirc"), new Character('\u00ee'));
-    m_escapes.put(new String("iexcl"), new Character('\u00a1'));
-    m_escapes.put(new String("Igrave"), new Character('\u00cc'));
-    m_escapes.put(new String("igrave"), new Character('\u00ec'));
-    m_escapes.put(new String("iquest"), new Character('\u00bf'));
-    m_escapes.put(new String("Iuml"), new Character('\u00cf'));
-    m_escapes.put(new String("iuml"), new Character('\u00ef'));
-    m_escapes.put(new String("laquo"), new Character('\u00ab'));
-    m_escapes.put(new String("lt"), new Character('<'));
-    m_escapes.put(new String("middot"), new Character('\u00b7'));
-    m_escapes.put(new String("nbsp"), new Character('\u00A0'));
-    m_escapes.put(new String("not"), new Character('\u00ac'));
-    m_escapes.put(new String("Ntilde"), new Character('\u00d1'));
-    m_escapes.put(new String("ntilde"), new Character('\u00f1'));
-    m_escapes.put(new String("Oacute"), new Character('\u00d3'));
-    m_escapes.put(new String("oacute"), new Character('\u00f3'));
-    m_escapes.put(new String("Ocirc"), new Character('\u00d4'));
-    m_escapes.put(new String("ocirc"), new Character('\u00f4'));
-    m_escapes.put(new String("Ograve"), new Character('\u00d2'));
-    m_escapes.put(new String("ograve"), new Character('\u00f2'));
-    m_escapes.put(new String("Oslash"), new Character('\u00d8'));
-    m_escapes.put(new String("oslash"), new Character('\u00f8'));
-    m_escapes.put(new String("Otilde"), new Character('\u00d5'));
-    m_escapes.put(new String("otilde"), new Character('\u00f5'));
-    m_escapes.put(new String("Ouml"), new Character('\u00d6'));
-    m_escapes.put(new String("ouml"), new Character('\u00f6'));
-    m_escapes.put(new String("para"), new Character('\u00b6'));
-    m_escapes.put(new String("plusmn"), new Character('\u00b1'));
-    m_escapes.put(new String("pound"), new Character('\u00a3'));
-    m_escapes.put(new String("quot"), new Character('"'));
-    m_escapes.put(new String("reg"), new Character('\u00ae'));
-    m_escapes.put(new String("sect"), new Character('\u00a7'));
-    m_escapes.put(new String("sup1"), new Character('\u00b9'));
-    m_escapes.put(new String("sup2"), new Character('\u00b2'));
-    m_escapes.put(new String("sup3"), new Character('\u00b3'));
-    m_escapes.put(new String("szlig"), new Character('\u00df'));
-    m_escapes.put(new String("THORN"), new Character('\u00de'));
-    m_escapes.put(new String("thorn"), new Character('\u00fe'));
-    m_escapes.put(new String("Uacute"), new Character('\u00da'));
-    m_escapes.put(new String("uacute"), new Character('\u00fa'));
-    m_escapes.put(new String("Ucirc"), new Character('\u00db'));
-    m_escapes.put(new String("ucirc"), new Character('\u00fb'));
-    m_escapes.put(new String("Ugrave"), new Character('\u00d9'));
-    m_escapes.put(new String("ugrave"), new Character('\u00f9'));
-    m_escapes.put(new String("Uuml"), new Character('\u00dc'));
-    m_escapes.put(new String("uuml"), new Character('\u00fc'));
-    m_escapes.put(new String("Yacute"), new Character('\u00dd'));
-    m_escapes.put(new String("yacute"), new Character('\u00fd'));
-    m_escapes.put(new String("yen"), new Character('\u00a5'));
-    m_escapes.put(new String("yuml"), new Character('\u00ff'));
   }
 
   private static boolean isSpace(int c) {
@@ -662,41 +659,18 @@ public class HtmlStreamTokenizer {
     m_unescape = unescape;
   }
 
-  private static Character parseEscape(String s) {
-    int len = s.length();
-    if (len == 0)
-      return null;
-    Character ch = null;
-
-    if (s.charAt(0) == '#') {
-      if (len <= 1)
-        return null;
-
-      int code = 0;
-      for (int i = 1; i < len; i++) {
-        if (!Character.isDigit(s.charAt(i)))
-          return null;
-        code = (code * 10) + Character.digit(s.charAt(i), 10);
-      }
-      ch = new Character((char) code);
-    } else {
-      ch = (Character) m_escapes.get(s);
-    }
-
-    return ch;
-  }
-
-  private void parseParams(HtmlTag tag, String buf, int idx)
-      throws HtmlException {
-    int len = buf.length();
+  /**
+   * Records the params as ranges of buf. Values are only turned into
+   * Strings, and unescaped, when the tag is asked for them.
+   */
+  private static void parseParams(HtmlTag tag, char[] buf, int idx, int len) {
     int begin = 0;
 
     if (len - 1 >= idx) {
       int end = len - 1;
-      while (end > idx && isSpace(buf.charAt(end)))//remove trailing whitespace
+      while (end > idx && isSpace(buf[end]))//remove trailing whitespace
         end--;
-      //todo: tag.setWhitespaceAtEnd(buf.substring(end, len-1) );
-      if (buf.charAt(end) == C_EMPTY) {
+      if (buf[end] == C_EMPTY) {
         tag.setEmpty(true);
         end--;
       }
@@ -704,52 +678,44 @@ public class HtmlStreamTokenizer {
     }
 
     while (idx < len) {
-      begin = idx;
-      while (idx < len && isSpace(buf.charAt(idx)))//skip space before attribute name
+      while (idx < len && isSpace(buf[idx]))//skip space before attribute name
         idx++;
 
       if (idx == len)//at end
         continue;
 
-      String whitespaceBefore = buf.substring(begin, idx);
-
       begin = idx;
-      if (buf.charAt(idx) == C_DOUBLEQUOTE) //how often are attribute names quoted??
+      if (buf[idx] == C_DOUBLEQUOTE) //how often are attribute names quoted??
       {
         idx++;
-        while (idx < len && buf.charAt(idx) != C_DOUBLEQUOTE)//look for close quote
+        while (idx < len && buf[idx] != C_DOUBLEQUOTE)//look for close quote
           idx++;
         if (idx == len)
           continue;  // bad name
         idx++;
-      } else if (buf.charAt(idx) == C_SINGLEQUOTE) //how often are attribute names quoted??
+      } else if (buf[idx] == C_SINGLEQUOTE) //how often are attribute names quoted??
       {
         idx++;
-        while (idx < len && buf.charAt(idx) != C_SINGLEQUOTE)//look for close quote
+        while (idx < len && buf[idx] != C_SINGLEQUOTE)//look for close quote
           idx++;
         if (idx == len)
           continue;  // bad name
         idx++;
       } else {
         //if not quoted look for whitespace or '=' to terminate attribute name
-        while (idx < len && !isSpace(buf.charAt(idx)) && buf.charAt(idx) != '=')
+        while (idx < len && !isSpace(buf[idx]) && buf[idx] != '=')
           idx++;
       }
 
-      String name = buf.substring(begin, idx);
+      int nameBegin = begin;
+      int nameEnd = idx;
 
-      begin = idx;
-      if (idx < len && isSpace(buf.charAt(idx)))//skip whitespace after attribute name
-      {
-        while (idx < len && isSpace(buf.charAt(idx)))
-          idx++;
-      }
+      while (idx < len && isSpace(buf[idx]))//skip whitespace after attribute name
+        idx++;
 
-      if (idx == len || buf.charAt(idx) != '=') //attribute name only, no value specified
+      if (idx == len || buf[idx] != '=') //attribute name only, no value specified
       {
-        // name with empty value
-        tag.setParam(name, name); //set the attribute name as the value (SGML tag minimalization rule)
-        tag.setWhitespace(name, whitespaceBefore, "");
+        tag.addParam(nameBegin, nameEnd, -1, -1);
         continue;
       }
       idx++; //skip past the '='
@@ -757,31 +723,25 @@ public class HtmlStreamTokenizer {
       if (idx == len)
         continue;
 
-      if (isSpace(buf.charAt(idx))) {
-        while (idx < len && isSpace(buf.charAt(idx)))//skip past whitespace after '='
+      if (isSpace(buf[idx])) {
+        while (idx < len && isSpace(buf[idx]))//skip past whitespace after '='
           idx++;
 
         // special case: if value is surrounded by quotes
         // then it can have a space after the '='
-        //if (idx == len || (buf.charAt(idx) != C_DOUBLEQUOTE && buf.charAt(idx) != C_SINGLEQUOTE))
         if (idx == len) {
-          // name with empty value
-          tag.setParam(name, name); //set the attribute name as the value (SGML tag minimalization rule)
-          tag.setWhitespace(name, whitespaceBefore, buf.substring(begin, idx));
+          tag.addParam(nameBegin, nameEnd, -1, -1);
           continue;
         }
       }
 
-      char quote = buf.charAt(idx);
-      int includeQuote = (quote == C_DOUBLEQUOTE || quote == C_SINGLEQUOTE) ? 1 : 0;
-      String whitespaceAfter = buf.substring(begin, idx + includeQuote);
-
+      char quote = buf[idx];
       begin = idx;
       int end = begin;
       if (quote == C_DOUBLEQUOTE) {
         idx++;
         begin = idx;
-        while (idx < len && buf.charAt(idx) != C_DOUBLEQUOTE)
+        while (idx < len && buf[idx] != C_DOUBLEQUOTE)
           idx++;
         if (idx == len)
           continue;  // bad value
@@ -790,26 +750,19 @@ public class HtmlStreamTokenizer {
       } else if (quote == C_SINGLEQUOTE) {
         idx++;
         begin = idx;
-        while (idx < len && buf.charAt(idx) != C_SINGLEQUOTE)
+        while (idx < len && buf[idx] != C_SINGLEQUOTE)
           idx++;
         if (idx == len)
           continue;  // bad value
         end = idx;
         idx++;
       } else {//not quoted, whitespace terminates attribute value
-        while (idx < len && !isSpace(buf.charAt(idx)))
+        while (idx < len && !isSpace(buf[idx]))
           idx++;
         end = idx;
       }
 
-      String value = buf.substring(begin, end);
-
-      if (m_unescape)
-        value = unescape(value);
-
-      tag.setParam(name, value);
-      tag.setWhitespace(name, whitespaceBefore, whitespaceAfter);
+      tag.addParam(nameBegin, nameEnd, begin, end);
     }
   }
 }
-
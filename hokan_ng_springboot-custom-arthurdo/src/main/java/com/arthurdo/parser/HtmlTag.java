@@ -19,12 +19,19 @@
 
 package com.arthurdo.parser;
 
+import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.Hashtable;
-import java.util.Vector;
+import java.util.NoSuchElementException;
 
 /**
  * HtmlTag is a helper class to store parsed tag information.
+ * <p/>
+ * <p>A tag parsed by HtmlStreamTokenizer keeps a copy of the tag text and
+ * the offsets of its name and params in arrays that are reused across
+ * reset() calls. The tag type is looked up directly over the text, and
+ * Strings for the name and the params are only created when they are
+ * asked for, so reusing one HtmlTag for a whole page allocates nothing
+ * per tag beyond the values the caller reads.
  *
  * @author Arthur Do <arthur@cs.stanford.edu>
  * @version 2.01 09/12/97
@@ -35,13 +42,18 @@ public class HtmlTag {
   }
 
   public HtmlTag(HtmlTag orig) {
-    m_tag = new String(orig.m_tag);
+    m_chars = Arrays.copyOf(orig.m_chars, orig.m_length);
+    m_length = orig.m_length;
+    m_tag = orig.m_tag;
+    m_tagBegin = orig.m_tagBegin;
+    m_tagEnd = orig.m_tagEnd;
     m_ttype = orig.m_ttype;
     m_endtag = orig.m_endtag;
-    m_names = (Vector) orig.m_names.clone();
-    m_values = (Vector) orig.m_values.clone();
-//		m_params = (Hashtable)orig.m_params.clone();
-//		m_originalParamNames = (Hashtable)orig.m_originalParamNames.clone();
+    m_count = orig.m_count;
+    m_offsets = Arrays.copyOf(orig.m_offsets, Math.max(orig.m_count, 1) * 4);
+    m_names = Arrays.copyOf(orig.m_names, Math.max(orig.m_count, 1));
+    m_values = Arrays.copyOf(orig.m_values, Math.max(orig.m_count, 1));
+    m_unescape = orig.m_unescape;
     m_empty = orig.m_empty;
   }
 
@@ -53,14 +65,15 @@ public class HtmlTag {
    */
   public void setTag(String tag)
       throws HtmlException {
-    try {
-      m_tag = tag;
-      Object value = m_tags.get(tag.toUpperCase());
-      if (value != null)
-        m_ttype = ((Integer) value).intValue();
-    } catch (StringIndexOutOfBoundsException e) {
+    if (tag == null)
       throw new HtmlException("invalid tag");
-    }
+    m_tag = tag;
+    m_tagBegin = m_tagEnd = -1;
+    int node = 0;
+    for (int i = 0; i < tag.length() && node != -1; i++)
+      node = nextNode(node, tag.charAt(i));
+    if (node != -1 && m_trieTypes[node] != T_UNKNOWN)
+      m_ttype = m_trieTypes[node];
   }
 
   /**
@@ -74,6 +87,8 @@ public class HtmlTag {
    * @return tag name, the same name as passed to the constructor.
    */
   public String getTagString() {
+    if (m_tag == null && m_tagBegin != -1)
+      m_tag = new String(m_chars, m_tagBegin, m_tagEnd - m_tagBegin);
     return m_tag;
   }
 
@@ -94,7 +109,7 @@ public class HtmlTag {
   public String getParam(String name) {
     final int idx = indexOfName(name);
     if (idx != -1)
-      return (String) m_values.elementAt(idx);
+      return getParamValue(idx);
 
     return null;
   }
@@ -106,7 +121,12 @@ public class HtmlTag {
    * @return The name of the indexed param
    */
   public String getParamName(int i) {
-    return (String) m_names.elementAt(i);
+    checkIndex(i);
+    if (m_names[i] == null) {
+      int begin = m_offsets[i * 4];
+      m_names[i] = new String(m_chars, begin, m_offsets[i * 4 + 1] - begin);
+    }
+    return m_names[i];
   }
 
   /**
@@ -116,7 +136,18 @@ public class HtmlTag {
    * @return The value of the indexed param
    */
   public String getParamValue(int i) {
-    return (String) m_values.elementAt(i);
+    checkIndex(i);
+    if (m_values[i] == null) {
+      int begin = m_offsets[i * 4 + 2];
+      if (begin == -1) {
+        // no value, the name is the value (SGML tag minimalization rule)
+        m_values[i] = getParamName(i);
+      } else {
+        String value = new String(m_chars, begin, m_offsets[i * 4 + 3] - begin);
+        m_values[i] = m_unescape ? HtmlStreamTokenizer.unescape(value) : value;
+      }
+    }
+    return m_values[i];
   }
 
   /**
@@ -149,10 +180,16 @@ public class HtmlTag {
    * @param value value associated with name
    */
   public void setParam(String name, String value) {
-    m_names.addElement(name);
-    m_values.addElement(value);
+    int i = addParam(-1, -1, -1, -1);
+    m_names[i] = name;
+    m_values[i] = value;
   }
 
+  /**
+   * @deprecated the white space around params is not kept and this
+   * method is no longer called by the parser.
+   */
+  @Deprecated
   public void setWhitespace(String name, String whitespaceBefore, String whitespaceAfter) {
   }
 
@@ -164,30 +201,35 @@ public class HtmlTag {
   public void removeParam(String name) {
     final int idx = indexOfName(name);
     if (idx != -1) {
-      m_names.removeElementAt(idx);
-      m_values.removeElementAt(idx);
+      int moved = m_count - idx - 1;
+      System.arraycopy(m_offsets, (idx + 1) * 4, m_offsets, idx * 4, moved * 4);
+      System.arraycopy(m_names, idx + 1, m_names, idx, moved);
+      System.arraycopy(m_values, idx + 1, m_values, idx, moved);
+      m_count--;
+      m_names[m_count] = null;
+      m_values[m_count] = null;
     }
   }
 
   /**
    * @return an enumeration of the parameter names.
    */
-  public Enumeration getParamNames() {
-    return m_names.elements();
+  public Enumeration<String> getParamNames() {
+    return new ParamEnumeration(false);
   }
 
   /**
    * @return an enumeration of the parameter values.
    */
-  public Enumeration getParamValues() {
-    return m_values.elements();
+  public Enumeration<String> getParamValues() {
+    return new ParamEnumeration(true);
   }
 
   /**
    * @return the number of params.
    */
   public int getParamCount() {
-    return m_names.size();
+    return m_count;
   }
 
   /**
@@ -210,11 +252,10 @@ public class HtmlTag {
       tag.append(HtmlStreamTokenizer.C_ENDTAG);
     tag.append(getTagString());
 
-    final int size = m_names.size();
-    for (int i = 0; i < size; i++) {
-      String name = (String) m_names.elementAt(i);
+    for (int i = 0; i < m_count; i++) {
+      String name = getParamName(i);
       tag.append(" " + name);
-      String value = (String) m_values.elementAt(i);
+      String value = getParamValue(i);
       if (value.length() > 0)
         tag.append("=\"" + value + "\"");
     }
@@ -230,10 +271,16 @@ public class HtmlTag {
    */
   public void reset() {
     m_tag = null;
+    m_tagBegin = m_tagEnd = -1;
     m_ttype = T_UNKNOWN;
     m_endtag = false;
-    m_names.removeAllElements();
-    m_values.removeAllElements();
+    for (int i = 0; i < m_count; i++) {
+      m_names[i] = null;
+      m_values[i] = null;
+    }
+    m_count = 0;
+    m_length = 0;
+    m_unescape = false;
     m_empty = false;
   }
 
@@ -402,130 +449,271 @@ public class HtmlTag {
     m_empty = empty;
   }
 
+  /**
+   * Copies the tag text to parse into this tag's own buffer.
+   *
+   * @return the buffer, valid up to sbuf.length()
+   */
+  /*package*/ char[] load(StringBuffer sbuf) {
+    m_length = sbuf.length();
+    if (m_chars.length < m_length)
+      m_chars = new char[Math.max(m_length, m_chars.length * 2)];
+    sbuf.getChars(0, m_length, m_chars, 0);
+    return m_chars;
+  }
+
+  /**
+   * Sets the tag name to a range of the loaded text and looks up its type.
+   */
+  /*package*/ void setTag(int begin, int end) {
+    m_tag = null;
+    m_tagBegin = begin;
+    m_tagEnd = end;
+    int node = 0;
+    for (int i = begin; i < end && node != -1; i++)
+      node = nextNode(node, m_chars[i]);
+    if (node != -1)
+      m_ttype = m_trieTypes[node];
+  }
+
+  /**
+   * Adds a param given as ranges of the loaded text. A valueBegin of -1
+   * means the param has no value.
+   *
+   * @return index of the new param
+   */
+  /*package*/ int addParam(int nameBegin, int nameEnd, int valueBegin, int valueEnd) {
+    if (m_count == m_names.length) {
+      int size = m_count * 2;
+      m_offsets = Arrays.copyOf(m_offsets, size * 4);
+      m_names = Arrays.copyOf(m_names, size);
+      m_values = Arrays.copyOf(m_values, size);
+    }
+    int i = m_count++;
+    m_offsets[i * 4] = nameBegin;
+    m_offsets[i * 4 + 1] = nameEnd;
+    m_offsets[i * 4 + 2] = valueBegin;
+    m_offsets[i * 4 + 3] = valueEnd;
+    return i;
+  }
+
+  /**
+   * Sets whether param values are unescaped when they are read.
+   */
+  /*package*/ void setUnescaped(boolean unescape) {
+    m_unescape = unescape;
+  }
+
   private final int indexOfName(String name) {
-    final int size = m_names.size();
-    for (int i = 0; i < size; i++)
-      if (name.equalsIgnoreCase((String) m_names.elementAt(i)))
-        return i;
+    final int len = name.length();
+    for (int i = 0; i < m_count; i++) {
+      if (m_names[i] != null) {
+        if (name.equalsIgnoreCase(m_names[i]))
+          return i;
+      } else if (m_offsets[i * 4 + 1] - m_offsets[i * 4] == len) {
+        int begin = m_offsets[i * 4];
+        int j = 0;
+        while (j < len && equalsIgnoreCase(name.charAt(j), m_chars[begin + j]))
+          j++;
+        if (j == len)
+          return i;
+      }
+    }
 
     return -1;
   }
 
+  private static boolean equalsIgnoreCase(char a, char b) {
+    return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+  }
+
+  private void checkIndex(int i) {
+    if (i < 0 || i >= m_count)
+      throw new ArrayIndexOutOfBoundsException(i + " >= " + m_count);
+  }
+
+  private class ParamEnumeration implements Enumeration<String> {
+    ParamEnumeration(boolean values) {
+      m_enumValues = values;
+    }
+
+    public boolean hasMoreElements() {
+      return m_next < m_count;
+    }
+
+    public String nextElement() {
+      if (m_next >= m_count)
+        throw new NoSuchElementException();
+      return m_enumValues ? getParamValue(m_next++) : getParamName(m_next++);
+    }
+
+    private final boolean m_enumValues;
+    private int m_next = 0;
+  }
+
+  /**
+   * @return next trie node for the char, or -1 if no tag name continues with it.
+   */
+  private static int nextNode(int node, char c) {
+    int symbol = c < SYMBOL_TABLE_LEN ? m_symbols[c] : -1;
+    if (symbol == -1)
+      return -1;
+    int next = m_trie[node * SYMBOLS + symbol];
+    return next == 0 ? -1 : next;
+  }
+
+  private static void addTag(String name, int ttype) {
+    int node = 0;
+    for (int i = 0; i < name.length(); i++) {
+      int idx = node * SYMBOLS + m_symbols[name.charAt(i)];
+      if (m_trie[idx] == 0)
+        m_trie[idx] = (short) m_trieNodes++;
+      node = m_trie[idx];
+    }
+    m_trieTypes[node] = ttype;
+  }
+
+  private char[] m_chars = new char[64];
+  private int m_length = 0;
   private String m_tag = null;
+  private int m_tagBegin = -1;
+  private int m_tagEnd = -1;
   private int m_ttype = T_UNKNOWN;
   private boolean m_endtag = false;
-  private Vector m_names = new Vector();
-  private Vector m_values = new Vector();
-  private static Hashtable m_tags = new Hashtable();
+  private int m_count = 0;
+  private int[] m_offsets = new int[8 * 4]; // name begin, name end, value begin, value end
+  private String[] m_names = new String[8];
+  private String[] m_values = new String[8];
+  private boolean m_unescape = false;
   private boolean m_empty = false;
 
+  // case-insensitive trie of the tag names, one row of SYMBOLS children per node
+  private static final int SYMBOLS = 37;
+  private static final int SYMBOL_TABLE_LEN = 128;
+  private static final int MAX_TRIE_NODES = 1024;
+  private static byte[] m_symbols = new byte[SYMBOL_TABLE_LEN];
+  private static short[] m_trie = new short[MAX_TRIE_NODES * SYMBOLS];
+  private static int[] m_trieTypes = new int[MAX_TRIE_NODES];
+  private static int m_trieNodes = 1;
+
   static {
-    m_tags.put(new String("A"), new Integer(T_A));
-    m_tags.put(new String("ABBREV"), new Integer(T_ABBREV));
-    m_tags.put(new String("ACRONYM"), new Integer(T_ACRONYM));
-    m_tags.put(new String("ADDRESS"), new Integer(T_ADDRESS));
-    m_tags.put(new String("APPLET"), new Integer(T_APPLET));
-    m_tags.put(new String("AREA"), new Integer(T_AREA));
-    m_tags.put(new String("AU"), new Integer(T_AU));
-    m_tags.put(new String("B"), new Integer(T_B));
-    m_tags.put(new String("BANNER"), new Integer(T_BANNER));
-    m_tags.put(new String("BASE"), new Integer(T_BASE));
-    m_tags.put(new String("BASEFONT"), new Integer(T_BASEFONT));
-    m_tags.put(new String("BGSOUND"), new Integer(T_BGSOUND));
-    m_tags.put(new String("BIG"), new Integer(T_BIG));
-    m_tags.put(new String("BLINK"), new Integer(T_BLINK));
-    m_tags.put(new String("BLOCKQUOTE"), new Integer(T_BLOCKQUOTE));
-    m_tags.put(new String("BODY"), new Integer(T_BODY));
-    m_tags.put(new String("BR"), new Integer(T_BR));
-    m_tags.put(new String("CAPTION"), new Integer(T_CAPTION));
-    m_tags.put(new String("CENTER"), new Integer(T_CENTER));
-    m_tags.put(new String("CITE"), new Integer(T_CITE));
-    m_tags.put(new String("CODE"), new Integer(T_CODE));
-    m_tags.put(new String("COL"), new Integer(T_COL));
-    m_tags.put(new String("COLGROUP"), new Integer(T_COLGROUP));
-    m_tags.put(new String("CREDIT"), new Integer(T_CREDIT));
-    m_tags.put(new String("DD"), new Integer(T_DD));
-    m_tags.put(new String("DEL"), new Integer(T_DEL));
-    m_tags.put(new String("DFN"), new Integer(T_DFN));
-    m_tags.put(new String("DIR"), new Integer(T_DIR));
-    m_tags.put(new String("DIV"), new Integer(T_DIV));
-    m_tags.put(new String("DL"), new Integer(T_DL));
-    m_tags.put(new String("!DOCTYPE"), new Integer(T__DOCTYPE));
-    m_tags.put(new String("DT"), new Integer(T_DT));
-    m_tags.put(new String("EM"), new Integer(T_EM));
-    m_tags.put(new String("EMBED"), new Integer(T_EMBED));
-    m_tags.put(new String("FIG"), new Integer(T_FIG));
-    m_tags.put(new String("FN"), new Integer(T_FN));
-    m_tags.put(new String("FONT"), new Integer(T_FONT));
-    m_tags.put(new String("FORM"), new Integer(T_FORM));
-    m_tags.put(new String("FRAME"), new Integer(T_FRAME));
-    m_tags.put(new String("FRAMESET"), new Integer(T_FRAMESET));
-    m_tags.put(new String("H1"), new Integer(T_H1));
-    m_tags.put(new String("H2"), new Integer(T_H2));
-    m_tags.put(new String("H3"), new Integer(T_H3));
-    m_tags.put(new String("H4"), new Integer(T_H4));
-    m_tags.put(new String("H5"), new Integer(T_H5));
-    m_tags.put(new String("H6"), new Integer(T_H6));
-    m_tags.put(new String("HEAD"), new Integer(T_HEAD));
-    m_tags.put(new String("HTML"), new Integer(T_HTML));
-    m_tags.put(new String("HR"), new Integer(T_HR));
-    m_tags.put(new String("I"), new Integer(T_I));
-    m_tags.put(new String("IMG"), new Integer(T_IMG));
-    m_tags.put(new String("INPUT"), new Integer(T_INPUT));
-    m_tags.put(new String("INS"), new Integer(T_INS));
-    m_tags.put(new String("ISINDEX"), new Integer(T_ISINDEX));
-    m_tags.put(new String("KBD"), new Integer(T_KBD));
-    m_tags.put(new String("LANG"), new Integer(T_LANG));
-    m_tags.put(new String("LH"), new Integer(T_LH));
-    m_tags.put(new String("LI"), new Integer(T_LI));
-    m_tags.put(new String("LINK"), new Integer(T_LINK));
-    m_tags.put(new String("MAP"), new Integer(T_MAP));
-    m_tags.put(new String("MARQUEE"), new Integer(T_MARQUEE));
-    m_tags.put(new String("MENU"), new Integer(T_MENU));
-    m_tags.put(new String("META"), new Integer(T_META));
-    m_tags.put(new String("NEXTID"), new Integer(T_NEXTID));
-    m_tags.put(new String("NOBR"), new Integer(T_NOBR));
-    m_tags.put(new String("NOEMBED"), new Integer(T_NOEMBED));
-    m_tags.put(new String("NOFRAME"), new Integer(T_NOFRAME));
-    m_tags.put(new String("NOFRAMES"), new Integer(T_NOFRAMES));
-    m_tags.put(new String("NOTE"), new Integer(T_NOTE));
-    m_tags.put(new String("OBJECT"), new Integer(T_OBJECT));
-    m_tags.put(new String("OL"), new Integer(T_OL));
-    m_tags.put(new String("OPTION"), new Integer(T_OPTION));
-    m_tags.put(new String("OVERLAY"), new Integer(T_OVERLAY));
-    m_tags.put(new String("P"), new Integer(T_P));
-    m_tags.put(new String("PARAM"), new Integer(T_PARAM));
-    m_tags.put(new String("PERSON"), new Integer(T_PERSON));
-    m_tags.put(new String("PRE"), new Integer(T_PRE));
-    m_tags.put(new String("Q"), new Integer(T_Q));
-    m_tags.put(new String("RANGE"), new Integer(T_RANGE));
-    m_tags.put(new String("S"), new Integer(T_S));
-    m_tags.put(new String("SAMP"), new Integer(T_SAMP));
-    m_tags.put(new String("SCRIPT"), new Integer(T_SCRIPT));
-    m_tags.put(new String("SELECT"), new Integer(T_SELECT));
-    m_tags.put(new String("SMALL"), new Integer(T_SMALL));
-    m_tags.put(new String("SPOT"), new Integer(T_SPOT));
-    m_tags.put(new String("STRONG"), new Integer(T_STRONG));
-    m_tags.put(new String("STYLE"), new Integer(T_STYLE));
-    m_tags.put(new String("SUB"), new Integer(T_SUB));
-    m_tags.put(new String("SUP"), new Integer(T_SUP));
-    m_tags.put(new String("TAB"), new Integer(T_TAB));
-    m_tags.put(new String("TABLE"), new Integer(T_TABLE));
-    m_tags.put(new String("TBODY"), new Integer(T_TBODY));
-    m_tags.put(new String("TD"), new Integer(T_TD));
-    m_tags.put(new String("TEXTAREA"), new Integer(T_TEXTAREA));
-    m_tags.put(new String("TFOOT"), new Integer(T_TFOOT));
-    m_tags.put(new String("TH"), new Integer(T_TH));
-    m_tags.put(new String("THEAD"), new Integer(T_THEAD));
-    m_tags.put(new String("TITLE"), new Integer(T_TITLE));
-    m_tags.put(new String("TR"), new Integer(T_TR));
-    m_tags.put(new String("TT"), new Integer(T_TT));
-    m_tags.put(new String("U"), new Integer(T_U));
-    m_tags.put(new String("UL"), new Integer(T_UL));
-    m_tags.put(new String("VAR"), new Integer(T_VAR));
-    m_tags.put(new String("WBR"), new Integer(T_WBR));
-
-    m_tags.put(new String("IFRAME"), new Integer(T_IFRAME));
+    Arrays.fill(m_symbols, (byte) -1);
+    for (char c = 'a'; c <= 'z'; c++) {
+      m_symbols[c] = (byte) (c - 'a');
+      m_symbols[Character.toUpperCase(c)] = (byte) (c - 'a');
+    }
+    for (char c = '0'; c <= '9'; c++)
+      m_symbols[c] = (byte) (26 + c - '0');
+    m_symbols['!'] = 36;
+
+    addTag("A", T_A);
+    addTag("ABBREV", T_ABBREV);
+    addTag("ACRONYM", T_ACRONYM);
+    addTag("ADDRESS", T_ADDRESS);
+    addTag("APPLET", T_APPLET);
+    addTag("AREA", T_AREA);
+    addTag("AU", T_AU);
+    addTag("B", T_B);
+    addTag("BANNER", T_BANNER);
+    addTag("BASE", T_BASE);
+    addTag("BASEFONT", T_BASEFONT);
+    addTag("BGSOUND", T_BGSOUND);
+    addTag("BIG", T_BIG);
+    addTag("BLINK", T_BLINK);
+    addTag("BLOCKQUOTE", T_BLOCKQUOTE);
+    addTag("BODY", T_BODY);
+    addTag("BR", T_BR);
+    addTag("CAPTION", T_CAPTION);
+    addTag("CENTER", T_CENTER);
+    addTag("CITE", T_CITE);
+    addTag("CODE", T_CODE);
+    addTag("COL", T_COL);
+    addTag("COLGROUP", T_COLGROUP);
+    addTag("CREDIT", T_CREDIT);
+    addTag("DD", T_DD);
+    addTag("DEL", T_DEL);
+    addTag("DFN", T_DFN);
+    addTag("DIR", T_DIR);
+    addTag("DIV", T_DIV);
+    addTag("DL", T_DL);
+    addTag("!DOCTYPE", T__DOCTYPE);
+    addTag("DT", T_DT);
+    addTag("EM", T_EM);
+    addTag("EMBED", T_EMBED);
+    addTag("FIG", T_FIG);
+    addTag("FN", T_FN);
+    addTag("FONT", T_FONT);
+    addTag("FORM", T_FORM);
+    addTag("FRAME", T_FRAME);
+    addTag("FRAMESET", T_FRAMESET);
+    addTag("H1", T_H1);
+    addTag("H2", T_H2);
+    addTag("H3", T_H3);
+    addTag("H4", T_H4);
+    addTag("H5", T_H5);
+    addTag("H6", T_H6);
+    addTag("HEAD", T_HEAD);
+    addTag("HTML", T_HTML);
+    addTag("HR", T_HR);
+    addTag("I", T_I);
+    addTag("IMG", T_IMG);
+    addTag("INPUT", T_INPUT);
+    addTag("INS", T_INS);
+    addTag("ISINDEX", T_ISINDEX);
+    addTag("KBD", T_KBD);
+    addTag("LANG", T_LANG);
+    addTag("LH", T_LH);
+    addTag("LI", T_LI);
+    addTag("LINK", T_LINK);
+    addTag("MAP", T_MAP);
+    addTag("MARQUEE", T_MARQUEE);
+    addTag("MENU", T_MENU);
+    addTag("META", T_META);
+    addTag("NEXTID", T_NEXTID);
+    addTag("NOBR", T_NOBR);
+    addTag("NOEMBED", T_NOEMBED);
+    addTag("NOFRAME", T_NOFRAME);
+    addTag("NOFRAMES", T_NOFRAMES);
+    addTag("NOTE", T_NOTE);
+    addTag("OBJECT", T_OBJECT);
+    addTag("OL", T_OL);
+    addTag("OPTION", T_OPTION);
+    addTag("OVERLAY", T_OVERLAY);
+    addTag("P", T_P);
+    addTag("PARAM", T_PARAM);
+    addTag("PERSON", T_PERSON);
+    addTag("PRE", T_PRE);
+    addTag("Q", T_Q);
+    addTag("RANGE", T_RANGE);
+    addTag("S", T_S);
+    addTag("SAMP", T_SAMP);
+    addTag("SCRIPT", T_SCRIPT);
+    addTag("SELECT", T_SELECT);
+    addTag("SMALL", T_SMALL);
+    addTag("SPOT", T_SPOT);
+    addTag("STRONG", T_STRONG);
+    addTag("STYLE", T_STYLE);
+    addTag("SUB", T_SUB);
+    addTag("SUP", T_SUP);
+    addTag("TAB", T_TAB);
+    addTag("TABLE", T_TABLE);
+    addTag("TBODY", T_TBODY);
+    addTag("TD", T_TD);
+    addTag("TEXTAREA", T_TEXTAREA);
+    addTag("TFOOT", T_TFOOT);
+    addTag("TH", T_TH);
+    addTag("THEAD", T_THEAD);
+    addTag("TITLE", T_TITLE);
+    addTag("TR", T_TR);
+    addTag("TT", T_TT);
+    addTag("U", T_U);
+    addTag("UL", T_UL);
+    addTag("VAR", T_VAR);
+    addTag("WBR", T_WBR);
+
+    addTag("IFRAME", T_IFRAME);
+
+    m_trie = Arrays.copyOf(m_trie, m_trieNodes * SYMBOLS);
+    m_trieTypes = Arrays.copyOf(m_trieTypes, m_trieNodes);
   }
 }
-
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 1996, 2001 by Arthur Do <arthur@cs.stanford.edu>.
+ * All Rights Reserved.
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+
+
+package com.arthurdo.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>TableReader is a streaming alternative to Table. Instead of
+ * building the whole table before it can be used, it hands every row
+ * to a RowHandler as soon as the row ends, with rowspans and colspans
+ * already resolved. Only the cells of the current row and one carry-over
+ * entry per column are kept, so memory use is bounded by the width of
+ * the table rather than its size.</p>
+ * <p/>
+ * <pre>
+ * TableReader reader = new TableReader(new TableReader.RowHandler() {
+ * 	public boolean handleRow(int row, HtmlTag rowTag, TableCell[] cells) {
+ * 		for (int col = 0; col &lt; cells.length; col++)
+ * 			if (cells[col] != null &amp;&amp; !cells[col].isSpanned())
+ * 				System.out.println(row + "," + col + ": " + cells[col].getCharacterData());
+ * 		return true;
+ *  }
+ * });
+ * reader.readTables(in);
+ * </pre>
+ * <p/>
+ * <p>The cells of a row are laid out like the cells of a Table row:
+ * a position covered by a span from another cell holds a pseudo cell
+ * pointing at the real one, and a position that no cell covers holds
+ * null. A row array is only as wide as the cells that reach into the row,
+ * since later rows are not known yet. Every &lt;TR&gt; counts as a row,
+ * even an empty one, and rowspans that reach past the last &lt;TR&gt;
+ * produce phantom rows with a null row tag. Nested tables are read
+ * into Table objects and added to the cell content as usual.</p>
+ *
+ * @see com.arthurdo.parser.Table
+ * @see com.arthurdo.parser.TableCell
+ */
+public class TableReader {
+  /**
+   * Receives the rows of a table as they are read.
+   */
+  public interface RowHandler {
+    /**
+     * @param row    row number, starting at 0 for each table
+     * @param rowTag the &lt;TR&gt; tag, or null for a phantom row. The
+     *               tag is reused for the next row, copy it to keep it.
+     * @param cells  the cells of the row, indexed by column
+     * @return true to continue reading, false to stop
+     */
+    boolean handleRow(int row, HtmlTag rowTag, TableCell[] cells);
+  }
+
+  public TableReader(RowHandler handler) {
+    m_handler = handler;
+  }
+
+  /**
+   * Reads every top-level table in the stream.
+   *
+   * @param in input
+   * @throws IOException if error reading input stream.
+   */
+  public void readTables(Reader in)
+      throws IOException {
+    HtmlStreamTokenizer tok = new HtmlStreamTokenizer(in);
+    HtmlTag tag = new HtmlTag();
+
+    while (tok.nextToken() != HtmlStreamTokenizer.TT_EOF) {
+      if (tok.getTokenType() == HtmlStreamTokenizer.TT_TAG) {
+        try {
+          tok.parseTag(tok.getStringValue(), tag);
+        } catch (HtmlException e) {
+          continue;
+        }
+        if (tag.getTagType() == HtmlTag.T_TABLE && !tag.isEndTag() && !readTable(tok, tag))
+          break;
+      }
+    }
+  }
+
+  /**
+   * Reads one table, from the token after its &lt;TABLE&gt; tag up to
+   * and including &lt;/TABLE&gt;.
+   *
+   * @param tokenizer positioned after the table tag
+   * @param tableTag  the table tag
+   * @return false if the handler stopped reading, true otherwise
+   * @throws IOException if error reading input stream.
+   */
+  public boolean readTable(HtmlStreamTokenizer tokenizer, HtmlTag tableTag)
+      throws IOException {
+    m_tok = tokenizer;
+    m_tableTag = new HtmlTag(tableTag);
+    m_row = 0;
+    m_width = 0;
+    Arrays.fill(m_carry, 0);
+    boolean continueReading = true;
+    HtmlTag tag = new HtmlTag();
+
+    try {
+      while (continueReading && nextToken() != HtmlStreamTokenizer.TT_EOF) {
+        if (getTokenType() == HtmlStreamTokenizer.TT_TAG) {
+          try {
+            m_tok.parseTag(getStringValue(), tag);
+            int tagtype = tag.getTagType();
+            boolean isEndTag = tag.isEndTag();
+
+            if (tagtype == HtmlTag.T_TR && !isEndTag) {
+              m_tok.parseTag(getStringValue(), m_rowTag);
+              boolean more = parseRow();
+              continueReading = endRow(m_rowTag);
+              if (!more)
+                break;
+            } else if (tagtype == HtmlTag.T_TABLE && isEndTag) {
+              break;
+            } else {
+              // otherwise, data is considered bad and thrown away
+            }
+          } catch (HtmlException e) {
+          }
+        }
+      }
+
+      // rowspans reaching past the last row
+      while (continueReading && m_width > 0)
+        continueReading = endRow(null);
+    } finally {
+      m_tok = null;
+      m_pushback = false;
+      m_cell = null;
+      m_cells.clear();
+    }
+
+    return continueReading;
+  }
+
+  /**
+   * @return the &lt;TABLE&gt; tag of the table being read.
+   */
+  public HtmlTag getTableTag() {
+    return m_tableTag;
+  }
+
+  /**
+   * Lays out the cells read for the current row, hands the row to the
+   * handler and moves the span carry-over to the next row.
+   */
+  private boolean endRow(HtmlTag rowTag) {
+    int y = m_row++;
+    int size = m_cells.size();
+
+    // place the cells of this row, skipping columns spanned from above
+    int col = 0;
+    int width = m_width;
+    int[] cols = new int[size];
+    for (int x = 0; x < size; x++) {
+      while (col < m_width && m_carry[col] > 0)
+        col++;
+      cols[x] = col;
+      col += m_cells.get(x).getColSpan();
+      if (col > width)
+        width = col;
+    }
+
+    TableCell[] cells = new TableCell[width];
+    for (int c = 0; c < m_width; c++) {
+      if (m_carry[c] > 0)
+        cells[c] = new TableCell(m_originRow[c], m_originCol[c]);
+    }
+    ensureWidth(width);
+    for (int x = 0; x < size; x++) {
+      TableCell cell = m_cells.get(x);
+      int c = cols[x];
+      cells[c] = cell;
+      for (int i = 0; i < cell.getColSpan(); i++) {
+        if (i > 0)
+          cells[c + i] = new TableCell(y, c);
+        m_carry[c + i] = cell.getRowSpan();
+        m_originRow[c + i] = y;
+        m_originCol[c + i] = c;
+      }
+    }
+    m_cells.clear();
+
+    // this row is done, count it off the carry-over
+    int carried = 0;
+    for (int c = 0; c < width; c++) {
+      if (m_carry[c] > 0 && --m_carry[c] > 0)
+        carried = c + 1;
+    }
+    m_width = carried;
+
+    return m_handler.handleRow(y, rowTag, cells);
+  }
+
+  private void ensureWidth(int width) {
+    if (width > m_carry.length) {
+      int size = Math.max(width, m_carry.length * 2);
+      m_carry = Arrays.copyOf(m_carry, size);
+      m_originRow = Arrays.copyOf(m_originRow, size);
+      m_originCol = Arrays.copyOf(m_originCol, size);
+    }
+  }
+
+  private boolean parseRow()
+      throws IOException {
+    boolean continueParsing = false;
+
+    HtmlTag tag = new HtmlTag();
+    while (nextToken() != HtmlStreamTokenizer.TT_EOF) {
+      int ttype = getTokenType();
+
+      if (ttype == HtmlStreamTokenizer.TT_TAG) {
+        try {
+          m_tok.parseTag(getStringValue(), tag);
+          int tagtype = tag.getTagType();
+          boolean isEndTag = tag.isEndTag();
+
+          if (tagtype == HtmlTag.T_TR) {
+            if (!isEndTag)
+              pushBackToken();
+            // row ended, continue with next row
+            continueParsing = true;
+            break;
+          } else if (tagtype == HtmlTag.T_TABLE && isEndTag) {
+            break;
+          } else if (tagtype == HtmlTag.T_TD || tagtype == HtmlTag.T_TH) {
+            if (!isEndTag) {
+              beginCell(tag);
+              boolean more = parseCol();
+              m_cell = null;
+              if (!more)
+                break;
+            }
+          }
+        } catch (HtmlException e) {
+        }
+      }
+    }
+
+    return continueParsing;
+  }
+
+  private boolean parseCol()
+      throws IOException {
+    boolean continueParsing = false;
+
+    HtmlTag tag = new HtmlTag();
+    while (nextToken() != HtmlStreamTokenizer.TT_EOF) {
+      int ttype = getTokenType();
+
+      if (ttype == HtmlStreamTokenizer.TT_TAG) {
+        try {
+          m_tok.parseTag(getStringValue(), tag);
+          int tagtype = tag.getTagType();
+          boolean isEndTag = tag.isEndTag();
+
+          if (tagtype == HtmlTag.T_TR || tagtype == HtmlTag.T_TD || tagtype == HtmlTag.T_TH) {
+            if (!isEndTag)
+              pushBackToken();
+            // column ended
+            continueParsing = true;
+            break;
+          } else if (tagtype == HtmlTag.T_TABLE) {
+            if (isEndTag) {
+              continueParsing = false;
+              break;
+            }
+            Table table = new Table();
+            table.parseTable(m_tok, new HtmlTag(tag));
+            m_cell.addElement(table);
+          } else {
+            m_cell.addElement(new HtmlTag(tag));
+          }
+        } catch (HtmlException e) {
+          m_cell.addElement("<" + getStringValue().toString() + ">");
+        }
+      } else if (ttype == HtmlStreamTokenizer.TT_TEXT) {
+        m_cell.addElement(getStringValue().toString());
+      }
+    }
+
+    return continueParsing;
+  }
+
+  private void beginCell(HtmlTag tag) {
+    int rowspan = 1;
+    try {
+      rowspan = tag.getIntParam(HtmlTag.P_ROWSPAN);
+      if (rowspan <= 0)
+        rowspan = 1;
+    } catch (NumberFormatException e) {
+    }
+    int colspan = 1;
+    try {
+      colspan = tag.getIntParam(HtmlTag.P_COLSPAN);
+      if (colspan <= 0)
+        colspan = 1;
+    } catch (NumberFormatException e) {
+    }
+    m_cell = new TableCell(rowspan, colspan, new HtmlTag(tag));
+    m_cells.add(m_cell);
+  }
+
+  private int nextToken()
+      throws IOException {
+    if (m_pushback)
+      m_pushback = false;
+    else
+      m_tokenType = m_tok.nextToken();
+
+    return m_tokenType;
+  }
+
+  private void pushBackToken()
+      throws IOException {
+    if (m_pushback)
+      throw new IOException("only one token pushback supported");
+
+    m_tokenType = m_tok.getTokenType();
+    m_pushback = true;
+  }
+
+  private int getTokenType() {
+    return m_tokenType;
+  }
+
+  private StringBuffer getStringValue() {
+    return m_tok.getStringValue();
+  }
+
+  private final RowHandler m_handler;
+  private HtmlStreamTokenizer m_tok = null;
+  private boolean m_pushback = false;
+  private int m_tokenType = 0;
+  private HtmlTag m_tableTag = null;
+  private HtmlTag m_rowTag = new HtmlTag();
+  private TableCell m_cell = null;
+  private ArrayList<TableCell> m_cells = new ArrayList<TableCell>();
+  private int m_row = 0;
+  // per column: rows still covered by a span, and the cell it comes from
+  private int m_width = 0;
+  private int[] m_carry = new int[16];
+  private int[] m_originRow = new int[16];
+  private int[] m_originCol = new int[16];
+}
@@ -0,0 +1,82 @@
+package com.arthurdo.parser;
+
+/**
+ * Stand-alone timing harness for HtmlEntities, kept with the tests and
+ * run from the module directory with
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes com.arthurdo.parser.EntityBenchmark
+ * </pre>
+ * It decodes page-title sized inputs without references, with a few
+ * named ones and with many named and numeric ones, and compares
+ * HtmlEntities.decode with the replaceAll loop that StringStuff used
+ * before it. The old loop is kept here only as the reference.
+ */
+public class EntityBenchmark {
+
+  private static final int WARMUP_ROUNDS = 5;
+  private static final int TIMED_ROUNDS = 10;
+  private static final int ITERATIONS = 20000;
+
+  private static final String[] INPUTS = {
+      "Breaking news from the channel - plain page title without references",
+      "Tom &amp; Jerry &mdash; The &quot;Complete&quot; Collection &raquo; Watch online",
+      "&Auml;&auml; &Ouml;&ouml; &Aring;&aring; &#228;&#246; &#x1F600; caf&eacute; &nbsp;&bull;&nbsp; &euro;10 &copy; 2015 &ndash; &lt;b&gt;",
+  };
+
+  // The table StringStuff.htmlEntitiesToText ran replaceAll with, one
+  // regex compile per entry and call.
+  private static final String[] OLD_TABLE = {
+      "&Auml;", "\u00c4", "&auml;", "\u00e4", "&Ouml;", "\u00d6", "&ouml;", "\u00f6",
+      "&Aring;", "\u00c5", "&aring;", "\u00e5", "&nbsp;", " ", "&mdash;", "-",
+      "&quot;", "\"", "&raquo;", ">>", "&bull;", "o", "&amp;", "&",
+      "&#x22;", " ", "&ndash;", "-", "&#x202a;", "", "&#x202c;", "", "&rlm;", ""
+  };
+
+  public static void main(String[] args) {
+    for (int input = 0; input < INPUTS.length; input++) {
+      String s = INPUTS[input];
+      double decode = time(() -> HtmlEntities.decode(s));
+      double old = time(() -> oldDecode(s));
+      System.out.println(String.format("input %d (%3d chars): HtmlEntities %8.2f us, old replaceAll loop %8.2f us, %6.1fx",
+          input, s.length(), decode, old, old / decode));
+    }
+  }
+
+
+  private static String oldDecode(String s) {
+    for (int i = 0; i < OLD_TABLE.length; i += 2) {
+      s = s.replaceAll(OLD_TABLE[i], OLD_TABLE[i + 1]);
+    }
+    return s.replaceAll("&#\\d*;", "");
+  }
+
+
+  /**
+   * @return median microseconds per call
+   */
+  private static double time(Decoder decoder) {
+    double[] rounds = new double[TIMED_ROUNDS];
+    int sink = 0;
+    for (int round = -WARMUP_ROUNDS; round < TIMED_ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        sink += decoder.decode().length();
+      }
+      if (round >= 0) {
+        rounds[round] = (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+      }
+    }
+    if (sink == 42) {
+      System.out.println();
+    }
+    java.util.Arrays.sort(rounds);
+    return rounds[TIMED_ROUNDS / 2];
+  }
+
+
+  private interface Decoder {
+    String decode();
+  }
+
+}
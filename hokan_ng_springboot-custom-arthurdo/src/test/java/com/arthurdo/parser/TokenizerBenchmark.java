@@ -0,0 +1,94 @@
+package com.arthurdo.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stand-alone timing harness for HtmlStreamTokenizer, kept with the tests
+ * and run from the module directory with
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes com.arthurdo.parser.TokenizerBenchmark file-or-directory...
+ * </pre>
+ * Every .htm/.html file found is read into memory once, so the timing
+ * covers only tokenizing: each pass runs a tokenizer over a StringReader
+ * of every page, as the URL title fetcher does, and parses every tag into
+ * one reused HtmlTag.  After the warm-up passes the timed passes are
+ * reported as throughput and the median pass time.
+ * <p>
+ * Only the public token API is used, so the same class can be run
+ * against older versions of the tokenizer to compare them.
+ */
+public class TokenizerBenchmark {
+
+  private static final int WARMUP_PASSES = 10;
+  private static final int TIMED_PASSES = 20;
+
+  public static void main(String[] args) throws Exception {
+    List<String> pages = new ArrayList<>();
+    for (String arg : args) {
+      collect(new File(arg), pages);
+    }
+    if (pages.isEmpty()) {
+      System.err.println("Usage: TokenizerBenchmark file-or-directory...");
+      System.exit(1);
+    }
+    long chars = 0;
+    for (String page : pages) {
+      chars += page.length();
+    }
+
+    long tokens = 0;
+    for (int i = 0; i < WARMUP_PASSES; i++) {
+      tokens = pass(pages);
+    }
+    long[] nanos = new long[TIMED_PASSES];
+    for (int i = 0; i < TIMED_PASSES; i++) {
+      long start = System.nanoTime();
+      pass(pages);
+      nanos[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(nanos);
+    long median = nanos[TIMED_PASSES / 2];
+    System.out.println(String.format("%d pages, %d chars, %d tokens per pass", pages.size(), chars, tokens));
+    System.out.println(String.format("median pass %.1f ms, %.1f MB/s, %.2f M tokens/s",
+        median / 1e6, chars / (median / 1e9) / 1e6, tokens / (median / 1e9) / 1e6));
+  }
+
+
+  private static long pass(List<String> pages) throws IOException, HtmlException {
+    long tokens = 0;
+    HtmlTag tag = new HtmlTag();
+    for (String page : pages) {
+      HtmlStreamTokenizer tokenizer = new HtmlStreamTokenizer(new StringReader(page));
+      int type;
+      while ((type = tokenizer.nextToken()) != HtmlStreamTokenizer.TT_EOF) {
+        if (type == HtmlStreamTokenizer.TT_TAG) {
+          tokenizer.parseTag(tokenizer.getStringValue(), tag);
+        }
+        tokens++;
+      }
+    }
+    return tokens;
+  }
+
+
+  private static void collect(File file, List<String> pages) throws IOException {
+    File[] children = file.listFiles();
+    if (children != null) {
+      Arrays.sort(children);
+      for (File child : children) {
+        collect(child, pages);
+      }
+    } else if (file.getName().endsWith(".html") || file.getName().endsWith(".htm")) {
+      pages.add(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+  }
+
+}
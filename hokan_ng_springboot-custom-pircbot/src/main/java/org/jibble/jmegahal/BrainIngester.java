@@ -0,0 +1,260 @@
+/*
+Copyright Paul James Mutton, 2001-2004, http://www.jibble.org/
+
+This file is part of JMegaHal.
+
+This software is dual-licensed, allowing you to choose between the GNU
+General Public License (GPL) and the www.jibble.org Commercial License.
+Since the GPL may be too restrictive for use in a proprietary application,
+a commercial license is also provided. Full license information can be
+found at http://www.jibble.org/licenses/
+
+*/
+
+package org.jibble.jmegahal;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Seeds a JMegaHal brain from local files, such as years of channel logs.
+ * <p>
+ * Files are read through large buffered readers and split between the
+ * workers of a fork-join pool in batches of about files / parallelism.
+ * Each batch is learned into its own partial brain, without any contention
+ * on shared maps, and partial brains are merged pairwise as
+ * the fork-join tasks complete.  The result is merged into the target brain
+ * in one go.  If the target has a BrainStore attached it is compacted once
+ * at the end, instead of every ingested sentence going through its log.
+ * <p>
+ * Progress is reported to an optional Listener after every file.
+ */
+public class BrainIngester {
+
+  /**
+   * Receives progress reports while files are being ingested.  Called from
+   * the worker threads.
+   */
+  public interface Listener {
+
+    void progress(BrainIngester ingester);
+
+  }
+
+  /**
+   * Constructs a BrainIngester that runs on the common fork-join pool.
+   */
+  public BrainIngester() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public BrainIngester(ForkJoinPool pool) {
+    _pool = pool;
+  }
+
+
+  /**
+   * Ingests a file, or every regular file under a directory, into the brain.
+   *
+   * @param brain The brain to learn into.
+   * @param root  A file or a directory.
+   * @return The number of sentences read.
+   */
+  public long ingest(JMegaHal brain, File root) throws IOException {
+    List<File> files;
+    if (root.isDirectory()) {
+      try (Stream<Path> paths = Files.walk(root.toPath())) {
+        files = paths.filter(Files::isRegularFile).map(Path::toFile).sorted().collect(Collectors.toList());
+      }
+    } else {
+      files = new ArrayList<>();
+      files.add(root);
+    }
+    return ingest(brain, files);
+  }
+
+
+  /**
+   * Ingests the given files into the brain.
+   *
+   * @param brain The brain to learn into.
+   * @param files The files to read.
+   * @return The number of sentences read.
+   */
+  public long ingest(JMegaHal brain, List<File> files) throws IOException {
+    _filesTotal = files.size();
+    _filesDone.set(0);
+    _bytes.set(0);
+    _sentences.set(0);
+    _startTime = System.currentTimeMillis();
+    _endTime = -1;
+
+    JMegaHal partial;
+    try {
+      int batch = Math.max(1, (files.size() + _pool.getParallelism() - 1) / _pool.getParallelism());
+      partial = _pool.invoke(new IngestTask(files, 0, files.size(), batch));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    brain.merge(partial);
+
+    BrainStore store = brain.getBrainStore();
+    if (store != null) {
+      store.compact(brain);
+    }
+    _endTime = System.currentTimeMillis();
+    return _sentences.get();
+  }
+
+
+  public void setListener(Listener listener) {
+    _listener = listener;
+  }
+
+
+  /**
+   * Sets the charset used to decode the files.  Defaults to UTF-8;
+   * malformed input is replaced, not rejected.
+   */
+  public void setCharset(Charset charset) {
+    _charset = charset;
+  }
+
+
+  public int getFilesTotal() {
+    return _filesTotal;
+  }
+
+
+  public int getFilesDone() {
+    return _filesDone.get();
+  }
+
+
+  public long getBytesRead() {
+    return _bytes.get();
+  }
+
+
+  public long getSentencesRead() {
+    return _sentences.get();
+  }
+
+
+  /**
+   * Returns the milliseconds spent so far, or in total once finished.
+   */
+  public long getElapsedMillis() {
+    long end = _endTime >= _startTime ? _endTime : System.currentTimeMillis();
+    return Math.max(1, end - _startTime);
+  }
+
+
+  /**
+   * Returns the ingestion throughput in sentences per second.
+   */
+  public double getSentencesPerSecond() {
+    return _sentences.get() * 1000.0 / getElapsedMillis();
+  }
+
+
+  /**
+   * Returns the ingestion throughput in bytes per second.
+   */
+  public double getBytesPerSecond() {
+    return _bytes.get() * 1000.0 / getElapsedMillis();
+  }
+
+
+  public String toString() {
+    return String.format("%d/%d files, %d sentences, %d bytes in %d ms (%.0f sentences/s)",
+        getFilesDone(), getFilesTotal(), getSentencesRead(), getBytesRead(), getElapsedMillis(), getSentencesPerSecond());
+  }
+
+
+  private void ingestFile(JMegaHal partial, File file) throws IOException {
+    Reader reader = new InputStreamReader(new FileInputStream(file), _charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    try (BufferedReader in = new BufferedReader(reader, BUFFER_SIZE)) {
+      JMegaHal.readSentences(in, sentence -> {
+        partial.learn(sentence);
+        _sentences.incrementAndGet();
+      });
+    }
+    _bytes.addAndGet(file.length());
+    _filesDone.incrementAndGet();
+    Listener listener = _listener;
+    if (listener != null) {
+      listener.progress(this);
+    }
+  }
+
+
+  private class IngestTask extends RecursiveTask<JMegaHal> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<File> files;
+    private final int from;
+    private final int to;
+    private final int batch;
+
+    IngestTask(List<File> files, int from, int to, int batch) {
+      this.files = files;
+      this.from = from;
+      this.to = to;
+      this.batch = batch;
+    }
+
+    @Override
+    protected JMegaHal compute() {
+      if (to - from <= batch) {
+        JMegaHal partial = new JMegaHal();
+        for (int i = from; i < to; i++) {
+          try {
+            ingestFile(partial, files.get(i));
+          } catch (IOException e) {
+            throw new UncheckedIOException("Could not ingest " + files.get(i), e);
+          }
+        }
+        return partial;
+      }
+      int middle = (from + to) >>> 1;
+      IngestTask left = new IngestTask(files, from, middle, batch);
+      left.fork();
+      JMegaHal right = new IngestTask(files, middle, to, batch).compute();
+      JMegaHal merged = left.join();
+      merged.merge(right);
+      return merged;
+    }
+
+  }
+
+
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private final ForkJoinPool _pool;
+  private volatile Listener _listener = null;
+  private Charset _charset = StandardCharsets.UTF_8;
+
+  private volatile int _filesTotal = 0;
+  private final AtomicInteger _filesDone = new AtomicInteger();
+  private final AtomicLong _bytes = new AtomicLong();
+  private final AtomicLong _sentences = new AtomicLong();
+  private volatile long _startTime = 0;
+  private volatile long _endTime = -1;
+
+}
@@ -0,0 +1,212 @@
+/*
+Copyright Paul James Mutton, 2001-2004, http://www.jibble.org/
+
+This file is part of JMegaHal.
+
+This software is dual-licensed, allowing you to choose between the GNU
+General Public License (GPL) and the www.jibble.org Commercial License.
+Since the GPL may be too restrictive for use in a proprietary application,
+a commercial license is also provided. Full license information can be
+found at http://www.jibble.org/licenses/
+
+*/
+
+package org.jibble.jmegahal;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a JMegaHal brain under a memory cap by evicting rarely used quads.
+ * <p>
+ * The cap is given as a number of quads, since the quads and their
+ * next/previous sets are what the brain's memory use grows with.  Every
+ * quad keeps a usage count that is bumped whenever it is learned or
+ * visited by a walk, and halved for every full sweep over the brain.
+ * <p>
+ * While the brain is over its cap, the pruner sweeps it in small batches
+ * on a background thread, like a clock hand, and evicts quads whose decayed
+ * usage has fallen below the threshold until the brain is back under the
+ * low-water mark.  Learning and generation carry on while it runs; there
+ * is never a stop-the-world rebuild.
+ */
+public class BrainPruner implements Runnable, Closeable {
+
+  public static final int DEFAULT_BATCH_SIZE = 10000;
+  public static final float DEFAULT_MIN_USAGE = 0.5f;
+
+  /**
+   * Constructs a BrainPruner for the brain.
+   *
+   * @param brain    The brain to prune.
+   * @param maxQuads The maximum number of quads to keep.
+   */
+  public BrainPruner(JMegaHal brain, long maxQuads) {
+    _brain = brain;
+    setMaxQuads(maxQuads);
+  }
+
+
+  /**
+   * Starts sweeping on a daemon thread of its own.
+   *
+   * @param periodMillis The delay between two batches.
+   */
+  public synchronized void start(long periodMillis) {
+    if (_scheduler == null) {
+      _scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "JMegaHal-BrainPruner");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    if (_task == null) {
+      _task = _scheduler.scheduleWithFixedDelay(this, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+
+  /**
+   * Stops the background sweeping.
+   */
+  public synchronized void close() {
+    if (_scheduler != null) {
+      _scheduler.shutdownNow();
+      _scheduler = null;
+      _task = null;
+    }
+  }
+
+
+  /**
+   * Runs one batch of the sweep.  Does nothing while the brain is under
+   * its cap, unless an eviction pass is already under way.
+   */
+  public synchronized void run() {
+    long size = _brain.size();
+    if (!_evicting) {
+      if (size <= _maxQuads) {
+        return;
+      }
+      _evicting = true;
+    }
+
+    long lowWater = _maxQuads * 9 / 10;
+    int epoch = _brain.getUsageEpoch();
+    long now = System.currentTimeMillis();
+    int evicted = 0;
+    for (int i = 0; i < _batchSize && size > lowWater; i++) {
+      if (_hand == null || !_hand.hasNext()) {
+        // A full sweep is done: age every usage count by one epoch.
+        _brain.advanceUsageEpoch();
+        epoch = _brain.getUsageEpoch();
+        _sweeps++;
+        _hand = _brain.getQuads().iterator();
+        if (!_hand.hasNext()) {
+          break;
+        }
+      }
+      Quad quad = _hand.next();
+      if (quad.getUsage(epoch) < _minUsage && _brain.remove(quad)) {
+        evicted++;
+        size--;
+      }
+    }
+    if (size <= lowWater) {
+      _evicting = false;
+    }
+
+    _evictedTotal += evicted;
+    long elapsed = now - _lastRunTime;
+    if (_lastRunTime > 0 && elapsed > 0) {
+      _evictionRate = evicted * 1000.0 / elapsed;
+    }
+    _lastRunTime = now;
+  }
+
+
+  public synchronized void setMaxQuads(long maxQuads) {
+    _maxQuads = Math.max(1, maxQuads);
+  }
+
+
+  public synchronized long getMaxQuads() {
+    return _maxQuads;
+  }
+
+
+  /**
+   * Sets the number of quads looked at per batch.
+   */
+  public synchronized void setBatchSize(int batchSize) {
+    _batchSize = Math.max(1, batchSize);
+  }
+
+
+  /**
+   * Sets the decayed usage below which a quad may be evicted.  A quad that
+   * was used once is evicted after going unused for two full sweeps.
+   */
+  public synchronized void setMinUsage(float minUsage) {
+    _minUsage = minUsage;
+  }
+
+
+  /**
+   * Returns the number of quads in the brain.
+   */
+  public long getBrainSize() {
+    return _brain.size();
+  }
+
+
+  /**
+   * Returns the number of quads evicted since the pruner was created.
+   */
+  public synchronized long getEvictedTotal() {
+    return _evictedTotal;
+  }
+
+
+  /**
+   * Returns the evictions per second measured over the last batch.
+   */
+  public synchronized double getEvictionRate() {
+    return _evictionRate;
+  }
+
+
+  /**
+   * Returns the number of full sweeps over the brain so far.
+   */
+  public synchronized long getSweeps() {
+    return _sweeps;
+  }
+
+
+  public String toString() {
+    return String.format("BrainPruner: %d/%d quads, %d evicted (%.1f/s), %d sweeps",
+        getBrainSize(), getMaxQuads(), getEvictedTotal(), getEvictionRate(), getSweeps());
+  }
+
+
+  private final JMegaHal _brain;
+  private long _maxQuads;
+  private int _batchSize = DEFAULT_BATCH_SIZE;
+  private float _minUsage = DEFAULT_MIN_USAGE;
+
+  private ScheduledExecutorService _scheduler = null;
+  private ScheduledFuture<?> _task = null;
+
+  private Iterator<Quad> _hand = null;
+  private boolean _evicting = false;
+  private long _evictedTotal = 0;
+  private long _sweeps = 0;
+  private double _evictionRate = 0;
+  private long _lastRunTime = 0;
+
+}
@@ -0,0 +1,466 @@
+/*
+Copyright Paul James Mutton, 2001-2004, http://www.jibble.org/
+
+This file is part of JMegaHal.
+
+This software is dual-licensed, allowing you to choose between the GNU
+General Public License (GPL) and the www.jibble.org Commercial License.
+Since the GPL may be too restrictive for use in a proprietary application,
+a commercial license is also provided. Full license information can be
+found at http://www.jibble.org/licenses/
+
+*/
+
+package org.jibble.jmegahal;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk storage for a JMegaHal brain.
+ * <p>
+ * The brain is kept in a directory as two files: a compacted snapshot
+ * (<code>brain.snapshot</code>) and an append-only learning log
+ * (<code>brain.log</code>).  Every sentence learned by an attached JMegaHal
+ * is appended to the log, so learning never rewrites the brain.  When the
+ * log grows past the compaction threshold it is set aside as
+ * <code>brain.log.compacting</code> and a fresh log is started, and the
+ * whole brain is written out as a new snapshot on a background thread.
+ * The snapshot is written from a copy of the brain taken by that thread,
+ * so learning carries on meanwhile and only waits for the log to be set
+ * aside.  Once the new snapshot is in place the set-aside log is deleted.
+ * <p>
+ * On startup the snapshot is read through a memory mapping in one
+ * sequential pass and then only the log tail is replayed.  The brain itself
+ * still lives on the heap: the mapping only saves the stream copies, it is
+ * not lazy loading.  Compared with Java serialization the snapshot stores
+ * every token once and no class metadata, and decoding it builds the maps
+ * directly instead of going through the object graph.  BrainBenchmark
+ * measures both.  A set-aside log is replayed before the current one.
+ * Learning is idempotent, so replaying a log that is already part of the
+ * snapshot (e.g. after a crash during compaction) is harmless.
+ */
+public class BrainStore implements Closeable {
+
+  public static final String SNAPSHOT_FILE = "brain.snapshot";
+  public static final String LOG_FILE = "brain.log";
+  public static final String COMPACTING_LOG_FILE = "brain.log.compacting";
+
+  private static final int SNAPSHOT_MAGIC = 0x4A4D4848; // "JMHH"
+  private static final int SNAPSHOT_VERSION = 1;
+
+  private static final int FLAG_CAN_START = 1;
+  private static final int FLAG_CAN_END = 2;
+
+  /**
+   * Constructs a BrainStore that keeps its files in the given directory.
+   * The directory is created if it does not exist.
+   *
+   * @param directory The directory to store the brain in.
+   */
+  public BrainStore(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create brain directory: " + directory);
+    }
+    _snapshotFile = new File(directory, SNAPSHOT_FILE);
+    _logFile = new File(directory, LOG_FILE);
+    _compactingLogFile = new File(directory, COMPACTING_LOG_FILE);
+  }
+
+
+  /**
+   * Loads the brain by decoding the snapshot and replaying the log tail.
+   * The returned JMegaHal is attached to this store, so everything it
+   * learns from now on is appended to the log.
+   *
+   * @return The loaded brain, or an empty one if nothing was stored yet.
+   */
+  public synchronized JMegaHal load() throws IOException {
+    JMegaHal hal = new JMegaHal();
+    if (_snapshotFile.exists()) {
+      readSnapshot(hal);
+    }
+    _logRecords = replayLog(hal, _compactingLogFile) + replayLog(hal, _logFile);
+    openLog();
+    hal.setBrainStore(this);
+    return hal;
+  }
+
+
+  /**
+   * Appends a learned sentence to the log, and starts a background
+   * compaction if the log has grown past the compaction threshold and
+   * none is running.
+   *
+   * @param hal      The brain that learned the sentence.
+   * @param sentence The sentence to append.
+   */
+  synchronized void append(JMegaHal hal, String sentence) throws IOException {
+    if (_log == null) {
+      openLog();
+    }
+    byte[] bytes = sentence.getBytes(StandardCharsets.UTF_8);
+    _log.writeInt(bytes.length);
+    _log.write(bytes);
+    _log.flush();
+    _logRecords++;
+    if (_compactThreshold > 0 && _logRecords >= _compactThreshold && !_compactionScheduled) {
+      _compactionScheduled = true;
+      compactor().execute(() -> compactInBackground(hal));
+    }
+  }
+
+
+  /**
+   * Writes the whole brain out as a new snapshot on the calling thread,
+   * after any background compaction, and truncates the log.  The new
+   * snapshot replaces the old one atomically.  Learning carries on while
+   * it runs.
+   *
+   * @param hal The brain to write.
+   */
+  public void compact(JMegaHal hal) throws IOException {
+    synchronized (_compactLock) {
+      setLogAside();
+      File tmp = new File(_snapshotFile.getPath() + ".tmp");
+      writeSnapshot(hal, tmp);
+      Files.move(tmp.toPath(), _snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      Files.deleteIfExists(_compactingLogFile.toPath());
+    }
+  }
+
+
+  private void compactInBackground(JMegaHal hal) {
+    try {
+      compact(hal);
+    } catch (IOException e) {
+      // The set-aside log is kept and the next compaction retries.
+      synchronized (this) {
+        _compactionFailure = e;
+      }
+    } finally {
+      synchronized (this) {
+        _compactionScheduled = false;
+      }
+    }
+  }
+
+
+  /**
+   * Moves the log aside for the compaction that holds the compact lock and
+   * starts a fresh one.  If an earlier compaction failed, the set-aside log
+   * is still there and the current log is added to it.
+   */
+  private synchronized void setLogAside() throws IOException {
+    closeLog();
+    if (_logFile.exists()) {
+      if (_compactingLogFile.exists()) {
+        Files.write(_compactingLogFile.toPath(), Files.readAllBytes(_logFile.toPath()), StandardOpenOption.APPEND);
+        Files.delete(_logFile.toPath());
+      } else {
+        Files.move(_logFile.toPath(), _compactingLogFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      }
+    }
+    _logRecords = 0;
+    openLog();
+  }
+
+
+  private synchronized ExecutorService compactor() {
+    if (_compactor == null) {
+      _compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "JMegaHal-BrainStore");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return _compactor;
+  }
+
+
+  /**
+   * Waits for a running background compaction and closes the learning
+   * log.  Throws the failure of the last background compaction, if any.
+   */
+  public void close() throws IOException {
+    ExecutorService compactor;
+    synchronized (this) {
+      compactor = _compactor;
+      _compactor = null;
+    }
+    if (compactor != null) {
+      compactor.shutdown();
+      try {
+        compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (this) {
+      closeLog();
+      IOException failure = _compactionFailure;
+      _compactionFailure = null;
+      if (failure != null) {
+        throw new IOException("Background compaction failed", failure);
+      }
+    }
+  }
+
+
+  /**
+   * Sets the number of log records after which the brain is compacted
+   * into a new snapshot.  Zero or less disables automatic compaction.
+   *
+   * @param threshold The number of records.
+   */
+  public synchronized void setCompactThreshold(int threshold) {
+    _compactThreshold = threshold;
+  }
+
+
+  public synchronized int getCompactThreshold() {
+    return _compactThreshold;
+  }
+
+
+  /**
+   * Returns the number of records in the log since it was last set aside
+   * for a compaction.
+   */
+  public synchronized int getLogRecords() {
+    return _logRecords;
+  }
+
+
+  /**
+   * Returns the combined size of the snapshot and the logs, in bytes.
+   */
+  public long getDiskSize() {
+    return _snapshotFile.length() + _compactingLogFile.length() + _logFile.length();
+  }
+
+
+  private void openLog() throws IOException {
+    _log = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_logFile, true)));
+  }
+
+
+  private void closeLog() throws IOException {
+    if (_log != null) {
+      _log.close();
+      _log = null;
+    }
+  }
+
+
+  private static int replayLog(JMegaHal hal, File logFile) throws IOException {
+    if (!logFile.exists()) {
+      return 0;
+    }
+    int records = 0;
+    long validLength = 0;
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+    try {
+      while (true) {
+        int length = in.readInt();
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        hal.learn(new String(bytes, StandardCharsets.UTF_8));
+        validLength += 4 + length;
+        records++;
+      }
+    } catch (EOFException e) {
+      // End of log, or a record torn by a crash.
+    } finally {
+      in.close();
+    }
+    if (validLength < logFile.length()) {
+      RandomAccessFile raf = new RandomAccessFile(logFile, "rw");
+      try {
+        raf.setLength(validLength);
+      } finally {
+        raf.close();
+      }
+    }
+    return records;
+  }
+
+
+  /**
+   * Snapshot layout (all integers big-endian):
+   * <pre>
+   *   magic, version, tokenCount, {length, utf8 bytes} * tokenCount,
+   *   quadCount, {t0, t1, t2, t3, flags,
+   *               nextCount, {token} * nextCount,
+   *               previousCount, {token} * previousCount} * quadCount
+   * </pre>
+   * The word index is not stored; it is rebuilt from the quads.
+   */
+  private void writeSnapshot(JMegaHal hal, File file) throws IOException {
+    // Other threads keep learning while this runs, so the live maps are
+    // walked exactly once, copying every quad with its flags and links.
+    // Token ids, counts and records all come from that copy.
+    List<SnapshotQuad> quads = new ArrayList<>();
+    for (Quad quad : hal.getQuads()) {
+      quads.add(new SnapshotQuad(quad, toArray(hal.getNextTokens(quad)), toArray(hal.getPreviousTokens(quad))));
+    }
+    Map<String, Integer> tokenIds = new HashMap<>();
+    List<String> tokens = new ArrayList<>();
+    for (SnapshotQuad quad : quads) {
+      for (int i = 0; i < 4; i++) {
+        tokenId(quad.quad.getToken(i), tokenIds, tokens);
+      }
+      tokenIds(quad.next, tokenIds, tokens);
+      tokenIds(quad.previous, tokenIds, tokens);
+    }
+
+    FileOutputStream fos = new FileOutputStream(file);
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64 * 1024));
+    try {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeInt(tokens.size());
+      for (String token : tokens) {
+        byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+      out.writeInt(quads.size());
+      for (SnapshotQuad quad : quads) {
+        for (int i = 0; i < 4; i++) {
+          out.writeInt(tokenIds.get(quad.quad.getToken(i)));
+        }
+        out.writeByte(quad.flags);
+        writeTokenSet(quad.next, tokenIds, out);
+        writeTokenSet(quad.previous, tokenIds, out);
+      }
+      out.flush();
+      fos.getFD().sync();
+    } finally {
+      out.close();
+    }
+  }
+
+
+  private void readSnapshot(JMegaHal hal) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(_snapshotFile, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buf.getInt() != SNAPSHOT_MAGIC || buf.getInt() != SNAPSHOT_VERSION) {
+        throw new IOException("Not a JMegaHal snapshot: " + _snapshotFile);
+      }
+      String[] tokens = new String[buf.getInt()];
+      byte[] scratch = new byte[256];
+      for (int i = 0; i < tokens.length; i++) {
+        int length = buf.getInt();
+        if (length > scratch.length) {
+          scratch = new byte[length];
+        }
+        buf.get(scratch, 0, length);
+        tokens[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+      }
+      int quadCount = buf.getInt();
+      for (int i = 0; i < quadCount; i++) {
+        Quad quad = new Quad(tokens[buf.getInt()], tokens[buf.getInt()], tokens[buf.getInt()], tokens[buf.getInt()]);
+        int flags = buf.get();
+        quad.setCanStart((flags & FLAG_CAN_START) != 0);
+        quad.setCanEnd((flags & FLAG_CAN_END) != 0);
+        hal.putQuad(quad, readTokenSet(buf, tokens), readTokenSet(buf, tokens));
+      }
+    } finally {
+      raf.close();
+    }
+  }
+
+
+  private static int tokenId(String token, Map<String, Integer> tokenIds, List<String> tokens) {
+    Integer id = tokenIds.get(token);
+    if (id == null) {
+      id = tokens.size();
+      tokenIds.put(token, id);
+      tokens.add(token);
+    }
+    return id;
+  }
+
+
+  private static void tokenIds(String[] set, Map<String, Integer> tokenIds, List<String> tokens) {
+    for (String token : set) {
+      tokenId(token, tokenIds, tokens);
+    }
+  }
+
+
+  private static void writeTokenSet(String[] set, Map<String, Integer> tokenIds, DataOutputStream out) throws IOException {
+    out.writeInt(set.length);
+    for (String token : set) {
+      out.writeInt(tokenIds.get(token));
+    }
+  }
+
+
+  private static String[] toArray(Set<String> set) {
+    return set == null ? NO_TOKENS : set.toArray(NO_TOKENS);
+  }
+
+
+  private static Set<String> readTokenSet(ByteBuffer buf, String[] tokens) {
+    int count = buf.getInt();
+    if (count == 0) {
+      return null;
+    }
+    Set<String> set = JMegaHal.newSet();
+    for (int i = 0; i < count; i++) {
+      set.add(tokens[buf.getInt()]);
+    }
+    return set;
+  }
+
+
+  /**
+   * A quad as it was when the snapshot copy was taken.
+   */
+  private static final class SnapshotQuad {
+
+    SnapshotQuad(Quad quad, String[] next, String[] previous) {
+      this.quad = quad;
+      this.flags = (quad.canStart() ? FLAG_CAN_START : 0) | (quad.canEnd() ? FLAG_CAN_END : 0);
+      this.next = next;
+      this.previous = previous;
+    }
+
+    final Quad quad;
+    final int flags;
+    final String[] next;
+    final String[] previous;
+
+  }
+
+
+  private static final String[] NO_TOKENS = new String[0];
+
+  private final File _snapshotFile;
+  private final File _logFile;
+  private final File _compactingLogFile;
+  private DataOutputStream _log = null;
+  private int _logRecords = 0;
+  private int _compactThreshold = 100000;
+
+  // Held for a whole compaction, so only one runs at a time.
+  private final Object _compactLock = new Object();
+  private ExecutorService _compactor = null;
+  private boolean _compactionScheduled = false;
+  private IOException _compactionFailure = null;
+
+}
@@ -16,15 +16,23 @@ $Id: JMegaHal.java,v 1.4 2004/02/01 13:24:06 pjm2 Exp $
 
 package org.jibble.jmegahal;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 public class JMegaHal implements Serializable {
 
+  // The default of the original class, so brains serialized by it still load.
+  private static final long serialVersionUID = 4495881780435935097L;
+
   // These are valid chars for words. Anything else is treated as punctuation.
   public static final String WORD_CHARS = "abcdefghijklmnopqrstuvwxyz" +
       "ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
@@ -44,104 +52,156 @@ public class JMegaHal implements Serializable {
    * run out of memory!
    */
   public void addDocument(String uri) throws IOException {
-    BufferedReader reader = new BufferedReader(new InputStreamReader(new URL(uri).openStream()));
-    StringBuffer buffer = new StringBuffer();
-    int ch = 0;
-    while ((ch = reader.read()) != -1) {
-      buffer.append((char) ch);
-      if (END_CHARS.indexOf((char) ch) >= 0) {
-        String sentence = buffer.toString();
-        sentence = sentence.replace('\r', ' ');
-        sentence = sentence.replace('\n', ' ');
-        add(sentence);
-        buffer = new StringBuffer();
-      }
+    try (Reader reader = new InputStreamReader(new URL(uri).openStream())) {
+      readSentences(reader, this::add);
     }
-    add(buffer.toString());
-    reader.close();
   }
 
   /**
-   * Adds a new sentence to the 'brain'
+   * Splits everything read from the reader into sentences ending in one
+   * of END_CHARS, with line breaks turned into spaces, and passes them to
+   * the sink.  Whatever follows the last end char is passed on as well.
    */
-  @SuppressWarnings("unchecked")
-  public void add(String sentence) {
-    sentence = sentence.trim();
-    ArrayList parts = new ArrayList();
-    char[] chars = sentence.toCharArray();
-    int i = 0;
-    boolean punctuation = false;
-    StringBuffer buffer = new StringBuffer();
-    while (i < chars.length) {
-      char ch = chars[i];
-      if ((WORD_CHARS.indexOf(ch) >= 0) == punctuation) {
-        punctuation = !punctuation;
-        String token = buffer.toString();
-        if (token.length() > 0) {
-          parts.add(token);
+  static void readSentences(Reader reader, Consumer<String> sink) throws IOException {
+    char[] chunk = new char[8192];
+    StringBuilder buffer = new StringBuilder();
+    int count;
+    while ((count = reader.read(chunk)) != -1) {
+      for (int i = 0; i < count; i++) {
+        char ch = chunk[i];
+        buffer.append(ch == '\r' || ch == '\n' ? ' ' : ch);
+        if (END_CHARS.indexOf(ch) >= 0) {
+          sink.accept(buffer.toString());
+          buffer.setLength(0);
         }
-        buffer = new StringBuffer();
-        //i++;
-        continue;
       }
-      buffer.append(ch);
-      i++;
     }
-    String lastToken = buffer.toString();
-    if (lastToken.length() > 0) {
-      parts.add(lastToken);
+    sink.accept(buffer.toString());
+  }
+
+  /**
+   * Merges another brain into this one.  Used to combine the partial
+   * brains built by parallel ingestion; the other brain must not be
+   * learning while it is merged.
+   */
+  public void merge(JMegaHal other) {
+    for (Quad otherQuad : other.quads.keySet()) {
+      Quad quad = quads.putIfAbsent(otherQuad, otherQuad);
+      if (quad == null) {
+        quad = otherQuad;
+      }
+      quad.touch(usageEpoch);
+      for (int n = 0; n < 4; n++) {
+        indexWord(quad.getToken(n), quad);
+      }
+    }
+    for (Map.Entry<Quad, Set<String>> entry : other.next.entrySet()) {
+      Quad quad = quads.get(entry.getKey());
+      if (quad != null) {
+        link(next, quad, null, entry.getValue());
+      }
+    }
+    for (Map.Entry<Quad, Set<String>> entry : other.previous.entrySet()) {
+      Quad quad = quads.get(entry.getKey());
+      if (quad != null) {
+        link(previous, quad, null, entry.getValue());
+      }
+    }
+    for (Quad otherQuad : other.quads.keySet()) {
+      Quad quad = quads.get(otherQuad);
+      if (quad == null) {
+        continue;
+      }
+      if (otherQuad.canStart()) {
+        quad.setCanStart(true);
+      }
+      if (otherQuad.canEnd()) {
+        quad.setCanEnd(true);
+      }
     }
+  }
 
-    if (parts.size() >= 4) {
-      for (i = 0; i < parts.size() - 3; i++) {
-        //System.out.println("\"" + parts.get(i) + "\"");
-        Quad quad = new Quad((String) parts.get(i), (String) parts.get(i + 1), (String) parts.get(i + 2), (String) parts.get(i + 3));
-        if (quads.containsKey(quad)) {
-          quad = (Quad) quads.get(quad);
-        } else {
-          quads.put(quad, quad);
-        }
+  /**
+   * Adds a new sentence to the 'brain'
+   */
+  public void add(String sentence) {
+    if (learn(sentence) && store != null) {
+      try {
+        store.append(this, sentence);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not append to brain log", e);
+      }
+    }
+  }
 
-        if (i == 0) {
-          quad.setCanStart(true);
-        }
-        //else if (i == parts.size() - 4) {
-        if (i == parts.size() - 4) {
-          quad.setCanEnd(true);
-        }
+  /**
+   * Learns a sentence without logging it to the attached BrainStore.
+   * Safe to call from many threads at once.
+   *
+   * @return true if the brain learned anything from the sentence.
+   */
+  boolean learn(String sentence) {
+    List<String> parts = tokenize(sentence.trim());
+    if (parts.size() < 4) {
+      // Didn't learn anything.
+      return false;
+    }
 
-        for (int n = 0; n < 4; n++) {
-          String token = (String) parts.get(i + n);
-          if (!words.containsKey(token)) {
-            words.put(token, new HashSet(1));
-          }
-          HashSet set = (HashSet) words.get(token);
-          set.add(quad);
-        }
+    // Quads are published before any link points at them, so a concurrent
+    // walk that follows a next/previous token always finds the quad.
+    Quad[] sentenceQuads = new Quad[parts.size() - 3];
+    int i;
+    for (i = 0; i < sentenceQuads.length; i++) {
+      Quad quad = new Quad(parts.get(i), parts.get(i + 1), parts.get(i + 2), parts.get(i + 3));
+      Quad existing = quads.putIfAbsent(quad, quad);
+      if (existing != null) {
+        quad = existing;
+      }
+      quad.touch(usageEpoch);
+      sentenceQuads[i] = quad;
+      for (int n = 0; n < 4; n++) {
+        indexWord(parts.get(i + n), quad);
+      }
+    }
 
-        if (i > 0) {
-          String previousToken = (String) parts.get(i - 1);
-          if (!previous.containsKey(quad)) {
-            previous.put(quad, new HashSet(1));
-          }
-          HashSet set = (HashSet) previous.get(quad);
-          set.add(previousToken);
-        }
+    for (i = 0; i < sentenceQuads.length; i++) {
+      Quad quad = sentenceQuads[i];
+      if (i > 0) {
+        link(previous, quad, sentenceQuads[i - 1], Collections.singleton(parts.get(i - 1)));
+      }
+      if (i < sentenceQuads.length - 1) {
+        link(next, quad, sentenceQuads[i + 1], Collections.singleton(parts.get(i + 4)));
+      }
+    }
 
-        if (i < parts.size() - 4) {
-          String nextToken = (String) parts.get(i + 4);
-          if (!next.containsKey(quad)) {
-            next.put(quad, new HashSet(1));
-          }
-          HashSet set = (HashSet) next.get(quad);
-          set.add(nextToken);
-        }
+    sentenceQuads[0].setCanStart(true);
+    sentenceQuads[sentenceQuads.length - 1].setCanEnd(true);
+    return true;
+  }
 
+  /**
+   * Splits a sentence into alternating runs of word chars and punctuation.
+   * Tokens are taken as substrings of the sentence, without any copying
+   * through intermediate buffers.
+   */
+  static List<String> tokenize(String sentence) {
+    ArrayList<String> parts = new ArrayList<>();
+    int length = sentence.length();
+    int start = 0;
+    while (start < length) {
+      boolean word = isWordChar(sentence.charAt(start));
+      int end = start + 1;
+      while (end < length && isWordChar(sentence.charAt(end)) == word) {
+        end++;
       }
-    } else {
-      // Didn't learn anything.
+      parts.add(sentence.substring(start, end));
+      start = end;
     }
+    return parts;
+  }
 
+  static boolean isWordChar(char ch) {
+    return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9');
   }
 
   /**
@@ -153,66 +213,349 @@ public class JMegaHal implements Serializable {
 
   /**
    * Generate a sentence that includes (if possible) the specified word.
+   * <p>
+   * This never locks and may run while other threads are learning.  If
+   * the walk reaches a quad whose links are still being written, the
+   * sentence simply ends (or starts) there.
    */
-  @SuppressWarnings("unchecked")
   public String getSentence(String word) {
-    LinkedList parts = new LinkedList();
+    List<String> parts = walk(word, ThreadLocalRandom.current(), Integer.MAX_VALUE);
+    if (parts == null) {
+      return "";
+    }
+
+    StringBuilder sentence = new StringBuilder();
+    for (String token : parts) {
+      sentence.append(token);
+    }
+
+    return sentence.toString();
+  }
 
+  /**
+   * Makes one random walk through the brain, starting from a quad that
+   * contains the word if there is one.  The walk stops growing in a
+   * direction once it has maxTokens tokens, even if no end (or start)
+   * quad has been reached.
+   *
+   * @return The tokens of the walk, or null if the brain is empty.
+   */
+  LinkedList<String> walk(String word, Random rand, int maxTokens) {
+    LinkedList<String> parts = new LinkedList<>();
+
+    Set<Quad> wordQuads = word == null ? null : words.get(word);
     Quad[] quads;
-    if (words.containsKey(word)) {
-      quads = (Quad[]) ((HashSet) words.get(word)).toArray(new Quad[0]);
+    if (wordQuads != null) {
+      quads = wordQuads.toArray(new Quad[0]);
     } else {
-      quads = (Quad[]) this.quads.keySet().toArray(new Quad[0]);
+      quads = this.quads.keySet().toArray(new Quad[0]);
     }
 
     if (quads.length == 0) {
-      return "";
+      return null;
     }
 
     Quad middleQuad = quads[rand.nextInt(quads.length)];
     Quad quad = middleQuad;
+    int epoch = usageEpoch;
+    quad.touch(epoch);
 
     for (int i = 0; i < 4; i++) {
       parts.add(quad.getToken(i));
     }
 
-    while (quad.canEnd() == false) {
-      String[] nextTokens = (String[]) ((HashSet) next.get(quad)).toArray(new String[0]);
-      String nextToken = nextTokens[rand.nextInt(nextTokens.length)];
-      quad = (Quad) this.quads.get(new Quad(quad.getToken(1), quad.getToken(2), quad.getToken(3), nextToken));
+    while (quad != null && !quad.canEnd() && parts.size() < maxTokens) {
+      String nextToken = randomToken(next.get(quad), rand);
+      if (nextToken == null) {
+        break;
+      }
+      quad = this.quads.get(new Quad(quad.getToken(1), quad.getToken(2), quad.getToken(3), nextToken));
       parts.add(nextToken);
+      if (quad != null) {
+        quad.touch(epoch);
+      }
     }
 
     quad = middleQuad;
-    while (quad.canStart() == false) {
-      String[] previousTokens = (String[]) ((HashSet) previous.get(quad)).toArray(new String[0]);
-      String previousToken = previousTokens[rand.nextInt(previousTokens.length)];
-      quad = (Quad) this.quads.get(new Quad(previousToken, quad.getToken(0), quad.getToken(1), quad.getToken(2)));
+    while (quad != null && !quad.canStart() && parts.size() < maxTokens) {
+      String previousToken = randomToken(previous.get(quad), rand);
+      if (previousToken == null) {
+        break;
+      }
+      quad = this.quads.get(new Quad(previousToken, quad.getToken(0), quad.getToken(1), quad.getToken(2)));
       parts.addFirst(previousToken);
+      if (quad != null) {
+        quad.touch(epoch);
+      }
     }
 
-    StringBuffer sentence = new StringBuffer();
-    Iterator it = parts.iterator();
-    while (it.hasNext()) {
-      String token = (String) it.next();
-      sentence.append(token);
+    return parts;
+  }
+
+  private static String randomToken(Set<String> tokens, Random rand) {
+    if (tokens == null) {
+      return null;
+    }
+    String[] array = tokens.toArray(new String[0]);
+    if (array.length == 0) {
+      return null;
     }
+    return array[rand.nextInt(array.length)];
+  }
 
-    return sentence.toString();
+  /**
+   * Adds the quad to the word's index entry.  Done inside compute so that
+   * it cannot race with remove dropping an emptied entry, or put a quad
+   * back that remove has already taken out.
+   */
+  private void indexWord(String word, Quad quad) {
+    words.compute(word, (k, set) -> {
+      if (quad.isRemoved()) {
+        return set;
+      }
+      if (set == null) {
+        set = newSet();
+      }
+      set.add(quad);
+      return set;
+    });
   }
 
-  // This maps a single word to a HashSet of all the Quads it is in.
-  private HashMap words = new HashMap();
+  /**
+   * Adds tokens to the link set of a quad, unless the quad or the
+   * neighbour the link leads to has been removed.  Like indexWord this is
+   * done inside compute, so a learn that overlaps remove cannot leave
+   * entries behind for a quad that is no longer in the brain.
+   *
+   * @param neighbour The quad the tokens lead to, or null if not known.
+   */
+  private void link(ConcurrentHashMap<Quad, Set<String>> links, Quad quad, Quad neighbour, Collection<String> tokens) {
+    links.compute(quad, (k, set) -> {
+      if (quad.isRemoved() || (neighbour != null && neighbour.isRemoved())) {
+        return set;
+      }
+      if (set == null) {
+        set = newSet();
+      }
+      set.addAll(tokens);
+      return set;
+    });
+  }
+
+  /**
+   * Removes a quad from the brain, together with its own next/previous
+   * entries and the links from its neighbours that lead to it.  Walks that
+   * are running at the same time end early if they reach it.
+   * <p>
+   * The quad is flagged as removed in the same step that takes it out of
+   * the quad map, and every index and link update checks that flag under
+   * the same map bin lock remove uses, so a concurrent learn can no longer
+   * index it or link to it.  If the same quad is learned again meanwhile,
+   * as a new object, the entries it has by then are kept and the word
+   * index points at the new object.  Sets that end up empty are dropped.
+   *
+   * @return true if the quad was in the brain.
+   */
+  boolean remove(Quad quad) {
+    Quad[] taken = new Quad[1];
+    quads.computeIfPresent(quad, (k, live) -> {
+      live.markRemoved();
+      taken[0] = live;
+      return null;
+    });
+    Quad removed = taken[0];
+    if (removed == null) {
+      return false;
+    }
+    for (int n = 0; n < 4; n++) {
+      words.computeIfPresent(removed.getToken(n), (k, set) -> {
+        // an equal quad learned again must be indexed by its own object
+        Quad live = quads.get(removed);
+        set.remove(removed);
+        if (live != null) {
+          set.add(live);
+        }
+        return set.isEmpty() ? null : set;
+      });
+    }
+    Set<String> nextTokens = unlinkAll(next, removed);
+    Set<String> previousTokens = unlinkAll(previous, removed);
+    if (previousTokens != null) {
+      for (String token : previousTokens) {
+        unlink(next, new Quad(token, removed.getToken(0), removed.getToken(1), removed.getToken(2)), removed, removed.getToken(3));
+      }
+    }
+    if (nextTokens != null) {
+      for (String token : nextTokens) {
+        unlink(previous, new Quad(removed.getToken(1), removed.getToken(2), removed.getToken(3), token), removed, removed.getToken(0));
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Takes out the link set of a removed quad, unless an equal quad has
+   * been learned again since.
+   */
+  private Set<String> unlinkAll(ConcurrentHashMap<Quad, Set<String>> links, Quad removed) {
+    List<Set<String>> taken = new ArrayList<>(1);
+    links.computeIfPresent(removed, (k, set) -> {
+      if (quads.containsKey(removed)) {
+        return set;
+      }
+      taken.add(set);
+      return null;
+    });
+    return taken.isEmpty() ? null : taken.get(0);
+  }
+
+  /**
+   * Removes the token leading to a removed quad from a neighbour's link
+   * set, dropping the set if it ends up empty.
+   */
+  private void unlink(ConcurrentHashMap<Quad, Set<String>> links, Quad neighbour, Quad removed, String token) {
+    links.computeIfPresent(neighbour, (k, set) -> {
+      if (!quads.containsKey(removed)) {
+        set.remove(token);
+      }
+      return set.isEmpty() ? null : set;
+    });
+  }
+
+  /**
+   * Returns the number of quads in the brain, which is what its memory
+   * use grows with.
+   */
+  public long size() {
+    return quads.mappingCount();
+  }
+
+  /**
+   * Returns the number of distinct words in the brain.
+   */
+  public long getWordCount() {
+    return words.mappingCount();
+  }
+
+  int getUsageEpoch() {
+    return usageEpoch;
+  }
+
+  void advanceUsageEpoch() {
+    usageEpoch++;
+  }
+
+  static <T> Set<T> newSet() {
+    return ConcurrentHashMap.newKeySet(1);
+  }
 
-  // A self-referential HashMap of Quads.
-  private HashMap quads = new HashMap();
+  /**
+   * Attaches a BrainStore.  Every sentence learned through add is
+   * then appended to the store's learning log.
+   */
+  public void setBrainStore(BrainStore store) {
+    this.store = store;
+  }
+
+  public BrainStore getBrainStore() {
+    return store;
+  }
+
+  Collection<Quad> getQuads() {
+    return quads.keySet();
+  }
+
+  Set<String> getNextTokens(Quad quad) {
+    return next.get(quad);
+  }
+
+  Set<String> getPreviousTokens(Quad quad) {
+    return previous.get(quad);
+  }
+
+  Set<Quad> getWordQuads(String word) {
+    return words.get(word);
+  }
+
+  /**
+   * Inserts a fully built Quad, as read back from a snapshot, and indexes
+   * its words.  Either token set may be null.
+   */
+  void putQuad(Quad quad, Set<String> nextTokens, Set<String> previousTokens) {
+    quads.put(quad, quad);
+    for (int n = 0; n < 4; n++) {
+      indexWord(quad.getToken(n), quad);
+    }
+    if (nextTokens != null) {
+      next.put(quad, nextTokens);
+    }
+    if (previousTokens != null) {
+      previous.put(quad, previousTokens);
+    }
+  }
+
+  /**
+   * Reads both the current form and the one of the original class, whose
+   * maps are HashMaps of HashSets and which has a Random instead of the
+   * usage epoch.  The maps of the original form are copied into concurrent
+   * ones.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    words = concurrentSets(fields.get("words", null));
+    quads = concurrentMap(fields.get("quads", null));
+    next = concurrentSets(fields.get("next", null));
+    previous = concurrentSets(fields.get("previous", null));
+    usageEpoch = fields.get("usageEpoch", 0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> ConcurrentHashMap<K, V> concurrentMap(Object map) {
+    if (map instanceof ConcurrentHashMap) {
+      return (ConcurrentHashMap<K, V>) map;
+    }
+    ConcurrentHashMap<K, V> copy = new ConcurrentHashMap<>();
+    if (map != null) {
+      copy.putAll((Map<K, V>) map);
+    }
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, T> ConcurrentHashMap<K, Set<T>> concurrentSets(Object map) {
+    if (map instanceof ConcurrentHashMap) {
+      return (ConcurrentHashMap<K, Set<T>>) map;
+    }
+    ConcurrentHashMap<K, Set<T>> copy = new ConcurrentHashMap<>();
+    if (map != null) {
+      for (Map.Entry<K, Set<T>> entry : ((Map<K, Set<T>>) map).entrySet()) {
+        Set<T> set = newSet();
+        set.addAll(entry.getValue());
+        copy.put(entry.getKey(), set);
+      }
+    }
+    return copy;
+  }
+
+  // All maps are concurrent so that many threads can learn and generate at
+  // the same time; writers only contend on the map bins they touch.
+
+  // This maps a single word to a Set of all the Quads it is in.
+  private ConcurrentHashMap<String, Set<Quad>> words = new ConcurrentHashMap<>();
+
+  // A self-referential Map of Quads.
+  private ConcurrentHashMap<Quad, Quad> quads = new ConcurrentHashMap<>();
 
   // This maps a Quad onto a Set of Strings that may come next.
-  private HashMap next = new HashMap();
+  private ConcurrentHashMap<Quad, Set<String>> next = new ConcurrentHashMap<>();
 
   // This maps a Quad onto a Set of Strings that may come before it.
-  private HashMap previous = new HashMap();
+  private ConcurrentHashMap<Quad, Set<String>> previous = new ConcurrentHashMap<>();
+
+  // Current epoch for the decayed usage counts of quads, see BrainPruner.
+  private volatile int usageEpoch = 0;
 
-  private Random rand = new Random();
+  // Where learned sentences are logged, if anywhere.
+  private transient BrainStore store = null;
 
 }
\ No newline at end of file
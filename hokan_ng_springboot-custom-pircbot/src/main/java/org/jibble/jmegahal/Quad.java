@@ -16,10 +16,29 @@ $Id: Quad.java,v 1.3 2004/02/01 13:24:06 pjm2 Exp $
 
 package org.jibble.jmegahal;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
 public class Quad implements java.io.Serializable {
 
+  // The default of the original class, so brains serialized by it still load.
+  private static final long serialVersionUID = 5244814822007233095L;
+
   public Quad(String s1, String s2, String s3, String s4) {
     tokens = new String[]{s1, s2, s3, s4};
+    hash = hash(tokens);
+  }
+
+  private static int hash(String[] tokens) {
+    return tokens[0].hashCode() + tokens[1].hashCode() + tokens[2].hashCode() + tokens[3].hashCode();
+  }
+
+  /**
+   * The hash is not serialized, the original class did not have it.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    hash = hash(tokens);
   }
 
   public String getToken(int index) {
@@ -42,11 +61,40 @@ public class Quad implements java.io.Serializable {
     return canEnd;
   }
 
+  /**
+   * Counts one use of this Quad, after decaying the previous count by
+   * USAGE_DECAY for every usage epoch that has passed since.
+   */
+  void touch(int epoch) {
+    usage = getUsage(epoch) + 1;
+    usageEpoch = epoch;
+  }
+
+  /**
+   * Returns the decayed usage count as of the given epoch.
+   */
+  float getUsage(int epoch) {
+    int age = epoch - usageEpoch;
+    if (age <= 0) {
+      return usage;
+    }
+    return (float) (usage * Math.pow(USAGE_DECAY, age));
+  }
+
+  /**
+   * Marks this Quad as taken out of the brain.  Set by JMegaHal.remove
+   * while it holds the quad map entry, never cleared.
+   */
+  void markRemoved() {
+    removed = true;
+  }
+
+  boolean isRemoved() {
+    return removed;
+  }
+
   public int hashCode() {
-    return tokens[0].hashCode() +
-        tokens[1].hashCode() +
-        tokens[2].hashCode() +
-        tokens[3].hashCode();
+    return hash;
   }
 
   public boolean equals(Object o) {
@@ -58,7 +106,17 @@ public class Quad implements java.io.Serializable {
   }
 
   private String[] tokens;
-  private boolean canStart = false;
-  private boolean canEnd = false;
+  private transient int hash;
+  // Flags only ever go from false to true, and are read by concurrent walks.
+  private volatile boolean canStart = false;
+  private volatile boolean canEnd = false;
+  private volatile boolean removed = false;
+
+  static final double USAGE_DECAY = 0.5;
+
+  // Decayed usage count, see BrainPruner.  Updated without synchronization;
+  // a lost update only makes the estimate a little low.
+  private float usage = 0;
+  private int usageEpoch = 0;
 
 }
\ No newline at end of file
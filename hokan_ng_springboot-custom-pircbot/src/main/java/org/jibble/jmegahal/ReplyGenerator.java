@@ -0,0 +1,277 @@
+/*
+Copyright Paul James Mutton, 2001-2004, http://www.jibble.org/
+
+This file is part of JMegaHal.
+
+This software is dual-licensed, allowing you to choose between the GNU
+General Public License (GPL) and the www.jibble.org Commercial License.
+Since the GPL may be too restrictive for use in a proprietary application,
+a commercial license is also provided. Full license information can be
+found at http://www.jibble.org/licenses/
+
+*/
+
+package org.jibble.jmegahal;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates replies the way MegaHAL does: instead of a single random walk,
+ * as many candidate walks as fit in a latency budget are made, seeded from
+ * every keyword of the input, and the most surprising candidate wins.
+ * <p>
+ * Candidates are generated in parallel on a pool of helper threads and on
+ * the calling thread itself.  The calling thread always returns once the
+ * budget is spent, whether or not any helper got to run, so a reply is
+ * produced within a predictable deadline even when the pool is busy.
+ * Walks are bounded to a maximum number of tokens.
+ * <p>
+ * The brain only keeps sets of successors, not counts, so a keyword's
+ * probability in its context is taken to be uniform over the successors
+ * (and predecessors) of the quad before (and after) it.
+ */
+public class ReplyGenerator implements Closeable {
+
+  public static final long DEFAULT_BUDGET_MILLIS = 50;
+  public static final int DEFAULT_MAX_TOKENS = 60;
+
+  /**
+   * Constructs a ReplyGenerator with its own pool of daemon helper threads,
+   * one per available processor.
+   *
+   * @param brain The brain to generate replies from.
+   */
+  public ReplyGenerator(JMegaHal brain) {
+    this(brain, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+      Thread thread = new Thread(r, "JMegaHal-ReplyGenerator");
+      thread.setDaemon(true);
+      return thread;
+    }), Runtime.getRuntime().availableProcessors());
+    _ownsExecutor = true;
+  }
+
+  /**
+   * Constructs a ReplyGenerator that runs its helpers on the given executor.
+   *
+   * @param brain       The brain to generate replies from.
+   * @param executor    Where helper walks are run.
+   * @param parallelism The number of walkers per reply, including the caller.
+   */
+  public ReplyGenerator(JMegaHal brain, ExecutorService executor, int parallelism) {
+    _brain = brain;
+    _executor = executor;
+    _parallelism = Math.max(1, parallelism);
+  }
+
+
+  /**
+   * Generates the best reply to the input that can be found within the
+   * latency budget.
+   *
+   * @param input The line to reply to.
+   * @return The reply, or an empty String if the brain is empty.
+   */
+  public String reply(String input) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_budgetMillis);
+    Request request = new Request(input, keywords(input), deadline);
+    for (int i = 1; i < _parallelism; i++) {
+      try {
+        _executor.execute(request);
+      } catch (RejectedExecutionException e) {
+        break;
+      }
+    }
+    request.run();
+    request.stopped = true;
+
+    _candidates.addAndGet(request.candidates.get());
+    _replies.incrementAndGet();
+    Candidate best = request.best.get();
+    return best == null ? "" : best.text;
+  }
+
+
+  /**
+   * Returns the words of the input that the brain knows, in input order.
+   */
+  List<String> keywords(String input) {
+    Set<String> keywords = new LinkedHashSet<>();
+    for (String token : JMegaHal.tokenize(input.trim())) {
+      if (JMegaHal.isWordChar(token.charAt(0)) && _brain.getWordQuads(token) != null) {
+        keywords.add(token);
+      }
+    }
+    return new ArrayList<>(keywords);
+  }
+
+
+  /**
+   * Scores a candidate by how surprising its keywords are, as MegaHAL does.
+   */
+  double score(List<String> tokens, Set<String> keywords) {
+    String[] t = tokens.toArray(new String[tokens.size()]);
+    double surprise = 0;
+    int count = 0;
+    for (int j = 0; j < t.length; j++) {
+      if (!keywords.contains(t[j])) {
+        continue;
+      }
+      if (j >= 4) {
+        Set<String> nextTokens = _brain.getNextTokens(new Quad(t[j - 4], t[j - 3], t[j - 2], t[j - 1]));
+        if (nextTokens != null && !nextTokens.isEmpty()) {
+          surprise += Math.log(nextTokens.size());
+          count++;
+        }
+      }
+      if (j + 4 < t.length) {
+        Set<String> previousTokens = _brain.getPreviousTokens(new Quad(t[j + 1], t[j + 2], t[j + 3], t[j + 4]));
+        if (previousTokens != null && !previousTokens.isEmpty()) {
+          surprise += Math.log(previousTokens.size());
+          count++;
+        }
+      }
+    }
+    if (count > 8) {
+      surprise /= Math.sqrt(count - 1);
+    }
+    if (count > 16) {
+      surprise /= count;
+    }
+    return surprise;
+  }
+
+
+  public void setBudgetMillis(long budgetMillis) {
+    _budgetMillis = budgetMillis;
+  }
+
+
+  public long getBudgetMillis() {
+    return _budgetMillis;
+  }
+
+
+  public void setMaxTokens(int maxTokens) {
+    _maxTokens = Math.max(4, maxTokens);
+  }
+
+
+  public int getMaxTokens() {
+    return _maxTokens;
+  }
+
+
+  /**
+   * Returns the average number of candidates evaluated per reply.
+   */
+  public double getCandidatesPerReply() {
+    long replies = _replies.get();
+    return replies == 0 ? 0 : (double) _candidates.get() / replies;
+  }
+
+
+  /**
+   * Shuts down the helper pool, if this generator created it.
+   */
+  public void close() {
+    if (_ownsExecutor) {
+      _executor.shutdownNow();
+    }
+  }
+
+
+  private static class Candidate {
+
+    final String text;
+    final double score;
+    final boolean hasKeyword;
+
+    Candidate(String text, double score, boolean hasKeyword) {
+      this.text = text;
+      this.score = score;
+      this.hasKeyword = hasKeyword;
+    }
+
+    boolean betterThan(Candidate other) {
+      if (other == null) {
+        return true;
+      }
+      if (hasKeyword != other.hasKeyword) {
+        return hasKeyword;
+      }
+      return score > other.score;
+    }
+
+  }
+
+
+  private class Request implements Runnable {
+
+    final String input;
+    final List<String> seeds;
+    final Set<String> keywords;
+    final long deadline;
+    final AtomicReference<Candidate> best = new AtomicReference<>();
+    final AtomicInteger nextSeed = new AtomicInteger();
+    final AtomicInteger candidates = new AtomicInteger();
+    volatile boolean stopped = false;
+
+    Request(String input, List<String> seeds, long deadline) {
+      this.input = input.trim();
+      this.seeds = seeds;
+      this.keywords = new HashSet<>(seeds);
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      Random rand = ThreadLocalRandom.current();
+      while (!stopped && System.nanoTime() < deadline) {
+        String seed = seeds.isEmpty() ? null : seeds.get((nextSeed.getAndIncrement() & Integer.MAX_VALUE) % seeds.size());
+        LinkedList<String> tokens = _brain.walk(seed, rand, _maxTokens);
+        if (tokens == null) {
+          return;
+        }
+        candidates.incrementAndGet();
+        StringBuilder text = new StringBuilder();
+        boolean hasKeyword = false;
+        for (String token : tokens) {
+          text.append(token);
+          hasKeyword |= keywords.contains(token);
+        }
+        String sentence = text.toString();
+        if (sentence.trim().equalsIgnoreCase(input)) {
+          continue;
+        }
+        offer(new Candidate(sentence, score(tokens, keywords), hasKeyword));
+      }
+    }
+
+    private void offer(Candidate candidate) {
+      Candidate current;
+      do {
+        current = best.get();
+        if (!candidate.betterThan(current)) {
+          return;
+        }
+      } while (!best.compareAndSet(current, candidate));
+    }
+
+  }
+
+
+  private final JMegaHal _brain;
+  private final ExecutorService _executor;
+  private final int _parallelism;
+  private boolean _ownsExecutor = false;
+  private volatile long _budgetMillis = DEFAULT_BUDGET_MILLIS;
+  private volatile int _maxTokens = DEFAULT_MAX_TOKENS;
+  private final AtomicLong _candidates = new AtomicLong();
+  private final AtomicLong _replies = new AtomicLong();
+
+}
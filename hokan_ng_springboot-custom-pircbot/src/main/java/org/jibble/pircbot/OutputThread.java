@@ -64,8 +64,11 @@ public class OutputThread extends Thread {
         bot.log(">>>" + line);
       } catch (Exception e) {
         // Silent response - just lose the line.
+        bot.rawLineFailed(line, e);
+        return;
       }
     }
+    bot.rawLineSent(line);
   }
 
 
@@ -21,6 +21,7 @@ import java.net.Socket;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * PircBot is a Java framework for writing IRC bots quickly and easily.
@@ -402,7 +403,6 @@ public abstract class PircBot implements ReplyConstants {
    */
   public final synchronized void sendRawLine(String line) {
     if (isConnected()) {
-      _linesSent++;
       _inputThread.sendRawLine(line);
     }
   }
@@ -417,7 +417,6 @@ public abstract class PircBot implements ReplyConstants {
       throw new NullPointerException("Cannot send null messages to server");
     }
     if (isConnected()) {
-      _linesSent++;
       _outQueue.add(line);
     }
   }
@@ -876,7 +875,8 @@ public abstract class PircBot implements ReplyConstants {
    */
   protected void handleLine(String line) {
     this.log(line);
-    _linesReceived++;
+    _linesReceived.increment();
+    this.onRawLineReceived(line);
     // Check for server pings.
     if (line.startsWith("PING ")) {
       // Respond to the ping and return immediately.
@@ -1213,6 +1213,64 @@ public abstract class PircBot implements ReplyConstants {
   }
 
 
+  /**
+   * This method is called for every raw line received from the server,
+   * before it is handled.
+   * <p>
+   * The implementation of this method in the PircBot abstract class
+   * performs no actions and may be overridden as required.
+   *
+   * @param line The raw line received from the server.
+   */
+  protected void onRawLineReceived(String line) {
+  }
+
+
+  /**
+   * This method is called for every raw line written to the server, after
+   * it has been written. Lines sent through the outgoing message queue are
+   * reported when they leave the queue.
+   * <p>
+   * The implementation of this method in the PircBot abstract class
+   * performs no actions and may be overridden as required.
+   *
+   * @param line The raw line written to the server, without "\r\n".
+   */
+  protected void onRawLineSent(String line) {
+  }
+
+
+  /**
+   * This method is called when a raw line could not be written to the
+   * server. The line is lost.
+   * <p>
+   * The implementation of this method in the PircBot abstract class
+   * performs no actions and may be overridden as required.
+   *
+   * @param line The raw line that was not written.
+   * @param e    The reason.
+   */
+  protected void onRawLineFailed(String line, Exception e) {
+  }
+
+
+  /**
+   * Called by the OutputThread after writing a line.
+   */
+  final void rawLineSent(String line) {
+    _linesSent.increment();
+    this.onRawLineSent(line);
+  }
+
+
+  /**
+   * Called by the OutputThread when writing a line failed.
+   */
+  final void rawLineFailed(String line, Exception e) {
+    this.onRawLineFailed(line, e);
+  }
+
+
   /**
    * This method is called when we receive a user list from the server
    * after joining a channel.
@@ -2992,12 +3050,12 @@ public abstract class PircBot implements ReplyConstants {
     }
   }
 
-  public int getLinesSent() {
-    return _linesSent;
+  public long getLinesSent() {
+    return _linesSent.sum();
   }
 
-  public int getLinesReceived() {
-    return _linesReceived;
+  public long getLinesReceived() {
+    return _linesReceived.sum();
   }
 
   // Connection stuff.
@@ -3040,7 +3098,7 @@ public abstract class PircBot implements ReplyConstants {
   private String _channelPrefixes = "#&+!";
 
   // STATS
-  private int _linesReceived = 0;
-  private int _linesSent = 0;
+  private final LongAdder _linesReceived = new LongAdder();
+  private final LongAdder _linesSent = new LongAdder();
 
 }
@@ -0,0 +1,216 @@
+/*
+Copyright Paul James Mutton, 2001-2004, http://www.jibble.org/
+
+This file is part of JMegaHal.
+
+This software is dual-licensed, allowing you to choose between the GNU
+General Public License (GPL) and the www.jibble.org Commercial License.
+Since the GPL may be too restrictive for use in a proprietary application,
+a commercial license is also provided. Full license information can be
+found at http://www.jibble.org/licenses/
+
+*/
+
+package org.jibble.jmegahal;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stand-alone benchmark for JMegaHal.  It is kept with the tests, out of
+ * the jar, and run from the module directory with
+ * <pre>
+ *   mvn test-compile
+ *   java -cp target/classes:target/test-classes org.jibble.jmegahal.BrainBenchmark storage|threads [sentences] [maxThreads]
+ * </pre>
+ * <code>storage</code> builds a brain from a generated corpus and compares
+ * Java serialization with BrainStore: time to write, time to load and
+ * size on disk.
+ * <p>
+ * <code>threads</code> runs 1, 2, 4, ... threads, up to the number of cores
+ * unless maxThreads is given, against one brain attached to a BrainStore, each thread learning three
+ * sentences for every reply it generates, and reports the throughput.  The
+ * store compacts every 20000 sentences, so snapshots are written while
+ * the other threads keep learning; after each run the store is loaded
+ * again to check that what it wrote is consistent.
+ * <p>
+ * The corpus is generated from a fixed seed with a skewed word
+ * distribution, so runs are comparable with each other.
+ */
+public class BrainBenchmark {
+
+  private static final int THREAD_SECONDS = 10;
+
+  public static void main(String[] args) throws Exception {
+    String mode = args.length > 0 ? args[0] : "storage";
+    int sentences = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    if (mode.equals("storage")) {
+      storage(corpus(sentences));
+    } else if (mode.equals("threads")) {
+      int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+      threads(corpus(sentences), maxThreads);
+    } else {
+      System.err.println("Usage: BrainBenchmark storage|threads [sentences] [maxThreads]");
+      System.exit(1);
+    }
+  }
+
+
+  /**
+   * Generates sentences of 6 to 20 words from a vocabulary of 20000
+   * words, where low-numbered words are much more frequent.
+   */
+  static List<String> corpus(int count) {
+    Random rand = new Random(42);
+    List<String> corpus = new ArrayList<>(count);
+    StringBuilder sentence = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      sentence.setLength(0);
+      int words = 6 + rand.nextInt(15);
+      for (int w = 0; w < words; w++) {
+        if (w > 0) {
+          sentence.append(' ');
+        }
+        double skewed = Math.pow(rand.nextDouble(), 3);
+        sentence.append("w").append(Integer.toString((int) (skewed * 20000), 36));
+      }
+      sentence.append(rand.nextInt(8) == 0 ? '?' : '.');
+      corpus.add(sentence.toString());
+    }
+    return corpus;
+  }
+
+
+  static void storage(List<String> corpus) throws Exception {
+    JMegaHal hal = new JMegaHal();
+    long start = System.nanoTime();
+    for (String sentence : corpus) {
+      hal.add(sentence);
+    }
+    report("learn", start, hal.size() + " quads");
+
+    File dir = Files.createTempDirectory("brainbench").toFile();
+    File serialized = new File(dir, "brain.ser");
+
+    start = System.nanoTime();
+    ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(serialized), 64 * 1024));
+    try {
+      oos.writeObject(hal);
+    } finally {
+      oos.close();
+    }
+    report("serialize write", start, serialized.length() / 1024 + " KiB");
+
+    File storeDir = new File(dir, "store");
+    BrainStore store = new BrainStore(storeDir);
+    start = System.nanoTime();
+    store.compact(hal);
+    report("snapshot write", start, store.getDiskSize() / 1024 + " KiB");
+    store.close();
+
+    System.gc();
+    start = System.nanoTime();
+    ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(serialized), 64 * 1024));
+    JMegaHal read;
+    try {
+      read = (JMegaHal) ois.readObject();
+    } finally {
+      ois.close();
+    }
+    report("serialize load", start, read.size() + " quads");
+    read = null;
+
+    System.gc();
+    store = new BrainStore(storeDir);
+    start = System.nanoTime();
+    read = store.load();
+    report("snapshot load", start, read.size() + " quads");
+    store.close();
+
+    delete(dir);
+  }
+
+
+  static void threads(List<String> corpus, int maxThreads) throws Exception {
+    double single = 0;
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      File dir = Files.createTempDirectory("brainbench").toFile();
+      BrainStore store = new BrainStore(dir);
+      JMegaHal hal = store.load();
+      store.setCompactThreshold(20000);
+      for (String sentence : corpus.subList(0, corpus.size() / 2)) {
+        hal.learn(sentence);
+      }
+      List<String> feed = corpus.subList(corpus.size() / 2, corpus.size());
+
+      AtomicLong operations = new AtomicLong();
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(THREAD_SECONDS);
+      List<Thread> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int offset = t;
+        Thread worker = new Thread(() -> {
+          Random rand = new Random(offset);
+          long done = 0;
+          try {
+            for (int i = offset; System.nanoTime() < deadline; i++) {
+              if (i % 4 == 3) {
+                hal.getSentence(feed.get(rand.nextInt(feed.size())).split(" ")[0]);
+              } else {
+                hal.add(feed.get(i % feed.size()));
+              }
+              done++;
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+          operations.addAndGet(done);
+        });
+        workers.add(worker);
+        worker.start();
+      }
+      for (Thread worker : workers) {
+        worker.join();
+      }
+      store.close();
+      if (failure.get() != null) {
+        throw new IllegalStateException("Worker failed", failure.get());
+      }
+      store = new BrainStore(dir);
+      long reloaded = store.load().size();
+      store.close();
+      delete(dir);
+
+      double perSecond = operations.get() / (double) THREAD_SECONDS;
+      if (threads == 1) {
+        single = perSecond;
+      }
+      System.out.println(String.format("%2d threads %10.0f ops/s  %5.2fx  %d quads, %d reloaded",
+          threads, perSecond, perSecond / single, hal.size(), reloaded));
+    }
+  }
+
+
+  private static void report(String phase, long startNanos, String result) {
+    long millis = (System.nanoTime() - startNanos) / 1000000;
+    System.out.println(String.format("%-16s %8d ms  %s", phase, millis, result));
+  }
+
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
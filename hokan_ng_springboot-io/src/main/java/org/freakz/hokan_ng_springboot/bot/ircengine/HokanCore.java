@@ -1,13 +1,28 @@
 package org.freakz.hokan_ng_springboot.bot.ircengine;
 
 import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
 import org.freakz.hokan_ng_springboot.bot.jpa.entity.IrcServerConfig;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.service.AsyncRepositoryService;
+import org.freakz.hokan_ng_springboot.bot.service.ChannelStatsService;
+import org.freakz.hokan_ng_springboot.bot.service.NetworkTrafficService;
+import org.freakz.hokan_ng_springboot.bot.service.PropertyResolver;
+import org.freakz.hokan_ng_springboot.bot.service.UrlLoggerService;
+import org.freakz.hokan_ng_springboot.bot.service.UserActivityService;
+import org.freakz.hokan_ng_springboot.bot.stats.NetworkTraffic;
 import org.jibble.pircbot.PircBot;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  *
  * Created by AirioP on 17.2.2015.
@@ -17,13 +32,26 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class HokanCore extends PircBot {
 
+	private static final long CHANNEL_RELOAD_MILLIS = 60 * 1000;
+
 	@Autowired private ApplicationContext context;
+	@Autowired private AsyncRepositoryService asyncRepositoryService;
+	@Autowired private UserActivityService userActivityService;
+	@Autowired private ChannelStatsService channelStatsService;
+	@Autowired private PropertyResolver propertyResolver;
+	@Autowired private NetworkTrafficService networkTrafficService;
+	@Autowired private UrlLoggerService urlLoggerService;
 
 	private IrcServerConfig ircServerConfig;
 	private OutputQueue outputQueue;
+	private NetworkTraffic traffic;
+
+	private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+	private volatile long channelsLoaded = 0;
 
 	public void init(String botName, IrcServerConfig ircServerConfig) {
 		this.ircServerConfig = ircServerConfig;
+		this.traffic = networkTrafficService.getTraffic(ircServerConfig.getNetwork());
 		setVerbose(true);
 		setName(botName);
 		setVersion("Hokan NG");
@@ -43,4 +71,98 @@ public class HokanCore extends PircBot {
 		this.outputQueue = this.context.getBean(OutputQueue.class);
 		this.outputQueue.init(this, getIrcServerConfig().isThrottleInUse());
 	}
+
+	@Override
+	protected void onRawLineReceived(String line) {
+		traffic.lineReceived(line);
+	}
+
+	@Override
+	protected void onRawLineSent(String line) {
+		traffic.lineSent(line);
+	}
+
+	@Override
+	protected void onRawLineFailed(String line, Exception e) {
+		traffic.errorSeen();
+	}
+
+	@Override
+	protected void onServerResponse(int code, String response) {
+		// 400-599 are the ERR_ replies
+		if (code >= 400 && code < 600) {
+			traffic.errorSeen();
+		}
+	}
+
+	@Override
+	protected void onJoin(String channel, String sender, String login, String hostname) {
+		if (sender.equalsIgnoreCase(getNick())) {
+			traffic.channelJoined();
+		}
+	}
+
+	@Override
+	protected void onMessage(String channel, String sender, String login, String hostname, String message) {
+		String network = getIrcServerConfig().getNetwork().getName();
+		Date time = new Date();
+		if (propertyResolver.getChannelSnapshot(network, channel).getBoolean(PropertyName.PROP_CHANNEL_DO_STATS, true)) {
+			channelStatsService.lineSeen(network, channel, sender, message, time);
+		}
+		urlLoggerService.lineSeen(network, channel, sender, message, time, text -> sendToChannel(channel, text));
+		if (message.startsWith("!")) {
+			traffic.commandSeen();
+		}
+		recordActivity(channel, sender, message);
+	}
+
+	/**
+	 * Safe to call from any thread, the output queue sends the line.
+	 */
+	private void sendToChannel(String channel, String text) {
+		OutputQueue queue = outputQueue;
+		if (queue != null) {
+			queue.addLine("PRIVMSG " + channel + " :" + text);
+		}
+	}
+
+	/**
+	 * Never waits for the database: the lookups run on the async repository
+	 * threads and the activity is recorded there, in memory, once they are
+	 * done. The activity tracker writes it to the database in batches.
+	 */
+	private void recordActivity(String channelName, String sender, String message) {
+		Date time = new Date();
+		asyncRepositoryService.findUserByNick(sender)
+				.thenCombine(findChannel(channelName), (user, channel) -> {
+					if (user != null && channel != null) {
+						if (message.startsWith("!")) {
+							userActivityService.commandSeen(user, channel, message, time);
+						} else {
+							userActivityService.messageSeen(user, channel, message, time);
+						}
+					}
+					return null;
+				})
+				.exceptionally(e -> {
+					log.debug("Activity of {} on {} not recorded: {}", sender, channelName, e.toString());
+					return null;
+				});
+	}
+
+	private CompletableFuture<Channel> findChannel(String channelName) {
+		String key = channelName.toLowerCase();
+		Channel channel = channels.get(key);
+		long now = System.currentTimeMillis();
+		if (channel != null || now - channelsLoaded <= CHANNEL_RELOAD_MILLIS) {
+			return CompletableFuture.completedFuture(channel);
+		}
+		channelsLoaded = now;
+		return asyncRepositoryService.findChannels(getIrcServerConfig().getNetwork()).thenApply(known -> {
+			for (Channel loaded : known) {
+				channels.put(loaded.getChannelName().toLowerCase(), loaded);
+			}
+			return channels.get(key);
+		});
+	}
 }
@@ -0,0 +1,258 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.ircengine.HokanCore;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.JoinedUser;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.ChannelService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.JoinedUserService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Channel membership is tracked in memory by the engines themselves:
+ * PircBot keeps the users and their prefixes of every channel up to date
+ * on JOIN, PART, QUIT, KICK, NICK and MODE. Lookups read that directly.
+ * <p/>
+ * The JOINEDUSER table is a projection of it for the other modules. Every
+ * {@link #RECONCILE_INTERVAL_SECONDS} seconds the live membership of each
+ * network is compared with its rows and only the difference is written,
+ * in one transaction with batched statements, so a netsplit costs one
+ * DELETE and one batched INSERT when it heals instead of a write per
+ * event. Only registered users are projected, as the rows refer to USER.
+ * <p/>
+ * Only the networks this node has an engine on are reconciled, so io
+ * nodes on other networks keep their rows. When an engine goes away its
+ * network's rows are deleted once, on the reconciler thread; rows a
+ * crashed process left behind are replaced by the first reconcile after
+ * the network is connected again.
+ *
+ */
+@Service
+@Slf4j
+public class ChannelMembershipServiceImpl implements ChannelMembershipService {
+
+  public static final long RECONCILE_INTERVAL_SECONDS = 60;
+
+  private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+  @Autowired
+  private ConnectionManagerServiceImpl connectionManager;
+
+  @Autowired
+  private ChannelService channelService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private JoinedUserService joinedUserService;
+
+  private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "MembershipReconciler");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final AtomicLong reconciles = new AtomicLong();
+  private final AtomicLong rowsAdded = new AtomicLong();
+  private final AtomicLong rowsChanged = new AtomicLong();
+  private final AtomicLong rowsRemoved = new AtomicLong();
+  private volatile long lastReconcileMillis;
+
+  @PostConstruct
+  public void start() {
+    reconciler.scheduleWithFixedDelay(this::reconcileQuietly, 0, RECONCILE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  public void stop() {
+    reconciler.shutdown();
+    try {
+      reconciler.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public Map<String, String> getMembers(String network, String channel) {
+    Map<String, String> members = new HashMap<>();
+    HokanCore engine = connectionManager.getConnectedEngine(network);
+    if (engine != null) {
+      for (org.jibble.pircbot.User user : engine.getUsers(channel)) {
+        members.put(user.getNick(), user.getPrefix());
+      }
+    }
+    return members;
+  }
+
+  @Override
+  public String getUserModes(String network, String channel, String nick) {
+    HokanCore engine = connectionManager.getConnectedEngine(network);
+    if (engine != null) {
+      for (org.jibble.pircbot.User user : engine.getUsers(channel)) {
+        if (user.getNick().equalsIgnoreCase(nick)) {
+          return user.getPrefix();
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public synchronized void reconcile() {
+    long start = System.currentTimeMillis();
+    Map<String, User> users = null;
+    for (HokanCore engine : connectionManager.getConnectedEngines()) {
+      Network network = engine.getIrcServerConfig().getNetwork();
+      if (users == null) {
+        users = loadUsers();
+      }
+      Map<Key, JoinedUser> live = new HashMap<>();
+      collect(engine, network, users, live);
+      reconcile(network, live, joinedUserService.findJoinedUsers(network));
+    }
+    lastReconcileMillis = System.currentTimeMillis() - start;
+    reconciles.incrementAndGet();
+  }
+
+  @Override
+  public void networkDisconnected(Network network) {
+    try {
+      reconciler.execute(() -> clearQuietly(network));
+    } catch (RejectedExecutionException e) {
+      log.warn("Membership of {} not cleared, shutting down", network.getName());
+    }
+  }
+
+  private synchronized void clearQuietly(Network network) {
+    if (connectionManager.getConnectedEngine(network.getName()) != null) {
+      // connected again meanwhile, the next reconcile takes care of it
+      return;
+    }
+    try {
+      reconcile(network, new HashMap<>(), joinedUserService.findJoinedUsers(network));
+    } catch (Exception e) {
+      log.warn("Membership of {} not cleared: {}", network.getName(), e.toString());
+    }
+  }
+
+  private void reconcileQuietly() {
+    try {
+      reconcile();
+    } catch (Exception e) {
+      log.warn("Membership reconcile failed: {}", e.toString());
+    }
+  }
+
+  private Map<String, User> loadUsers() {
+    Map<String, User> users = new HashMap<>();
+    for (User user : userService.findAll()) {
+      if (user.getNick() != null) {
+        users.put(user.getNick().toLowerCase(), user);
+      }
+    }
+    return users;
+  }
+
+  private void collect(HokanCore engine, Network network, Map<String, User> users, Map<Key, JoinedUser> live) {
+    Map<String, Channel> channels = new HashMap<>();
+    for (Channel channel : channelService.findByNetwork(network)) {
+      channels.put(channel.getChannelName().toLowerCase(), channel);
+    }
+    for (String channelName : engine.getChannels()) {
+      Channel channel = channels.get(channelName.toLowerCase());
+      if (channel == null) {
+        continue;
+      }
+      for (org.jibble.pircbot.User member : engine.getUsers(channelName)) {
+        User user = users.get(member.getNick().toLowerCase());
+        if (user != null) {
+          live.put(new Key(channel, user), new JoinedUser(channel, user, member.getPrefix()));
+        }
+      }
+    }
+  }
+
+  private void reconcile(Network network, Map<Key, JoinedUser> live, List<JoinedUser> rows) {
+    List<JoinedUser> added = new ArrayList<>();
+    List<JoinedUser> changed = new ArrayList<>();
+    List<JoinedUser> removed = new ArrayList<>();
+    Map<Key, JoinedUser> existing = new HashMap<>();
+    for (JoinedUser row : rows) {
+      JoinedUser duplicate = existing.put(new Key(row.getChannel(), row.getUser()), row);
+      if (duplicate != null) {
+        removed.add(duplicate);
+      }
+    }
+    for (Map.Entry<Key, JoinedUser> entry : live.entrySet()) {
+      JoinedUser row = existing.remove(entry.getKey());
+      String userModes = entry.getValue().getUserModes();
+      if (row == null) {
+        added.add(entry.getValue());
+      } else if (!Objects.equals(row.getUserModes(), userModes)) {
+        row.setUserModes(userModes);
+        changed.add(row);
+      }
+    }
+    removed.addAll(existing.values());
+    if (added.isEmpty() && changed.isEmpty() && removed.isEmpty()) {
+      return;
+    }
+    joinedUserService.applyChanges(added, changed, removed);
+    rowsAdded.addAndGet(added.size());
+    rowsChanged.addAndGet(changed.size());
+    rowsRemoved.addAndGet(removed.size());
+    log.debug("Membership of {}: {} joined, {} changed, {} left", network.getName(), added.size(), changed.size(), removed.size());
+  }
+
+  @Override
+  public String getStatistics() {
+    return String.format("%d reconciles, %d rows added, %d changed, %d removed, last took %d ms",
+        reconciles.get(), rowsAdded.get(), rowsChanged.get(), rowsRemoved.get(), lastReconcileMillis);
+  }
+
+  private static final class Key {
+
+    private final long channelId;
+    private final long userId;
+
+    Key(Channel channel, User user) {
+      this.channelId = channel.getId();
+      this.userId = user.getUserId();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return channelId == other.channelId && userId == other.userId;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (channelId * 31 + userId);
+    }
+
+  }
+
+}
@@ -15,10 +15,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -40,9 +42,15 @@ public class ConnectionManagerServiceImpl implements ConnectionManagerService, E
   @Autowired
   private NetworkService networkService;
 
+  @Autowired
+  private NetworkTrafficService networkTrafficService;
+
+  @Autowired
+  private ChannelMembershipService channelMembershipService;
+
   private String botNick;
 
-  private Map<String, HokanCore> connectedEngines = new HashMap<>();
+  private Map<String, HokanCore> connectedEngines = new ConcurrentHashMap<>();
   private Map<String, Connector> connectors = new HashMap<>();
   private Map<String, IrcServerConfig> configuredServers;
 
@@ -83,7 +91,15 @@ public class ConnectionManagerServiceImpl implements ConnectionManagerService, E
   }
 
   public HokanCore getConnectedEngine(Network network) {
-    return this.connectedEngines.get(network.getName());
+    return getConnectedEngine(network.getName());
+  }
+
+  public HokanCore getConnectedEngine(String networkName) {
+    return this.connectedEngines.get(networkName);
+  }
+
+  public Collection<HokanCore> getConnectedEngines() {
+    return this.connectedEngines.values();
   }
 
   public void connect(Network network) throws HokanServiceException {
@@ -170,29 +186,25 @@ public class ConnectionManagerServiceImpl implements ConnectionManagerService, E
     Network network = config.getNetwork();
     if (network.getFirstConnected() == null) {
       network.setFirstConnected(new Date());
+      this.networkService.save(network);
     }
-    network.addToConnectCount(1);
+    this.networkTrafficService.getTraffic(network).connected();
 
     engine.startOutputQueue();
 
     this.connectors.remove(network.getName());
     this.connectedEngines.put(network.getName(), engine);
-    this.networkService.save(network);
 
     joinChannels(engine, network);
 
   }
 
   private void joinChannels(HokanCore engine, Network network) {
-    List<Channel> channels = this.channelService.findAll();
-    if (channels != null) {
+    List<Channel> channels = this.channelService.findChannels(network, ChannelState.JOINED);
+    if (channels != null && !channels.isEmpty()) {
       for (Channel channelToJoin : channels) {
-        if (channelToJoin.getNetwork().getName().equals(network.getName())) {
-          if (channelToJoin.getChannelState() == ChannelState.JOINED) {
-            log.info("--> joining to {}", channelToJoin.getChannelName());
-            engine.joinChannel(channelToJoin.getChannelName());
-          }
-        }
+        log.info("--> joining to {}", channelToJoin.getChannelName());
+        engine.joinChannel(channelToJoin.getChannelName());
       }
     } else {
       log.info("NO channels to join: {} -> {}", engine, network);
@@ -204,6 +216,7 @@ public class ConnectionManagerServiceImpl implements ConnectionManagerService, E
     IrcServerConfig config = engine.getIrcServerConfig();
     Network network = config.getNetwork();
     this.connectedEngines.remove(network.getName());
+    this.channelMembershipService.networkDisconnected(network);
     log.info("Engine disconnected: " + engine);
   }
 
@@ -212,6 +225,7 @@ public class ConnectionManagerServiceImpl implements ConnectionManagerService, E
     log.info("Engine ping timeout: {}", hokanCore);
     try {
       this.connectedEngines.remove(hokanCore.getIrcServerConfig().getNetwork().getName());
+      this.channelMembershipService.networkDisconnected(hokanCore.getIrcServerConfig().getNetwork());
       connect(hokanCore.getIrcServerConfig().getNetwork().getName());
     } catch (HokanServiceException e) {
       log.error("Couldn't re-connect after ping timeout!", e);
@@ -223,6 +237,7 @@ public class ConnectionManagerServiceImpl implements ConnectionManagerService, E
     log.info("Engine Excess Flood: {}", hokanCore);
     try {
       this.connectedEngines.remove(hokanCore.getIrcServerConfig().getNetwork().getName());
+      this.channelMembershipService.networkDisconnected(hokanCore.getIrcServerConfig().getNetwork());
       connect(hokanCore.getIrcServerConfig().getNetwork().getName());
     } catch (HokanServiceException e) {
       log.error("Couldn't re-connect after Excess Flood!", e);
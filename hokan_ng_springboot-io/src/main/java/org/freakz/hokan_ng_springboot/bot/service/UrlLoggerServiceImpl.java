@@ -0,0 +1,169 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Url;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UrlService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Every URL posted on a channel is checked against the repost index. A
+ * repost adds to the wanha count of the first post in one atomic update.
+ * The title of a new URL is fetched first, so that it is stored once,
+ * with its title, which also adds it to the repost and search indexes
+ * once the insert has committed. The database work runs on the async
+ * repository threads and the fetch on the title fetch threads, never on
+ * the IRC thread.
+ * <p/>
+ * On channels with {@link PropertyName#PROP_CHANNEL_DO_URL_TITLES} the
+ * title is then announced, reposts with the wanha count. URLs of at
+ * least {@link #SHORTEN_LENGTH} characters get a short link under
+ * <code>hokan.shortUrl.base</code>, when it is set.
+ *
+ */
+@Service
+@Slf4j
+public class UrlLoggerServiceImpl implements UrlLoggerService {
+
+  public static final int MAX_URL_LENGTH = 1024;
+  public static final int SHORTEN_LENGTH = 80;
+
+  private static final Pattern URL_PATTERN = Pattern.compile("(?i)\\b(?:https?://|www\\.)[^\\s<>\"]+");
+
+  // a URL is more likely followed by these than ending in them
+  private static final String TRAILING = ".,;:!?')]}";
+
+  @Autowired
+  private AsyncRepositoryService asyncRepositoryService;
+
+  @Autowired
+  private UrlService urlService;
+
+  @Autowired
+  private UrlTitleService urlTitleService;
+
+  @Autowired
+  private PropertyResolver propertyResolver;
+
+  @Autowired
+  private ShortUrlService shortUrlService;
+
+  @Value("${hokan.shortUrl.base:}")
+  private String shortUrlBase;
+
+  private final AtomicLong seen = new AtomicLong();
+  private final AtomicLong reposts = new AtomicLong();
+  private final AtomicLong stored = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  @Override
+  public void lineSeen(String network, String channel, String sender, String message, Date time, Consumer<String> reply) {
+    List<String> urls = findUrls(message);
+    if (urls.isEmpty()) {
+      return;
+    }
+    boolean announce = propertyResolver.getChannelSnapshot(network, channel).getBoolean(PropertyName.PROP_CHANNEL_DO_URL_TITLES, false);
+    for (String url : urls) {
+      seen.incrementAndGet();
+      asyncRepositoryService.submit("findRepost", () -> urlService.findRepost(url))
+          .thenCompose(earlier -> earlier != null
+              ? asyncRepositoryService.submit("addWanhaCount", () -> repost(earlier))
+              : urlTitleService.fetchTitle(url)
+              .thenCompose(title -> asyncRepositoryService.submit("saveUrl", () -> store(url, title, sender, channel, time))))
+          .thenAccept(logged -> {
+            if (announce) {
+              String shortLink = shortLink(logged);
+              if (logged.getUrlTitle() != null || shortLink != null) {
+                reply.accept(describe(logged, shortLink));
+              }
+            }
+          })
+          .exceptionally(e -> {
+            failed.incrementAndGet();
+            log.debug("URL {} on {} not logged: {}", url, channel, e.toString());
+            return null;
+          });
+    }
+  }
+
+  static List<String> findUrls(String message) {
+    List<String> urls = new ArrayList<>();
+    if (message.indexOf("://") < 0 && message.indexOf("www.") < 0 && message.indexOf("WWW.") < 0) {
+      return urls;
+    }
+    Matcher matcher = URL_PATTERN.matcher(message);
+    while (matcher.find()) {
+      String url = matcher.group();
+      int end = url.length();
+      while (end > 0 && TRAILING.indexOf(url.charAt(end - 1)) >= 0) {
+        end--;
+      }
+      if (end > 0 && end <= MAX_URL_LENGTH) {
+        urls.add(url.substring(0, end));
+      }
+    }
+    return urls;
+  }
+
+  private Url repost(Url earlier) {
+    urlService.addWanhaCount(earlier, 1);
+    reposts.incrementAndGet();
+    return earlier;
+  }
+
+  private Url store(String url, String title, String sender, String channel, Date time) {
+    Url created = new Url(url, sender, channel, time);
+    created.setUrlTitle(title);
+    Url saved = urlService.save(created);
+    stored.incrementAndGet();
+    return saved;
+  }
+
+  /**
+   * @return the short link of the URL, or null if it is short enough or
+   * no ids are reserved at the moment
+   */
+  private String shortLink(Url url) {
+    if (shortUrlBase.isEmpty() || url.getUrl().length() < SHORTEN_LENGTH) {
+      return null;
+    }
+    String code = url.getShortUrl();
+    if (code == null) {
+      code = shortUrlService.shorten(url.getUrl(), url.getId());
+    }
+    return code == null ? null : shortUrlBase + code;
+  }
+
+  private static String describe(Url url, String shortLink) {
+    List<String> parts = new ArrayList<>();
+    if (url.getUrlTitle() != null) {
+      // a title spanning lines must not end the PRIVMSG
+      parts.add("Title: " + url.getUrlTitle().replaceAll("\\s+", " ").trim());
+    }
+    if (url.getWanhaCount() > 0) {
+      parts.add(String.format("wanha x%d, first by %s", url.getWanhaCount(), url.getSender()));
+    }
+    if (shortLink != null) {
+      parts.add(shortLink);
+    }
+    return String.join(" | ", parts);
+  }
+
+  @Override
+  public String getStatistics() {
+    return String.format("%d URLs seen, %d reposts, %d stored, %d failed",
+        seen.get(), reposts.get(), stored.get(), failed.get());
+  }
+
+}
@@ -0,0 +1,111 @@
+package org.freakz.hokan_ng_springboot.bot.service;
+
+import org.freakz.hokan_ng_springboot.bot.HokanNgSpringBootIo;
+import org.freakz.hokan_ng_springboot.bot.ircengine.HokanCore;
+import org.freakz.hokan_ng_springboot.bot.ircengine.connector.Connector;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ChannelState;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.IrcServerConfig;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.IrcServerConfigState;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.ChannelService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.IrcServerConfigService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.NetworkService;
+import org.freakz.hokan_ng_springboot.bot.jpa.stats.QueryStatistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counts the statements an engine coming online costs, channel joins
+ * included, on an in-memory H2 database.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = HokanNgSpringBootIo.class)
+@ActiveProfiles("embedded")
+@IntegrationTest({
+    "spring.datasource.url=jdbc:h2:mem:io-query-budget;DB_CLOSE_DELAY=-1",
+    "hokan.queryStats.strict=true",
+    "hokan.urlIndex.dir=target/url-index",
+    "hokan.channelStats.dir=target/channel-stats"})
+public class ConnectionManagerQueryBudgetTest {
+
+  // merging the server config, select and update, and finding the channels
+  // to join; the select is a second-level cache hit at best
+  private static final int GOT_ONLINE_BUDGET = 3;
+
+  // and merging the network with its first connect time, select and update
+  private static final int FIRST_CONNECT_BUDGET = GOT_ONLINE_BUDGET + 2;
+
+  @Autowired
+  private ConnectionManagerServiceImpl connectionManager;
+
+  @Autowired
+  private NetworkService networkService;
+
+  @Autowired
+  private ChannelService channelService;
+
+  @Autowired
+  private IrcServerConfigService ircServerConfigService;
+
+  @Test
+  public void engineGotOnlineDoesNotDependOnChannelCount() throws Exception {
+    long few = gotOnline("budgetFew", 5, true);
+    long many = gotOnline("budgetMany", 50, true);
+    assertEquals("statements with 5 and 50 channels", few, many);
+    assertTrue("engine online took " + many + " statements", many <= GOT_ONLINE_BUDGET);
+  }
+
+  @Test
+  public void firstConnectDoesNotDependOnChannelCount() throws Exception {
+    long few = gotOnline("budgetFirstFew", 5, false);
+    long many = gotOnline("budgetFirstMany", 50, false);
+    assertEquals("statements with 5 and 50 channels", few, many);
+    assertTrue("first connect took " + many + " statements", many <= FIRST_CONNECT_BUDGET);
+    assertNotNull(networkService.getNetwork("budgetFirstMany").getFirstConnected());
+  }
+
+  private long gotOnline(String networkName, int joined, boolean connectedBefore) throws Exception {
+    Network network = networkService.create(networkName);
+    if (connectedBefore) {
+      network.setFirstConnected(new Date());
+      network = networkService.save(network);
+    }
+    for (int i = 0; i < joined * 2; i++) {
+      Channel channel = new Channel(network, "#" + networkName + i);
+      channel.setChannelState(i % 2 == 0 ? ChannelState.JOINED : ChannelState.NOT_JOINED);
+      channelService.save(channel);
+    }
+    IrcServerConfig config = new IrcServerConfig();
+    config.setNetwork(network);
+    config.setServer("irc." + networkName + ".example");
+    config.setPort(6667);
+    config.setIrcServerConfigState(IrcServerConfigState.DISCONNECTED);
+    ircServerConfigService.updateIrcServerConfig(config);
+
+    HokanCore engine = mock(HokanCore.class);
+    when(engine.getIrcServerConfig()).thenReturn(config);
+
+    long before = QueryStatistics.getThreadStatementCount();
+    connectionManager.engineConnectorGotOnline(mock(Connector.class), engine);
+    long statements = QueryStatistics.getThreadStatementCount() - before;
+
+    // joinChannel is final and does nothing on an engine that is not connected
+    assertEquals(joined, channelService.findChannels(network, ChannelState.JOINED).size());
+    return statements;
+  }
+
+}
@@ -0,0 +1,35 @@
+package org.freakz.hokan_ng_springboot.bot.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.service.ShortUrlService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+/**
+ * Redirects short links made by ShortUrlService.
+ *
+ */
+@Controller
+@Slf4j
+public class ShortUrlController {
+
+  @Autowired
+  private ShortUrlService shortUrlService;
+
+  @RequestMapping("/s/{code}")
+  public ResponseEntity<Void> redirect(@PathVariable("code") String code) {
+    String url = shortUrlService.resolve(code);
+    if (url == null) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.LOCATION, url);
+    return new ResponseEntity<>(headers, HttpStatus.MOVED_PERMANENTLY);
+  }
+
+}
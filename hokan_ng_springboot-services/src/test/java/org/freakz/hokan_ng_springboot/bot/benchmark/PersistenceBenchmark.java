@@ -0,0 +1,225 @@
+package org.freakz.hokan_ng_springboot.bot.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.JoinedUser;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.UserChannel;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.ChannelService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.JoinedUserService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.NetworkService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserChannelService;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Runs the same persistence workload through the repository services on
+ * whatever storage profile is active, logs the throughput of each phase
+ * and closes the application. Run once with the embedded profile and once
+ * without to compare the two. It is kept with the tests of the services
+ * module, out of the war, and <code>mvn -Pbenchmark verify</code> there
+ * runs it from the test classpath on embedded H2, adding the MySQL run
+ * when <code>-Dbenchmark.mysql.url</code> names a scratch database.
+ * <p/>
+ * The phases are the write patterns of the bot: single inserts, batched
+ * inserts and updates of the activity writer, point reads, the atomic
+ * counter updates of the traffic flusher and the membership diff of the
+ * reconciler. All rows are created under a new network and deleted again
+ * at the end.
+ * <p/>
+ * The database must be named on the command line, with
+ * <code>--hokan.embedded.dir</code> on the embedded profile and with
+ * <code>--spring.datasource.url</code> otherwise, so that the benchmark
+ * never runs against the database of the configuration by accident.
+ * <p/>
+ * The embedded numbers are those of the process that opened the H2 file.
+ * Further modules on the same node reach it through AUTO_SERVER, which is
+ * a TCP connection to that process, so the goal of one JVM without network
+ * hops is not met for them.
+ *
+ */
+@Component
+@Profile("benchmark")
+@Slf4j
+public class PersistenceBenchmark implements CommandLineRunner {
+
+  private static final int CHANNELS = 10;
+  private static final int BATCH = 100;
+
+  @Value("${hokan.benchmark.rows:2000}")
+  private int rows;
+
+  @Autowired
+  private ApplicationContext context;
+
+  @Autowired
+  private ConfigurableEnvironment environment;
+
+  @Autowired
+  private NetworkService networkService;
+
+  @Autowired
+  private ChannelService channelService;
+
+  @Autowired
+  private UserService userService;
+
+  @Autowired
+  private UserChannelService userChannelService;
+
+  @Autowired
+  private JoinedUserService joinedUserService;
+
+  private final List<String> results = new ArrayList<>();
+
+  @Override
+  public void run(String... args) {
+    try {
+      runPhases();
+    } finally {
+      SpringApplication.exit(context);
+    }
+  }
+
+  private void runPhases() {
+    requireScratchDatabase();
+    String tag = "bench-" + System.currentTimeMillis();
+    Network network = networkService.create(tag);
+    List<User> users = new ArrayList<>();
+    List<UserChannel> saved = new ArrayList<>();
+    try {
+      runPhases(tag, network, users, saved);
+    } finally {
+      deleteRows(tag, network, users, saved);
+    }
+  }
+
+  /**
+   * The benchmark writes rows, so the database has to be named on the
+   * command line rather than taken from the application configuration.
+   */
+  private void requireScratchDatabase() {
+    PropertySource<?> commandLine = environment.getPropertySources()
+        .get(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME);
+    boolean embedded = Arrays.asList(environment.getActiveProfiles()).contains("embedded");
+    String property = embedded ? "hokan.embedded.dir" : "spring.datasource.url";
+    if (commandLine == null || !commandLine.containsProperty(property)) {
+      throw new IllegalStateException("Persistence benchmark needs a scratch database, give it with --" + property);
+    }
+  }
+
+  private void runPhases(String tag, Network network, List<User> users, List<UserChannel> saved) {
+    List<Channel> channels = new ArrayList<>();
+    for (int i = 0; i < CHANNELS; i++) {
+      channels.add(channelService.create(new Channel(network, "#" + tag + "-" + i)));
+    }
+    int userCount = Math.max(1, rows / CHANNELS);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < userCount; i++) {
+      users.add(userService.save(new User(tag + "-" + i)));
+    }
+    record("single inserts", userCount, start);
+
+    List<UserChannel> activity = new ArrayList<>();
+    for (User user : users) {
+      for (Channel channel : channels) {
+        UserChannel userChannel = new UserChannel(user, channel);
+        userChannel.setLastMessage("hello");
+        userChannel.setLastMessageTime(new Date());
+        activity.add(userChannel);
+      }
+    }
+    start = System.nanoTime();
+    saved.addAll(saveInBatches(activity));
+    record("batched inserts", saved.size(), start);
+
+    for (UserChannel userChannel : saved) {
+      userChannel.setLastMessage("hello again");
+      userChannel.setLastMessageTime(new Date());
+    }
+    start = System.nanoTime();
+    saveInBatches(saved);
+    record("batched updates", saved.size(), start);
+
+    start = System.nanoTime();
+    for (User user : users) {
+      for (Channel channel : channels) {
+        userChannelService.findUserChannel(user, channel);
+      }
+    }
+    record("point reads", users.size() * channels.size(), start);
+
+    start = System.nanoTime();
+    for (int i = 0; i < rows; i++) {
+      networkService.addTraffic(network.getId(), 0, 0, 1, 1, 100, 100, 0, 0);
+    }
+    record("atomic updates", rows, start);
+
+    List<JoinedUser> joined = new ArrayList<>();
+    for (User user : users) {
+      for (Channel channel : channels) {
+        joined.add(new JoinedUser(channel, user, ""));
+      }
+    }
+    start = System.nanoTime();
+    joinedUserService.applyChanges(joined, Collections.<JoinedUser>emptyList(), Collections.<JoinedUser>emptyList());
+    joinedUserService.applyChanges(Collections.<JoinedUser>emptyList(), Collections.<JoinedUser>emptyList(),
+        joinedUserService.findJoinedUsers(network));
+    record("membership diff", joined.size() * 2, start);
+
+    log.info("Persistence benchmark, profiles {}, {}", Arrays.toString(environment.getActiveProfiles()),
+        environment.getProperty("spring.datasource.url"));
+    for (String result : results) {
+      log.info(result);
+    }
+  }
+
+  private void deleteRows(String tag, Network network, List<User> users, List<UserChannel> userChannels) {
+    try {
+      joinedUserService.applyChanges(Collections.<JoinedUser>emptyList(), Collections.<JoinedUser>emptyList(),
+          joinedUserService.findJoinedUsers(network));
+      for (int from = 0; from < userChannels.size(); from += BATCH) {
+        userChannelService.delete(userChannels.subList(from, Math.min(userChannels.size(), from + BATCH)));
+      }
+      for (int from = 0; from < users.size(); from += BATCH) {
+        userService.delete(users.subList(from, Math.min(users.size(), from + BATCH)));
+      }
+      channelService.deleteAllByNetwork(network);
+      networkService.delete(network);
+      log.info("Deleted the benchmark rows of {}", tag);
+    } catch (RuntimeException e) {
+      log.error("Could not delete the benchmark rows of " + tag, e);
+    }
+  }
+
+  private List<UserChannel> saveInBatches(List<UserChannel> activity) {
+    List<UserChannel> saved = new ArrayList<>(activity.size());
+    for (int from = 0; from < activity.size(); from += BATCH) {
+      saved.addAll(userChannelService.saveActivity(activity.subList(from, Math.min(activity.size(), from + BATCH))));
+    }
+    return saved;
+  }
+
+  private void record(String phase, int operations, long startNanos) {
+    long millis = Math.max(1, (System.nanoTime() - startNanos) / 1000000);
+    results.add(String.format("%-16s %7d ops %7d ms %9.0f ops/s", phase, operations, millis, operations * 1000.0 / millis));
+  }
+
+}
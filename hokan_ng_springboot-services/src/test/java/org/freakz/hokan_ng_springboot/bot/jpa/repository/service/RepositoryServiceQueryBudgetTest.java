@@ -0,0 +1,146 @@
+package org.freakz.hokan_ng_springboot.bot.jpa.repository.service;
+
+import org.freakz.hokan_ng_springboot.bot.HokanNgSpringBootServices;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Channel;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ChannelProperty;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.ChannelState;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.Network;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.PropertyName;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.stats.QueryStatistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the statements of the finders on the hot paths, on an in-memory
+ * H2 database. Each finder must stay within its budget, and reading the
+ * associations it fetches must not cost more statements, however many
+ * rows it returns.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = HokanNgSpringBootServices.class)
+@ActiveProfiles("embedded")
+@IntegrationTest({
+    "spring.datasource.url=jdbc:h2:mem:services-query-budget;DB_CLOSE_DELAY=-1",
+    "hokan.queryStats.strict=true"})
+public class RepositoryServiceQueryBudgetTest {
+
+  private static final int CHANNELS = 40;
+
+  @Autowired
+  private NetworkService networkService;
+
+  @Autowired
+  private ChannelService channelService;
+
+  @Autowired
+  private ChannelPropertyService channelPropertyService;
+
+  @Autowired
+  private UserService userService;
+
+  private Network network;
+  private Channel channel;
+  private String nick;
+
+  @Before
+  public void setUp() {
+    String name = "budget" + System.nanoTime();
+    network = networkService.create(name);
+    for (int i = 0; i < CHANNELS; i++) {
+      Channel created = new Channel(network, "#" + name + i);
+      created.setChannelState(i % 2 == 0 ? ChannelState.JOINED : ChannelState.NOT_JOINED);
+      channel = channelService.save(created);
+    }
+    for (PropertyName property : new PropertyName[]{PropertyName.PROP_CHANNEL_DO_URL_TITLES, PropertyName.PROP_CHANNEL_DO_WHOLELINE_TRICKERS}) {
+      channelPropertyService.save(new ChannelProperty(channel, property, "true", ""));
+    }
+    nick = "nick" + name;
+    userService.save(new User(nick));
+  }
+
+  @Test
+  public void getNetwork() {
+    assertNotNull(count(1, () -> networkService.getNetwork(network.getName())));
+  }
+
+  @Test
+  public void findChannelsWithNetwork() {
+    List<Channel> joined = count(1, () -> {
+      List<Channel> channels = channelService.findChannels(network, ChannelState.JOINED);
+      for (Channel found : channels) {
+        found.getNetwork().getName();
+      }
+      return channels;
+    });
+    assertEquals(CHANNELS / 2, joined.size());
+  }
+
+  @Test
+  public void findByNetworkWithNetwork() {
+    List<Channel> channels = count(1, () -> {
+      List<Channel> found = channelService.findByNetwork(network);
+      for (Channel c : found) {
+        c.getNetwork().getName();
+      }
+      return found;
+    });
+    assertEquals(CHANNELS, channels.size());
+  }
+
+  @Test
+  public void findAllChannelsWithNetwork() {
+    List<Channel> channels = count(1, () -> {
+      List<Channel> found = channelService.findAll();
+      for (Channel c : found) {
+        c.getNetwork().getName();
+      }
+      return found;
+    });
+    assertTrue(channels.size() >= CHANNELS);
+  }
+
+  @Test
+  public void findChannelPropertiesWithChannel() {
+    List<ChannelProperty> properties = count(1, () -> {
+      List<ChannelProperty> found = channelPropertyService.findByChannel(channel);
+      for (ChannelProperty property : found) {
+        property.getChannel().getChannelName();
+      }
+      return found;
+    });
+    assertEquals(2, properties.size());
+  }
+
+  @Test
+  public void findUserByNick() {
+    assertNotNull(count(1, () -> userService.findFirstByNick(nick)));
+  }
+
+  @Test
+  public void findUserByNickIgnoringCase() {
+    assertNotNull(count(1, () -> userService.findFirstByNickIgnoreCase(nick.toUpperCase())));
+  }
+
+  private static <T> T count(int budget, Supplier<T> operation) {
+    long before = QueryStatistics.getThreadStatementCount();
+    T result = operation.get();
+    long statements = QueryStatistics.getThreadStatementCount() - before;
+    assertTrue(statements + " statements, budget is " + budget, statements <= budget);
+    return result;
+  }
+
+}
@@ -15,8 +15,6 @@ import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
 import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserService;
 import org.freakz.hokan_ng_springboot.bot.service.AccessControlService;
 
-import java.util.List;
-
 @Slf4j
 public class MyAuthenticatedWebSession extends AuthenticatedWebSession {
 
@@ -39,18 +37,16 @@ public class MyAuthenticatedWebSession extends AuthenticatedWebSession {
   }
 
   private boolean checkAccess(final String username, final String password) {
-    List<User> userList = userService.findAll();
-    for (User user : userList) {
-      if (user.getNick().equalsIgnoreCase(username)) {
-        log.info("User exists");
-        if (user.getPassword().equals(password)) {
-          log.info("User authorized: {}", username);
-          this.loggedInUser = accessControlService.loginUser(user);
-          return true;
-        } else {
-          log.info("User invalid password: {}", username);
-          return false;
-        }
+    User user = userService.findFirstByNickIgnoreCase(username);
+    if (user != null) {
+      log.info("User exists");
+      if (user.getPassword().equals(password)) {
+        log.info("User authorized: {}", username);
+        this.loggedInUser = accessControlService.loginUser(user);
+        return true;
+      } else {
+        log.info("User invalid password: {}", username);
+        return false;
       }
     }
     return false;
@@ -0,0 +1,100 @@
+package org.freakz.hokan_ng_springboot.bot;
+
+import org.apache.wicket.util.tester.WicketTester;
+import org.freakz.hokan_ng_springboot.bot.jpa.entity.User;
+import org.freakz.hokan_ng_springboot.bot.jpa.repository.service.UserService;
+import org.freakz.hokan_ng_springboot.bot.jpa.stats.QueryStatistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Counts the statements of a web console login, on an in-memory H2
+ * database. The login must stay within its budget however many users
+ * there are.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = HokanNgWicketApplication.class)
+@ActiveProfiles("embedded")
+@IntegrationTest({
+    "spring.datasource.url=jdbc:h2:mem:wicket-query-budget;DB_CLOSE_DELAY=-1",
+    "hokan.queryStats.strict=true"})
+public class LoginQueryBudgetTest {
+
+  // finding the user by nick, reading it by id and merging it logged in,
+  // select and update; the reads by id are second-level cache hits at best
+  private static final int LOGIN_BUDGET = 4;
+
+  @Autowired
+  private HokanNgWicketApplication application;
+
+  @Autowired
+  private UserService userService;
+
+  private WicketTester tester;
+
+  @Before
+  public void setUp() {
+    tester = new WicketTester(application);
+  }
+
+  @After
+  public void tearDown() {
+    tester.destroy();
+  }
+
+  @Test
+  public void loginDoesNotDependOnUserCount() {
+    long few = login("budgetFew", 5);
+    long many = login("budgetMany", 200);
+    assertEquals("statements with 5 and 200 users", few, many);
+    assertTrue("login took " + many + " statements", many <= LOGIN_BUDGET);
+  }
+
+  @Test
+  public void loginIgnoresNickCase() {
+    addUsers("budgetCase", 1);
+    MyAuthenticatedWebSession session = new MyAuthenticatedWebSession(tester.getRequest());
+    long before = QueryStatistics.getThreadStatementCount();
+    assertTrue(session.signIn("BUDGETCASE0", "secret"));
+    long statements = QueryStatistics.getThreadStatementCount() - before;
+    assertTrue("login took " + statements + " statements", statements <= LOGIN_BUDGET);
+  }
+
+  @Test
+  public void wrongPasswordIsAtMostOneStatement() {
+    addUsers("budgetWrong", 1);
+    MyAuthenticatedWebSession session = new MyAuthenticatedWebSession(tester.getRequest());
+    long before = QueryStatistics.getThreadStatementCount();
+    assertFalse(session.signIn("budgetWrong0", "wrong"));
+    long statements = QueryStatistics.getThreadStatementCount() - before;
+    assertTrue("wrong password took " + statements + " statements", statements <= 1);
+  }
+
+  private long login(String prefix, int users) {
+    addUsers(prefix, users);
+    MyAuthenticatedWebSession session = new MyAuthenticatedWebSession(tester.getRequest());
+    long before = QueryStatistics.getThreadStatementCount();
+    assertTrue(session.signIn(prefix + (users - 1), "secret"));
+    return QueryStatistics.getThreadStatementCount() - before;
+  }
+
+  private void addUsers(String prefix, int users) {
+    for (int i = 0; i < users; i++) {
+      User user = new User(prefix + i);
+      user.setPassword("secret");
+      userService.save(user);
+    }
+  }
+
+}